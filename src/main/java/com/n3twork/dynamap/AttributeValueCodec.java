@@ -0,0 +1,189 @@
+/*
+    Copyright 2018 N3TWORK INC
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.n3twork.dynamap;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compact binary encoding of low level attribute value maps: a one byte type tag per value, strings and numbers as
+ * length prefixed UTF-8 and containers as a count followed by their elements.
+ */
+final class AttributeValueCodec {
+
+    private static final byte S = 0;
+    private static final byte N = 1;
+    private static final byte B = 2;
+    private static final byte SS = 3;
+    private static final byte NS = 4;
+    private static final byte BS = 5;
+    private static final byte M = 6;
+    private static final byte L = 7;
+    private static final byte TRUE = 8;
+    private static final byte FALSE = 9;
+    private static final byte NULL = 10;
+
+    private AttributeValueCodec() {
+    }
+
+    static void writeItem(DataOutput out, Map<String, AttributeValue> item) throws IOException {
+        out.writeInt(item.size());
+        for (Map.Entry<String, AttributeValue> entry : item.entrySet()) {
+            writeString(out, entry.getKey());
+            writeValue(out, entry.getValue());
+        }
+    }
+
+    static Map<String, AttributeValue> readItem(DataInput in) throws IOException {
+        int size = in.readInt();
+        Map<String, AttributeValue> item = new LinkedHashMap<>(size * 2);
+        for (int i = 0; i < size; i++) {
+            String name = readString(in);
+            item.put(name, readValue(in));
+        }
+        return item;
+    }
+
+    private static void writeValue(DataOutput out, AttributeValue value) throws IOException {
+        if (value.getS() != null) {
+            out.writeByte(S);
+            writeString(out, value.getS());
+        } else if (value.getN() != null) {
+            out.writeByte(N);
+            writeString(out, value.getN());
+        } else if (value.getB() != null) {
+            out.writeByte(B);
+            writeBytes(out, value.getB());
+        } else if (value.getSS() != null) {
+            out.writeByte(SS);
+            out.writeInt(value.getSS().size());
+            for (String s : value.getSS()) {
+                writeString(out, s);
+            }
+        } else if (value.getNS() != null) {
+            out.writeByte(NS);
+            out.writeInt(value.getNS().size());
+            for (String n : value.getNS()) {
+                writeString(out, n);
+            }
+        } else if (value.getBS() != null) {
+            out.writeByte(BS);
+            out.writeInt(value.getBS().size());
+            for (ByteBuffer b : value.getBS()) {
+                writeBytes(out, b);
+            }
+        } else if (value.getM() != null) {
+            out.writeByte(M);
+            writeItem(out, value.getM());
+        } else if (value.getL() != null) {
+            out.writeByte(L);
+            out.writeInt(value.getL().size());
+            for (AttributeValue element : value.getL()) {
+                writeValue(out, element);
+            }
+        } else if (value.getBOOL() != null) {
+            out.writeByte(value.getBOOL() ? TRUE : FALSE);
+        } else if (value.getNULL() != null) {
+            out.writeByte(NULL);
+        } else {
+            throw new IllegalArgumentException("Empty attribute value");
+        }
+    }
+
+    private static AttributeValue readValue(DataInput in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case S:
+                return new AttributeValue().withS(readString(in));
+            case N:
+                return new AttributeValue().withN(readString(in));
+            case B:
+                return new AttributeValue().withB(readBytes(in));
+            case SS:
+            case NS: {
+                int size = in.readInt();
+                List<String> values = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    values.add(readString(in));
+                }
+                return type == SS ? new AttributeValue().withSS(values) : new AttributeValue().withNS(values);
+            }
+            case BS: {
+                int size = in.readInt();
+                List<ByteBuffer> values = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    values.add(readBytes(in));
+                }
+                return new AttributeValue().withBS(values);
+            }
+            case M:
+                return new AttributeValue().withM(readItem(in));
+            case L: {
+                int size = in.readInt();
+                List<AttributeValue> values = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    values.add(readValue(in));
+                }
+                return new AttributeValue().withL(values);
+            }
+            case TRUE:
+                return new AttributeValue().withBOOL(true);
+            case FALSE:
+                return new AttributeValue().withBOOL(false);
+            case NULL:
+                return new AttributeValue().withNULL(true);
+            default:
+                throw new IOException("Unknown attribute value type " + type);
+        }
+    }
+
+    private static void writeString(DataOutput out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeBytes(DataOutput out, ByteBuffer buffer) throws IOException {
+        ByteBuffer duplicate = buffer.duplicate();
+        duplicate.rewind();
+        byte[] bytes = new byte[duplicate.remaining()];
+        duplicate.get(bytes);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static ByteBuffer readBytes(DataInput in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return ByteBuffer.wrap(bytes);
+    }
+}
@@ -16,8 +16,10 @@
 
 package com.n3twork.dynamap;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 public class BatchGetObjectParams<T extends DynamapRecordBean> {
@@ -28,6 +30,7 @@ public class BatchGetObjectParams<T extends DynamapRecordBean> {
     private Object migrationContext;
     private ProgressCallback progressCallback;
     private boolean writeMigrationChange = true;
+    private List<DynamapField> projection;
 
     public BatchGetObjectParams<T> withGetObjectRequests(Collection getObjectRequests) {
         this.getObjectRequests = getObjectRequests;
@@ -59,6 +62,14 @@ public class BatchGetObjectParams<T extends DynamapRecordBean> {
         return this;
     }
 
+    /**
+     * Projection used by the requests that do not set their own. Projected objects are partial and are not migrated.
+     */
+    public BatchGetObjectParams<T> withProjection(DynamapField... fields) {
+        this.projection = Arrays.asList(fields);
+        return this;
+    }
+
     public Collection<GetObjectRequest<T>> getGetObjectRequests() {
         return getObjectRequests;
     }
@@ -82,4 +93,8 @@ public class BatchGetObjectParams<T extends DynamapRecordBean> {
     public boolean isWriteMigrationChange() {
         return writeMigrationChange;
     }
+
+    public List<DynamapField> getProjection() {
+        return projection;
+    }
 }
@@ -0,0 +1,95 @@
+/*
+    Copyright 2018 N3TWORK INC
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.n3twork.dynamap;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Contains the parameters for running many independent updates with bounded parallelism.
+ * @param <T> The record type that is being updated
+ */
+public class BatchUpdateParams<T extends DynamapPersisted<? extends RecordUpdates<T>>> {
+
+    public static final int DEFAULT_PARALLELISM = 8;
+
+    private List<UpdateParams<T>> updateParams;
+    private int parallelism = DEFAULT_PARALLELISM;
+    private Map<Class, DynamoRateLimiter> writeLimiters;
+    private DynamapReturnValue dynamapReturnValue;
+
+    private BatchUpdateParams() {
+    }
+
+    public BatchUpdateParams(Collection<UpdateParams<T>> updateParams) {
+        this.updateParams = new ArrayList<>(updateParams);
+    }
+
+    /**
+     * Sets the maximum number of updates in flight at once
+     * @param parallelism Maximum concurrent updates
+     * @return this object with new state
+     */
+    public BatchUpdateParams<T> withParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Sets rate limiters shared by all updates of each type. A write limiter set on an individual UpdateParams takes precedence.
+     * @param writeLimiters Rate limiters keyed by bean class
+     * @return this object with new state
+     */
+    public BatchUpdateParams<T> withWriteLimiters(Map<Class, DynamoRateLimiter> writeLimiters) {
+        this.writeLimiters = writeLimiters;
+        return this;
+    }
+
+    /**
+     * Overrides the return value of every update, e.g. DynamapReturnValue.NONE when the results are not needed
+     * @param dynamapReturnValue Return value for all updates
+     * @return this object with new state
+     */
+    public BatchUpdateParams<T> withReturnValue(DynamapReturnValue dynamapReturnValue) {
+        this.dynamapReturnValue = dynamapReturnValue;
+        return this;
+    }
+
+    ////////
+
+
+    public List<UpdateParams<T>> getUpdateParams() {
+        return updateParams;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public Map<Class, DynamoRateLimiter> getWriteLimiters() {
+        return writeLimiters;
+    }
+
+    public DynamapReturnValue getDynamapReturnValue() {
+        return dynamapReturnValue;
+    }
+}
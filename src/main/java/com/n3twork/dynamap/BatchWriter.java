@@ -0,0 +1,159 @@
+/*
+    Copyright 2018 N3TWORK INC
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.n3twork.dynamap;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.*;
+import com.n3twork.dynamap.model.TableDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.function.Consumer;
+
+/**
+ * Writes batches of puts or deletes to one table, retrying unprocessed items with backoff and counting what was written. It can be
+ * shared by several threads.
+ */
+class BatchWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchWriter.class);
+    static final int MAX_BATCH_SIZE = 25;
+    private static final long BASE_BACKOFF_MILLIS = 50;
+    private static final long MAX_BACKOFF_MILLIS = 5000;
+
+    private final AmazonDynamoDB amazonDynamoDB;
+    private final String tableName;
+    private final TableDefinition tableDefinition;
+    private final DynamoRateLimiter writeLimiter;
+    private final int maxRetries;
+    private final Consumer<Map<String, AttributeValue>> failedItemHandler;
+    private final AtomicLong itemCount = new AtomicLong();
+    private final AtomicLong failedItemCount = new AtomicLong();
+    private final DoubleAdder consumedCapacity = new DoubleAdder();
+
+    /**
+     * @param tableDefinition definition of the table whose secondary indexes are included in the estimated write units, or null
+     *                        when the items written are not in any index
+     */
+    BatchWriter(AmazonDynamoDB amazonDynamoDB, String tableName, TableDefinition tableDefinition, DynamoRateLimiter writeLimiter, int maxRetries,
+                Consumer<Map<String, AttributeValue>> failedItemHandler) {
+        this.amazonDynamoDB = amazonDynamoDB;
+        this.tableName = tableName;
+        this.tableDefinition = tableDefinition;
+        this.writeLimiter = writeLimiter;
+        this.maxRetries = maxRetries;
+        this.failedItemHandler = failedItemHandler;
+    }
+
+    /**
+     * Writes at most MAX_BATCH_SIZE puts or deletes. Items that are rejected, or still unprocessed after the last retry,
+     * are passed to the failed item handler, which receives the key of a failed delete.
+     * @return the number of items that failed
+     */
+    int write(List<WriteRequest> writeRequests) {
+        int retries = 0;
+        while (!writeRequests.isEmpty()) {
+            int estimatedUnits = 0;
+            if (writeLimiter != null) {
+                estimatedUnits = estimateUnits(writeRequests);
+                writeLimiter.acquire(estimatedUnits);
+            }
+            BatchWriteItemResult result;
+            try {
+                result = amazonDynamoDB.batchWriteItem(new BatchWriteItemRequest()
+                        .withRequestItems(Collections.singletonMap(tableName, writeRequests))
+                        .withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL));
+            } catch (AmazonServiceException e) {
+                logger.warn("Batch of {} items rejected by {}: {}", writeRequests.size(), tableName, e.getMessage());
+                return fail(writeRequests);
+            }
+            if (result.getConsumedCapacity() != null) {
+                double units = 0;
+                for (ConsumedCapacity capacity : result.getConsumedCapacity()) {
+                    units += capacity.getCapacityUnits();
+                }
+                consumedCapacity.add(units);
+                if (writeLimiter != null) {
+                    writeLimiter.reconcile(units, estimatedUnits);
+                }
+            }
+            List<WriteRequest> unprocessed = result.getUnprocessedItems() == null ? null : result.getUnprocessedItems().get(tableName);
+            if (unprocessed == null) {
+                unprocessed = Collections.emptyList();
+            }
+            itemCount.addAndGet(writeRequests.size() - unprocessed.size());
+            writeRequests = unprocessed;
+            if (!writeRequests.isEmpty()) {
+                if (retries == maxRetries) {
+                    logger.warn("{} items still unprocessed by {} after {} retries", writeRequests.size(), tableName, retries);
+                    return fail(writeRequests);
+                }
+                backoff(retries++);
+            }
+        }
+        return 0;
+    }
+
+    // puts cost the size of their item and index entries, deletes are assumed to cost one unit since the size of the deleted item is unknown
+    private int estimateUnits(List<WriteRequest> writeRequests) {
+        int units = 0;
+        for (WriteRequest writeRequest : writeRequests) {
+            units += writeRequest.getPutRequest() != null ? ItemSizeCalculator.writeUnits(writeRequest.getPutRequest().getItem(), tableDefinition) : 1;
+        }
+        return units;
+    }
+
+    long getItemCount() {
+        return itemCount.get();
+    }
+
+    long getFailedItemCount() {
+        return failedItemCount.get();
+    }
+
+    double getConsumedCapacity() {
+        return consumedCapacity.sum();
+    }
+
+    private int fail(List<WriteRequest> writeRequests) {
+        failedItemCount.addAndGet(writeRequests.size());
+        if (failedItemHandler != null) {
+            for (WriteRequest writeRequest : writeRequests) {
+                failedItemHandler.accept(writeRequest.getPutRequest() != null ? writeRequest.getPutRequest().getItem() : writeRequest.getDeleteRequest().getKey());
+            }
+        }
+        return writeRequests.size();
+    }
+
+    // full jitter, so that writers throttled together do not retry together
+    private static void backoff(int retry) {
+        long maxMillis = Math.min(MAX_BACKOFF_MILLIS, BASE_BACKOFF_MILLIS << Math.min(retry, 16));
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(maxMillis + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+}
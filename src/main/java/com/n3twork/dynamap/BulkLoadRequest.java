@@ -0,0 +1,135 @@
+/*
+    Copyright 2018 N3TWORK INC
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.n3twork.dynamap;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Contains the parameters for loading a stream of objects or raw items into a table with Dynamap.bulkLoad.
+ */
+public class BulkLoadRequest<T> {
+
+    public static final int DEFAULT_MAX_IN_FLIGHT_BATCHES = 4;
+    public static final int DEFAULT_MAX_RETRIES = 10;
+
+    private final Class<T> resultClass;
+    private String suffix;
+    private int maxInFlightBatches = DEFAULT_MAX_IN_FLIGHT_BATCHES;
+    private int maxRetries = DEFAULT_MAX_RETRIES;
+    private DynamoRateLimiter writeRateLimiter;
+    private ProgressCallback progressCallback;
+    private Consumer<Map<String, AttributeValue>> failedItemHandler;
+
+    public BulkLoadRequest(Class<T> resultClass) {
+        this.resultClass = resultClass;
+    }
+
+    public BulkLoadRequest<T> withSuffix(String suffix) {
+        this.suffix = suffix;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of BatchWriteItem requests in flight. Each in flight batch has its own thread, which also
+     * encodes the items of the batch.
+     * @param maxInFlightBatches Maximum number of concurrent batches
+     * @return this object with new state
+     */
+    public BulkLoadRequest<T> withMaxInFlightBatches(int maxInFlightBatches) {
+        if (maxInFlightBatches < 1) {
+            throw new IllegalArgumentException("maxInFlightBatches must be at least 1");
+        }
+        this.maxInFlightBatches = maxInFlightBatches;
+        return this;
+    }
+
+    /**
+     * Sets how many times unprocessed items of a batch are retried, with exponential backoff, before they are reported
+     * as failed.
+     * @param maxRetries Maximum number of retries per batch
+     * @return this object with new state
+     */
+    public BulkLoadRequest<T> withMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+        return this;
+    }
+
+    /**
+     * Sets a write rate limiter shared by all batches.
+     * @param writeRateLimiter Rate limiter for the table
+     * @return this object with new state
+     */
+    public BulkLoadRequest<T> withWriteRateLimiter(DynamoRateLimiter writeRateLimiter) {
+        this.writeRateLimiter = writeRateLimiter;
+        return this;
+    }
+
+    /**
+     * Sets a callback that receives the total number of items written after each batch. Returning false stops the load
+     * once the batches in flight are done.
+     * @param progressCallback Progress callback
+     * @return this object with new state
+     */
+    public BulkLoadRequest<T> withProgressCallback(ProgressCallback progressCallback) {
+        this.progressCallback = progressCallback;
+        return this;
+    }
+
+    /**
+     * Sets a handler that receives every item that could not be written, either because its batch was rejected or
+     * because it was still unprocessed after the last retry. It can be called concurrently from several threads.
+     * @param failedItemHandler Handler of failed items
+     * @return this object with new state
+     */
+    public BulkLoadRequest<T> withFailedItemHandler(Consumer<Map<String, AttributeValue>> failedItemHandler) {
+        this.failedItemHandler = failedItemHandler;
+        return this;
+    }
+
+    ////////
+
+    public Class<T> getResultClass() {
+        return resultClass;
+    }
+
+    public String getSuffix() {
+        return suffix;
+    }
+
+    public int getMaxInFlightBatches() {
+        return maxInFlightBatches;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public DynamoRateLimiter getWriteRateLimiter() {
+        return writeRateLimiter;
+    }
+
+    public ProgressCallback getProgressCallback() {
+        return progressCallback;
+    }
+
+    public Consumer<Map<String, AttributeValue>> getFailedItemHandler() {
+        return failedItemHandler;
+    }
+}
@@ -0,0 +1,79 @@
+/*
+    Copyright 2018 N3TWORK INC
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.n3twork.dynamap;
+
+/**
+ * The totals of a Dynamap.bulkLoad, or of a Dynamap.deleteWhere where the items are the deleted items.
+ */
+public class BulkLoadResult {
+
+    private final long itemCount;
+    private final long failedItemCount;
+    private final double consumedCapacity;
+    private final long elapsedMillis;
+    private final boolean cancelled;
+
+    BulkLoadResult(long itemCount, long failedItemCount, double consumedCapacity, long elapsedMillis, boolean cancelled) {
+        this.itemCount = itemCount;
+        this.failedItemCount = failedItemCount;
+        this.consumedCapacity = consumedCapacity;
+        this.elapsedMillis = elapsedMillis;
+        this.cancelled = cancelled;
+    }
+
+    /**
+     * @return the number of items written
+     */
+    public long getItemCount() {
+        return itemCount;
+    }
+
+    /**
+     * @return the number of items passed to the failed item handler
+     */
+    public long getFailedItemCount() {
+        return failedItemCount;
+    }
+
+    /**
+     * @return the write capacity units consumed by the batches
+     */
+    public double getConsumedCapacity() {
+        return consumedCapacity;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public double getItemsPerSecond() {
+        return elapsedMillis == 0 ? itemCount : itemCount * 1000.0 / elapsedMillis;
+    }
+
+    /**
+     * @return true if the progress callback stopped the load before the input was exhausted
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public String toString() {
+        return "BulkLoadResult{itemCount=" + itemCount + ", failedItemCount=" + failedItemCount + ", consumedCapacity=" + consumedCapacity
+                + ", elapsedMillis=" + elapsedMillis + ", itemsPerSecond=" + getItemsPerSecond() + ", cancelled=" + cancelled + "}";
+    }
+}
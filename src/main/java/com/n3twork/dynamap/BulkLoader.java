@@ -0,0 +1,102 @@
+/*
+    Copyright 2018 N3TWORK INC
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.n3twork.dynamap;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.WriteRequest;
+import com.n3twork.dynamap.model.TableDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.function.Function;
+
+/**
+ * Writes the puts or deletes encoded from a source iterator to a table with concurrent BatchWriteItem requests. Each
+ * worker takes the next batch from the source, encodes it and writes it, so at most one batch per worker is held in
+ * memory and in flight.
+ */
+class BulkLoader<S> {
+
+    private static final Logger logger = LoggerFactory.getLogger(BulkLoader.class);
+
+    private final String tableName;
+    private final BulkLoadRequest<?> bulkLoadRequest;
+    private final Iterator<? extends S> source;
+    private final Function<S, WriteRequest> encoder;
+    private final BatchWriter batchWriter;
+    private final long startTime = System.currentTimeMillis();
+    private volatile boolean cancelled;
+
+    BulkLoader(AmazonDynamoDB amazonDynamoDB, String tableName, TableDefinition tableDefinition, BulkLoadRequest<?> bulkLoadRequest,
+               Iterator<? extends S> source, Function<S, WriteRequest> encoder) {
+        this.tableName = tableName;
+        this.bulkLoadRequest = bulkLoadRequest;
+        this.source = source;
+        this.encoder = encoder;
+        this.batchWriter = new BatchWriter(amazonDynamoDB, tableName, tableDefinition, bulkLoadRequest.getWriteRateLimiter(), bulkLoadRequest.getMaxRetries(),
+                bulkLoadRequest.getFailedItemHandler());
+    }
+
+    List<Callable<Void>> getWorkers() {
+        List<Callable<Void>> workers = new ArrayList<>(bulkLoadRequest.getMaxInFlightBatches());
+        for (int i = 0; i < bulkLoadRequest.getMaxInFlightBatches(); i++) {
+            workers.add(this::load);
+        }
+        return workers;
+    }
+
+    BulkLoadResult getResult() {
+        BulkLoadResult result = new BulkLoadResult(batchWriter.getItemCount(), batchWriter.getFailedItemCount(), batchWriter.getConsumedCapacity(),
+                System.currentTimeMillis() - startTime, cancelled);
+        logger.debug("Bulk load of {} done: {}", tableName, result);
+        return result;
+    }
+
+    private Void load() {
+        List<S> batch;
+        while (!(batch = nextBatch()).isEmpty()) {
+            List<WriteRequest> writeRequests = new ArrayList<>(batch.size());
+            for (S s : batch) {
+                writeRequests.add(encoder.apply(s));
+            }
+            write(writeRequests);
+        }
+        return null;
+    }
+
+    private List<S> nextBatch() {
+        synchronized (source) {
+            List<S> batch = new ArrayList<>(BatchWriter.MAX_BATCH_SIZE);
+            while (!cancelled && batch.size() < BatchWriter.MAX_BATCH_SIZE && source.hasNext()) {
+                batch.add(source.next());
+            }
+            return batch;
+        }
+    }
+
+    private void write(List<WriteRequest> writeRequests) {
+        batchWriter.write(writeRequests);
+        ProgressCallback progressCallback = bulkLoadRequest.getProgressCallback();
+        if (progressCallback != null && !progressCallback.reportProgress((int) Math.min(Integer.MAX_VALUE, batchWriter.getItemCount()))) {
+            cancelled = true;
+        }
+    }
+}
@@ -0,0 +1,393 @@
+/*
+    Copyright 2018 N3TWORK INC
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.n3twork.dynamap;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.document.Item;
+import com.amazonaws.services.dynamodbv2.document.ItemUtils;
+import com.amazonaws.services.dynamodbv2.model.*;
+import com.google.common.collect.Iterators;
+import com.n3twork.dynamap.model.Field;
+import com.n3twork.dynamap.model.TableDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Stores the compressed values of chunked fields that are larger than their chunk size in chunk items of the same
+ * table. A chunk item has the hash key of its item, a range key made of the range key of its item, the attribute name,
+ * a random version id and the chunk number, and a slice of the value in its _chunk attribute. The item holds a manifest
+ * of the version id, the number of chunks and the size of the value in place of the value.
+ * <p>
+ * The chunks of a new version are written before the item, so that the put of the item switches readers to them, and
+ * the chunks of the version it replaced are deleted after it. Chunks are read with consistent reads, in concurrent
+ * batches, when the field is decoded. A reader holding the manifest of a replaced version, such as a lazily decoded
+ * bean loaded before the save, finds its chunks missing: it then re-reads the attribute from the item and loads the
+ * version the item holds now.
+ */
+class ChunkStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChunkStore.class);
+
+    static final String CHUNK_ATTRIBUTE = "_chunk";
+    static final String MANIFEST_ID = "id";
+    static final String MANIFEST_CHUNKS = "chunks";
+    static final String MANIFEST_SIZE = "size";
+    private static final int MAX_BATCH_GET_SIZE = 100;
+    // half of the 16MB limit of a BatchGetItem response, as chunk items also hold their keys
+    private static final int MAX_BATCH_GET_BYTES = 8 * 1024 * 1024;
+    private static final int MAX_RETRIES = 10;
+    private static final int MAX_RELOADS = 5;
+    private static final long BASE_BACKOFF_MILLIS = 50;
+    private static final long MAX_BACKOFF_MILLIS = 2000;
+
+    private final AmazonDynamoDB amazonDynamoDB;
+    private final Function<List<Callable<List<Map<String, AttributeValue>>>>, List<List<Map<String, AttributeValue>>>> concurrentCaller;
+
+    /**
+     * @param concurrentCaller executes the batch gets of the chunks of a value and returns their results
+     */
+    ChunkStore(AmazonDynamoDB amazonDynamoDB,
+               Function<List<Callable<List<Map<String, AttributeValue>>>>, List<List<Map<String, AttributeValue>>>> concurrentCaller) {
+        this.amazonDynamoDB = amazonDynamoDB;
+        this.concurrentCaller = concurrentCaller;
+    }
+
+    interface ChunkLoader {
+        byte[] load(String attributeName, Map<String, Object> manifest);
+    }
+
+    /**
+     * Stands in for the value of a chunked attribute until it is decoded.
+     */
+    static final class ChunkedValue {
+        private final Supplier<byte[]> loader;
+        private byte[] bytes;
+
+        ChunkedValue(Supplier<byte[]> loader) {
+            this.loader = loader;
+        }
+
+        synchronized byte[] getBytes() {
+            if (bytes == null) {
+                bytes = loader.get();
+            }
+            return bytes;
+        }
+    }
+
+    ChunkLoader getLoader(String tableName, TableDefinition tableDefinition, Item item) {
+        return (attributeName, manifest) -> load(tableName, tableDefinition, item, attributeName, manifest);
+    }
+
+    /**
+     * Replaces the values of chunked attributes larger than their chunk size with manifests.
+     *
+     * @return the chunk items to write before the item
+     */
+    List<Map<String, AttributeValue>> split(Item item, TableDefinition tableDefinition) {
+        List<Map<String, AttributeValue>> chunks = new ArrayList<>();
+        for (Field field : tableDefinition.getChunkedFields()) {
+            Object value = item.get(field.getDynamoName());
+            if (!(value instanceof byte[]) || ((byte[]) value).length <= field.getChunkSize()) {
+                continue;
+            }
+            byte[] bytes = (byte[]) value;
+            String id = Long.toHexString(ThreadLocalRandom.current().nextLong());
+            int count = (bytes.length + field.getChunkSize() - 1) / field.getChunkSize();
+            for (int i = 0; i < count; i++) {
+                Map<String, AttributeValue> chunk = chunkKey(tableDefinition, item, field.getDynamoName(), id, i);
+                int from = i * field.getChunkSize();
+                chunk.put(CHUNK_ATTRIBUTE, new AttributeValue().withB(ByteBuffer.wrap(Arrays.copyOfRange(bytes, from, Math.min(bytes.length, from + field.getChunkSize())))));
+                chunks.add(chunk);
+            }
+            Map<String, Object> manifest = new HashMap<>();
+            manifest.put(MANIFEST_ID, id);
+            manifest.put(MANIFEST_CHUNKS, count);
+            manifest.put(MANIFEST_SIZE, bytes.length);
+            item.withMap(field.getDynamoName(), manifest);
+        }
+        return chunks;
+    }
+
+    void writeChunks(String tableName, List<Map<String, AttributeValue>> chunks, DynamoRateLimiter writeLimiter) {
+        BatchWriter batchWriter = new BatchWriter(amazonDynamoDB, tableName, null, writeLimiter, MAX_RETRIES, null);
+        for (int from = 0; from < chunks.size(); from += BatchWriter.MAX_BATCH_SIZE) {
+            List<WriteRequest> writeRequests = new ArrayList<>();
+            for (Map<String, AttributeValue> chunk : chunks.subList(from, Math.min(chunks.size(), from + BatchWriter.MAX_BATCH_SIZE))) {
+                writeRequests.add(new WriteRequest(new PutRequest(chunk)));
+            }
+            batchWriter.write(writeRequests);
+            if (batchWriter.getFailedItemCount() > 0) {
+                deleteChunks(tableName, chunks);
+                throw new RuntimeException("Could not write " + batchWriter.getFailedItemCount() + " chunks to " + tableName);
+            }
+        }
+    }
+
+    /**
+     * Deletes chunk items, for example those written for an item whose put failed.
+     */
+    void deleteChunks(String tableName, List<Map<String, AttributeValue>> chunks) {
+        List<Map<String, AttributeValue>> keys = new ArrayList<>(chunks.size());
+        for (Map<String, AttributeValue> chunk : chunks) {
+            Map<String, AttributeValue> key = new HashMap<>(chunk);
+            key.remove(CHUNK_ATTRIBUTE);
+            keys.add(key);
+        }
+        deleteKeys(tableName, keys);
+    }
+
+    /**
+     * Deletes the chunks of the previous version of an item that are not referenced by its current version.
+     *
+     * @param previous the item before it was replaced or deleted, may be null
+     * @param current  the item that replaced it, null if it was deleted
+     */
+    void deleteReplacedChunks(String tableName, TableDefinition tableDefinition, Item previous, Item current) {
+        if (previous == null) {
+            return;
+        }
+        deleteKeys(tableName, getChunkKeys(tableDefinition, previous, current));
+    }
+
+    /**
+     * Reads the keys and chunked attributes of the items with the given keys, so that their chunks can be deleted with
+     * deleteReplacedChunks once the items are deleted. Items that do not exist are left out.
+     */
+    List<Item> getChunkedItems(String tableName, TableDefinition tableDefinition, List<Map<String, AttributeValue>> keys) {
+        Map<String, String> names = new HashMap<>();
+        names.put("#k0", tableDefinition.getField(tableDefinition.getHashKey()).getDynamoName());
+        names.put("#k1", tableDefinition.getField(tableDefinition.getRangeKey()).getDynamoName());
+        List<Field> chunkedFields = tableDefinition.getChunkedFields();
+        for (int i = 0; i < chunkedFields.size(); i++) {
+            names.put("#c" + i, chunkedFields.get(i).getDynamoName());
+        }
+        List<Item> items = new ArrayList<>(keys.size());
+        for (int from = 0; from < keys.size(); from += MAX_BATCH_GET_SIZE) {
+            KeysAndAttributes keysAndAttributes = new KeysAndAttributes()
+                    .withKeys(keys.subList(from, Math.min(keys.size(), from + MAX_BATCH_GET_SIZE)))
+                    .withProjectionExpression(String.join(", ", names.keySet()))
+                    .withExpressionAttributeNames(names)
+                    .withConsistentRead(true);
+            for (Map<String, AttributeValue> item : batchGet(tableName, keysAndAttributes)) {
+                items.add(ItemUtils.toItem(item));
+            }
+        }
+        return items;
+    }
+
+    /**
+     * Follows each item with the keys of its chunks, as items, so that deleting every item of the result also deletes
+     * the chunks of the items. The items must hold the chunked attributes and {@link #CHUNK_ATTRIBUTE}: chunk items
+     * found among them are dropped, since they are already yielded after the item that references them.
+     */
+    Iterator<Item> withChunkKeys(Iterator<Item> items, TableDefinition tableDefinition) {
+        return Iterators.concat(Iterators.transform(Iterators.filter(items, item -> !item.isPresent(CHUNK_ATTRIBUTE)), item -> {
+            List<Item> itemAndChunks = new ArrayList<>();
+            itemAndChunks.add(item);
+            for (Map<String, AttributeValue> chunkKey : getChunkKeys(tableDefinition, item, null)) {
+                itemAndChunks.add(ItemUtils.toItem(chunkKey));
+            }
+            return itemAndChunks.iterator();
+        }));
+    }
+
+    // the keys of the chunks referenced by the manifests of previous but not by those of current
+    private static List<Map<String, AttributeValue>> getChunkKeys(TableDefinition tableDefinition, Item previous, Item current) {
+        List<Map<String, AttributeValue>> keys = new ArrayList<>();
+        for (Field field : tableDefinition.getChunkedFields()) {
+            Map<String, Object> manifest = asManifest(previous.get(field.getDynamoName()));
+            if (manifest == null) {
+                continue;
+            }
+            Map<String, Object> currentManifest = current == null ? null : asManifest(current.get(field.getDynamoName()));
+            if (currentManifest != null && manifest.get(MANIFEST_ID).equals(currentManifest.get(MANIFEST_ID))) {
+                continue;
+            }
+            int count = ((Number) manifest.get(MANIFEST_CHUNKS)).intValue();
+            for (int i = 0; i < count; i++) {
+                keys.add(chunkKey(tableDefinition, previous, field.getDynamoName(), (String) manifest.get(MANIFEST_ID), i));
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Chunked values are only split by Dynamap.save, so the other ways of putting objects reject items holding a value
+     * larger than the chunk size of its field rather than store it inline. Items of chunked tables they replace should
+     * not have chunks, as those are left behind.
+     */
+    static Item checkNoChunks(Item item, TableDefinition tableDefinition, String operation) {
+        for (Field field : tableDefinition.getChunkedFields()) {
+            Object value = item.get(field.getDynamoName());
+            if (value instanceof byte[] && ((byte[]) value).length > field.getChunkSize()) {
+                throw new IllegalArgumentException(operation + " cannot split field " + field.getName() + " of table "
+                        + tableDefinition.getTableName() + " into chunks, use save instead");
+            }
+        }
+        return item;
+    }
+
+    private void deleteKeys(String tableName, List<Map<String, AttributeValue>> keys) {
+        BatchWriter batchWriter = new BatchWriter(amazonDynamoDB, tableName, null, null, MAX_RETRIES, null);
+        for (int from = 0; from < keys.size(); from += BatchWriter.MAX_BATCH_SIZE) {
+            List<WriteRequest> writeRequests = new ArrayList<>();
+            for (Map<String, AttributeValue> key : keys.subList(from, Math.min(keys.size(), from + BatchWriter.MAX_BATCH_SIZE))) {
+                writeRequests.add(new WriteRequest(new com.amazonaws.services.dynamodbv2.model.DeleteRequest(key)));
+            }
+            batchWriter.write(writeRequests);
+        }
+        if (batchWriter.getFailedItemCount() > 0) {
+            logger.warn("Could not delete {} stale chunks from {}", batchWriter.getFailedItemCount(), tableName);
+        }
+    }
+
+    private byte[] load(String tableName, TableDefinition tableDefinition, Item item, String attributeName, Map<String, Object> manifest) {
+        for (int reloads = 0; ; reloads++) {
+            byte[] bytes = loadChunks(tableName, tableDefinition, item, attributeName, manifest);
+            if (bytes != null) {
+                return bytes;
+            }
+            // the version was replaced and its chunks deleted since the item was read
+            Object current = getAttribute(tableName, tableDefinition, item, attributeName);
+            Map<String, Object> currentManifest = asManifest(current);
+            if (current instanceof byte[]) {
+                return (byte[]) current;
+            }
+            if (currentManifest == null || currentManifest.get(MANIFEST_ID).equals(manifest.get(MANIFEST_ID)) || reloads == MAX_RELOADS) {
+                throw new IllegalStateException("Chunks of " + attributeName + " in " + tableName + " are missing, the item was deleted or keeps being saved while it is loaded");
+            }
+            manifest = currentManifest;
+        }
+    }
+
+    // null when a chunk is missing
+    private byte[] loadChunks(String tableName, TableDefinition tableDefinition, Item item, String attributeName, Map<String, Object> manifest) {
+        String id = (String) manifest.get(MANIFEST_ID);
+        int count = ((Number) manifest.get(MANIFEST_CHUNKS)).intValue();
+        int size = ((Number) manifest.get(MANIFEST_SIZE)).intValue();
+        List<Map<String, AttributeValue>> keys = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            keys.add(chunkKey(tableDefinition, item, attributeName, id, i));
+        }
+        int batchSize = Math.max(1, Math.min(MAX_BATCH_GET_SIZE, MAX_BATCH_GET_BYTES / Math.max(1, size / count)));
+        List<Callable<List<Map<String, AttributeValue>>>> batchGets = new ArrayList<>();
+        for (int from = 0; from < count; from += batchSize) {
+            List<Map<String, AttributeValue>> batch = keys.subList(from, Math.min(count, from + batchSize));
+            batchGets.add(() -> batchGet(tableName, new KeysAndAttributes().withKeys(batch).withConsistentRead(true)));
+        }
+
+        String rangeKeyName = tableDefinition.getField(tableDefinition.getRangeKey()).getDynamoName();
+        byte[][] chunks = new byte[count][];
+        for (List<Map<String, AttributeValue>> chunkItems : concurrentCaller.apply(batchGets)) {
+            for (Map<String, AttributeValue> chunkItem : chunkItems) {
+                String rangeKey = chunkItem.get(rangeKeyName).getS();
+                chunks[Integer.parseInt(rangeKey.substring(rangeKey.lastIndexOf('#') + 1))] = toBytes(chunkItem.get(CHUNK_ATTRIBUTE).getB());
+            }
+        }
+        byte[] bytes = new byte[size];
+        int position = 0;
+        for (int i = 0; i < count; i++) {
+            if (chunks[i] == null) {
+                return null;
+            }
+            if (position + chunks[i].length > size) {
+                throw new IllegalStateException("Chunk " + i + " of " + attributeName + " in " + tableName + " is invalid");
+            }
+            System.arraycopy(chunks[i], 0, bytes, position, chunks[i].length);
+            position += chunks[i].length;
+        }
+        if (position != size) {
+            throw new IllegalStateException("Chunks of " + attributeName + " in " + tableName + " hold " + position + " bytes instead of " + size);
+        }
+        return bytes;
+    }
+
+    // the current value of an attribute of the item, read consistently, null if the item no longer exists
+    private Object getAttribute(String tableName, TableDefinition tableDefinition, Item item, String attributeName) {
+        String hashKeyName = tableDefinition.getField(tableDefinition.getHashKey()).getDynamoName();
+        String rangeKeyName = tableDefinition.getField(tableDefinition.getRangeKey()).getDynamoName();
+        Map<String, AttributeValue> key = new HashMap<>();
+        key.put(hashKeyName, ItemUtils.toAttributeValue(item.get(hashKeyName)));
+        key.put(rangeKeyName, new AttributeValue(item.getString(rangeKeyName)));
+        GetItemResult result = amazonDynamoDB.getItem(new GetItemRequest()
+                .withTableName(tableName)
+                .withKey(key)
+                .withProjectionExpression("#a")
+                .withExpressionAttributeNames(Collections.singletonMap("#a", attributeName))
+                .withConsistentRead(true));
+        return result.getItem() == null ? null : ItemUtils.toItem(result.getItem()).get(attributeName);
+    }
+
+    private List<Map<String, AttributeValue>> batchGet(String tableName, KeysAndAttributes keysAndAttributes) {
+        List<Map<String, AttributeValue>> items = new ArrayList<>(keysAndAttributes.getKeys().size());
+        for (int retries = 0; ; retries++) {
+            BatchGetItemResult result = amazonDynamoDB.batchGetItem(new BatchGetItemRequest()
+                    .withRequestItems(Collections.singletonMap(tableName, keysAndAttributes)));
+            if (result.getResponses() != null && result.getResponses().get(tableName) != null) {
+                items.addAll(result.getResponses().get(tableName));
+            }
+            keysAndAttributes = result.getUnprocessedKeys() == null ? null : result.getUnprocessedKeys().get(tableName);
+            if (keysAndAttributes == null || keysAndAttributes.getKeys() == null || keysAndAttributes.getKeys().isEmpty()) {
+                return items;
+            }
+            if (retries == MAX_RETRIES) {
+                throw new RuntimeException(keysAndAttributes.getKeys().size() + " chunks still unprocessed by " + tableName + " after " + retries + " retries");
+            }
+            backoff(retries);
+        }
+    }
+
+    private static Map<String, AttributeValue> chunkKey(TableDefinition tableDefinition, Item item, String attributeName, String id, int chunk) {
+        String hashKeyName = tableDefinition.getField(tableDefinition.getHashKey()).getDynamoName();
+        String rangeKeyName = tableDefinition.getField(tableDefinition.getRangeKey()).getDynamoName();
+        if (item.get(hashKeyName) == null || item.getString(rangeKeyName) == null) {
+            throw new IllegalStateException("The chunks of " + attributeName + " cannot be found without the keys of the item");
+        }
+        Map<String, AttributeValue> key = new HashMap<>();
+        key.put(hashKeyName, ItemUtils.toAttributeValue(item.get(hashKeyName)));
+        key.put(rangeKeyName, new AttributeValue(item.getString(rangeKeyName) + "#" + attributeName + "#" + id + "#" + chunk));
+        return key;
+    }
+
+    private static Map<String, Object> asManifest(Object value) {
+        return value instanceof Map ? (Map<String, Object>) value : null;
+    }
+
+    private static byte[] toBytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+
+    private static void backoff(int retry) {
+        long maxMillis = Math.min(MAX_BACKOFF_MILLIS, BASE_BACKOFF_MILLIS << Math.min(retry, 16));
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(maxMillis + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+}
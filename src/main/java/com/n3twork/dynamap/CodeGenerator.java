@@ -93,6 +93,9 @@ public class CodeGenerator {
         Template updateResultInterfaceTemplate = cfg.getTemplate("updateResultInterface.ftl");
         Template updateResultBeanTemplate = cfg.getTemplate("updateResultBean.ftl");
         Template updatesUpdateResultTemplate = cfg.getTemplate("updatesUpdateResult.ftl");
+        Template lazyBeanTemplate = cfg.getTemplate("lazyBean.ftl");
+        Template fieldsTemplate = cfg.getTemplate("fields.ftl");
+        Template partialBeanTemplate = cfg.getTemplate("partialBean.ftl");
         Optional<Type> tableTypeOptional = tableDefinition.getTypes().stream().filter(t -> t.getName().equals(tableDefinition.getType())).findFirst();
         if (!tableTypeOptional.isPresent()) {
             throw new RuntimeException("Cannot find type definition for " + tableDefinition.getType());
@@ -161,6 +164,20 @@ public class CodeGenerator {
             model.put("revisionFieldName", Schema.REVISION_FIELD);
             model.put("schemaVersionFieldName", tableDefinition.getSchemaVersionField());
 
+            // Fields needed for getHashKeyValue, getRangeKeyValue, hashCode and equals are always decoded by lazy beans
+            Set<String> eagerFieldNames = new HashSet<>();
+            eagerFieldNames.add(tableDefinition.getHashKey());
+            if (tableDefinition.getRangeKey() != null) {
+                eagerFieldNames.add(tableDefinition.getRangeKey());
+            }
+            if (type.getHashCodeFields() != null) {
+                eagerFieldNames.addAll(type.getHashCodeFields());
+            }
+            if (type.getEqualsFields() != null) {
+                eagerFieldNames.addAll(type.getEqualsFields());
+            }
+            model.put("eagerFieldNames", new ArrayList<>(eagerFieldNames));
+
             try (Writer writer = new OutputStreamWriter(new FileOutputStream(outputPath + "/" + packageDir + "/" + type.getName() + ".java"))) {
                 interfaceTemplate.process(model, writer);
             }
@@ -179,6 +196,19 @@ public class CodeGenerator {
             try (Writer writer = new OutputStreamWriter(new FileOutputStream(outputPath + "/" + packageDir + "/" + updatesUpdateResultName + ".java"))) {
                 updatesUpdateResultTemplate.process(model, writer);
             }
+            if (type.getName().equals(tableDefinition.getType())) {
+                try (Writer writer = new OutputStreamWriter(new FileOutputStream(outputPath + "/" + packageDir + "/" + type.getName() + "Fields.java"))) {
+                    fieldsTemplate.process(model, writer);
+                }
+                try (Writer writer = new OutputStreamWriter(new FileOutputStream(outputPath + "/" + packageDir + "/" + type.getName() + "PartialBean.java"))) {
+                    partialBeanTemplate.process(model, writer);
+                }
+            }
+            if (tableDefinition.isLazyDecoding() && type.getName().equals(tableDefinition.getType())) {
+                try (Writer writer = new OutputStreamWriter(new FileOutputStream(outputPath + "/" + packageDir + "/" + type.getName() + "LazyBean.java"))) {
+                    lazyBeanTemplate.process(model, writer);
+                }
+            }
 
         }
     }
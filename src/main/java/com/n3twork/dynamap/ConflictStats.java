@@ -0,0 +1,72 @@
+/*
+    Copyright 2018 N3TWORK INC
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.n3twork.dynamap;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts of conditional check conflicts seen by updateWithRetry for a table.
+ */
+public class ConflictStats {
+
+    private final LongAdder attempts = new LongAdder();
+    private final LongAdder conflicts = new LongAdder();
+    private final LongAdder exhausted = new LongAdder();
+
+    void recordAttempt() {
+        attempts.increment();
+    }
+
+    void recordConflict() {
+        conflicts.increment();
+    }
+
+    void recordExhausted() {
+        exhausted.increment();
+    }
+
+    /**
+     * @return the number of update attempts, including retries
+     */
+    public long getAttempts() {
+        return attempts.sum();
+    }
+
+    /**
+     * @return the number of attempts that failed a conditional check
+     */
+    public long getConflicts() {
+        return conflicts.sum();
+    }
+
+    /**
+     * @return the number of updates that still conflicted after the maximum number of attempts
+     */
+    public long getExhausted() {
+        return exhausted.sum();
+    }
+
+    public double getConflictRate() {
+        long attempts = getAttempts();
+        return attempts == 0 ? 0 : (double) getConflicts() / attempts;
+    }
+
+    @Override
+    public String toString() {
+        return "ConflictStats{attempts=" + getAttempts() + ", conflicts=" + getConflicts() + ", exhausted=" + getExhausted() + "}";
+    }
+}
@@ -0,0 +1,122 @@
+/*
+    Copyright 2018 N3TWORK INC
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.n3twork.dynamap;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * The progress of a Dynamap.copyTable, as the scan position of every segment. A checkpoint is immutable and can be
+ * stored with toBytes and passed back to CopyTableRequest.withCheckpoint to resume an interrupted copy. Items written
+ * after the last checkpoint are copied again when resuming.
+ */
+public class CopyCheckpoint {
+
+    private static final byte NOT_STARTED = 0;
+    private static final byte IN_PROGRESS = 1;
+    private static final byte COMPLETE = 2;
+
+    private final byte[] states;
+    private final Map<String, AttributeValue>[] exclusiveStartKeys;
+
+    @SuppressWarnings("unchecked")
+    CopyCheckpoint(int totalSegments) {
+        this(new byte[totalSegments], new Map[totalSegments]);
+    }
+
+    private CopyCheckpoint(byte[] states, Map<String, AttributeValue>[] exclusiveStartKeys) {
+        this.states = states;
+        this.exclusiveStartKeys = exclusiveStartKeys;
+    }
+
+    /**
+     * @return a checkpoint with the given segment moved to the last evaluated key of a scan page, or complete if the key is null
+     */
+    CopyCheckpoint withSegment(int segment, Map<String, AttributeValue> lastEvaluatedKey) {
+        byte[] states = this.states.clone();
+        Map<String, AttributeValue>[] exclusiveStartKeys = this.exclusiveStartKeys.clone();
+        boolean complete = lastEvaluatedKey == null || lastEvaluatedKey.isEmpty();
+        states[segment] = complete ? COMPLETE : IN_PROGRESS;
+        exclusiveStartKeys[segment] = complete ? null : lastEvaluatedKey;
+        return new CopyCheckpoint(states, exclusiveStartKeys);
+    }
+
+    public int getTotalSegments() {
+        return states.length;
+    }
+
+    public boolean isSegmentComplete(int segment) {
+        return states[segment] == COMPLETE;
+    }
+
+    public boolean isComplete() {
+        for (byte state : states) {
+            if (state != COMPLETE) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    Map<String, AttributeValue> getExclusiveStartKey(int segment) {
+        return exclusiveStartKeys[segment];
+    }
+
+    public byte[] toBytes() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(states.length);
+            for (int segment = 0; segment < states.length; segment++) {
+                out.writeByte(states[segment]);
+                if (states[segment] == IN_PROGRESS) {
+                    AttributeValueCodec.writeItem(out, exclusiveStartKeys[segment]);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    @SuppressWarnings("unchecked")
+    public static CopyCheckpoint fromBytes(byte[] bytes) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            int totalSegments = in.readInt();
+            byte[] states = new byte[totalSegments];
+            Map<String, AttributeValue>[] exclusiveStartKeys = new Map[totalSegments];
+            for (int segment = 0; segment < totalSegments; segment++) {
+                states[segment] = in.readByte();
+                if (states[segment] == IN_PROGRESS) {
+                    exclusiveStartKeys[segment] = AttributeValueCodec.readItem(in);
+                } else if (states[segment] != NOT_STARTED && states[segment] != COMPLETE) {
+                    throw new IllegalArgumentException("Invalid copy checkpoint");
+                }
+            }
+            return new CopyCheckpoint(states, exclusiveStartKeys);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid copy checkpoint", e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CopyCheckpoint{states=" + Arrays.toString(states) + "}";
+    }
+}
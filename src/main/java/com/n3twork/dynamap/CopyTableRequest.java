@@ -0,0 +1,208 @@
+/*
+    Copyright 2018 N3TWORK INC
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.n3twork.dynamap;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Contains the parameters for copying the items of a table to another table of the same type with Dynamap.copyTable.
+ * The tables are identified by their suffixes, null being the table without a suffix.
+ */
+public class CopyTableRequest<T> {
+
+    public static final int DEFAULT_TOTAL_SEGMENTS = 4;
+    public static final int DEFAULT_MAX_RETRIES = 10;
+
+    private final Class<T> resultClass;
+    private final String sourceSuffix;
+    private final String targetSuffix;
+    private Function<T, T> transform;
+    private int totalSegments = DEFAULT_TOTAL_SEGMENTS;
+    private Integer maxPageSize;
+    private int maxRetries = DEFAULT_MAX_RETRIES;
+    private DynamoRateLimiter readRateLimiter;
+    private DynamoRateLimiter writeRateLimiter;
+    private CopyCheckpoint checkpoint;
+    private Consumer<CopyCheckpoint> checkpointHandler;
+    private ProgressCallback progressCallback;
+    private Consumer<Map<String, AttributeValue>> failedItemHandler;
+
+    public CopyTableRequest(Class<T> resultClass, String sourceSuffix, String targetSuffix) {
+        this.resultClass = resultClass;
+        this.sourceSuffix = sourceSuffix;
+        this.targetSuffix = targetSuffix;
+    }
+
+    /**
+     * Sets a transformation applied to every object before it is written. Returning null skips the object. Without a
+     * transformation items are copied as they are, without being decoded.
+     * @param transform Transformation of the source objects
+     * @return this object with new state
+     */
+    public CopyTableRequest<T> withTransform(Function<T, T> transform) {
+        this.transform = transform;
+        return this;
+    }
+
+    /**
+     * Sets the number of segments scanned in parallel. Each segment writes the items of a page before reading the next.
+     * @param totalSegments Number of segments
+     * @return this object with new state
+     */
+    public CopyTableRequest<T> withTotalSegments(int totalSegments) {
+        if (totalSegments < 1) {
+            throw new IllegalArgumentException("totalSegments must be at least 1");
+        }
+        this.totalSegments = totalSegments;
+        return this;
+    }
+
+    public CopyTableRequest<T> withMaxPageSize(Integer maxPageSize) {
+        this.maxPageSize = maxPageSize;
+        return this;
+    }
+
+    /**
+     * Sets how many times unprocessed items of a batch are retried before they are reported as failed.
+     * @param maxRetries Maximum number of retries per batch
+     * @return this object with new state
+     */
+    public CopyTableRequest<T> withMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+        return this;
+    }
+
+    /**
+     * Sets a read rate limiter for the source table, shared by all segments.
+     * @param readRateLimiter Rate limiter for the source table
+     * @return this object with new state
+     */
+    public CopyTableRequest<T> withReadRateLimiter(DynamoRateLimiter readRateLimiter) {
+        this.readRateLimiter = readRateLimiter;
+        return this;
+    }
+
+    /**
+     * Sets a write rate limiter for the target table, shared by all segments.
+     * @param writeRateLimiter Rate limiter for the target table
+     * @return this object with new state
+     */
+    public CopyTableRequest<T> withWriteRateLimiter(DynamoRateLimiter writeRateLimiter) {
+        this.writeRateLimiter = writeRateLimiter;
+        return this;
+    }
+
+    /**
+     * Resumes a copy from a checkpoint passed to the checkpoint handler of an earlier copy with the same total segments.
+     * @param checkpoint Checkpoint to resume from
+     * @return this object with new state
+     */
+    public CopyTableRequest<T> withCheckpoint(CopyCheckpoint checkpoint) {
+        this.checkpoint = checkpoint;
+        return this;
+    }
+
+    /**
+     * Sets a handler that receives a new checkpoint each time a segment has written all the items of a scan page.
+     * Checkpoints are passed one at a time, each including the progress of the previous ones.
+     * @param checkpointHandler Handler of checkpoints
+     * @return this object with new state
+     */
+    public CopyTableRequest<T> withCheckpointHandler(Consumer<CopyCheckpoint> checkpointHandler) {
+        this.checkpointHandler = checkpointHandler;
+        return this;
+    }
+
+    /**
+     * Sets a callback that receives the total number of items written after each page. Returning false stops the copy
+     * once the pages being copied are done, and the last checkpoint can be used to resume it.
+     * @param progressCallback Progress callback
+     * @return this object with new state
+     */
+    public CopyTableRequest<T> withProgressCallback(ProgressCallback progressCallback) {
+        this.progressCallback = progressCallback;
+        return this;
+    }
+
+    /**
+     * Sets a handler that receives every item that could not be written. It can be called concurrently.
+     * @param failedItemHandler Handler of failed items
+     * @return this object with new state
+     */
+    public CopyTableRequest<T> withFailedItemHandler(Consumer<Map<String, AttributeValue>> failedItemHandler) {
+        this.failedItemHandler = failedItemHandler;
+        return this;
+    }
+
+    ////////
+
+    public Class<T> getResultClass() {
+        return resultClass;
+    }
+
+    public String getSourceSuffix() {
+        return sourceSuffix;
+    }
+
+    public String getTargetSuffix() {
+        return targetSuffix;
+    }
+
+    public Function<T, T> getTransform() {
+        return transform;
+    }
+
+    public int getTotalSegments() {
+        return totalSegments;
+    }
+
+    public Integer getMaxPageSize() {
+        return maxPageSize;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public DynamoRateLimiter getReadRateLimiter() {
+        return readRateLimiter;
+    }
+
+    public DynamoRateLimiter getWriteRateLimiter() {
+        return writeRateLimiter;
+    }
+
+    public CopyCheckpoint getCheckpoint() {
+        return checkpoint;
+    }
+
+    public Consumer<CopyCheckpoint> getCheckpointHandler() {
+        return checkpointHandler;
+    }
+
+    public ProgressCallback getProgressCallback() {
+        return progressCallback;
+    }
+
+    public Consumer<Map<String, AttributeValue>> getFailedItemHandler() {
+        return failedItemHandler;
+    }
+}
@@ -0,0 +1,95 @@
+/*
+    Copyright 2018 N3TWORK INC
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.n3twork.dynamap;
+
+/**
+ * The totals of a Dynamap.copyTable, and the checkpoint it reached.
+ */
+public class CopyTableResult {
+
+    private final long scannedCount;
+    private final long itemCount;
+    private final long skippedCount;
+    private final long failedItemCount;
+    private final double readCapacity;
+    private final double writeCapacity;
+    private final long elapsedMillis;
+    private final CopyCheckpoint checkpoint;
+
+    CopyTableResult(long scannedCount, long itemCount, long skippedCount, long failedItemCount, double readCapacity, double writeCapacity,
+                    long elapsedMillis, CopyCheckpoint checkpoint) {
+        this.scannedCount = scannedCount;
+        this.itemCount = itemCount;
+        this.skippedCount = skippedCount;
+        this.failedItemCount = failedItemCount;
+        this.readCapacity = readCapacity;
+        this.writeCapacity = writeCapacity;
+        this.elapsedMillis = elapsedMillis;
+        this.checkpoint = checkpoint;
+    }
+
+    /**
+     * @return the number of items read from the source table
+     */
+    public long getScannedCount() {
+        return scannedCount;
+    }
+
+    /**
+     * @return the number of items written to the target table
+     */
+    public long getItemCount() {
+        return itemCount;
+    }
+
+    /**
+     * @return the number of items for which the transformation returned null
+     */
+    public long getSkippedCount() {
+        return skippedCount;
+    }
+
+    public long getFailedItemCount() {
+        return failedItemCount;
+    }
+
+    public double getReadCapacity() {
+        return readCapacity;
+    }
+
+    public double getWriteCapacity() {
+        return writeCapacity;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * @return the last checkpoint, which is complete unless the copy was stopped by the progress callback
+     */
+    public CopyCheckpoint getCheckpoint() {
+        return checkpoint;
+    }
+
+    @Override
+    public String toString() {
+        return "CopyTableResult{scannedCount=" + scannedCount + ", itemCount=" + itemCount + ", skippedCount=" + skippedCount
+                + ", failedItemCount=" + failedItemCount + ", readCapacity=" + readCapacity + ", writeCapacity=" + writeCapacity
+                + ", elapsedMillis=" + elapsedMillis + ", checkpoint=" + checkpoint + "}";
+    }
+}
@@ -0,0 +1,71 @@
+/*
+    Copyright 2018 N3TWORK INC
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.n3twork.dynamap;
+
+import java.util.List;
+
+/**
+ * The result of Dynamap.count: the number of items matching the request, the number of items read before filters
+ * were applied, and the read capacity consumed.
+ */
+public class CountResult {
+
+    private final long count;
+    private final long scannedCount;
+    private final double consumedCapacity;
+
+    CountResult(long count, long scannedCount, double consumedCapacity) {
+        this.count = count;
+        this.scannedCount = scannedCount;
+        this.consumedCapacity = consumedCapacity;
+    }
+
+    static CountResult sum(List<CountResult> countResults) {
+        long count = 0;
+        long scannedCount = 0;
+        double consumedCapacity = 0;
+        for (CountResult countResult : countResults) {
+            count += countResult.count;
+            scannedCount += countResult.scannedCount;
+            consumedCapacity += countResult.consumedCapacity;
+        }
+        return new CountResult(count, scannedCount, consumedCapacity);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return the number of items read, which is larger than the count when a filter excluded some of them
+     */
+    public long getScannedCount() {
+        return scannedCount;
+    }
+
+    /**
+     * @return the read capacity units consumed by the queries or scans
+     */
+    public double getConsumedCapacity() {
+        return consumedCapacity;
+    }
+
+    @Override
+    public String toString() {
+        return "CountResult{count=" + count + ", scannedCount=" + scannedCount + ", consumedCapacity=" + consumedCapacity + "}";
+    }
+}
@@ -0,0 +1,129 @@
+/*
+    Copyright 2018 N3TWORK INC
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.n3twork.dynamap;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Contains the query or scan selecting the items to delete with Dynamap.deleteWhere, and the options of the deletes.
+ * The read rate limiter, suffix and index of the query or scan are used, its projection and select are ignored.
+ */
+public class DeleteWhereParams<T extends DynamapRecordBean> {
+
+    private final QueryRequest<T> queryRequest;
+    private final ScanRequest<T> scanRequest;
+    private int maxInFlightBatches = BulkLoadRequest.DEFAULT_MAX_IN_FLIGHT_BATCHES;
+    private int maxRetries = BulkLoadRequest.DEFAULT_MAX_RETRIES;
+    private DynamoRateLimiter writeRateLimiter;
+    private ProgressCallback progressCallback;
+    private Consumer<Map<String, AttributeValue>> failedKeyHandler;
+
+    public DeleteWhereParams(QueryRequest<T> queryRequest) {
+        this.queryRequest = queryRequest;
+        this.scanRequest = null;
+    }
+
+    public DeleteWhereParams(ScanRequest<T> scanRequest) {
+        this.queryRequest = null;
+        this.scanRequest = scanRequest;
+    }
+
+    /**
+     * Sets the maximum number of BatchWriteItem deletes in flight.
+     * @param maxInFlightBatches Maximum number of concurrent batches
+     * @return this object with new state
+     */
+    public DeleteWhereParams<T> withMaxInFlightBatches(int maxInFlightBatches) {
+        if (maxInFlightBatches < 1) {
+            throw new IllegalArgumentException("maxInFlightBatches must be at least 1");
+        }
+        this.maxInFlightBatches = maxInFlightBatches;
+        return this;
+    }
+
+    public DeleteWhereParams<T> withMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+        return this;
+    }
+
+    public DeleteWhereParams<T> withWriteRateLimiter(DynamoRateLimiter writeRateLimiter) {
+        this.writeRateLimiter = writeRateLimiter;
+        return this;
+    }
+
+    /**
+     * Sets a callback that receives the total number of items deleted after each batch. Returning false stops the
+     * deletes once the batches in flight are done.
+     * @param progressCallback Progress callback
+     * @return this object with new state
+     */
+    public DeleteWhereParams<T> withProgressCallback(ProgressCallback progressCallback) {
+        this.progressCallback = progressCallback;
+        return this;
+    }
+
+    /**
+     * Sets a handler that receives the key of every item that could not be deleted. It can be called concurrently.
+     * @param failedKeyHandler Handler of failed keys
+     * @return this object with new state
+     */
+    public DeleteWhereParams<T> withFailedKeyHandler(Consumer<Map<String, AttributeValue>> failedKeyHandler) {
+        this.failedKeyHandler = failedKeyHandler;
+        return this;
+    }
+
+    ////////
+
+    public QueryRequest<T> getQueryRequest() {
+        return queryRequest;
+    }
+
+    public ScanRequest<T> getScanRequest() {
+        return scanRequest;
+    }
+
+    public Class<T> getResultClass() {
+        return queryRequest != null ? queryRequest.getResultClass() : scanRequest.getResultClass();
+    }
+
+    public String getSuffix() {
+        return queryRequest != null ? queryRequest.getSuffix() : scanRequest.getSuffix();
+    }
+
+    public int getMaxInFlightBatches() {
+        return maxInFlightBatches;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public DynamoRateLimiter getWriteRateLimiter() {
+        return writeRateLimiter;
+    }
+
+    public ProgressCallback getProgressCallback() {
+        return progressCallback;
+    }
+
+    public Consumer<Map<String, AttributeValue>> getFailedKeyHandler() {
+        return failedKeyHandler;
+    }
+}
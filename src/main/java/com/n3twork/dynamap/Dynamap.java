@@ -18,6 +18,7 @@ package com.n3twork.dynamap;
 
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
 import com.amazonaws.services.dynamodbv2.document.*;
+import com.amazonaws.services.dynamodbv2.document.api.QueryApi;
 import com.amazonaws.services.dynamodbv2.document.spec.*;
 import com.amazonaws.services.dynamodbv2.model.*;
 import com.amazonaws.services.dynamodbv2.util.TableUtils;
@@ -26,6 +27,7 @@ import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.n3twork.BatchSaveParams;
 import com.n3twork.dynamap.model.Field;
 import com.n3twork.dynamap.model.TableDefinition;
@@ -34,7 +36,19 @@ import org.slf4j.LoggerFactory;
 
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 public class Dynamap {
@@ -51,9 +65,20 @@ public class Dynamap {
     private WriteOpFactory writeOpFactory;
     private ReadOpFactory readOpFactory;
     private DynamapBeanFactory dynamapBeanFactory;
+    private ExecutorService prefetchExecutor;
+    private ExecutorService batchExecutor;
+    private final Map<String, ConflictStats> conflictStats = new ConcurrentHashMap<>();
+    private final TransactionStats writeTransactionStats = new TransactionStats();
+    private final TransactionStats readTransactionStats = new TransactionStats();
+    private volatile HotKeyTracker hotKeyTracker;
+    private volatile ItemSnapshots itemSnapshots;
+    private final ItemSizeStats itemSizeStats = new ItemSizeStats();
+    private final ChunkStore chunkStore;
 
     private static final int MAX_BATCH_SIZE = 25;
     private static final int MAX_BATCH_GET_SIZE = 100;
+    private static final int MAX_CHUNK_GET_PARALLELISM = 8;
+    private static final String CHUNK_ATTRIBUTE_NAME = "#dynamapChunk";
 
     public Dynamap(AmazonDynamoDB amazonDynamoDB, SchemaRegistry schemaRegistry) {
         this.amazonDynamoDB = amazonDynamoDB;
@@ -64,6 +89,7 @@ public class Dynamap {
         this.writeOpFactory = new WriteOpFactory(objectMapper, this.prefix, schemaRegistry);
         this.readOpFactory = new ReadOpFactory(schemaRegistry, this.prefix);
         this.dynamapBeanFactory = new DynamapBeanFactory(schemaRegistry, this.objectMapper);
+        this.chunkStore = new ChunkStore(amazonDynamoDB, batchGets -> callConcurrently(batchGets, MAX_CHUNK_GET_PARALLELISM));
     }
 
     public Dynamap withObjectMapper(ObjectMapper objectMapper) {
@@ -72,6 +98,46 @@ public class Dynamap {
         return this;
     }
 
+    /**
+     * Executor used to prefetch query and scan pages. By default a cached pool of daemon threads is created on first use.
+     */
+    public Dynamap withPrefetchExecutor(ExecutorService prefetchExecutor) {
+        this.prefetchExecutor = prefetchExecutor;
+        return this;
+    }
+
+    /**
+     * Executor used to run batch updates. By default a cached pool of daemon threads is created on first use.
+     */
+    public Dynamap withBatchExecutor(ExecutorService batchExecutor) {
+        this.batchExecutor = batchExecutor;
+        return this;
+    }
+
+    /**
+     * Attributes the capacity consumed and the throttling seen by getObject, batchGetObject, save and update to the
+     * hash keys involved. Disabled by default.
+     */
+    public Dynamap withHotKeyTracker(HotKeyTracker hotKeyTracker) {
+        this.hotKeyTracker = hotKeyTracker;
+        return this;
+    }
+
+    public HotKeyTracker getHotKeyTracker() {
+        return hotKeyTracker;
+    }
+
+    /**
+     * Keeps a snapshot of the persisted attributes of every bean loaded in full by getObject, batchGetObject, query,
+     * scan or a read transaction. Saving such a bean, without disableOverwrite, issues an UpdateItem of the changed
+     * attributes only, with the same optimistic locking and condition expressions as a put, and no request if nothing
+     * changed. Disabled by default, since it encodes every loaded bean.
+     */
+    public Dynamap withChangeTracking(boolean changeTracking) {
+        this.itemSnapshots = changeTracking ? new ItemSnapshots() : null;
+        return this;
+    }
+
     public Dynamap withPrefix(String prefix) {
         this.prefix = prefix;
         this.writeOpFactory = new WriteOpFactory(objectMapper, this.prefix, schemaRegistry);
@@ -114,11 +180,12 @@ public class Dynamap {
                             .withProjection(new Projection().withProjectionType(ProjectionType.ALL));
                     ArrayList<KeySchemaElement> indexKeySchema = new ArrayList<>();
                     Field field = tableDefinition.getField(index.getHashKey());
+                    String hashKeyAttributeName = index.isSharded() ? index.getShardAttributeName() : field.getDynamoName();
                     indexKeySchema.add(new KeySchemaElement()
-                            .withAttributeName(field.getDynamoName())
+                            .withAttributeName(hashKeyAttributeName)
                             .withKeyType(KeyType.HASH));
-                    if (!hasAttributeDefinition(attributeDefinitions, field.getDynamoName())) {
-                        attributeDefinitions.add(new AttributeDefinition().withAttributeName(field.getDynamoName()).withAttributeType(field.getElementType().equals("String") ? "S" : "N"));
+                    if (!hasAttributeDefinition(attributeDefinitions, hashKeyAttributeName)) {
+                        attributeDefinitions.add(new AttributeDefinition().withAttributeName(hashKeyAttributeName).withAttributeType(field.getElementType().equals("String") ? "S" : "N"));
                     }
 
                     if (index.getRangeKey() != null) {
@@ -211,7 +278,7 @@ public class Dynamap {
         }
         boolean wasCreated = TableUtils.createTableIfNotExists(amazonDynamoDB, createTableRequest);
         TableDefinition tableDefinition = schemaRegistry.getTableDefinition(baseTableName);
-        updateTableTtl(tableDefinition, Optional.of(newTableName));
+        updateTableTtl(tableDefinition, Optional.of(fullNewTableName));
         return wasCreated;
     }
 
@@ -317,44 +384,72 @@ public class Dynamap {
             }
         }
 
-        List<List<GetObjectRequest>> partitions = Lists.partition(new ArrayList<>(batchGetObjectParams.getGetObjectRequests()), MAX_BATCH_GET_SIZE);
+        // requests are grouped by table, result class, consistency and projection, each group being read with its own
+        // KeysAndAttributes. A table can appear only once in a BatchGetItem request, so groups of the same table are
+        // read by separate requests.
+        Map<String, GetItemGroup> groups = new LinkedHashMap<>();
+        for (GetObjectRequest getObjectRequest : (Collection<GetObjectRequest>) batchGetObjectParams.getGetObjectRequests()) {
+            TableDefinition tableDefinition = schemaRegistry.getTableDefinition(getObjectRequest.getResultClass());
+            String tableName = tableDefinition.getTableName(prefix, getObjectRequest.getSuffix());
+            List<DynamapField> projectionFields = getObjectRequest.getProjection() != null ? getObjectRequest.getProjection() : batchGetObjectParams.getProjection();
+            String groupKey = tableName + '\u0000' + getObjectRequest.getResultClass().getName() + '\u0000' + getObjectRequest.isConsistentRead() + '\u0000'
+                    + (projectionFields == null ? "" : projectionFields.stream().map(DynamapField::getDynamoName).sorted().collect(Collectors.joining(",")));
+            GetItemGroup group = groups.computeIfAbsent(groupKey, k -> new GetItemGroup(tableName, tableDefinition, getObjectRequest,
+                    projectionFields == null ? null : TypedProjection.of(tableDefinition, projectionFields)));
+
+            // DynamoDB rejects a request holding the same key twice, so duplicates are read once
+            if (!group.keys.add(normalizedKey(getObjectRequest.getHashKeyValue(), getObjectRequest.getRangeKeyValue()))) {
+                continue;
+            }
+            String hashKeyFieldName = tableDefinition.getField(tableDefinition.getHashKey()).getDynamoName();
+            if (getObjectRequest.getRangeKeyValue() != null) {
+                String rangeKeyFieldName = tableDefinition.getField(tableDefinition.getRangeKey()).getDynamoName();
+                group.primaryKeys.add(new PrimaryKey(hashKeyFieldName, getObjectRequest.getHashKeyValue(), rangeKeyFieldName, getObjectRequest.getRangeKeyValue()));
+            } else {
+                group.primaryKeys.add(new PrimaryKey(hashKeyFieldName, getObjectRequest.getHashKeyValue()));
+            }
+        }
+
         Map<Class, List<Object>> results = new HashMap<>();
         int totalProgress = 0;
-        for (List<GetObjectRequest> getObjectRequestBatch : partitions) {
+        Deque<GetItemGroup> pending = new ArrayDeque<>(groups.values());
+        while (!pending.isEmpty()) {
 
             Map<String, GetItemInfo> queryInfos = new HashMap<>();
-
-            for (GetObjectRequest getObjectRequest : getObjectRequestBatch) {
-                TableDefinition tableDefinition = schemaRegistry.getTableDefinition(getObjectRequest.getResultClass());
-                String tableName = tableDefinition.getTableName(prefix, getObjectRequest.getSuffix());
-                TableKeysAndAttributes keysAndAttributes;
-                if (queryInfos.get(tableName) != null) {
-                    keysAndAttributes = queryInfos.get(tableName).keysAndAttributes;
-                } else {
-                    keysAndAttributes = new TableKeysAndAttributes(tableName)
-                            .withConsistentRead(getObjectRequest.isConsistentRead());
+            int keyCount = 0;
+            for (Iterator<GetItemGroup> it = pending.iterator(); it.hasNext() && keyCount < MAX_BATCH_GET_SIZE; ) {
+                GetItemGroup group = it.next();
+                if (queryInfos.containsKey(group.tableName)) {
+                    continue;
                 }
-
-                String hashKeyFieldName = tableDefinition.getField(tableDefinition.getHashKey()).getDynamoName();
-                if (getObjectRequest.getRangeKeyValue() != null) {
-                    String rangeKeyFieldName = tableDefinition.getField(tableDefinition.getRangeKey()).getDynamoName();
-                    keysAndAttributes.addHashAndRangePrimaryKey(hashKeyFieldName, getObjectRequest.getHashKeyValue(), rangeKeyFieldName, getObjectRequest.getRangeKeyValue());
-                } else {
-                    keysAndAttributes.addHashOnlyPrimaryKey(hashKeyFieldName, getObjectRequest.getHashKeyValue());
+                int count = Math.min(MAX_BATCH_GET_SIZE - keyCount, group.primaryKeys.size() - group.next);
+                TableKeysAndAttributes keysAndAttributes = new TableKeysAndAttributes(group.tableName)
+                        .withConsistentRead(group.getObjectRequest.isConsistentRead())
+                        .withPrimaryKeys(group.primaryKeys.subList(group.next, group.next + count).toArray(new PrimaryKey[0]));
+                if (group.projection != null) {
+                    keysAndAttributes.withProjectionExpression(group.projection.getExpression())
+                            .withNameMap(group.projection.getNames());
                 }
+                group.next += count;
+                keyCount += count;
+                if (group.next == group.primaryKeys.size()) {
+                    it.remove();
+                }
+
                 GetItemInfo getItemInfo = new GetItemInfo();
                 getItemInfo.keysAndAttributes = keysAndAttributes;
-                getItemInfo.tableDefinition = tableDefinition;
-                getItemInfo.getObjectRequest = getObjectRequest;
-                queryInfos.put(tableName, getItemInfo);
-                getItemInfo.table = tableCache.getTable(tableName);
+                getItemInfo.tableDefinition = group.tableDefinition;
+                getItemInfo.getObjectRequest = group.getObjectRequest;
+                getItemInfo.projection = group.projection;
+                getItemInfo.table = tableCache.getTable(group.tableName);
+                queryInfos.put(group.tableName, getItemInfo);
             }
 
             Multimap<String, Item> allItems = doBatchGetItem(queryInfos, rateLimitersByTable, totalProgress, batchGetObjectParams.getProgressCallback());
             totalProgress += allItems.values().size();
             for (GetItemInfo getItemInfo : queryInfos.values()) {
 
-                Collection<Item> items = allItems.get(getItemInfo.tableDefinition.getTableName(prefix, getItemInfo.getObjectRequest.getSuffix()));
+                Collection<Item> items = allItems.get(getItemInfo.keysAndAttributes.getTableName());
                 List<Object> resultsForClass = results.get(getItemInfo.getObjectRequest.getResultClass());
                 if (resultsForClass == null) {
                     resultsForClass = new ArrayList<>();
@@ -368,10 +463,11 @@ public class Dynamap {
                             writeLimiter = pair.getWriteLimiter();
                         }
                     }
-                    DynamapLoadService dynamapBeanLoader = new DynamapLoadService(schemaRegistry, dynamapBeanFactory, objectMapper, prefix, tableCache)
+                    DynamapLoadService dynamapBeanLoader = newLoadService()
                             .withWriteLimiter(writeLimiter)
                             .writeBack(batchGetObjectParams.isWriteMigrationChange())
                             .withMigrationContext(batchGetObjectParams.getMigrationContext())
+                            .withProjectedAttributes(getItemInfo.projection == null ? null : getItemInfo.projection.getAttributeNames())
                             .withSuffix(getItemInfo.getObjectRequest.getSuffix());
                     resultsForClass.add(dynamapBeanLoader.loadItem(item, getItemInfo.getObjectRequest.getResultClass()));
                 }
@@ -403,84 +499,95 @@ public class Dynamap {
         return queryResult(queryRequest).getResults();
     }
 
-    public <T extends DynamapRecordBean> QueryResult<T> queryResult(QueryRequest<T> queryRequest) {
-        TableDefinition tableDefinition = schemaRegistry.getTableDefinition(queryRequest.getResultClass());
-        Table table = tableCache.getTable(tableDefinition.getTableName(prefix, queryRequest.getSuffix()));
-        QuerySpec querySpec = new QuerySpec()
-                .withConsistentRead(queryRequest.isConsistentRead())
-                .withKeyConditionExpression(queryRequest.getKeyConditionExpression())
-                .withFilterExpression(queryRequest.getFilterExpression())
-                .withProjectionExpression(queryRequest.getProjectionExpression())
-                .withNameMap(queryRequest.getNames())
-                .withValueMap(queryRequest.getValues())
-                .withScanIndexForward(queryRequest.isScanIndexForward())
-                .withMaxResultSize(queryRequest.getMaxResultSize())
-                .withMaxPageSize(queryRequest.getMaxPageSize())
-                .withExclusiveStartKey(queryRequest.getExclusiveStartKeys());
-
-        if (queryRequest.getKeyConditionExpression() == null) {
-            querySpec.withHashKey(tableDefinition.getField(tableDefinition.getHashKey()).getDynamoName(), queryRequest.getHashKeyValue())
-                    .withRangeKeyCondition(queryRequest.getRangeKeyCondition());
+    /**
+     * Loads the objects of a single collection and table, keyed by the primary key of their request built from the
+     * DynamoDB names of the key fields. Every requested key is in the returned map, mapped to null when no object
+     * exists. Duplicate keys are read once and their object is returned for each of them.
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends DynamapRecordBean> Map<PrimaryKey, T> batchGetObjectByKey(BatchGetObjectParams<T> batchGetObjectParams) {
+        Collection<GetObjectRequest<T>> getObjectRequests = batchGetObjectParams.getGetObjectRequests();
+        if (getObjectRequests.size() == 0) {
+            return Collections.emptyMap();
+        }
+        GetObjectRequest<T> getObjectRequest = getObjectRequests.iterator().next();
+        if (getObjectRequests.stream().anyMatch(r -> r.getResultClass() != getObjectRequest.getResultClass() || !Objects.equals(r.getSuffix(), getObjectRequest.getSuffix()))) {
+            throw new IllegalArgumentException("More than one ResultClass or suffix has been specified");
+        }
+        TableDefinition tableDefinition = schemaRegistry.getTableDefinition(getObjectRequest.getResultClass());
+        String hashKeyFieldName = tableDefinition.getField(tableDefinition.getHashKey()).getDynamoName();
+        String rangeKeyFieldName = tableDefinition.getRangeKey() == null ? null : tableDefinition.getField(tableDefinition.getRangeKey()).getDynamoName();
+
+        Map<PrimaryKey, T> results = new LinkedHashMap<>();
+        Map<List<Object>, List<PrimaryKey>> primaryKeys = new HashMap<>();
+        for (GetObjectRequest<T> request : getObjectRequests) {
+            PrimaryKey primaryKey = request.getRangeKeyValue() == null ? new PrimaryKey(hashKeyFieldName, request.getHashKeyValue())
+                    : new PrimaryKey(hashKeyFieldName, request.getHashKeyValue(), rangeKeyFieldName, request.getRangeKeyValue());
+            if (!results.containsKey(primaryKey)) {
+                results.put(primaryKey, null);
+                primaryKeys.computeIfAbsent(normalizedKey(request.getHashKeyValue(), request.getRangeKeyValue()), k -> new ArrayList<>(1)).add(primaryKey);
+            }
         }
 
-        QueryFilter[] queryFilters = queryRequest.getQueryFilters();
-        if (queryRequest.getFilterExpression() == null && queryFilters.length > 0) {
-            querySpec.withQueryFilters(queryFilters);
+        BatchGetObjectParams<T> params = new BatchGetObjectParams<T>()
+                .withGetObjectRequests(getObjectRequests)
+                .withRateLimiters(batchGetObjectParams.getReadWriteRateLimiterPair() != null
+                        ? ImmutableMap.of(getObjectRequest.getResultClass(), batchGetObjectParams.getReadWriteRateLimiterPair())
+                        : batchGetObjectParams.getRateLimiters())
+                .withMigrationContext(batchGetObjectParams.getMigrationContext())
+                .withProgressCallback(batchGetObjectParams.getProgressCallback())
+                .withWriteMigrationChange(batchGetObjectParams.isWriteMigrationChange());
+        if (batchGetObjectParams.getProjection() != null) {
+            params.withProjection(batchGetObjectParams.getProjection().toArray(new DynamapField[0]));
+        }
+        List<Object> beans = batchGetObject(params).get(getObjectRequest.getResultClass());
+        if (beans != null) {
+            for (Object bean : beans) {
+                T result = (T) bean;
+                for (PrimaryKey primaryKey : primaryKeys.getOrDefault(normalizedKey(result.getHashKeyValue(), result.getRangeKeyValue()), Collections.emptyList())) {
+                    results.put(primaryKey, result);
+                }
+            }
         }
+        return results;
+    }
 
-        Select select = queryRequest.getSelect();
-        if (select != null) {
-            querySpec.withSelect(select);
+    // numbers of different types, such as the Integer of a request and the BigDecimal of an item, compare equal
+    private static List<Object> normalizedKey(String hashKeyValue, Object rangeKeyValue) {
+        if (rangeKeyValue instanceof Number) {
+            rangeKeyValue = new BigDecimal(rangeKeyValue.toString()).stripTrailingZeros();
         }
+        return Arrays.asList(hashKeyValue, rangeKeyValue);
+    }
+
+    public <T extends DynamapRecordBean> QueryResult<T> queryResult(QueryRequest<T> queryRequest) {
+        TableDefinition tableDefinition = schemaRegistry.getTableDefinition(queryRequest.getResultClass());
+        Table table = tableCache.getTable(tableDefinition.getTableName(prefix, queryRequest.getSuffix()));
+        TypedProjection projection = getProjection(tableDefinition, queryRequest.getProjection(), queryRequest.getProjectionExpression());
+        Function<Item, T> itemLoader = getQueryItemLoader(queryRequest, projection, queryRequest.getSuffix());
 
         final ItemCollection<QueryOutcome> items;
         if (queryRequest.getIndex() != null) {
-            com.n3twork.dynamap.model.Index indexDef = null;
-            if (tableDefinition.getGlobalSecondaryIndexes() != null) {
-                indexDef = tableDefinition.getGlobalSecondaryIndexes().stream().filter(i -> i.getIndexName().equals(queryRequest.getIndex().getName())).findFirst().get();
-            } else if (tableDefinition.getLocalSecondaryIndexes() != null) {
-                indexDef = tableDefinition.getLocalSecondaryIndexes().stream().filter(i -> i.getIndexName().equals(queryRequest.getIndex().getName())).findFirst().get();
-            }
+            com.n3twork.dynamap.model.Index indexDef = getIndexDefinition(tableDefinition, queryRequest);
             String indexName = indexDef.getIndexName();
             Index index = table.getIndex(indexDef.getIndexName());
-            if (queryRequest.getKeyConditionExpression() == null) {
-                querySpec.withHashKey(tableDefinition.getField(indexDef.getHashKey()).getDynamoName(), queryRequest.getHashKeyValue());
-            }
             initRateLimiter(queryRequest.getReadRateLimiter(), table, indexName);
-            items = index.query(querySpec);
+            if (indexDef.isSharded()) {
+                return shardedQueryResult(queryRequest, tableDefinition, projection, indexDef, index, itemLoader);
+            }
+            items = index.query(getQuerySpec(queryRequest, tableDefinition, projection, getQueryHashKey(tableDefinition, queryRequest), queryRequest.getHashKeyValue()));
         } else {
             initRateLimiter(queryRequest.getReadRateLimiter(), table, null);
-            items = table.query(querySpec);
+            items = table.query(getQuerySpec(queryRequest, tableDefinition, projection, getQueryHashKey(tableDefinition, queryRequest), queryRequest.getHashKeyValue()));
         }
 
-        items.registerLowLevelResultListener(new LowLevelResultListener<QueryOutcome>() {
-
-            private int totalProgress = 0;
-
-            @Override
-            public void onLowLevelResult(QueryOutcome queryOutcome) {
-                DynamoRateLimiter dynamoRateLimiter = queryRequest.getReadRateLimiter();
-                totalProgress += queryOutcome.getQueryResult().getCount();
-                if (queryRequest.getProgressCallback() != null) {
-                    queryRequest.getProgressCallback().reportProgress(totalProgress);
-                }
-                if (dynamoRateLimiter != null) {
-                    dynamoRateLimiter.setConsumedCapacity(queryOutcome.getQueryResult().getConsumedCapacity());
-                    dynamoRateLimiter.acquire();
-                }
-            }
-        });
+        items.registerLowLevelResultListener(getQueryResultListener(queryRequest, queryRequest.getReadRateLimiter(), new AtomicInteger()));
 
         ItemIterator<T> itemIterator = new ItemIterator<T>(items) {
 
             @Override
             public T next() {
-                DynamapLoadService dynamapBeanLoader = new DynamapLoadService(schemaRegistry, dynamapBeanFactory, objectMapper, prefix, tableCache)
-                        .skipMigration(queryRequest.getProjectionExpression() != null)
-                        .writeBack(queryRequest.isWriteMigrationChange())
-                        .withMigrationContext(queryRequest.getMigrationContext())
-                        .withSuffix(queryRequest.getSuffix());
-                return dynamapBeanLoader.loadItem(iterator.next(), queryRequest.getResultClass());
+                return itemLoader.apply(nextItem());
             }
 
             @Override
@@ -490,16 +597,372 @@ public class Dynamap {
         };
 
 
+        if (queryRequest.getPrefetchDepth() > 0) {
+            itemIterator.withPrefetch(queryRequest.getPrefetchDepth(), getPrefetchExecutor());
+        }
         return new QueryResult<>(itemIterator);
     }
 
+    // Queries every shard of a sharded index in parallel and merges the shards in range key order.
+    private <T extends DynamapRecordBean> QueryResult<T> shardedQueryResult(QueryRequest<T> queryRequest, TableDefinition tableDefinition, TypedProjection projection,
+                                                                          com.n3twork.dynamap.model.Index indexDef, Index index, Function<Item, T> itemLoader) {
+        if (queryRequest.getKeyConditionExpression() != null || queryRequest.getHashKeyValue() == null) {
+            throw new IllegalArgumentException("Sharded index " + indexDef.getIndexName() + " can only be queried by hash key value");
+        }
+        if (queryRequest.getExclusiveStartKeys() != null) {
+            throw new IllegalArgumentException("Queries on sharded index " + indexDef.getIndexName() + " cannot be resumed from exclusive start keys");
+        }
 
-    public <T extends DynamapRecordBean> ScanResult<T> scan(ScanRequest<T> scanRequest) {
+        AtomicInteger totalProgress = new AtomicInteger();
+        List<ItemIterator<Item>> shards = new ArrayList<>(indexDef.getShards());
+        for (int shard = 0; shard < indexDef.getShards(); shard++) {
+            QuerySpec querySpec = getQuerySpec(queryRequest, tableDefinition, projection,
+                    indexDef.getShardAttributeName(), IndexShards.shardedValue(queryRequest.getHashKeyValue(), shard));
+            ItemCollection<QueryOutcome> items = index.query(querySpec);
+            items.registerLowLevelResultListener(getQueryResultListener(queryRequest, queryRequest.getReadRateLimiter(), totalProgress));
+            // prefetching fetches the shards concurrently
+            shards.add(getRawItemIterator(items).withPrefetch(Math.max(1, queryRequest.getPrefetchDepth()), getPrefetchExecutor()));
+        }
+
+        Comparator<Item> order = getRangeKeyOrder(tableDefinition, indexDef.getRangeKey(), queryRequest.isScanIndexForward());
+        return new QueryResult<>(new MergedItemIterator<T>(shards, order, queryRequest.getMaxResultSize()) {
+            @Override
+            public T next() {
+                return itemLoader.apply(nextItem());
+            }
+        });
+    }
+
+    /**
+     * Runs the base query of the request for every hash key value and merges the results in range key order. The first
+     * page of each query is fetched concurrently, at most MultiQueryRequest.getParallelism() at a time; later pages are
+     * fetched as the merge reaches the end of the previous page, so no pages are read beyond those needed for the limit.
+     * Results are streamed through the QueryResult iterator and cannot be resumed from last evaluated keys.
+     */
+    public <T extends DynamapRecordBean> QueryResult<T> multiQuery(MultiQueryRequest<T> multiQueryRequest) {
+        QueryRequest<T> queryRequest = multiQueryRequest.getQueryRequest();
+        if (queryRequest.getKeyConditionExpression() != null || queryRequest.getExclusiveStartKeys() != null) {
+            throw new IllegalArgumentException("A multi query cannot use a key condition expression or exclusive start keys");
+        }
+        TableDefinition tableDefinition = schemaRegistry.getTableDefinition(queryRequest.getResultClass());
+        TypedProjection projection = getProjection(tableDefinition, queryRequest.getProjection(), queryRequest.getProjectionExpression());
+        Function<Item, T> itemLoader = getQueryItemLoader(queryRequest, projection, queryRequest.getSuffix());
+
+        Integer limit = multiQueryRequest.getLimit();
+        AtomicInteger totalProgress = new AtomicInteger();
+        List<Callable<ItemIterator<Item>>> queries = new ArrayList<>();
+        for (String hashKeyValue : multiQueryRequest.getHashKeyValues()) {
+            queries.addAll(getQueryCalls(queryRequest, tableDefinition, projection, queryRequest.getSuffix(), hashKeyValue, limit, queryRequest.getReadRateLimiter(), totalProgress));
+        }
+
+        List<ItemIterator<Item>> sources = callConcurrently(queries, multiQueryRequest.getParallelism());
+        Comparator<Item> order = getRangeKeyOrder(tableDefinition, getQueryRangeKey(tableDefinition, queryRequest), queryRequest.isScanIndexForward());
+        return new QueryResult<>(new MergedItemIterator<T>(sources, order, limit) {
+            @Override
+            public T next() {
+                return itemLoader.apply(nextItem());
+            }
+        });
+    }
+
+    /**
+     * Runs the query against the table of every suffix and merges the results in range key order, each tagged with the
+     * suffix of its table. The first page of each table is fetched concurrently, at most SuffixFanOutParams.getParallelism()
+     * at a time; a read limiter set for a suffix replaces the read limiter of the query for that table. The read
+     * limiter of the query can only be used alone with a single suffix, see SuffixFanOutParams.withReadLimiters.
+     */
+    public <T extends DynamapRecordBean> QueryResult<SuffixedResult<T>> queryAcrossSuffixes(QueryRequest<T> queryRequest, SuffixFanOutParams fanOutParams) {
+        if (queryRequest.getKeyConditionExpression() != null || queryRequest.getExclusiveStartKeys() != null) {
+            throw new IllegalArgumentException("A query across suffixes cannot use a key condition expression or exclusive start keys");
+        }
+        TableDefinition tableDefinition = schemaRegistry.getTableDefinition(queryRequest.getResultClass());
+        TypedProjection projection = getProjection(tableDefinition, queryRequest.getProjection(), queryRequest.getProjectionExpression());
+
+        Integer limit = fanOutParams.getLimit();
+        AtomicInteger totalProgress = new AtomicInteger();
+        List<Callable<ItemIterator<Item>>> queries = new ArrayList<>();
+        List<String> sourceSuffixes = new ArrayList<>();
+        for (String suffix : fanOutParams.getSuffixes()) {
+            List<Callable<ItemIterator<Item>>> suffixQueries = getQueryCalls(queryRequest, tableDefinition, projection, suffix, queryRequest.getHashKeyValue(), limit,
+                    fanOutParams.getReadLimiter(suffix, queryRequest.getReadRateLimiter()), totalProgress);
+            queries.addAll(suffixQueries);
+            suffixQueries.forEach(q -> sourceSuffixes.add(suffix));
+        }
+
+        List<ItemIterator<Item>> sources = callConcurrently(queries, fanOutParams.getParallelism());
+        Comparator<Item> order = getRangeKeyOrder(tableDefinition, getQueryRangeKey(tableDefinition, queryRequest), queryRequest.isScanIndexForward());
+        Map<String, Function<Item, T>> itemLoaders = new HashMap<>();
+        return new QueryResult<>(new MergedItemIterator<SuffixedResult<T>>(sources, order, limit) {
+            @Override
+            public SuffixedResult<T> next() {
+                Item item = nextItem();
+                String suffix = sourceSuffixes.get(getLastSource());
+                Function<Item, T> itemLoader = itemLoaders.computeIfAbsent(suffix, s -> getQueryItemLoader(queryRequest, projection, s));
+                return new SuffixedResult<>(suffix, itemLoader.apply(item));
+            }
+        });
+    }
+
+    /**
+     * Scans the table of every suffix and returns the items of each table in turn, in the order of the suffixes, each
+     * tagged with the suffix of its table. The first page of each table is fetched concurrently, at most
+     * SuffixFanOutParams.getParallelism() at a time; later pages are only fetched while the limit has not been reached.
+     */
+    public <T extends DynamapRecordBean> ScanResult<SuffixedResult<T>> scanAcrossSuffixes(ScanRequest<T> scanRequest, SuffixFanOutParams fanOutParams) {
+        if (scanRequest.getExclusiveStartKeys() != null) {
+            throw new IllegalArgumentException("A scan across suffixes cannot use exclusive start keys");
+        }
         TableDefinition tableDefinition = schemaRegistry.getTableDefinition(scanRequest.getResultClass());
-        Table table = tableCache.getTable(tableDefinition.getTableName(prefix, scanRequest.getSuffix()));
+        TypedProjection projection = getProjection(tableDefinition, scanRequest.getProjection(), scanRequest.getProjectionExpression());
+
+        Integer limit = fanOutParams.getLimit();
+        AtomicInteger totalProgress = new AtomicInteger();
+        List<Callable<ItemIterator<Item>>> scans = new ArrayList<>();
+        for (String suffix : fanOutParams.getSuffixes()) {
+            ScanSpec scanSpec = getScanSpec(scanRequest, projection);
+            if (limit != null && (scanSpec.getMaxResultSize() == null || scanSpec.getMaxResultSize() > limit)) {
+                scanSpec.withMaxResultSize(limit);
+            }
+            DynamoRateLimiter readLimiter = fanOutParams.getReadLimiter(suffix, scanRequest.getReadRateLimiter());
+            Table table = tableCache.getTable(tableDefinition.getTableName(prefix, suffix));
+            initRateLimiter(readLimiter, table, scanRequest.getIndex() == null ? null : scanRequest.getIndex().getName());
+            scans.add(() -> {
+                ItemCollection<ScanOutcome> scanItems = scanRequest.getIndex() == null ? table.scan(scanSpec) : table.getIndex(scanRequest.getIndex().getName()).scan(scanSpec);
+                scanItems.registerLowLevelResultListener(getScanResultListener(scanRequest, readLimiter, totalProgress));
+                ItemIterator<Item> itemIterator = new ItemIterator<Item>(scanItems) {
+                    @Override
+                    public Item next() {
+                        return nextItem();
+                    }
+
+                    @Override
+                    protected Map<String, AttributeValue> getLowLevelLastEvaluatedKey() {
+                        return scanItems.getLastLowLevelResult().getScanResult().getLastEvaluatedKey();
+                    }
+                };
+                itemIterator.hasNext();
+                return itemIterator;
+            });
+        }
+
+        List<ItemIterator<Item>> sources = callConcurrently(scans, fanOutParams.getParallelism());
+        List<String> suffixes = fanOutParams.getSuffixes();
+        Map<String, Function<Item, T>> itemLoaders = new HashMap<>();
+        // all items compare equal, so the merge drains the tables in suffix order
+        return new ScanResult<>(new MergedItemIterator<SuffixedResult<T>>(sources, (a, b) -> 0, limit) {
+            @Override
+            public SuffixedResult<T> next() {
+                Item item = nextItem();
+                String suffix = suffixes.get(getLastSource());
+                Function<Item, T> itemLoader = itemLoaders.computeIfAbsent(suffix, s -> getScanItemLoader(scanRequest, projection, s));
+                return new SuffixedResult<>(suffix, itemLoader.apply(item));
+            }
+        });
+    }
+
+    /**
+     * Gets the objects of the requests from the table of every suffix, each tagged with the suffix of its table. The
+     * suffixes of the requests themselves are ignored. The tables are read concurrently, at most
+     * SuffixFanOutParams.getParallelism() at a time, and results are returned in the order of the suffixes. With a limit,
+     * the suffixes are read in rounds of that many tables in suffix order, and no more rounds are read once the limit
+     * is reached.
+     */
+    public <T extends DynamapRecordBean> List<SuffixedResult<T>> batchGetObjectAcrossSuffixes(Collection<GetObjectRequest<T>> getObjectRequests, SuffixFanOutParams fanOutParams) {
+        List<Callable<List<T>>> gets = new ArrayList<>();
+        for (String suffix : fanOutParams.getSuffixes()) {
+            List<GetObjectRequest<T>> suffixRequests = new ArrayList<>(getObjectRequests.size());
+            for (GetObjectRequest<T> getObjectRequest : getObjectRequests) {
+                GetObjectRequest<T> suffixRequest = new GetObjectRequest<>(getObjectRequest.getResultClass())
+                        .withHashKeyValue(getObjectRequest.getHashKeyValue())
+                        .withRangeKeyValue(getObjectRequest.getRangeKeyValue())
+                        .withConsistentRead(getObjectRequest.isConsistentRead())
+                        .withSuffix(suffix);
+                if (getObjectRequest.getProjection() != null) {
+                    suffixRequest.withProjection(getObjectRequest.getProjection().toArray(new DynamapField[0]));
+                }
+                suffixRequests.add(suffixRequest);
+            }
+            BatchGetObjectParams<T> batchGetObjectParams = new BatchGetObjectParams<T>().withGetObjectRequests(suffixRequests);
+            DynamoRateLimiter readLimiter = fanOutParams.getReadLimiter(suffix, null);
+            if (readLimiter != null) {
+                batchGetObjectParams.withRateLimiters(ReadWriteRateLimiterPair.of(readLimiter, null));
+            }
+            gets.add(() -> batchGetObjectSingleCollection(batchGetObjectParams));
+        }
+
+        Integer limit = fanOutParams.getLimit();
+        int round = limit == null ? gets.size() : fanOutParams.getParallelism();
+        List<SuffixedResult<T>> results = new ArrayList<>();
+        for (int start = 0; start < gets.size(); start += round) {
+            List<List<T>> resultsBySuffix = callConcurrently(gets.subList(start, Math.min(start + round, gets.size())), fanOutParams.getParallelism());
+            for (int i = 0; i < resultsBySuffix.size(); i++) {
+                for (T result : resultsBySuffix.get(i)) {
+                    if (limit != null && results.size() >= limit) {
+                        return results;
+                    }
+                    results.add(new SuffixedResult<>(fanOutParams.getSuffixes().get(start + i), result));
+                }
+            }
+            if (limit != null && results.size() >= limit) {
+                break;
+            }
+        }
+        return results;
+    }
+
+    // Creates the calls that open the query for one hash key value on the table of one suffix, one per index shard.
+    // Each call fetches the first page.
+    private <T extends DynamapRecordBean> List<Callable<ItemIterator<Item>>> getQueryCalls(QueryRequest<T> queryRequest, TableDefinition tableDefinition, TypedProjection projection,
+                                                                                         String suffix, String hashKeyValue, Integer limit, DynamoRateLimiter readLimiter, AtomicInteger totalProgress) {
+        Table table = tableCache.getTable(tableDefinition.getTableName(prefix, suffix));
+        QueryApi queryApi = table;
+        String hashKeyName = tableDefinition.getField(tableDefinition.getHashKey()).getDynamoName();
+        int shards = 1;
+        if (queryRequest.getIndex() != null) {
+            com.n3twork.dynamap.model.Index indexDef = getIndexDefinition(tableDefinition, queryRequest);
+            queryApi = table.getIndex(indexDef.getIndexName());
+            hashKeyName = indexDef.isSharded() ? indexDef.getShardAttributeName() : tableDefinition.getField(indexDef.getHashKey()).getDynamoName();
+            shards = indexDef.getShards();
+            initRateLimiter(readLimiter, table, indexDef.getIndexName());
+        } else {
+            initRateLimiter(readLimiter, table, null);
+        }
+
+        List<Callable<ItemIterator<Item>>> queries = new ArrayList<>(shards);
+        for (int shard = 0; shard < shards; shard++) {
+            QuerySpec querySpec = getQuerySpec(queryRequest, tableDefinition, projection,
+                    hashKeyName, shards > 1 ? IndexShards.shardedValue(hashKeyValue, shard) : hashKeyValue);
+            if (limit != null && (querySpec.getMaxResultSize() == null || querySpec.getMaxResultSize() > limit)) {
+                querySpec.withMaxResultSize(limit);
+            }
+            QueryApi api = queryApi;
+            queries.add(() -> {
+                ItemCollection<QueryOutcome> items = api.query(querySpec);
+                items.registerLowLevelResultListener(getQueryResultListener(queryRequest, readLimiter, totalProgress));
+                ItemIterator<Item> itemIterator = getRawItemIterator(items);
+                itemIterator.hasNext();
+                return itemIterator;
+            });
+        }
+        return queries;
+    }
+
+    // the dynamo name of the hash key of the table or unsharded index queried by the request
+    private String getQueryHashKey(TableDefinition tableDefinition, QueryRequest<?> queryRequest) {
+        String hashKey = queryRequest.getIndex() == null ? tableDefinition.getHashKey() : getIndexDefinition(tableDefinition, queryRequest).getHashKey();
+        return tableDefinition.getField(hashKey).getDynamoName();
+    }
+
+    private String getQueryRangeKey(TableDefinition tableDefinition, QueryRequest<?> queryRequest) {
+        return queryRequest.getIndex() == null ? tableDefinition.getRangeKey() : getIndexDefinition(tableDefinition, queryRequest).getRangeKey();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <V> List<V> callConcurrently(List<Callable<V>> calls, int parallelism) {
+        Object[] results = new Object[calls.size()];
+        AtomicInteger next = new AtomicInteger();
+        Callable<Void> worker = () -> {
+            int i;
+            while ((i = next.getAndIncrement()) < results.length) {
+                results[i] = calls.get(i).call();
+            }
+            return null;
+        };
+
+        int workers = Math.min(parallelism, results.length);
+        List<Future<?>> futures = new ArrayList<>(workers);
+        for (int i = 0; i < workers; i++) {
+            futures.add(getBatchExecutor().submit(worker));
+        }
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(f -> f.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            futures.forEach(f -> f.cancel(true));
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        }
+        return (List<V>) Arrays.asList(results);
+    }
+
+    private com.n3twork.dynamap.model.Index getIndexDefinition(TableDefinition tableDefinition, QueryRequest<?> queryRequest) {
+        com.n3twork.dynamap.model.Index indexDef = null;
+        if (tableDefinition.getGlobalSecondaryIndexes() != null) {
+            indexDef = tableDefinition.getGlobalSecondaryIndexes().stream().filter(i -> i.getIndexName().equals(queryRequest.getIndex().getName())).findFirst().get();
+        } else if (tableDefinition.getLocalSecondaryIndexes() != null) {
+            indexDef = tableDefinition.getLocalSecondaryIndexes().stream().filter(i -> i.getIndexName().equals(queryRequest.getIndex().getName())).findFirst().get();
+        }
+        return indexDef;
+    }
+
+    private <T extends DynamapRecordBean> Function<Item, T> getQueryItemLoader(QueryRequest<T> queryRequest, TypedProjection projection, String suffix) {
+        return item -> newLoadService()
+                .skipMigration(queryRequest.getProjectionExpression() != null)
+                .withProjectedAttributes(projection == null ? null : projection.getAttributeNames())
+                .writeBack(queryRequest.isWriteMigrationChange())
+                .withMigrationContext(queryRequest.getMigrationContext())
+                .withSuffix(suffix)
+                .loadItem(item, queryRequest.getResultClass());
+    }
+
+    private <T extends DynamapRecordBean> Function<Item, T> getScanItemLoader(ScanRequest<T> scanRequest, TypedProjection projection, String suffix) {
+        return item -> newLoadService()
+                .skipMigration(scanRequest.getProjectionExpression() != null)
+                .withProjectedAttributes(projection == null ? null : projection.getAttributeNames())
+                .writeBack(scanRequest.isWriteMigrationChange())
+                .withMigrationContext(scanRequest.getMigrationContext())
+                .withSuffix(suffix)
+                .loadItem(item, scanRequest.getResultClass());
+    }
+
+    private ItemIterator<Item> getRawItemIterator(ItemCollection<QueryOutcome> items) {
+        return new ItemIterator<Item>(items) {
+
+            @Override
+            public Item next() {
+                return nextItem();
+            }
+
+            @Override
+            protected Map<String, AttributeValue> getLowLevelLastEvaluatedKey() {
+                return items.getLastLowLevelResult().getQueryResult().getLastEvaluatedKey();
+            }
+        };
+    }
+
+    private Comparator<Item> getRangeKeyOrder(TableDefinition tableDefinition, String rangeKey, boolean scanIndexForward) {
+        if (rangeKey == null) {
+            return (a, b) -> 0;
+        }
+        String rangeKeyName = tableDefinition.getField(rangeKey).getDynamoName();
+        Comparator<Item> order = (a, b) -> compareAttributes(a.get(rangeKeyName), b.get(rangeKeyName));
+        return scanIndexForward ? order : order.reversed();
+    }
 
+    @SuppressWarnings("unchecked")
+    private static int compareAttributes(Object a, Object b) {
+        if (a == null || b == null) {
+            return a == null ? (b == null ? 0 : -1) : 1;
+        }
+        if (a instanceof Number && b instanceof Number) {
+            return new BigDecimal(a.toString()).compareTo(new BigDecimal(b.toString()));
+        }
+        return ((Comparable<Object>) a).compareTo(b);
+    }
+
+    private <T extends DynamapRecordBean> ScanSpec getScanSpec(ScanRequest<T> scanRequest, TypedProjection projection) {
         ScanSpec scanspec = new ScanSpec();
-        if (scanRequest.getNames() != null) {
+        if (projection != null) {
+            scanspec.withProjectionExpression(projection.getExpression());
+            scanspec.withNameMap(projection.mergeNames(scanRequest.getNames()));
+        } else if (scanRequest.getNames() != null) {
             scanspec.withNameMap(scanRequest.getNames());
         }
         if (scanRequest.getValues() != null) {
@@ -529,31 +992,76 @@ public class Dynamap {
         if (scanRequest.getMaxPageSize() != null) {
             scanspec.withMaxPageSize(scanRequest.getMaxPageSize());
         }
-
-        if (scanRequest.getReadRateLimiter() != null) {
-            if (scanRequest.getReadRateLimiter() != null) {
-                scanRequest.getReadRateLimiter().init(table, scanRequest.getIndex() == null ? null : scanRequest.getIndex().getName());
-                scanRequest.getReadRateLimiter().acquire();
-            }
+        if (scanRequest.getIndex() == null && !schemaRegistry.getTableDefinition(scanRequest.getResultClass()).getChunkedFields().isEmpty()) {
+            scanspec.withFilterExpression(excludeChunks(scanspec.getFilterExpression()));
+            scanspec.withNameMap(excludeChunks(scanspec.getNameMap()));
         }
+        return scanspec;
+    }
 
-        final ItemCollection<ScanOutcome> scanItems;
-        if (scanRequest.getIndex() != null) {
-            scanItems = table.getIndex(scanRequest.getIndex().getName()).scan(scanspec);
-        } else {
-            scanItems = table.scan(scanspec);
+    // chunk items share the hash key of their item, so queries and scans of a table with chunked fields skip them
+    private static String excludeChunks(String filterExpression) {
+        String condition = "attribute_not_exists(" + CHUNK_ATTRIBUTE_NAME + ")";
+        return filterExpression == null ? condition : "(" + filterExpression + ") AND " + condition;
+    }
+
+    private static Map<String, String> excludeChunks(Map<String, String> names) {
+        Map<String, String> merged = names == null ? new HashMap<>() : new HashMap<>(names);
+        merged.put(CHUNK_ATTRIBUTE_NAME, ChunkStore.CHUNK_ATTRIBUTE);
+        return merged;
+    }
+
+    // renders a legacy key condition or query filter as a condition expression, with placeholders starting with the given prefix
+    private static String toConditionExpression(String placeholder, String attributeName, ComparisonOperator operator, Object[] operands,
+                                                Map<String, String> names, Map<String, Object> values) {
+        String name = "#" + placeholder;
+        names.put(name, attributeName);
+        List<String> args = new ArrayList<>();
+        for (int i = 0; operands != null && i < operands.length; i++) {
+            args.add(":" + placeholder + "_" + i);
+            values.put(args.get(i), operands[i]);
+        }
+        switch (operator) {
+            case EQ:
+                return name + " = " + args.get(0);
+            case NE:
+                return name + " <> " + args.get(0);
+            case LE:
+                return name + " <= " + args.get(0);
+            case LT:
+                return name + " < " + args.get(0);
+            case GE:
+                return name + " >= " + args.get(0);
+            case GT:
+                return name + " > " + args.get(0);
+            case BETWEEN:
+                return name + " BETWEEN " + args.get(0) + " AND " + args.get(1);
+            case IN:
+                return name + " IN (" + String.join(", ", args) + ")";
+            case BEGINS_WITH:
+                return "begins_with(" + name + ", " + args.get(0) + ")";
+            case CONTAINS:
+                return "contains(" + name + ", " + args.get(0) + ")";
+            case NOT_CONTAINS:
+                return "NOT contains(" + name + ", " + args.get(0) + ")";
+            case NOT_NULL:
+                return "attribute_exists(" + name + ")";
+            case NULL:
+                return "attribute_not_exists(" + name + ")";
+            default:
+                throw new IllegalArgumentException("Unsupported comparison operator " + operator);
         }
+    }
 
-        scanItems.registerLowLevelResultListener(new LowLevelResultListener<ScanOutcome>() {
-            private int totalProgress = 0;
+    private <T extends DynamapRecordBean> LowLevelResultListener<ScanOutcome> getScanResultListener(ScanRequest<T> scanRequest, DynamoRateLimiter dynamoRateLimiter, AtomicInteger totalProgress) {
+        return new LowLevelResultListener<ScanOutcome>() {
             ProgressCallback progressCallback = scanRequest.getProgressCallback();
 
             @Override
             public void onLowLevelResult(ScanOutcome scanOutcome) {
-                DynamoRateLimiter dynamoRateLimiter = scanRequest.getReadRateLimiter();
-                totalProgress += scanOutcome.getScanResult().getCount();
+                int progress = totalProgress.addAndGet(scanOutcome.getScanResult().getCount());
                 if (progressCallback != null) {
-                    progressCallback.reportProgress(totalProgress);
+                    progressCallback.reportProgress(progress);
                 }
                 if (dynamoRateLimiter != null) {
                     dynamoRateLimiter.setConsumedCapacity(scanOutcome.getScanResult().getConsumedCapacity());
@@ -561,18 +1069,127 @@ public class Dynamap {
                 }
             }
 
-        });
+        };
+    }
+
+    // DynamoDB rejects requests that mix expressions with the legacy KeyConditions and QueryFilter parameters, so the
+    // hash key, range key condition and query filters of the request are always rendered as expressions. The hash key
+    // is only used when the request has no key condition expression.
+    private <T extends DynamapRecordBean> QuerySpec getQuerySpec(QueryRequest<T> queryRequest, TableDefinition tableDefinition, TypedProjection projection,
+                                                                 String hashKeyName, Object hashKeyValue) {
+        Map<String, String> names = projection == null ? new HashMap<>() : projection.mergeNames(null);
+        if (queryRequest.getNames() != null) {
+            names.putAll(queryRequest.getNames());
+        }
+        Map<String, Object> values = new HashMap<>();
+        if (queryRequest.getValues() != null) {
+            values.putAll(queryRequest.getValues());
+        }
+
+        String keyConditionExpression = queryRequest.getKeyConditionExpression();
+        if (keyConditionExpression == null) {
+            names.put("#dynamapHashKey", hashKeyName);
+            values.put(":dynamapHashKey", hashKeyValue);
+            keyConditionExpression = "#dynamapHashKey = :dynamapHashKey";
+            RangeKeyCondition rangeKeyCondition = queryRequest.getRangeKeyCondition();
+            if (rangeKeyCondition != null) {
+                keyConditionExpression += " AND " + toConditionExpression("dynamapRangeKey", rangeKeyCondition.getAttrName(),
+                        rangeKeyCondition.getKeyCondition().toComparisonOperator(), rangeKeyCondition.getValues(), names, values);
+            }
+        }
+
+        String filterExpression = queryRequest.getFilterExpression();
+        QueryFilter[] queryFilters = queryRequest.getQueryFilters();
+        if (filterExpression == null && queryFilters.length > 0) {
+            List<String> conditions = new ArrayList<>(queryFilters.length);
+            for (int i = 0; i < queryFilters.length; i++) {
+                conditions.add(toConditionExpression("dynamapFilter" + i, queryFilters[i].getAttribute(),
+                        queryFilters[i].getComparisonOperator(), queryFilters[i].getValues(), names, values));
+            }
+            filterExpression = String.join(" AND ", conditions);
+        }
+        if (queryRequest.getIndex() == null && !tableDefinition.getChunkedFields().isEmpty()) {
+            filterExpression = excludeChunks(filterExpression);
+            names.put(CHUNK_ATTRIBUTE_NAME, ChunkStore.CHUNK_ATTRIBUTE);
+        }
+
+        QuerySpec querySpec = new QuerySpec()
+                .withConsistentRead(queryRequest.isConsistentRead())
+                .withKeyConditionExpression(keyConditionExpression)
+                .withFilterExpression(filterExpression)
+                .withProjectionExpression(projection == null ? queryRequest.getProjectionExpression() : projection.getExpression())
+                .withNameMap(names.isEmpty() ? null : names)
+                .withValueMap(values.isEmpty() ? null : values)
+                .withScanIndexForward(queryRequest.isScanIndexForward())
+                .withMaxResultSize(queryRequest.getMaxResultSize())
+                .withMaxPageSize(queryRequest.getMaxPageSize())
+                .withExclusiveStartKey(queryRequest.getExclusiveStartKeys());
+
+        Select select = queryRequest.getSelect();
+        if (select != null) {
+            querySpec.withSelect(select);
+        }
+        return querySpec;
+    }
+
+    private <T extends DynamapRecordBean> LowLevelResultListener<QueryOutcome> getQueryResultListener(QueryRequest<T> queryRequest, DynamoRateLimiter dynamoRateLimiter, AtomicInteger totalProgress) {
+        return new LowLevelResultListener<QueryOutcome>() {
+
+            @Override
+            public void onLowLevelResult(QueryOutcome queryOutcome) {
+                int progress = totalProgress.addAndGet(queryOutcome.getQueryResult().getCount());
+                if (queryRequest.getProgressCallback() != null) {
+                    queryRequest.getProgressCallback().reportProgress(progress);
+                }
+                if (dynamoRateLimiter != null) {
+                    dynamoRateLimiter.setConsumedCapacity(queryOutcome.getQueryResult().getConsumedCapacity());
+                    dynamoRateLimiter.acquire();
+                }
+            }
+        };
+    }
 
 
+    /**
+     * Exports the raw items of a table to block compressed files in the given directory, one per scan segment. The
+     * segments are scanned in parallel under the read rate limiter of the request, and items are streamed to the files
+     * a page at a time. Use ExportFileReader to read the files back.
+     */
+    public <T extends DynamapRecordBean> ExportResult exportTable(ExportRequest<T> exportRequest, Path directory) {
+        TableDefinition tableDefinition = schemaRegistry.getTableDefinition(exportRequest.getResultClass());
+        String tableName = tableDefinition.getTableName(prefix, exportRequest.getSuffix());
+        initRateLimiter(exportRequest.getReadRateLimiter(), tableCache.getTable(tableName), null);
+        TableExporter tableExporter = new TableExporter(amazonDynamoDB, tableName, exportRequest);
+        return TableExporter.toResult(callConcurrently(tableExporter.getSegmentExports(directory), exportRequest.getTotalSegments()));
+    }
+
+    public <T extends DynamapRecordBean> ScanResult<T> scan(ScanRequest<T> scanRequest) {
+        TableDefinition tableDefinition = schemaRegistry.getTableDefinition(scanRequest.getResultClass());
+        Table table = tableCache.getTable(tableDefinition.getTableName(prefix, scanRequest.getSuffix()));
+        TypedProjection projection = getProjection(tableDefinition, scanRequest.getProjection(), scanRequest.getProjectionExpression());
+        ScanSpec scanspec = getScanSpec(scanRequest, projection);
+
+        if (scanRequest.getReadRateLimiter() != null) {
+            if (scanRequest.getReadRateLimiter() != null) {
+                scanRequest.getReadRateLimiter().init(table, scanRequest.getIndex() == null ? null : scanRequest.getIndex().getName());
+                scanRequest.getReadRateLimiter().acquire();
+            }
+        }
+
+        final ItemCollection<ScanOutcome> scanItems;
+        if (scanRequest.getIndex() != null) {
+            scanItems = table.getIndex(scanRequest.getIndex().getName()).scan(scanspec);
+        } else {
+            scanItems = table.scan(scanspec);
+        }
+
+        scanItems.registerLowLevelResultListener(getScanResultListener(scanRequest, scanRequest.getReadRateLimiter(), new AtomicInteger()));
+
+        Function<Item, T> itemLoader = getScanItemLoader(scanRequest, projection, scanRequest.getSuffix());
         ItemIterator<T> itemIterator = new ItemIterator<T>(scanItems) {
             @Override
             public T next() {
-                DynamapLoadService dynamapBeanLoader = new DynamapLoadService(schemaRegistry, dynamapBeanFactory, objectMapper, prefix, tableCache)
-                        .skipMigration(scanRequest.getProjectionExpression() != null)
-                        .writeBack(scanRequest.isWriteMigrationChange())
-                        .withMigrationContext(scanRequest.getMigrationContext())
-                        .withSuffix(scanRequest.getSuffix());
-                return dynamapBeanLoader.loadItem(iterator.next(), scanRequest.getResultClass());
+                return itemLoader.apply(nextItem());
             }
 
             @Override
@@ -581,12 +1198,143 @@ public class Dynamap {
             }
         };
 
+        if (scanRequest.getPrefetchDepth() > 0) {
+            itemIterator.withPrefetch(scanRequest.getPrefetchDepth(), getPrefetchExecutor());
+        }
         return new ScanResult<>(itemIterator);
     }
 
+    /**
+     * Counts the items matching a query with Select.COUNT, paging through the results without returning or decoding
+     * any item. Every shard of a sharded index is counted, concurrently. The max result size of the request is ignored.
+     */
+    public <T extends DynamapRecordBean> CountResult count(QueryRequest<T> queryRequest) {
+        TableDefinition tableDefinition = schemaRegistry.getTableDefinition(queryRequest.getResultClass());
+        Table table = tableCache.getTable(tableDefinition.getTableName(prefix, queryRequest.getSuffix()));
+        AtomicInteger totalProgress = new AtomicInteger();
+        List<Callable<CountResult>> counts = new ArrayList<>();
+        if (queryRequest.getIndex() != null) {
+            com.n3twork.dynamap.model.Index indexDef = getIndexDefinition(tableDefinition, queryRequest);
+            Index index = table.getIndex(indexDef.getIndexName());
+            initRateLimiter(queryRequest.getReadRateLimiter(), table, indexDef.getIndexName());
+            if (indexDef.isSharded()) {
+                if (queryRequest.getKeyConditionExpression() != null || queryRequest.getHashKeyValue() == null) {
+                    throw new IllegalArgumentException("Sharded index " + indexDef.getIndexName() + " can only be queried by hash key value");
+                }
+                for (int shard = 0; shard < indexDef.getShards(); shard++) {
+                    QuerySpec querySpec = getCountQuerySpec(queryRequest, tableDefinition,
+                            indexDef.getShardAttributeName(), IndexShards.shardedValue(queryRequest.getHashKeyValue(), shard));
+                    counts.add(() -> countQuery(index.query(querySpec), queryRequest, totalProgress));
+                }
+            } else {
+                QuerySpec querySpec = getCountQuerySpec(queryRequest, tableDefinition, getQueryHashKey(tableDefinition, queryRequest), queryRequest.getHashKeyValue());
+                counts.add(() -> countQuery(index.query(querySpec), queryRequest, totalProgress));
+            }
+        } else {
+            initRateLimiter(queryRequest.getReadRateLimiter(), table, null);
+            QuerySpec querySpec = getCountQuerySpec(queryRequest, tableDefinition, getQueryHashKey(tableDefinition, queryRequest), queryRequest.getHashKeyValue());
+            counts.add(() -> countQuery(table.query(querySpec), queryRequest, totalProgress));
+        }
+        return CountResult.sum(callConcurrently(counts, counts.size()));
+    }
+
+    /**
+     * Counts the items matching a scan with Select.COUNT, paging through the results without returning or decoding
+     * any item. When the request sets total segments but no segment, all the segments are scanned concurrently. The max
+     * result size of the request is ignored.
+     */
+    public <T extends DynamapRecordBean> CountResult count(ScanRequest<T> scanRequest) {
+        TableDefinition tableDefinition = schemaRegistry.getTableDefinition(scanRequest.getResultClass());
+        Table table = tableCache.getTable(tableDefinition.getTableName(prefix, scanRequest.getSuffix()));
+        String indexName = scanRequest.getIndex() == null ? null : scanRequest.getIndex().getName();
+        initRateLimiter(scanRequest.getReadRateLimiter(), table, indexName);
+
+        AtomicInteger totalProgress = new AtomicInteger();
+        List<Callable<CountResult>> counts = new ArrayList<>();
+        if (scanRequest.getSegment() == null && scanRequest.getTotalSegments() != null) {
+            for (int segment = 0; segment < scanRequest.getTotalSegments(); segment++) {
+                ScanSpec scanSpec = getCountScanSpec(scanRequest).withSegment(segment).withTotalSegments(scanRequest.getTotalSegments());
+                counts.add(() -> countScan(indexName == null ? table.scan(scanSpec) : table.getIndex(indexName).scan(scanSpec), scanRequest, totalProgress));
+            }
+        } else {
+            ScanSpec scanSpec = getCountScanSpec(scanRequest);
+            counts.add(() -> countScan(indexName == null ? table.scan(scanSpec) : table.getIndex(indexName).scan(scanSpec), scanRequest, totalProgress));
+        }
+        return CountResult.sum(callConcurrently(counts, counts.size()));
+    }
+
+    private <T extends DynamapRecordBean> QuerySpec getCountQuerySpec(QueryRequest<T> queryRequest, TableDefinition tableDefinition, String hashKeyName, Object hashKeyValue) {
+        QuerySpec querySpec = getQuerySpec(queryRequest, tableDefinition, null, hashKeyName, hashKeyValue)
+                .withSelect(Select.COUNT)
+                .withProjectionExpression(null)
+                .withMaxResultSize(null)
+                .withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL);
+        return querySpec.withNameMap(namesUsedBy(querySpec.getNameMap(), querySpec.getKeyConditionExpression(), querySpec.getFilterExpression()));
+    }
+
+    private <T extends DynamapRecordBean> ScanSpec getCountScanSpec(ScanRequest<T> scanRequest) {
+        ScanSpec scanSpec = getScanSpec(scanRequest, null)
+                .withSelect(Select.COUNT)
+                .withProjectionExpression(null)
+                .withMaxResultSize(null)
+                .withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL);
+        return scanSpec.withNameMap(namesUsedBy(scanSpec.getNameMap(), scanSpec.getFilterExpression()));
+    }
+
+    // DynamoDB rejects attribute names that no expression uses, such as those of a projection a count drops
+    private static Map<String, String> namesUsedBy(Map<String, String> names, String... expressions) {
+        if (names == null) {
+            return null;
+        }
+        Map<String, String> used = new HashMap<>();
+        for (Map.Entry<String, String> name : names.entrySet()) {
+            Pattern pattern = Pattern.compile(Pattern.quote(name.getKey()) + "(?![A-Za-z0-9_])");
+            if (Arrays.stream(expressions).anyMatch(e -> e != null && pattern.matcher(e).find())) {
+                used.put(name.getKey(), name.getValue());
+            }
+        }
+        return used.isEmpty() ? null : used;
+    }
+
+    private <T extends DynamapRecordBean> CountResult countQuery(ItemCollection<QueryOutcome> items, QueryRequest<T> queryRequest, AtomicInteger totalProgress) {
+        items.registerLowLevelResultListener(getQueryResultListener(queryRequest, queryRequest.getReadRateLimiter(), totalProgress));
+        long count = 0;
+        long scannedCount = 0;
+        double consumedCapacity = 0;
+        for (Page<Item, QueryOutcome> page : items.pages()) {
+            com.amazonaws.services.dynamodbv2.model.QueryResult result = page.getLowLevelResult().getQueryResult();
+            count += result.getCount();
+            scannedCount += result.getScannedCount();
+            if (result.getConsumedCapacity() != null) {
+                consumedCapacity += result.getConsumedCapacity().getCapacityUnits();
+            }
+        }
+        return new CountResult(count, scannedCount, consumedCapacity);
+    }
+
+    private <T extends DynamapRecordBean> CountResult countScan(ItemCollection<ScanOutcome> items, ScanRequest<T> scanRequest, AtomicInteger totalProgress) {
+        items.registerLowLevelResultListener(getScanResultListener(scanRequest, scanRequest.getReadRateLimiter(), totalProgress));
+        long count = 0;
+        long scannedCount = 0;
+        double consumedCapacity = 0;
+        for (Page<Item, ScanOutcome> page : items.pages()) {
+            com.amazonaws.services.dynamodbv2.model.ScanResult result = page.getLowLevelResult().getScanResult();
+            count += result.getCount();
+            scannedCount += result.getScannedCount();
+            if (result.getConsumedCapacity() != null) {
+                consumedCapacity += result.getConsumedCapacity().getCapacityUnits();
+            }
+        }
+        return new CountResult(count, scannedCount, consumedCapacity);
+    }
+
     public void save(SaveParams saveParams) {
         TableDefinition tableDefinition = schemaRegistry.getTableDefinition(saveParams.getDynamapRecordBean().getClass());
         new DynamapSaveService(objectMapper, prefix, tableCache)
+                .withHotKeyTracker(hotKeyTracker)
+                .withItemSnapshots(itemSnapshots)
+                .withItemSizeStats(itemSizeStats)
+                .withChunkStore(chunkStore)
                 .saveBean(saveParams.getDynamapRecordBean(),
                         tableDefinition,
                         !saveParams.isDisableOverwrite(),
@@ -600,45 +1348,194 @@ public class Dynamap {
     }
 
     public <T extends DynamapPersisted<U>, U extends RecordUpdates<T>, R extends UpdateResult<T, U>> R update(UpdateParams<T> updateParams) {
+        return update(updateParams, updateParams.getWriteLimiter(), updateParams.getDynamapReturnValue());
+    }
+
+    /**
+     * Runs many independent updates concurrently, at most BatchUpdateParams.getParallelism() at a time. Each update is
+     * executed as a separate UpdateItem call; a failed update is reported in its outcome and does not abort the batch.
+     *
+     * @return the outcome of each update, in the order of the update params
+     */
+    public <T extends DynamapPersisted<U>, U extends RecordUpdates<T>, R extends UpdateResult<T, U>> List<UpdateOutcome<R>> batchUpdate(BatchUpdateParams<T> batchUpdateParams) {
+        List<UpdateParams<T>> updateParamsList = batchUpdateParams.getUpdateParams();
+        Map<String, DynamoRateLimiter> writeLimitersByTable = new HashMap<>();
+        if (batchUpdateParams.getWriteLimiters() != null) {
+            for (Map.Entry<Class, DynamoRateLimiter> entry : batchUpdateParams.getWriteLimiters().entrySet()) {
+                writeLimitersByTable.put(schemaRegistry.getTableDefinition(entry.getKey()).getTableName(), entry.getValue());
+            }
+        }
+
+        UpdateOutcome<R>[] outcomes = new UpdateOutcome[updateParamsList.size()];
+        AtomicInteger next = new AtomicInteger();
+        Runnable worker = () -> {
+            int i;
+            while ((i = next.getAndIncrement()) < outcomes.length) {
+                UpdateParams<T> updateParams = updateParamsList.get(i);
+                DynamoRateLimiter writeLimiter = updateParams.getWriteLimiter();
+                if (writeLimiter == null) {
+                    writeLimiter = writeLimitersByTable.get(schemaRegistry.getTableDefinition(updateParams.getUpdates().getTableName()).getTableName());
+                }
+                DynamapReturnValue returnValue = batchUpdateParams.getDynamapReturnValue() == null ? updateParams.getDynamapReturnValue() : batchUpdateParams.getDynamapReturnValue();
+                try {
+                    R result = update(updateParams, writeLimiter, returnValue);
+                    outcomes[i] = new UpdateOutcome<>(updateParams, UpdateOutcome.Status.UPDATED, result, null);
+                } catch (ConditionalCheckFailedException e) {
+                    outcomes[i] = new UpdateOutcome<>(updateParams, UpdateOutcome.Status.CONDITIONAL_CHECK_FAILED, null, e);
+                } catch (RuntimeException e) {
+                    logger.debug("Batch update failed for hash key {}", updateParams.getUpdates().getHashKeyValue(), e);
+                    outcomes[i] = new UpdateOutcome<>(updateParams, UpdateOutcome.Status.FAILED, null, e);
+                }
+            }
+        };
+
+        int workers = Math.min(batchUpdateParams.getParallelism(), outcomes.length);
+        List<Future<?>> futures = new ArrayList<>(workers);
+        for (int i = 0; i < workers; i++) {
+            futures.add(getBatchExecutor().submit(worker));
+        }
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(f -> f.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            futures.forEach(f -> f.cancel(true));
+            throw new RuntimeException(e.getCause());
+        }
+        return Arrays.asList(outcomes);
+    }
+
+    /**
+     * Reads the object with a consistent read, builds updates from it with the update function and applies them. If the
+     * update fails a conditional check, e.g. the optimistic locking revision check because of a concurrent write, the
+     * object is re-read and the update re-built and retried with jittered exponential backoff, up to the maximum number
+     * of attempts. Conflicts are counted per table, see getConflictStats().
+     *
+     * @return the update result, or null if the update function returned null
+     * @throws ConditionalCheckFailedException if the update still conflicts after the maximum number of attempts
+     * @throws IllegalArgumentException if the get object request has a projection
+     */
+    public <B extends DynamapRecordBean, T extends DynamapPersisted<U>, U extends RecordUpdates<T>, R extends UpdateResult<T, U>> R updateWithRetry(UpdateWithRetryParams<B, ? extends U> updateWithRetryParams) {
+        GetObjectParams<B> callerParams = updateWithRetryParams.getGetObjectParams();
+        GetObjectRequest<B> callerRequest = callerParams.getGetObjectRequest();
+        // a partial object would let the updates be built from fields that were not read
+        if (callerRequest.getProjection() != null) {
+            throw new IllegalArgumentException("updateWithRetry reads the full object, its get object request cannot have a projection");
+        }
+        // reads are consistent, on a copy so that the caller's request is left unchanged
+        GetObjectRequest<B> getObjectRequest = new GetObjectRequest<>(callerRequest.getResultClass())
+                .withHashKeyValue(callerRequest.getHashKeyValue())
+                .withRangeKeyValue(callerRequest.getRangeKeyValue())
+                .withSuffix(callerRequest.getSuffix())
+                .withConsistentRead(true);
+        GetObjectParams<B> getObjectParams = new GetObjectParams<>(getObjectRequest)
+                .withRateLimiters(callerParams.getRateLimiters())
+                .withMigrationContext(callerParams.getMigrationContext())
+                .withWriteMigrationChange(callerParams.isWriteMigrationChange());
+        TableDefinition tableDefinition = schemaRegistry.getTableDefinition(getObjectRequest.getResultClass());
+        ConflictStats stats = conflictStats.computeIfAbsent(tableDefinition.getTableName(), t -> new ConflictStats());
+
+        for (int attempt = 1; ; attempt++) {
+            B current = getObject(getObjectParams);
+            U updates = updateWithRetryParams.getUpdateFunction().apply(current);
+            if (updates == null) {
+                return null;
+            }
+            UpdateParams<T> updateParams = new UpdateParams<>(updates).withSuffix(getObjectRequest.getSuffix());
+            stats.recordAttempt();
+            try {
+                return update(updateParams, updateWithRetryParams.getWriteLimiter(), updateWithRetryParams.getDynamapReturnValue());
+            } catch (ConditionalCheckFailedException e) {
+                stats.recordConflict();
+                if (attempt >= updateWithRetryParams.getMaxAttempts()) {
+                    stats.recordExhausted();
+                    throw e;
+                }
+                logger.debug("Conflict updating {} {}, attempt {}", tableDefinition.getTableName(), getObjectRequest.getHashKeyValue(), attempt);
+                backoff(attempt, updateWithRetryParams.getBaseBackoffMillis(), updateWithRetryParams.getMaxBackoffMillis());
+            }
+        }
+    }
+
+    /**
+     * @return conflict counts of updateWithRetry, keyed by table name
+     */
+    public Map<String, ConflictStats> getConflictStats() {
+        return Collections.unmodifiableMap(conflictStats);
+    }
+
+    private void backoff(int attempt, long baseBackoffMillis, long maxBackoffMillis) {
+        long ceiling = Math.min(maxBackoffMillis, baseBackoffMillis << Math.min(attempt - 1, 30));
+        if (ceiling <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    private <T extends DynamapPersisted<U>, U extends RecordUpdates<T>, R extends UpdateResult<T, U>> R update(UpdateParams<T> updateParams, DynamoRateLimiter writeLimiter, DynamapReturnValue returnValue) {
         RecordUpdates<T> updates = updateParams.getUpdates();
-        DynamoRateLimiter writeLimiter = updateParams.getWriteLimiter();
         String suffix = updateParams.getSuffix();
 
         TableDefinition tableDefinition = schemaRegistry.getTableDefinition(updates.getTableName());
-        UpdateItemSpec updateItemSpec = getUpdateItemSpec(updates, tableDefinition, updateParams.getDynamapReturnValue());
+        UpdateItemSpec updateItemSpec = getUpdateItemSpec(updates, tableDefinition, returnValue);
         Table table = tableCache.getTable(tableDefinition.getTableName(prefix, suffix));
 
         logger.debug("About to submit DynamoDB Update: Update expression: {}, Conditional expression: {}, Values {}, Names: {}", updateItemSpec.getUpdateExpression(), updateItemSpec.getConditionExpression(), updateItemSpec.getValueMap(), updateItemSpec.getNameMap());
+        HotKeyTracker hotKeyTracker = this.hotKeyTracker;
         try {
             if (writeLimiter != null) {
                 writeLimiter.init(table);
                 writeLimiter.acquire();
+            }
+            if (writeLimiter != null || hotKeyTracker != null) {
                 updateItemSpec.withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL);
             }
 
-            UpdateItemOutcome updateItemOutcome = table.updateItem(updateItemSpec);
+            UpdateItemOutcome updateItemOutcome;
+            try {
+                updateItemOutcome = table.updateItem(updateItemSpec);
+            } catch (ProvisionedThroughputExceededException e) {
+                if (hotKeyTracker != null) {
+                    hotKeyTracker.recordThrottle(table.getTableName(), updates.getHashKeyValue());
+                }
+                throw e;
+            }
+            ConsumedCapacity consumedCapacity = updateItemOutcome.getUpdateItemResult().getConsumedCapacity();
+            if (hotKeyTracker != null && consumedCapacity != null) {
+                hotKeyTracker.recordWrite(table.getTableName(), updates.getHashKeyValue(), consumedCapacity.getCapacityUnits());
+            }
 
             Class updateResultClass = Class.forName(tableDefinition.getPackageName() + "." + tableDefinition.getType() + "UpdateResultBean");
             Constructor<R> constructor = updateResultClass.getConstructors()[0];
 
-            if (updateParams.getDynamapReturnValue() == DynamapReturnValue.UPDATED_NEW && updateItemOutcome.getItem() == null) {
+            if (returnValue == DynamapReturnValue.UPDATED_NEW && updateItemOutcome.getItem() == null) {
                 // nothing changed
                 return constructor.newInstance(updates, null);
             }
 
-            if (logger.isDebugEnabled()) {
+            if (logger.isDebugEnabled() && updateItemOutcome.getItem() != null) {
                 logger.debug("UpdateItemOutcome: " + updateItemOutcome.getItem().toJSONPretty());
             }
             if (writeLimiter != null) {
                 writeLimiter.setConsumedCapacity(updateItemOutcome.getUpdateItemResult().getConsumedCapacity());
             }
 
-            if (updateParams.getDynamapReturnValue() == DynamapReturnValue.NONE) {
+            if (returnValue == DynamapReturnValue.NONE) {
                 return null;
             }
 
             Class beanClass = Class.forName(tableDefinition.getPackageName() + "." + tableDefinition.getType() + "Bean");
-            T bean = (T) dynamapBeanFactory.asDynamapBean(updateItemOutcome.getItem(), beanClass);
+            T bean = (T) dynamapBeanFactory.asDynamapBean(updateItemOutcome.getItem(), beanClass,
+                    chunkStore.getLoader(table.getTableName(), tableDefinition, updateItemOutcome.getItem()));
             return constructor.newInstance(updates, bean);
 
 
@@ -655,10 +1552,28 @@ public class Dynamap {
         }
     }
 
+    private static class GetItemGroup {
+        private final String tableName;
+        private final TableDefinition tableDefinition;
+        private final GetObjectRequest getObjectRequest;
+        private final TypedProjection projection;
+        private final List<PrimaryKey> primaryKeys = new ArrayList<>();
+        private final Set<List<Object>> keys = new HashSet<>();
+        private int next;
+
+        GetItemGroup(String tableName, TableDefinition tableDefinition, GetObjectRequest getObjectRequest, TypedProjection projection) {
+            this.tableName = tableName;
+            this.tableDefinition = tableDefinition;
+            this.getObjectRequest = getObjectRequest;
+            this.projection = projection;
+        }
+    }
+
     private static class GetItemInfo {
         public TableKeysAndAttributes keysAndAttributes;
         public TableDefinition tableDefinition;
         public GetObjectRequest getObjectRequest;
+        public TypedProjection projection;
         public Table table;
     }
 
@@ -670,8 +1585,21 @@ public class Dynamap {
             tableKeysAndAttributes[index++] = getItemInfo.keysAndAttributes;
         }
 
+        HotKeyTracker hotKeyTracker = this.hotKeyTracker;
         initRateLimiterAndAcquire(rateLimiters, false);
-        BatchGetItemOutcome outcome = dynamoDB.batchGetItem(ReturnConsumedCapacity.TOTAL, tableKeysAndAttributes);
+        BatchGetItemOutcome outcome;
+        try {
+            outcome = dynamoDB.batchGetItem(ReturnConsumedCapacity.TOTAL, tableKeysAndAttributes);
+        } catch (ProvisionedThroughputExceededException e) {
+            if (hotKeyTracker != null) {
+                for (GetItemInfo getItemInfo : queryInfos.values()) {
+                    for (PrimaryKey primaryKey : getItemInfo.keysAndAttributes.getPrimaryKeys()) {
+                        hotKeyTracker.recordThrottle(getItemInfo.keysAndAttributes.getTableName(), getHashKeyValue(getItemInfo.tableDefinition, primaryKey));
+                    }
+                }
+            }
+            throw e;
+        }
 
         int unprocessedKeyCount;
         //todo: need to add exponential backoff for unprocessed items and a termination condition
@@ -680,6 +1608,9 @@ public class Dynamap {
             if (outcome.getBatchGetItemResult().getConsumedCapacity() != null) {
                 for (ConsumedCapacity consumedCapacity : outcome.getBatchGetItemResult().getConsumedCapacity()) {
                     setConsumedUnits(rateLimiters, consumedCapacity, false);
+                    if (hotKeyTracker != null) {
+                        recordReads(hotKeyTracker, queryInfos.get(consumedCapacity.getTableName()), consumedCapacity);
+                    }
                 }
             }
 
@@ -695,6 +1626,9 @@ public class Dynamap {
 
             unprocessedKeyCount = unprocessedKeys.size();
             if (unprocessedKeyCount != 0) {
+                if (hotKeyTracker != null) {
+                    recordUnprocessed(hotKeyTracker, queryInfos, unprocessedKeys);
+                }
                 initRateLimiterAndAcquire(rateLimiters, false);
                 if (rateLimiters != null) {
                     outcome = dynamoDB.batchGetItemUnprocessed(ReturnConsumedCapacity.TOTAL, unprocessedKeys);
@@ -715,6 +1649,74 @@ public class Dynamap {
 
     }
 
+    // the consumed capacity of a batch get is reported per table, so it is spread evenly over the keys requested
+    private void recordReads(HotKeyTracker hotKeyTracker, GetItemInfo getItemInfo, ConsumedCapacity consumedCapacity) {
+        if (getItemInfo == null || consumedCapacity.getCapacityUnits() == null) {
+            return;
+        }
+        List<PrimaryKey> primaryKeys = getItemInfo.keysAndAttributes.getPrimaryKeys();
+        double unitsPerKey = consumedCapacity.getCapacityUnits() / primaryKeys.size();
+        for (PrimaryKey primaryKey : primaryKeys) {
+            hotKeyTracker.recordRead(consumedCapacity.getTableName(), getHashKeyValue(getItemInfo.tableDefinition, primaryKey), unitsPerKey);
+        }
+    }
+
+    // keys left unprocessed by a batch get have usually been throttled
+    private void recordUnprocessed(HotKeyTracker hotKeyTracker, Map<String, GetItemInfo> queryInfos, Map<String, KeysAndAttributes> unprocessedKeys) {
+        for (Map.Entry<String, KeysAndAttributes> entry : unprocessedKeys.entrySet()) {
+            GetItemInfo getItemInfo = queryInfos.get(entry.getKey());
+            if (getItemInfo == null) {
+                continue;
+            }
+            String hashKeyFieldName = getItemInfo.tableDefinition.getField(getItemInfo.tableDefinition.getHashKey()).getDynamoName();
+            for (Map<String, AttributeValue> key : entry.getValue().getKeys()) {
+                AttributeValue hashKeyValue = key.get(hashKeyFieldName);
+                if (hashKeyValue != null) {
+                    hotKeyTracker.recordThrottle(entry.getKey(), hashKeyValue.getS() != null ? hashKeyValue.getS() : hashKeyValue.getN());
+                }
+            }
+        }
+    }
+
+    private Object getHashKeyValue(TableDefinition tableDefinition, PrimaryKey primaryKey) {
+        String hashKeyFieldName = tableDefinition.getField(tableDefinition.getHashKey()).getDynamoName();
+        for (KeyAttribute keyAttribute : primaryKey.getComponents()) {
+            if (keyAttribute.getName().equals(hashKeyFieldName)) {
+                return keyAttribute.getValue();
+            }
+        }
+        return null;
+    }
+
+    private DynamapLoadService newLoadService() {
+        return new DynamapLoadService(schemaRegistry, dynamapBeanFactory, objectMapper, prefix, tableCache).withItemSnapshots(itemSnapshots)
+                .withChunkStore(chunkStore);
+    }
+
+    private synchronized ExecutorService getBatchExecutor() {
+        if (batchExecutor == null) {
+            batchExecutor = Executors.newCachedThreadPool(new ThreadFactoryBuilder().setNameFormat("dynamap-batch-%d").setDaemon(true).build());
+        }
+        return batchExecutor;
+    }
+
+    private synchronized ExecutorService getPrefetchExecutor() {
+        if (prefetchExecutor == null) {
+            prefetchExecutor = Executors.newCachedThreadPool(new ThreadFactoryBuilder().setNameFormat("dynamap-prefetch-%d").setDaemon(true).build());
+        }
+        return prefetchExecutor;
+    }
+
+    private TypedProjection getProjection(TableDefinition tableDefinition, List<DynamapField> fields, String projectionExpression) {
+        if (fields == null) {
+            return null;
+        }
+        if (projectionExpression != null) {
+            throw new IllegalArgumentException("A projection expression cannot be combined with a typed projection");
+        }
+        return TypedProjection.of(tableDefinition, fields);
+    }
+
     private void setConsumedUnits(Map<String, ReadWriteRateLimiterPair> rateLimiters, ConsumedCapacity consumedCapacity, boolean write) {
         if (rateLimiters == null) {
             return;
@@ -808,7 +1810,12 @@ public class Dynamap {
                 deleteItemSpec.withValueMap(deleteRequest.getValues());
             }
         }
-        table.deleteItem(deleteItemSpec);
+        if (tableDefinition.getChunkedFields().isEmpty()) {
+            table.deleteItem(deleteItemSpec);
+        } else {
+            DeleteItemOutcome outcome = table.deleteItem(deleteItemSpec.withReturnValues(ReturnValue.ALL_OLD));
+            chunkStore.deleteReplacedChunks(table.getTableName(), tableDefinition, outcome.getItem(), null);
+        }
     }
 
     public void batchDelete(BatchDeleteRequest batchDeleteRequest) {
@@ -817,6 +1824,8 @@ public class Dynamap {
         for (List<DeleteRequest> deleteRequests : partitions) {
 
             Map<String, TableWriteItems> tableWriteItems = new HashMap<>();
+            Map<String, TableDefinition> chunkedTables = new HashMap<>();
+            Map<String, List<Map<String, AttributeValue>>> chunkedKeys = new HashMap<>();
             for (DeleteRequest deleteRequest : deleteRequests) {
                 TableDefinition tableDefinition = schemaRegistry.getTableDefinition(deleteRequest.getResultClass());
                 Field hashField = tableDefinition.getField(tableDefinition.getHashKey());
@@ -832,11 +1841,27 @@ public class Dynamap {
                     Field rangeField = tableDefinition.getField(tableDefinition.getRangeKey());
                     writeItems.addHashAndRangePrimaryKeysToDelete(hashField.getDynamoName(), rangeField.getDynamoName(),
                             deleteRequest.getHashKeyValue(), deleteRequest.getRangeKeyValue());
+                    if (!tableDefinition.getChunkedFields().isEmpty()) {
+                        chunkedTables.put(tableName, tableDefinition);
+                        chunkedKeys.computeIfAbsent(tableName, t -> new ArrayList<>()).add(ImmutableMap.of(
+                                hashField.getDynamoName(), ItemUtils.toAttributeValue(deleteRequest.getHashKeyValue()),
+                                rangeField.getDynamoName(), ItemUtils.toAttributeValue(deleteRequest.getRangeKeyValue())));
+                    }
                 } else {
                     writeItems.addHashOnlyPrimaryKeysToDelete(hashField.getDynamoName(), deleteRequest.getHashKeyValue());
                 }
             }
-            doBatchWriteItem(batchDeleteRequest.getRateLimiters(), tableWriteItems);
+            // the manifests of items with chunked fields are read before the items are deleted, and their chunks deleted after them
+            Map<String, List<Item>> chunkedItems = new HashMap<>();
+            for (Map.Entry<String, List<Map<String, AttributeValue>>> entry : chunkedKeys.entrySet()) {
+                chunkedItems.put(entry.getKey(), chunkStore.getChunkedItems(entry.getKey(), chunkedTables.get(entry.getKey()), entry.getValue()));
+            }
+            doBatchWriteItem(batchDeleteRequest.getRateLimiters(), tableWriteItems, null);
+            for (Map.Entry<String, List<Item>> entry : chunkedItems.entrySet()) {
+                for (Item item : entry.getValue()) {
+                    chunkStore.deleteReplacedChunks(entry.getKey(), chunkedTables.get(entry.getKey()), item, null);
+                }
+            }
         }
     }
 
@@ -858,14 +1883,18 @@ public class Dynamap {
         for (List<T> batch : objectsBatch) {
             logger.debug("Sending batch to save of size: {}", batch.size());
             Map<String, TableWriteItems> tableWriteItems = new HashMap<>();
+            Map<String, Integer> estimatedUnits = new HashMap<>();
 
             for (DynamapRecordBean object : batch) {
                 TableDefinition tableDefinition = schemaRegistry.getTableDefinition(object.getClass());
-                Item item = new DynamoItemFactory(objectMapper).asDynamoItem(object, tableDefinition);
+                Item item = ChunkStore.checkNoChunks(newItemFactory().asDynamoItem(object, tableDefinition), tableDefinition, "batchSave");
 
                 String tableName = tableDefinition.getTableName(prefix, batchSaveParams.getSuffix());
                 TableWriteItems writeItems = tableWriteItems.getOrDefault(tableName, new TableWriteItems(tableName));
                 tableWriteItems.put(tableName, writeItems.addItemToPut(item));
+                if (writeLimiterMapByTable != null) {
+                    estimatedUnits.merge(tableName, ItemSizeCalculator.writeUnits(item, tableDefinition), Integer::sum);
+                }
             }
 
             if (writeLimiterMapByTable != null) {
@@ -873,14 +1902,201 @@ public class Dynamap {
                     DynamoRateLimiter rateLimiter = entry.getValue();
                     logger.debug("rateLimiter: about to acquire: {} for table: {}", entry.getValue().getPermitsToConsume(), entry.getKey());
                     rateLimiter.init(tableCache.getTable(entry.getKey()));
-                    rateLimiter.acquire();
+                    Integer estimate = estimatedUnits.get(entry.getKey());
+                    if (estimate != null) {
+                        rateLimiter.acquire(estimate);
+                    } else {
+                        rateLimiter.acquire();
+                    }
                 }
             }
-            doBatchWriteItem(writeLimiterMapByTable, tableWriteItems);
+            doBatchWriteItem(writeLimiterMapByTable, tableWriteItems, estimatedUnits);
         }
     }
 
-    private void doBatchWriteItem(Map<String, DynamoRateLimiter> writeLimiterMap, Map<String, TableWriteItems> tableWriteItems) {
+    /**
+     * Loads objects into the table of the request with concurrent batch writes, without materializing the input. Objects
+     * are taken from the iterator a batch at a time and encoded on the writing threads, so memory use is bounded by the
+     * number of batches in flight. Use stream.iterator() to load a Stream.
+     */
+    public <T extends DynamapRecordBean> BulkLoadResult bulkLoad(BulkLoadRequest<T> bulkLoadRequest, Iterator<? extends T> objects) {
+        TableDefinition tableDefinition = schemaRegistry.getTableDefinition(bulkLoadRequest.getResultClass());
+        DynamoItemFactory dynamoItemFactory = newItemFactory();
+        String tableName = tableDefinition.getTableName(prefix, bulkLoadRequest.getSuffix());
+        return doBulkLoad(tableName, tableDefinition, bulkLoadRequest, objects,
+                (T object) -> new WriteRequest(new PutRequest(ItemUtils.toAttributeValues(
+                        ChunkStore.checkNoChunks(dynamoItemFactory.asDynamoItem(object, tableDefinition), tableDefinition, "bulkLoad")))));
+    }
+
+    /**
+     * Loads raw items, for example those of an ExportFileReader, into the table of the request. See bulkLoad.
+     */
+    public <T extends DynamapRecordBean> BulkLoadResult bulkLoadItems(BulkLoadRequest<T> bulkLoadRequest, Iterator<Map<String, AttributeValue>> items) {
+        TableDefinition tableDefinition = schemaRegistry.getTableDefinition(bulkLoadRequest.getResultClass());
+        String tableName = tableDefinition.getTableName(prefix, bulkLoadRequest.getSuffix());
+        return doBulkLoad(tableName, tableDefinition, bulkLoadRequest, items, item -> new WriteRequest(new PutRequest(item)));
+    }
+
+    /**
+     * Deletes the items selected by a query or scan. Only the primary key attributes are read and items are never
+     * decoded or migrated. Keys are streamed into concurrent batch deletes, so memory use does not depend on the number
+     * of items deleted. The chunks of chunked fields are deleted along with their items and are counted as deleted items.
+     */
+    public <T extends DynamapRecordBean> BulkLoadResult deleteWhere(DeleteWhereParams<T> deleteWhereParams) {
+        TableDefinition tableDefinition = schemaRegistry.getTableDefinition(deleteWhereParams.getResultClass());
+        String tableName = tableDefinition.getTableName(prefix, deleteWhereParams.getSuffix());
+        Table table = tableCache.getTable(tableName);
+
+        Map<String, String> keyNames = new LinkedHashMap<>();
+        keyNames.put("#dk0", tableDefinition.getField(tableDefinition.getHashKey()).getDynamoName());
+        if (tableDefinition.getRangeKey() != null) {
+            keyNames.put("#dk1", tableDefinition.getField(tableDefinition.getRangeKey()).getDynamoName());
+        }
+        List<String> keyAttributes = new ArrayList<>(keyNames.values());
+        // the manifests of chunked fields are read along with the keys, so that the chunks of the items are deleted too
+        List<Field> chunkedFields = tableDefinition.getChunkedFields();
+        for (int i = 0; i < chunkedFields.size(); i++) {
+            keyNames.put("#dkc" + i, chunkedFields.get(i).getDynamoName());
+        }
+        if (!chunkedFields.isEmpty()) {
+            keyNames.put("#dkch", ChunkStore.CHUNK_ATTRIBUTE);
+        }
+        String keyProjection = String.join(", ", keyNames.keySet());
+
+        final ItemCollection<?> keys;
+        QueryRequest<T> queryRequest = deleteWhereParams.getQueryRequest();
+        if (queryRequest != null) {
+            com.n3twork.dynamap.model.Index indexDef = queryRequest.getIndex() == null ? null : getIndexDefinition(tableDefinition, queryRequest);
+            if (indexDef != null && indexDef.isSharded()) {
+                throw new IllegalArgumentException("deleteWhere cannot query sharded index " + indexDef.getIndexName());
+            }
+            // the hash key is sent as a key condition expression, which can be combined with the key projection
+            QuerySpec querySpec = getQuerySpec(queryRequest, tableDefinition, null, getQueryHashKey(tableDefinition, queryRequest), queryRequest.getHashKeyValue());
+            Map<String, String> names = new HashMap<>(keyNames);
+            if (querySpec.getNameMap() != null) {
+                names.putAll(querySpec.getNameMap());
+            }
+            querySpec.withProjectionExpression(keyProjection)
+                    .withNameMap(names)
+                    .withSelect(Select.SPECIFIC_ATTRIBUTES);
+            ItemCollection<QueryOutcome> items;
+            if (indexDef != null) {
+                initRateLimiter(queryRequest.getReadRateLimiter(), table, indexDef.getIndexName());
+                items = table.getIndex(indexDef.getIndexName()).query(querySpec);
+            } else {
+                initRateLimiter(queryRequest.getReadRateLimiter(), table, null);
+                items = table.query(querySpec);
+            }
+            DynamoRateLimiter readLimiter = queryRequest.getReadRateLimiter();
+            if (readLimiter != null) {
+                items.registerLowLevelResultListener(new LowLevelResultListener<QueryOutcome>() {
+                    @Override
+                    public void onLowLevelResult(QueryOutcome queryOutcome) {
+                        readLimiter.setConsumedCapacity(queryOutcome.getQueryResult().getConsumedCapacity());
+                        readLimiter.acquire();
+                    }
+                });
+            }
+            keys = items;
+        } else {
+            ScanRequest<T> scanRequest = deleteWhereParams.getScanRequest();
+            ScanSpec scanSpec = getScanSpec(scanRequest, null);
+            Map<String, String> names = new HashMap<>(keyNames);
+            if (scanSpec.getNameMap() != null) {
+                names.putAll(scanSpec.getNameMap());
+            }
+            scanSpec.withProjectionExpression(keyProjection)
+                    .withNameMap(names)
+                    .withSelect(Select.SPECIFIC_ATTRIBUTES);
+            String indexName = scanRequest.getIndex() == null ? null : scanRequest.getIndex().getName();
+            initRateLimiter(scanRequest.getReadRateLimiter(), table, indexName);
+            ItemCollection<ScanOutcome> items = indexName == null ? table.scan(scanSpec) : table.getIndex(indexName).scan(scanSpec);
+            DynamoRateLimiter readLimiter = scanRequest.getReadRateLimiter();
+            if (readLimiter != null) {
+                items.registerLowLevelResultListener(new LowLevelResultListener<ScanOutcome>() {
+                    @Override
+                    public void onLowLevelResult(ScanOutcome scanOutcome) {
+                        readLimiter.setConsumedCapacity(scanOutcome.getScanResult().getConsumedCapacity());
+                        readLimiter.acquire();
+                    }
+                });
+            }
+            keys = items;
+        }
+
+        BulkLoadRequest<T> bulkLoadRequest = new BulkLoadRequest<>(deleteWhereParams.getResultClass())
+                .withMaxInFlightBatches(deleteWhereParams.getMaxInFlightBatches())
+                .withMaxRetries(deleteWhereParams.getMaxRetries())
+                .withWriteRateLimiter(deleteWhereParams.getWriteRateLimiter())
+                .withProgressCallback(deleteWhereParams.getProgressCallback())
+                .withFailedItemHandler(deleteWhereParams.getFailedKeyHandler());
+        Iterator<Item> items = keys.iterator();
+        if (!chunkedFields.isEmpty()) {
+            items = chunkStore.withChunkKeys(items, tableDefinition);
+        }
+        return doBulkLoad(tableName, tableDefinition, bulkLoadRequest, items, key -> {
+            Map<String, AttributeValue> deleteKey = new HashMap<>();
+            for (String keyAttribute : keyAttributes) {
+                deleteKey.put(keyAttribute, ItemUtils.toAttributeValue(key.get(keyAttribute)));
+            }
+            return new WriteRequest(new com.amazonaws.services.dynamodbv2.model.DeleteRequest(deleteKey));
+        });
+    }
+
+    private <S> BulkLoadResult doBulkLoad(String tableName, TableDefinition tableDefinition, BulkLoadRequest<?> bulkLoadRequest, Iterator<? extends S> source,
+                                          Function<S, WriteRequest> encoder) {
+        initRateLimiter(bulkLoadRequest.getWriteRateLimiter(), tableCache.getTable(tableName), null);
+        BulkLoader<S> bulkLoader = new BulkLoader<>(amazonDynamoDB, tableName, tableDefinition, bulkLoadRequest, source, encoder);
+        callConcurrently(bulkLoader.getWorkers(), bulkLoadRequest.getMaxInFlightBatches());
+        return bulkLoader.getResult();
+    }
+
+    /**
+     * Copies the items of a table to the table of the same type with another suffix, for example a clone made with
+     * createTableFromExisting. Segments are scanned in parallel and every page is written with batch writes before the
+     * next page is read. With a transformation each item is loaded as an object, migrated if needed, transformed and
+     * saved, which also allows backfilling a table into itself.
+     */
+    public <T extends DynamapRecordBean> CopyTableResult copyTable(CopyTableRequest<T> copyTableRequest) {
+        TableDefinition tableDefinition = schemaRegistry.getTableDefinition(copyTableRequest.getResultClass());
+        String sourceTableName = tableDefinition.getTableName(prefix, copyTableRequest.getSourceSuffix());
+        String targetTableName = tableDefinition.getTableName(prefix, copyTableRequest.getTargetSuffix());
+        initRateLimiter(copyTableRequest.getReadRateLimiter(), tableCache.getTable(sourceTableName), null);
+        initRateLimiter(copyTableRequest.getWriteRateLimiter(), tableCache.getTable(targetTableName), null);
+
+        Function<Map<String, AttributeValue>, Map<String, AttributeValue>> itemTransform = null;
+        if (copyTableRequest.getTransform() != null) {
+            DynamapLoadService loadService = new DynamapLoadService(schemaRegistry, dynamapBeanFactory, objectMapper, prefix, tableCache)
+                    .withSuffix(copyTableRequest.getSourceSuffix())
+                    .withChunkStore(chunkStore)
+                    // migrated objects are written to the target only, never back to the source
+                    .writeBack(false);
+            boolean chunked = !tableDefinition.getChunkedFields().isEmpty();
+            if (chunked && Objects.equals(copyTableRequest.getSourceSuffix(), copyTableRequest.getTargetSuffix())) {
+                // the chunks of the replaced items could only be deleted after their puts, which the copy batches
+                throw new IllegalArgumentException("Table " + tableDefinition.getTableName() + " with chunked fields cannot be transformed into itself");
+            }
+            DynamoItemFactory dynamoItemFactory = newItemFactory().withChunking(chunked);
+            itemTransform = item -> {
+                T object = copyTableRequest.getTransform().apply(loadService.loadItem(ItemUtils.toItem(item), copyTableRequest.getResultClass()));
+                if (object == null) {
+                    return null;
+                }
+                Item targetItem = dynamoItemFactory.asDynamoItem(object, tableDefinition);
+                if (chunked) {
+                    // the chunks of the source are not copied, the transformed values are split again into the target
+                    chunkStore.writeChunks(targetTableName, chunkStore.split(targetItem, tableDefinition), copyTableRequest.getWriteRateLimiter());
+                }
+                return ItemUtils.toAttributeValues(targetItem);
+            };
+        }
+        TableCopier tableCopier = new TableCopier(amazonDynamoDB, sourceTableName, targetTableName, tableDefinition, copyTableRequest, itemTransform);
+        callConcurrently(tableCopier.getSegmentCopies(), copyTableRequest.getTotalSegments());
+        return tableCopier.getResult();
+    }
+
+    // estimatedUnits holds the units acquired up front per table, which are reconciled with the capacity consumed by the first request
+    private void doBatchWriteItem(Map<String, DynamoRateLimiter> writeLimiterMap, Map<String, TableWriteItems> tableWriteItems, Map<String, Integer> estimatedUnits) {
         BatchWriteItemSpec batchWriteItemSpec = new BatchWriteItemSpec()
                 .withTableWriteItems(tableWriteItems.values().toArray(new TableWriteItems[0]));
 
@@ -895,7 +2111,10 @@ public class Dynamap {
             if (writeLimiterMap != null) {
                 for (ConsumedCapacity consumedCapacity : outcome.getBatchWriteItemResult().getConsumedCapacity()) {
                     DynamoRateLimiter rateLimiter = writeLimiterMap.get(consumedCapacity.getTableName());
-                    if (rateLimiter != null) {
+                    Integer estimate = estimatedUnits == null ? null : estimatedUnits.remove(consumedCapacity.getTableName());
+                    if (rateLimiter != null && estimate != null) {
+                        rateLimiter.reconcile(consumedCapacity.getCapacityUnits(), estimate);
+                    } else if (rateLimiter != null) {
                         rateLimiter.setConsumedCapacity(consumedCapacity);
                     }
                 }
@@ -920,10 +2139,35 @@ public class Dynamap {
     }
 
     public WriteTx newWriteTx() {
-        return new WriteTx(amazonDynamoDB, writeOpFactory, new DynamoItemFactory(objectMapper));
+        return new WriteTx(amazonDynamoDB, writeOpFactory, newItemFactory(), new TxExecutor(tableCache, writeTransactionStats));
     }
 
     public ReadTx newReadTx() {
-        return new ReadTx(amazonDynamoDB, readOpFactory, new DynamapLoadService(schemaRegistry, dynamapBeanFactory, objectMapper, prefix, tableCache));
+        return new ReadTx(amazonDynamoDB, readOpFactory, newLoadService(), new TxExecutor(tableCache, readTransactionStats));
+    }
+
+    /**
+     * @return latency, consumed capacity and retry counts of the write transactions executed by this instance
+     */
+    public TransactionStats getWriteTransactionStats() {
+        return writeTransactionStats;
+    }
+
+    /**
+     * @return latency, consumed capacity and retry counts of the read transactions executed by this instance
+     */
+    public TransactionStats getReadTransactionStats() {
+        return readTransactionStats;
+    }
+
+    /**
+     * @return histograms of the sizes of the items written by this instance, per table
+     */
+    public ItemSizeStats getItemSizeStats() {
+        return itemSizeStats;
+    }
+
+    private DynamoItemFactory newItemFactory() {
+        return new DynamoItemFactory(objectMapper).withItemSizeStats(itemSizeStats);
     }
 }
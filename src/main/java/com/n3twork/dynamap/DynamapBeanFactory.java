@@ -2,11 +2,12 @@ package com.n3twork.dynamap;
 
 import com.amazonaws.services.dynamodbv2.document.Item;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.n3twork.dynamap.model.Field;
 import com.n3twork.dynamap.model.TableDefinition;
 
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.lang.reflect.Constructor;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Builds DynamapRecordBean instances from DynamoDB Items.
@@ -14,6 +15,8 @@ import java.util.Map;
 class DynamapBeanFactory {
     private final SchemaRegistry schemaRegistry;
     private final ObjectMapper objectMapper;
+    private final Map<Class, Optional<Constructor<?>>> lazyBeanConstructors = new ConcurrentHashMap<>();
+    private final Map<Class, Optional<Constructor<?>>> partialBeanConstructors = new ConcurrentHashMap<>();
 
     public DynamapBeanFactory(SchemaRegistry schemaRegistry, ObjectMapper objectMapper) {
         if (null == schemaRegistry) {
@@ -27,56 +30,130 @@ class DynamapBeanFactory {
     }
 
     public <T extends DynamapRecordBean> T asDynamapBean(Item item, Class<T> resultClass) {
+        return asDynamapBean(item, resultClass, null);
+    }
+
+    /**
+     * @param chunkLoader loads the values of chunked attributes that hold a manifest, when they are decoded
+     */
+    <T extends DynamapRecordBean> T asDynamapBean(Item item, Class<T> resultClass, ChunkStore.ChunkLoader chunkLoader) {
         TableDefinition tableDefinition = schemaRegistry.getTableDefinition(resultClass);
         Map<String, Object> itemMap = item.asMap();
+        for (Field field : tableDefinition.getChunkedFields()) {
+            Object value = itemMap.get(field.getDynamoName());
+            if (value instanceof Map) {
+                if (chunkLoader == null) {
+                    throw new IllegalStateException("Cannot load the chunks of " + field.getDynamoName() + " of table " + tableDefinition.getTableName());
+                }
+                Map<String, Object> manifest = (Map<String, Object>) value;
+                itemMap.put(field.getDynamoName(), new ChunkStore.ChunkedValue(() -> chunkLoader.load(field.getDynamoName(), manifest)));
+            }
+        }
+        if (tableDefinition.isLazyDecoding()) {
+            Optional<Constructor<?>> lazyBeanConstructor = lazyBeanConstructors.computeIfAbsent(resultClass, c -> findBeanVariantConstructor(tableDefinition, c, "LazyBean", LazyItemDecoder.class));
+            if (lazyBeanConstructor.isPresent()) {
+                try {
+                    return (T) lazyBeanConstructor.get().newInstance(new LazyItemDecoder(tableDefinition, itemMap, objectMapper));
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }
         processDeserializationConversions(tableDefinition, itemMap);
         return objectMapper.convertValue(itemMap, resultClass);
     }
 
+    /**
+     * Builds a bean from an item loaded with a projection. When the generated bean class is requested the result is a
+     * partial bean that throws on access to fields that were not projected.
+     */
+    public <T extends DynamapRecordBean> T asPartialDynamapBean(Item item, Class<T> resultClass, Set<String> projectedAttributes) {
+        return asPartialDynamapBean(item, resultClass, projectedAttributes, null);
+    }
+
+    <T extends DynamapRecordBean> T asPartialDynamapBean(Item item, Class<T> resultClass, Set<String> projectedAttributes, ChunkStore.ChunkLoader chunkLoader) {
+        T bean = asDynamapBean(item, resultClass, chunkLoader);
+        TableDefinition tableDefinition = schemaRegistry.getTableDefinition(resultClass);
+        Optional<Constructor<?>> partialBeanConstructor = partialBeanConstructors.computeIfAbsent(resultClass, c -> findBeanVariantConstructor(tableDefinition, c, "PartialBean", c, Set.class));
+        if (partialBeanConstructor.isPresent()) {
+            try {
+                return (T) partialBeanConstructor.get().newInstance(bean, projectedAttributes);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+        return bean;
+    }
+
+    // Lazy and partial beans extend the generated bean, so they are only used when the generated bean itself is requested.
+    private Optional<Constructor<?>> findBeanVariantConstructor(TableDefinition tableDefinition, Class resultClass, String variant, Class<?>... parameterTypes) {
+        String typeClassName = tableDefinition.getPackageName() + "." + tableDefinition.getType();
+        if (!resultClass.getName().equals(typeClassName + "Bean")) {
+            return Optional.empty();
+        }
+        try {
+            Class<?> variantClass = Class.forName(typeClassName + variant, true, resultClass.getClassLoader());
+            return Optional.of(variantClass.getConstructor(parameterTypes));
+        } catch (ClassNotFoundException | NoSuchMethodException e) {
+            throw new RuntimeException(variant + " not found for table " + tableDefinition.getTableName() + ", regenerate the code for this schema", e);
+        }
+    }
+
     private void processDeserializationConversions(TableDefinition tableDefinition, Map<String, Object> map) {
+        Set<String> attributeNames = new LinkedHashSet<>();
+        for (TableDefinition.CompressCollectionItem compressCollectionItem : tableDefinition.getCompressCollectionItems()) {
+            attributeNames.add(compressCollectionItem.parentKey != null ? compressCollectionItem.parentKey : compressCollectionItem.itemKey);
+        }
+        for (TableDefinition.PersistAsFieldItem persistAsFieldItem : tableDefinition.getPersistAsFieldItems()) {
+            attributeNames.add(persistAsFieldItem.parentKey != null ? persistAsFieldItem.parentKey : persistAsFieldItem.itemKey);
+        }
+        for (String attributeName : attributeNames) {
+            Object value = map.get(attributeName);
+            if (value != null) {
+                map.put(attributeName, processDeserializationConversions(tableDefinition, attributeName, value, objectMapper));
+            }
+        }
+    }
+
+    static Object processDeserializationConversions(TableDefinition tableDefinition, String attributeName, Object value, ObjectMapper objectMapper) {
         // decompress gzip byte arrays
         for (TableDefinition.CompressCollectionItem compressCollectionItem : tableDefinition.getCompressCollectionItems()) {
-            byte[] bytes = null;
             if (compressCollectionItem.parentKey != null) {
-                Map<String, Object> parent = (Map<String, Object>) map.get(compressCollectionItem.parentKey);
-                if (parent != null) {
-                    bytes = (byte[]) parent.get(compressCollectionItem.itemKey);
-                }
-            } else {
-                bytes = (byte[]) map.get(compressCollectionItem.itemKey);
-            }
-            if (bytes != null) {
-                Object object = GZipUtil.deSerialize(bytes, objectMapper, Object.class);
-                if (compressCollectionItem.parentKey != null) {
-                    ((Map) map.get(compressCollectionItem.parentKey)).put(compressCollectionItem.itemKey, object);
-                } else {
-                    map.put(compressCollectionItem.itemKey, object);
+                if (compressCollectionItem.parentKey.equals(attributeName)) {
+                    Map<String, Object> parent = (Map<String, Object>) value;
+                    byte[] bytes = (byte[]) parent.get(compressCollectionItem.itemKey);
+                    if (bytes != null) {
+                        parent.put(compressCollectionItem.itemKey, GZipUtil.deSerialize(bytes, objectMapper, Object.class));
+                    }
                 }
+            } else if (compressCollectionItem.itemKey.equals(attributeName)) {
+                byte[] bytes = value instanceof ChunkStore.ChunkedValue ? ((ChunkStore.ChunkedValue) value).getBytes() : (byte[]) value;
+                value = GZipUtil.deSerialize(bytes, objectMapper, Object.class);
             }
         }
 
         // convert lists to map for persistAsList fields
         for (TableDefinition.PersistAsFieldItem persistAsFieldItem : tableDefinition.getPersistAsFieldItems()) {
-            List<Map<String, Object>> list = null;
             if (persistAsFieldItem.parentKey != null) {
-                Map<String, Object> parent = (Map<String, Object>) map.get(persistAsFieldItem.parentKey);
-                if (parent != null) {
-                    list = (List<Map<String, Object>>) parent.get(persistAsFieldItem.itemKey);
-                }
-            } else {
-                list = (List<Map<String, Object>>) map.get(persistAsFieldItem.itemKey);
-            }
-            if (list != null) {
-                Map<String, Object> converted = new HashMap<>();
-                for (Map<String, Object> item : list) {
-                    converted.put((String) item.get(persistAsFieldItem.idKey), item);
-                }
-                if (persistAsFieldItem.parentKey != null) {
-                    ((Map) map.get(persistAsFieldItem.parentKey)).put(persistAsFieldItem.itemKey, converted);
-                } else {
-                    map.put(persistAsFieldItem.itemKey, converted);
+                if (persistAsFieldItem.parentKey.equals(attributeName)) {
+                    Map<String, Object> parent = (Map<String, Object>) value;
+                    List<Map<String, Object>> list = (List<Map<String, Object>>) parent.get(persistAsFieldItem.itemKey);
+                    if (list != null) {
+                        parent.put(persistAsFieldItem.itemKey, listToMap(list, persistAsFieldItem.idKey));
+                    }
                 }
+            } else if (persistAsFieldItem.itemKey.equals(attributeName)) {
+                value = listToMap((List<Map<String, Object>>) value, persistAsFieldItem.idKey);
             }
         }
+        return value;
+    }
+
+    private static Map<String, Object> listToMap(List<Map<String, Object>> list, String idKey) {
+        Map<String, Object> converted = new HashMap<>();
+        for (Map<String, Object> item : list) {
+            converted.put((String) item.get(idKey), item);
+        }
+        return converted;
     }
 }
@@ -0,0 +1,11 @@
+package com.n3twork.dynamap;
+
+/**
+ * A persisted field of a Dynamap type. Generated field enums implement this so fields can be referenced in a type safe way,
+ * for example when requesting a projection.
+ */
+public interface DynamapField {
+
+    String getDynamoName();
+
+}
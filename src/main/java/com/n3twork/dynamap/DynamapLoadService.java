@@ -8,6 +8,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.List;
+import java.util.Set;
 
 /**
  * All the logic for loading a raw DynamoDB Item including:
@@ -28,6 +29,9 @@ class DynamapLoadService {
     private DynamoRateLimiter writeRateLimiter;
     private Object migrationContext;
     private TableCache tableCache;
+    private Set<String> projectedAttributes;
+    private ItemSnapshots itemSnapshots;
+    private ChunkStore chunkStore;
 
     public DynamapLoadService(SchemaRegistry schemaRegistry, DynamapBeanFactory dynamapBeanFactory, ObjectMapper objectMapper, String tableNamePrefix, TableCache tableCache) {
         if (null == schemaRegistry) {
@@ -77,6 +81,30 @@ class DynamapLoadService {
         return this;
     }
 
+    /**
+     * Items loaded with a typed projection are never migrated and are returned as partial beans.
+     */
+    public DynamapLoadService withProjectedAttributes(Set<String> projectedAttributes) {
+        this.projectedAttributes = projectedAttributes;
+        return this;
+    }
+
+    /**
+     * Records a snapshot of every fully loaded bean, unless it was migrated without being written back.
+     */
+    public DynamapLoadService withItemSnapshots(ItemSnapshots itemSnapshots) {
+        this.itemSnapshots = itemSnapshots;
+        return this;
+    }
+
+    /**
+     * Loads the values of chunked fields from their chunk items when they are decoded.
+     */
+    public DynamapLoadService withChunkStore(ChunkStore chunkStore) {
+        this.chunkStore = chunkStore;
+        return this;
+    }
+
     /**
      * Take a raw DynamoDB item, migrate as needed, convert to a Dynamap bean.
      */
@@ -85,24 +113,40 @@ class DynamapLoadService {
             return null;
         }
         TableDefinition tableDefinition = schemaRegistry.getTableDefinition(resultClass);
-        if (skipMigration) {
-            return dynamapBeanFactory.asDynamapBean(item, resultClass);
+        if (projectedAttributes != null) {
+            return dynamapBeanFactory.asPartialDynamapBean(item, resultClass, projectedAttributes, getChunkLoader(tableDefinition, item));
+        } else if (skipMigration) {
+            return dynamapBeanFactory.asDynamapBean(item, resultClass, getChunkLoader(tableDefinition, item));
         } else {
             MigrationResult migrationResult = migrateItem(item, resultClass, this.migrationContext);
-            T result = dynamapBeanFactory.asDynamapBean(migrationResult.item, resultClass);
+            T result = dynamapBeanFactory.asDynamapBean(migrationResult.item, resultClass, getChunkLoader(tableDefinition, migrationResult.item));
+            Item persistedItem = migrationResult.item;
             if (migrationResult.wasMigrated && writeBack) {
                 Item savedItem = new DynamapSaveService(objectMapper, tableNamePrefix, tableCache)
+                        .withChunkStore(chunkStore)
                         .saveBean(result, tableDefinition, true, false, true, writeRateLimiter, suffix, null, null, null);
+                persistedItem = savedItem;
                 // if optimistic locking is enabled then the revision number will have been incremented
                 // repopulate the result bean
                 if (tableDefinition.isOptimisticLocking()) {
-                    result = dynamapBeanFactory.asDynamapBean(savedItem, resultClass);
+                    result = dynamapBeanFactory.asDynamapBean(savedItem, resultClass, getChunkLoader(tableDefinition, savedItem));
                 }
             }
+            if (itemSnapshots != null && (!migrationResult.wasMigrated || writeBack)) {
+                // the raw item is recorded, as encoding the bean again would decode its lazy fields and load its chunks
+                itemSnapshots.record(result, tableDefinition.getTableName(tableNamePrefix, suffix), persistedItem);
+            }
             return result;
         }
     }
 
+    private ChunkStore.ChunkLoader getChunkLoader(TableDefinition tableDefinition, Item item) {
+        if (chunkStore == null || tableDefinition.getChunkedFields().isEmpty()) {
+            return null;
+        }
+        return chunkStore.getLoader(tableDefinition.getTableName(tableNamePrefix, suffix), tableDefinition, item);
+    }
+
     private static class MigrationResult {
         private final boolean wasMigrated;
         private final Item item;
@@ -1,11 +1,18 @@
 package com.n3twork.dynamap;
 
 import com.amazonaws.services.dynamodbv2.document.Item;
+import com.amazonaws.services.dynamodbv2.document.ItemUtils;
 import com.amazonaws.services.dynamodbv2.document.PutItemOutcome;
 import com.amazonaws.services.dynamodbv2.document.Table;
+import com.amazonaws.services.dynamodbv2.document.UpdateItemOutcome;
 import com.amazonaws.services.dynamodbv2.document.spec.PutItemSpec;
+import com.amazonaws.services.dynamodbv2.document.spec.UpdateItemSpec;
 import com.amazonaws.services.dynamodbv2.document.utils.NameMap;
 import com.amazonaws.services.dynamodbv2.document.utils.ValueMap;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.ProvisionedThroughputExceededException;
+import com.amazonaws.services.dynamodbv2.model.ReturnConsumedCapacity;
 import com.amazonaws.services.dynamodbv2.model.ReturnValue;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.n3twork.dynamap.model.Schema;
@@ -14,8 +21,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 /**
  * All the logic necessary to save Dynamap beans in DynamoDB.
@@ -25,6 +34,10 @@ class DynamapSaveService {
     private final ObjectMapper objectMapper;
     private final String tableNamePrefix;
     private final TableCache tableCache;
+    private HotKeyTracker hotKeyTracker;
+    private ItemSnapshots itemSnapshots;
+    private ItemSizeStats itemSizeStats;
+    private ChunkStore chunkStore;
 
     public DynamapSaveService(ObjectMapper objectMapper, String tableNamePrefix, TableCache tableCache) {
         if (null == objectMapper) {
@@ -38,14 +51,58 @@ class DynamapSaveService {
         this.tableCache = tableCache;
     }
 
+    public DynamapSaveService withHotKeyTracker(HotKeyTracker hotKeyTracker) {
+        this.hotKeyTracker = hotKeyTracker;
+        return this;
+    }
+
+    /**
+     * Saves beans that have a snapshot with an UpdateItem of the attributes that changed, and records a snapshot of
+     * every saved bean.
+     */
+    public DynamapSaveService withItemSnapshots(ItemSnapshots itemSnapshots) {
+        this.itemSnapshots = itemSnapshots;
+        return this;
+    }
+
+    public DynamapSaveService withItemSizeStats(ItemSizeStats itemSizeStats) {
+        this.itemSizeStats = itemSizeStats;
+        return this;
+    }
+
+    /**
+     * Stores the values of chunked fields larger than their chunk size in chunk items.
+     */
+    public DynamapSaveService withChunkStore(ChunkStore chunkStore) {
+        this.chunkStore = chunkStore;
+        return this;
+    }
+
     public <T extends DynamapRecordBean> Item saveBean(T bean, TableDefinition tableDefinition, boolean overwrite,
                                                        boolean disableOptimisticLocking, boolean isMigration,
                                                        DynamoRateLimiter writeLimiter, String suffix,
                                                        List<String> paramConditionExpressions, Map<String, String> names, Map<String, Object> values) {
-        Item item = new DynamoItemFactory(objectMapper, disableOptimisticLocking).asDynamoItem(bean, tableDefinition);
+        Item item = new DynamoItemFactory(objectMapper, disableOptimisticLocking).withItemSizeStats(itemSizeStats)
+                .withChunking(chunkStore != null).asDynamoItem(bean, tableDefinition);
+        String tableName = tableDefinition.getTableName(tableNamePrefix, suffix);
+        boolean chunked = chunkStore != null && !tableDefinition.getChunkedFields().isEmpty();
+        // chunked values are always replaced as a whole, so their items are saved with a put
+        if (itemSnapshots != null && overwrite && !isMigration && !chunked) {
+            ItemSnapshots.Snapshot snapshot = itemSnapshots.get(bean);
+            if (snapshot != null && snapshot.getTableName().equals(tableName)) {
+                Map<String, AttributeValue> attributes = ItemUtils.toAttributeValues(item);
+                attributes.remove(Schema.REVISION_FIELD);
+                if (hasSameKey(tableDefinition, attributes, snapshot.getAttributes())) {
+                    saveChanges(bean, item, attributes, snapshot.getAttributes(), tableDefinition, disableOptimisticLocking, writeLimiter, tableName,
+                            paramConditionExpressions, names, values);
+                    return item;
+                }
+            }
+        }
+        List<Map<String, AttributeValue>> chunks = chunked ? chunkStore.split(item, tableDefinition) : Collections.emptyList();
         PutItemSpec putItemSpec = new PutItemSpec()
                 .withItem(item)
-                .withReturnValues(ReturnValue.NONE);
+                .withReturnValues(chunked ? ReturnValue.ALL_OLD : ReturnValue.NONE);
         String hashKeyFieldName = tableDefinition.getField(tableDefinition.getHashKey()).getDynamoName();
         ValueMap valueMap = new ValueMap();
         NameMap nameMap = new NameMap();
@@ -87,23 +144,185 @@ class DynamapSaveService {
             }
         }
 
-        Table table = tableCache.getTable(tableDefinition.getTableName(tableNamePrefix, suffix));
+        Table table = tableCache.getTable(tableName);
         try {
+            int estimatedUnits = 0;
             if (writeLimiter != null) {
+                // a put costs the size of the item written and of its index entries, so acquire that up front instead of learning it afterwards
+                estimatedUnits = ItemSizeCalculator.writeUnits(item, tableDefinition);
                 writeLimiter.init(table);
-                writeLimiter.acquire();
+                writeLimiter.acquire(estimatedUnits);
             }
-            PutItemOutcome outcome = table.putItem(putItemSpec);
-            if (writeLimiter != null) {
-                writeLimiter.setConsumedCapacity(outcome.getPutItemResult().getConsumedCapacity());
+            if (writeLimiter != null || hotKeyTracker != null) {
+                putItemSpec.withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL);
+            }
+            if (!chunks.isEmpty()) {
+                chunkStore.writeChunks(tableName, chunks, writeLimiter);
+            }
+            PutItemOutcome outcome;
+            try {
+                outcome = table.putItem(putItemSpec);
+            } catch (ProvisionedThroughputExceededException e) {
+                if (hotKeyTracker != null) {
+                    hotKeyTracker.recordThrottle(table.getTableName(), item.get(hashKeyFieldName));
+                }
+                deleteUnusedChunks(tableName, chunks);
+                throw e;
+            } catch (RuntimeException e) {
+                deleteUnusedChunks(tableName, chunks);
+                throw e;
+            }
+            if (chunked) {
+                chunkStore.deleteReplacedChunks(tableName, tableDefinition, outcome.getItem(), item);
+            }
+            ConsumedCapacity consumedCapacity = outcome.getPutItemResult().getConsumedCapacity();
+            if (writeLimiter != null && consumedCapacity != null) {
+                writeLimiter.reconcile(consumedCapacity.getCapacityUnits(), estimatedUnits);
+            }
+            if (hotKeyTracker != null && consumedCapacity != null) {
+                hotKeyTracker.recordWrite(table.getTableName(), item.get(hashKeyFieldName), consumedCapacity.getCapacityUnits());
             }
         } catch (Exception e) {
             logger.debug(getPutErrorMessage(putItemSpec));
             throw e;
         }
+        if (itemSnapshots != null) {
+            itemSnapshots.record(bean, tableName, item);
+        }
         return putItemSpec.getItem();
     }
 
+    private void deleteUnusedChunks(String tableName, List<Map<String, AttributeValue>> chunks) {
+        if (!chunks.isEmpty()) {
+            chunkStore.deleteChunks(tableName, chunks);
+        }
+    }
+
+    private boolean hasSameKey(TableDefinition tableDefinition, Map<String, AttributeValue> attributes, Map<String, AttributeValue> previous) {
+        String hashKeyFieldName = tableDefinition.getField(tableDefinition.getHashKey()).getDynamoName();
+        if (!Objects.equals(attributes.get(hashKeyFieldName), previous.get(hashKeyFieldName))) {
+            return false;
+        }
+        if (tableDefinition.getRangeKey() != null) {
+            String rangeKeyFieldName = tableDefinition.getField(tableDefinition.getRangeKey()).getDynamoName();
+            return Objects.equals(attributes.get(rangeKeyFieldName), previous.get(rangeKeyFieldName));
+        }
+        return true;
+    }
+
+    // Updates only the attributes that differ from the snapshot, with the conditions a put would have. The item must
+    // exist, so that an item deleted since it was loaded is not recreated with only the changed attributes.
+    private <T extends DynamapRecordBean> void saveChanges(T bean, Item item, Map<String, AttributeValue> attributes, Map<String, AttributeValue> previous,
+                                                          TableDefinition tableDefinition, boolean disableOptimisticLocking, DynamoRateLimiter writeLimiter,
+                                                          String tableName, List<String> paramConditionExpressions, Map<String, String> names, Map<String, Object> values) {
+        String hashKeyFieldName = tableDefinition.getField(tableDefinition.getHashKey()).getDynamoName();
+        NameMap nameMap = new NameMap();
+        ValueMap valueMap = new ValueMap();
+        List<String> setExpressions = new ArrayList<>();
+        List<String> removeExpressions = new ArrayList<>();
+        int i = 0;
+        for (Map.Entry<String, AttributeValue> attribute : attributes.entrySet()) {
+            if (!attribute.getValue().equals(previous.get(attribute.getKey()))) {
+                setExpressions.add("#upd" + i + " = :upd" + i);
+                nameMap.with("#upd" + i, attribute.getKey());
+                valueMap.with(":upd" + i, item.get(attribute.getKey()));
+                i++;
+            }
+        }
+        for (String attributeName : previous.keySet()) {
+            if (!attributes.containsKey(attributeName)) {
+                removeExpressions.add("#upd" + i);
+                nameMap.with("#upd" + i, attributeName);
+                i++;
+            }
+        }
+        if (setExpressions.isEmpty() && removeExpressions.isEmpty()) {
+            logger.debug("No changes to save for {} in {}", item.get(hashKeyFieldName), tableName);
+            return;
+        }
+
+        List<String> conditionalExpressions = new ArrayList<>();
+        if (paramConditionExpressions != null) {
+            conditionalExpressions.addAll(paramConditionExpressions);
+        }
+        if (names != null) {
+            nameMap.putAll(names);
+        }
+        if (values != null) {
+            valueMap.putAll(values);
+        }
+        conditionalExpressions.add("attribute_exists(" + hashKeyFieldName + ")");
+        if (!disableOptimisticLocking && tableDefinition.isOptimisticLocking()) {
+            int revision = item.getInt(Schema.REVISION_FIELD);
+            setExpressions.add("#rev = :rev");
+            nameMap.with("#rev", Schema.REVISION_FIELD);
+            valueMap.withInt(":rev", revision);
+            if (revision - 1 > 0) {
+                conditionalExpressions.add("#rev = :prevrev");
+                valueMap.withInt(":prevrev", revision - 1);
+            }
+        }
+
+        List<String> clauses = new ArrayList<>(2);
+        if (!setExpressions.isEmpty()) {
+            clauses.add("SET " + String.join(", ", setExpressions));
+        }
+        if (!removeExpressions.isEmpty()) {
+            clauses.add("REMOVE " + String.join(", ", removeExpressions));
+        }
+        String updateExpression = String.join(" ", clauses);
+        UpdateItemSpec updateItemSpec = new UpdateItemSpec()
+                .withUpdateExpression(updateExpression)
+                .withConditionExpression(String.join(" AND ", conditionalExpressions))
+                .withNameMap(nameMap)
+                .withReturnValues(ReturnValue.NONE);
+        if (valueMap.size() > 0) {
+            updateItemSpec.withValueMap(valueMap);
+        }
+        if (tableDefinition.getRangeKey() != null) {
+            String rangeKeyFieldName = tableDefinition.getField(tableDefinition.getRangeKey()).getDynamoName();
+            updateItemSpec.withPrimaryKey(hashKeyFieldName, item.get(hashKeyFieldName), rangeKeyFieldName, item.get(rangeKeyFieldName));
+        } else {
+            updateItemSpec.withPrimaryKey(hashKeyFieldName, item.get(hashKeyFieldName));
+        }
+
+        Table table = tableCache.getTable(tableName);
+        try {
+            int estimatedUnits = 0;
+            if (writeLimiter != null) {
+                // an update costs the larger of the item sizes before and after it, plus the index entries of the item
+                estimatedUnits = ItemSizeCalculator.writeUnits(Math.max(ItemSizeCalculator.sizeOf(attributes), ItemSizeCalculator.sizeOf(previous)))
+                        + ItemSizeCalculator.indexWriteUnits(item, tableDefinition);
+                writeLimiter.init(table);
+                writeLimiter.acquire(estimatedUnits);
+            }
+            if (writeLimiter != null || hotKeyTracker != null) {
+                updateItemSpec.withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL);
+            }
+            UpdateItemOutcome outcome;
+            try {
+                outcome = table.updateItem(updateItemSpec);
+            } catch (ProvisionedThroughputExceededException e) {
+                if (hotKeyTracker != null) {
+                    hotKeyTracker.recordThrottle(table.getTableName(), item.get(hashKeyFieldName));
+                }
+                throw e;
+            }
+            ConsumedCapacity consumedCapacity = outcome.getUpdateItemResult().getConsumedCapacity();
+            if (writeLimiter != null && consumedCapacity != null) {
+                writeLimiter.reconcile(consumedCapacity.getCapacityUnits(), estimatedUnits);
+            }
+            if (hotKeyTracker != null && consumedCapacity != null) {
+                hotKeyTracker.recordWrite(table.getTableName(), item.get(hashKeyFieldName), consumedCapacity.getCapacityUnits());
+            }
+        } catch (Exception e) {
+            logger.debug("Error updating item: {} Update expression: {} Conditional expression: {} Values: {} Names: {}", item.get(hashKeyFieldName),
+                    updateExpression, updateItemSpec.getConditionExpression(), updateItemSpec.getValueMap(), updateItemSpec.getNameMap());
+            throw e;
+        }
+        itemSnapshots.record(bean, tableName, item);
+    }
+
     private String getPutErrorMessage(PutItemSpec putItemSpec) {
         return "Error putting item:" + putItemSpec.getItem().toJSON() + " Conditional expression: " + putItemSpec.getConditionExpression() + " Values: " + putItemSpec.getValueMap() + " Names: " + putItemSpec.getNameMap();
     }
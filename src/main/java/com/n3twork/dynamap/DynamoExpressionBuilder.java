@@ -21,30 +21,34 @@ import com.amazonaws.services.dynamodbv2.document.utils.ValueMap;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.google.common.base.Joiner;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableSet;
 
 import java.math.BigDecimal;
 import java.util.*;
 
+/**
+ * Builds update and condition expressions. Each operation is recorded as a term holding the raw attribute names, and the
+ * expression text and name map are only rendered when requested. The expression text only depends on the shape of the
+ * terms, in which every attribute name is replaced by the position of its alias, so it is cached by shape and updates
+ * of the same fields share it whatever their map keys. Only the name map and value map are built for every update.
+ */
 public class DynamoExpressionBuilder {
 
+    private static final int MAX_CACHED_EXPRESSIONS = 10000;
+    private static final Cache<List<TermShape>, RenderedExpression> EXPRESSION_CACHE = CacheBuilder.newBuilder().maximumSize(MAX_CACHED_EXPRESSIONS).build();
+
     private ObjectMapper objectMapper;
 
     private static final Set<String> SUPPORTED_JAVA_TYPES = ImmutableSet.of("java.lang.Integer", "java.lang.Long", "java.lang.Float", "java.lang.Double", "java.lang.Number", "java.lang.BigDecimal", "java.lang.String");
 
-    private final List<String> addSection = new ArrayList<>();
-    private final List<String> setSection = new ArrayList<>();
-    private final List<String> removeSection = new ArrayList<>();
-    private final List<String> deleteSection = new ArrayList<>();
-    private final Alias names;
+    private final String namePrefix;
     private final Alias vals;
     private final Alias condVals;
-    private final List<String> conditions = new ArrayList<>();
-
-    private NameMap nameMap = new NameMap();
-    private Map<String, String> nameAliasToName = new HashMap<>();
+    private final List<Term> terms = new ArrayList<>();
     private ValueMap valueMap = new ValueMap();
+    private RenderedExpression rendered;
 
     public enum ComparisonOperator {
 
@@ -61,20 +65,115 @@ public class DynamoExpressionBuilder {
         }
     }
 
+    // Update sections are rendered in declaration order
+    private enum Section {
+        SET, ADD, REMOVE, DELETE, CONDITION
+    }
+
+    private enum TermFormat {
+        PATH, PATH_VALUE, ASSIGN, LIST_APPEND, COMPARE, SIZE_COMPARE, ATTRIBUTE_EXISTS, ATTRIBUTE_NOT_EXISTS;
+
+        void render(StringBuilder sb, String path, String operator, String value) {
+            switch (this) {
+                case PATH:
+                    sb.append(path);
+                    break;
+                case PATH_VALUE:
+                    sb.append(path).append(' ').append(value);
+                    break;
+                case ASSIGN:
+                    sb.append(path).append('=').append(value);
+                    break;
+                case LIST_APPEND:
+                    sb.append(path).append("=list_append(").append(path).append(',').append(value).append(')');
+                    break;
+                case COMPARE:
+                    sb.append(path).append(' ').append(operator).append(' ').append(value);
+                    break;
+                case SIZE_COMPARE:
+                    sb.append("size(").append(path).append(") ").append(operator).append(' ').append(value);
+                    break;
+                case ATTRIBUTE_EXISTS:
+                    sb.append("attribute_exists(").append(path).append(')');
+                    break;
+                case ATTRIBUTE_NOT_EXISTS:
+                    sb.append("attribute_not_exists(").append(path).append(')');
+                    break;
+            }
+        }
+    }
+
+    private static final class Term {
+        private final Section section;
+        private final TermFormat format;
+        // alias prefix of the builder that recorded the term, so merged terms keep the aliases of their own builder
+        private final String namePrefix;
+        private final String[] path;
+        private final String literalPath;
+        private final String operator;
+        private final String value;
+
+        private Term(Section section, TermFormat format, String namePrefix, String[] path, String literalPath, String operator, String value) {
+            this.section = section;
+            this.format = format;
+            this.namePrefix = namePrefix;
+            this.path = path;
+            this.literalPath = literalPath;
+            this.operator = operator;
+            this.value = value;
+        }
+    }
+
+    // a term whose attribute names are replaced by the index of their alias within the prefix of its builder
+    private static final class TermShape {
+        private final Term term;
+        private final int[] aliases;
+
+        private TermShape(Term term, int[] aliases) {
+            this.term = term;
+            this.aliases = aliases;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            TermShape shape = (TermShape) o;
+            return term.section == shape.term.section && term.format == shape.term.format && term.namePrefix.equals(shape.term.namePrefix)
+                    && Arrays.equals(aliases, shape.aliases) && Objects.equals(term.literalPath, shape.term.literalPath)
+                    && Objects.equals(term.operator, shape.term.operator) && Objects.equals(term.value, shape.term.value);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = Objects.hash(term.section, term.format, term.namePrefix, term.literalPath, term.operator, term.value);
+            return 31 * result + Arrays.hashCode(aliases);
+        }
+    }
+
+    private static final class RenderedExpression {
+        private final String updateExpression;
+        private final String conditionalExpression;
+        private final NameMap nameMap;
+
+        private RenderedExpression(String updateExpression, String conditionalExpression, NameMap nameMap) {
+            this.updateExpression = updateExpression;
+            this.conditionalExpression = conditionalExpression;
+            this.nameMap = nameMap;
+        }
+    }
+
     public DynamoExpressionBuilder(int prefixNumber) {
         String prefix = "t" + prefixNumber;
-        names = new Alias("#" + prefix + "a");
+        namePrefix = "#" + prefix + "a";
         vals = new Alias(":" + prefix + "v");
         condVals = new Alias(":" + prefix + "condVal");
     }
 
     public void merge(DynamoExpressionBuilder dynamoExpressionBuilder) {
-        this.addSection.addAll(dynamoExpressionBuilder.addSection);
-        this.setSection.addAll(dynamoExpressionBuilder.setSection);
-        this.removeSection.addAll(dynamoExpressionBuilder.removeSection);
-        this.conditions.addAll(dynamoExpressionBuilder.conditions);
-        nameMap.putAll(dynamoExpressionBuilder.nameMap);
+        terms.addAll(dynamoExpressionBuilder.terms);
         valueMap.putAll(dynamoExpressionBuilder.valueMap);
+        rendered = null;
     }
 
     public void setObjectMapper(ObjectMapper objectMapper) {
@@ -89,7 +188,7 @@ public class DynamoExpressionBuilder {
     }
 
     public NameMap getNameMap() {
-        return nameMap;
+        return render().nameMap;
     }
 
     public ValueMap getValueMap() {
@@ -112,50 +211,49 @@ public class DynamoExpressionBuilder {
                 valueMap = valueMap.withLong(alias, (Long) amount);
             }
         }
-        addSection.add(String.format("%s %s", joinFields(parentField, fieldName), alias));
+        addTerm(Section.ADD, TermFormat.PATH_VALUE, path(parentField, fieldName), null, alias);
         return this;
     }
 
     public DynamoExpressionBuilder setValue(String parentField, String fieldName, Object value) {
-        setSection.add(String.format("%s=%s", joinFields(parentField, fieldName), processValueAlias(vals, value)));
+        addTerm(Section.SET, TermFormat.ASSIGN, path(parentField, fieldName), null, processValueAlias(vals, value));
         return this;
     }
 
     public DynamoExpressionBuilder addValuesToList(String parentField, String fieldName, List adds, Class type) {
         if (adds.size() > 0) {
-            String fieldAlias = joinFields(parentField, fieldName);
-            setSection.add(String.format("%s=list_append(%s,%s)", fieldAlias, fieldAlias, processValueAlias(vals, adds, type)));
+            addTerm(Section.SET, TermFormat.LIST_APPEND, path(parentField, fieldName), null, processValueAlias(vals, adds, type));
         }
         return this;
     }
 
     public DynamoExpressionBuilder addSetValuesToSet(String parentField, String fieldName, Set value, Class type) {
         if (value.size() > 0) {
-            addSection.add(String.format("%s %s", joinFields(parentField, fieldName), processValueAlias(vals, value, type)));
+            addTerm(Section.ADD, TermFormat.PATH_VALUE, path(parentField, fieldName), null, processValueAlias(vals, value, type));
         }
         return this;
     }
 
     public DynamoExpressionBuilder deleteValuesFromSet(String parentField, String fieldName, Set values, Class type) {
         if (values.size() > 0) {
-            deleteSection.add(String.format("%s %s", joinFields(parentField, fieldName), processValueAlias(vals, values, type)));
+            addTerm(Section.DELETE, TermFormat.PATH_VALUE, path(parentField, fieldName), null, processValueAlias(vals, values, type));
         }
         return this;
     }
 
     public <V> DynamoExpressionBuilder setMultiValue(String parentField, String fieldName, Object collection, Class type) {
-        setSection.add(String.format("%s=%s", joinFields(parentField, fieldName), processValueAlias(vals, collection, type)));
+        addTerm(Section.SET, TermFormat.ASSIGN, path(parentField, fieldName), null, processValueAlias(vals, collection, type));
         return this;
     }
 
     public DynamoExpressionBuilder removeField(String parentField, String fieldName) {
-        removeSection.add(String.format("%s", joinFields(parentField, fieldName)));
+        addTerm(Section.REMOVE, TermFormat.PATH, path(parentField, fieldName), null, null);
         return this;
     }
 
     public <N extends Number, T extends Object> DynamoExpressionBuilder updateMap(String parentField, String fieldName, Map<String, N> deltas, Set<String> currentIds, N defaultValue, Map<String, T> updates, Collection<String> deletes, boolean clear, Class type) {
         if (clear) {
-            setSection.add(String.format("%s=%s", joinFields(parentField, fieldName), processValueAlias(vals, Collections.emptyMap(), type)));
+            addTerm(Section.SET, TermFormat.ASSIGN, path(parentField, fieldName), null, processValueAlias(vals, Collections.emptyMap(), type));
         }
         if (deltas != null) {
             processMapForAdd(parentField, fieldName, deltas, currentIds, defaultValue);
@@ -170,29 +268,13 @@ public class DynamoExpressionBuilder {
     }
 
     public String buildUpdateExpression() {
-        List<String> updateExpressions = new ArrayList<>();
-        if (!setSection.isEmpty()) {
-            updateExpressions.add("SET " + Joiner.on(", ").join(setSection));
-        }
-        if (!addSection.isEmpty()) {
-            updateExpressions.add("ADD " + Joiner.on(", ").join(addSection));
-        }
-        if (!removeSection.isEmpty()) {
-            updateExpressions.add("REMOVE " + Joiner.on(", ").join(removeSection));
-        }
-        if (!deleteSection.isEmpty()) {
-            updateExpressions.add("DELETE " + Joiner.on(", ").join(deleteSection));
-        }
-        if (updateExpressions.isEmpty()) {
-            return "";
-        }
-        return Joiner.on(" ").join(updateExpressions);
+        return render().updateExpression;
     }
 
     //////// Conditional Expression ////
 
     public DynamoExpressionBuilder addCheckFieldValueCondition(String parentField, String fieldName, Object value, ComparisonOperator op) {
-        conditions.add(String.format("%s " + op.getValue() + " %s", joinFields(parentField, fieldName), processValueAlias(condVals, value)));
+        addTerm(Section.CONDITION, TermFormat.COMPARE, path(parentField, fieldName), op.getValue(), processValueAlias(condVals, value));
         return this;
     }
 
@@ -200,47 +282,44 @@ public class DynamoExpressionBuilder {
         for (Map.Entry<String, T> entry : map.entrySet()) {
             String valueAlias = condVals.next();
             valueMap.with(valueAlias, entry.getValue());
-            conditions.add(joinFields(parentField, fieldName, entry.getKey()) + " " + op.getValue() + " " + valueAlias);
+            addTerm(Section.CONDITION, TermFormat.COMPARE, path(parentField, fieldName, entry.getKey()), op.getValue(), valueAlias);
         }
         return this;
     }
 
     public DynamoExpressionBuilder addCheckAttributeInMapNotExistsCondition(String parentField, String fieldName, Collection<String> attributes) {
         for (String id : attributes) {
-            addAttributeNotExistsCondition(joinFields(parentField, fieldName, id));
+            addTerm(Section.CONDITION, TermFormat.ATTRIBUTE_NOT_EXISTS, path(parentField, fieldName, id), null, null);
         }
         return this;
     }
 
     public DynamoExpressionBuilder addAttributeNotExistsCondition(String fieldName) {
-        conditions.add(String.format("attribute_not_exists(%s)", fieldName));
+        addLiteralTerm(Section.CONDITION, TermFormat.ATTRIBUTE_NOT_EXISTS, fieldName);
         return this;
     }
 
     public DynamoExpressionBuilder addCheckAttributeInMapExistsCondition(String parentField, String fieldName, Collection<String> attributes) {
         for (String id : attributes) {
-            addAttributeExistsCondition(joinFields(parentField, fieldName, id));
+            addTerm(Section.CONDITION, TermFormat.ATTRIBUTE_EXISTS, path(parentField, fieldName, id), null, null);
         }
         return this;
     }
 
     public DynamoExpressionBuilder addAttributeExistsCondition(String fieldName) {
-        conditions.add(String.format("attribute_exists(%s)", fieldName));
+        addLiteralTerm(Section.CONDITION, TermFormat.ATTRIBUTE_EXISTS, fieldName);
         return this;
     }
 
     public DynamoExpressionBuilder addCheckAttributeSizeCondition(String parentField, String fieldName, Number value, ComparisonOperator op) {
         String valueAlias = condVals.next();
         valueMap.with(valueAlias, value);
-        conditions.add("size(" + joinFields(parentField, fieldName) + ") " + op.getValue() + " " + valueAlias);
+        addTerm(Section.CONDITION, TermFormat.SIZE_COMPARE, path(parentField, fieldName), op.getValue(), valueAlias);
         return this;
     }
 
     public String buildConditionalExpression() {
-        if (conditions.isEmpty()) {
-            return "";
-        }
-        return Joiner.on(" AND ").join(conditions);
+        return render().conditionalExpression;
     }
 
 
@@ -253,29 +332,29 @@ public class DynamoExpressionBuilder {
                 // if keys do not exist and defaults values are provided, then need to add the default value to the delta
                 if (!currentIds.contains(entry.getKey())) {
                     if (delta instanceof Integer && defaultValue.intValue() != 0) {
-                        delta = (N) new Integer(delta.intValue() + defaultValue.intValue());
+                        delta = (N) Integer.valueOf(delta.intValue() + defaultValue.intValue());
                     } else if (delta instanceof Long && defaultValue.longValue() != 0L) {
-                        delta = (N) new Long(delta.longValue() + defaultValue.longValue());
+                        delta = (N) Long.valueOf(delta.longValue() + defaultValue.longValue());
                     } else if (delta instanceof Float && defaultValue.floatValue() != 0f) {
-                        delta = (N) new Float(delta.floatValue() + defaultValue.floatValue());
+                        delta = (N) Float.valueOf(delta.floatValue() + defaultValue.floatValue());
                     } else if (delta instanceof Double && defaultValue.doubleValue() != 0d) {
-                        delta = (N) new Double(delta.doubleValue() + defaultValue.doubleValue());
+                        delta = (N) Double.valueOf(delta.doubleValue() + defaultValue.doubleValue());
                     }
                 }
             }
-            addSection.add(String.format("%s %s", joinFields(parentField, fieldName, entry.getKey()), processValueAlias(vals, delta)));
+            addTerm(Section.ADD, TermFormat.PATH_VALUE, path(parentField, fieldName, entry.getKey()), null, processValueAlias(vals, delta));
         }
     }
 
     private <T extends Object> void processMapForUpdates(String parentField, String fieldName, Map<String, T> updates) {
         for (Map.Entry<String, T> entry : updates.entrySet()) {
-            setSection.add(String.format("%s=%s", joinFields(parentField, fieldName, entry.getKey()), processValueAlias(vals, entry.getValue())));
+            addTerm(Section.SET, TermFormat.ASSIGN, path(parentField, fieldName, entry.getKey()), null, processValueAlias(vals, entry.getValue()));
         }
     }
 
     private void processDeletes(String parentField, String fieldName, Collection<String> deletes) {
         for (String id : deletes) {
-            removeSection.add(String.format("%s", joinFields(parentField, fieldName, id)));
+            addTerm(Section.REMOVE, TermFormat.PATH, path(parentField, fieldName, id), null, null);
         }
     }
 
@@ -340,29 +419,94 @@ public class DynamoExpressionBuilder {
         return alias;
     }
 
-    private String joinFields(String... fields) {
-        // if the parent field is null, then shift all fields down a position
-        if (fields[0] == null) {
-            fields[0] = fields[1];
-            if (fields.length == 3) {
-                fields = new String[]{fields[1], fields[2]};
-            } else {
-                fields = new String[]{fields[1]};
+    // if the parent field is null the path starts at the field
+    private static String[] path(String parentField, String fieldName) {
+        return parentField == null ? new String[]{fieldName} : new String[]{parentField, fieldName};
+    }
+
+    private static String[] path(String parentField, String fieldName, String key) {
+        return parentField == null ? new String[]{fieldName, key} : new String[]{parentField, fieldName, key};
+    }
+
+    private void addTerm(Section section, TermFormat format, String[] path, String operator, String value) {
+        terms.add(new Term(section, format, namePrefix, path, null, operator, value));
+        rendered = null;
+    }
+
+    private void addLiteralTerm(Section section, TermFormat format, String literalPath) {
+        terms.add(new Term(section, format, namePrefix, null, literalPath, null, null));
+        rendered = null;
+    }
+
+    private RenderedExpression render() {
+        if (rendered == null) {
+            NameMap nameMap = new NameMap();
+            Map<String, Map<String, Integer>> aliasesByPrefix = new HashMap<>();
+            List<TermShape> shape = new ArrayList<>(terms.size());
+            for (Term term : terms) {
+                int[] aliases = null;
+                if (term.path != null) {
+                    Map<String, Integer> prefixAliases = aliasesByPrefix.computeIfAbsent(term.namePrefix, p -> new HashMap<>());
+                    aliases = new int[term.path.length];
+                    for (int i = 0; i < term.path.length; i++) {
+                        Integer alias = prefixAliases.get(term.path[i]);
+                        if (alias == null) {
+                            alias = prefixAliases.size();
+                            prefixAliases.put(term.path[i], alias);
+                            nameMap.with(term.namePrefix + alias, term.path[i]);
+                        }
+                        aliases[i] = alias;
+                    }
+                }
+                shape.add(new TermShape(term, aliases));
             }
+            RenderedExpression cached = EXPRESSION_CACHE.getIfPresent(shape);
+            if (cached == null) {
+                cached = render(shape);
+                EXPRESSION_CACHE.put(shape, cached);
+            }
+            rendered = new RenderedExpression(cached.updateExpression, cached.conditionalExpression, nameMap);
         }
-        for (int index = 0; index < fields.length; index++) {
-            if (fields[index] != null) {
-                String alias = nameAliasToName.get(fields[index]);
-                if (alias == null) {
-                    alias = names.next();
-                    nameMap = nameMap.with(alias, fields[index]);
-                    nameAliasToName.put(fields[index], alias);
+        return rendered;
+    }
+
+    private static RenderedExpression render(List<TermShape> shape) {
+        StringBuilder[] sections = new StringBuilder[Section.values().length];
+        for (TermShape termShape : shape) {
+            Term term = termShape.term;
+            StringBuilder sb = sections[term.section.ordinal()];
+            if (sb == null) {
+                sb = new StringBuilder();
+                sections[term.section.ordinal()] = sb;
+            } else {
+                sb.append(term.section == Section.CONDITION ? " AND " : ", ");
+            }
+            String path = term.literalPath;
+            if (path == null) {
+                StringBuilder pathBuilder = new StringBuilder();
+                for (int alias : termShape.aliases) {
+                    if (pathBuilder.length() > 0) {
+                        pathBuilder.append('.');
+                    }
+                    pathBuilder.append(term.namePrefix).append(alias);
                 }
-                fields[index] = alias;
+                path = pathBuilder.toString();
             }
+            term.format.render(sb, path, term.operator, term.value);
+        }
 
+        StringBuilder updateExpression = new StringBuilder();
+        for (Section section : Section.values()) {
+            StringBuilder sb = sections[section.ordinal()];
+            if (section != Section.CONDITION && sb != null) {
+                if (updateExpression.length() > 0) {
+                    updateExpression.append(' ');
+                }
+                updateExpression.append(section.name()).append(' ').append(sb);
+            }
         }
-        return Joiner.on(".").join(fields);
+        StringBuilder conditions = sections[Section.CONDITION.ordinal()];
+        return new RenderedExpression(updateExpression.toString(), conditions == null ? "" : conditions.toString(), null);
     }
 
     //TODO: this is used to serialize a set of custom types to dynamo, however, it does not deserialize so this is not currently supported
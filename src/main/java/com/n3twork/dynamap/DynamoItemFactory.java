@@ -4,11 +4,13 @@ import com.amazonaws.services.dynamodbv2.document.Item;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.n3twork.dynamap.model.Field;
+import com.n3twork.dynamap.model.Index;
 import com.n3twork.dynamap.model.Schema;
 import com.n3twork.dynamap.model.TableDefinition;
 import com.n3twork.dynamap.model.Type;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -16,6 +18,8 @@ import java.util.Map;
 class DynamoItemFactory {
     private final ObjectMapper objectMapper;
     private final boolean disableOptimisticLocking;
+    private ItemSizeStats itemSizeStats;
+    private boolean chunking;
 
     public DynamoItemFactory(ObjectMapper objectMapper) {
         if (null == objectMapper) {
@@ -30,6 +34,26 @@ class DynamoItemFactory {
         this.disableOptimisticLocking = disableOptimisticLocking;
     }
 
+    /**
+     * Records the size of every item created in the histogram of its table.
+     */
+    public DynamoItemFactory withItemSizeStats(ItemSizeStats itemSizeStats) {
+        this.itemSizeStats = itemSizeStats;
+        return this;
+    }
+
+    /**
+     * Set when chunked values larger than their chunk size will be split into chunk items before the item is written,
+     * so that they do not count towards the size of the item.
+     */
+    public DynamoItemFactory withChunking(boolean chunking) {
+        this.chunking = chunking;
+        return this;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the item is larger than the maximum item size of DynamoDB
+     */
     public <T extends DynamapRecordBean> Item asDynamoItem(T object, TableDefinition tableDefinition) {
         Map<String, Object> map = objectMapper.convertValue(object, new TypeReference<Map<String, Object>>() {
         });
@@ -80,6 +104,29 @@ class DynamoItemFactory {
             item.withPrimaryKey(hashKeyFieldName, object.getHashKeyValue());
         }
 
+        for (Index index : tableDefinition.getShardedIndexes()) {
+            String value = item.getString(tableDefinition.getField(index.getHashKey()).getDynamoName());
+            if (value != null) {
+                item.withString(index.getShardAttributeName(), IndexShards.shardedValue(value, object.getHashKeyValue(), object.getRangeKeyValue(), index.getShards()));
+            }
+        }
+
+        long storedSize = ItemSizeCalculator.sizeOf(item);
+        for (Field field : chunking ? tableDefinition.getChunkedFields() : Collections.<Field>emptyList()) {
+            // values larger than their chunk size are replaced by a small manifest when saved
+            Object value = item.get(field.getDynamoName());
+            if (value instanceof byte[] && ((byte[]) value).length > field.getChunkSize()) {
+                storedSize -= ((byte[]) value).length;
+            }
+        }
+        if (storedSize > ItemSizeCalculator.MAX_ITEM_SIZE) {
+            throw new IllegalArgumentException(String.format("Item %s of table %s is %d bytes, larger than the maximum item size of %d bytes",
+                    object.getHashKeyValue(), tableDefinition.getTableName(), storedSize, ItemSizeCalculator.MAX_ITEM_SIZE));
+        }
+        if (itemSizeStats != null) {
+            itemSizeStats.record(tableDefinition.getTableName(), storedSize);
+        }
+
         return item;
     }
 
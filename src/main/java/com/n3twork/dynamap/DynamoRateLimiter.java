@@ -31,6 +31,8 @@ public class DynamoRateLimiter {
 
     private RateLimiter rateLimiter;
     private int permitsToConsume = 1;
+    // consumed capacity not yet charged because permits are whole units
+    private double fractionalUnits;
     private final RateLimitType rateLimitType;
     private Integer targetPercent;
 
@@ -62,14 +64,14 @@ public class DynamoRateLimiter {
         return totalSecondsSlept;
     }
 
-    public void setTargetPercent(int targetPercent) {
+    public synchronized void setTargetPercent(int targetPercent) {
         if (rateLimiter != null) {
             throw new IllegalStateException("Rate limiter has already been initialized");
         }
         this.targetPercent = targetPercent;
     }
 
-    public void init(Table table, String indexName) {
+    public synchronized void init(Table table, String indexName) {
         if (targetPercent == null) {
             throw new IllegalStateException("Target percent has not been set");
         }
@@ -104,30 +106,83 @@ public class DynamoRateLimiter {
     }
 
     public void acquire() {
+        RateLimiter rateLimiter;
+        int permits;
+        synchronized (this) {
+            rateLimiter = this.rateLimiter;
+            permits = permitsToConsume;
+            permitsToConsume = 1;
+        }
         if (rateLimiter != null) {
-            totalSecondsSlept += rateLimiter.acquire(permitsToConsume);
+            // acquire outside the lock so that concurrent callers sharing this limiter can report consumed capacity while waiting
+            double secondsSlept = rateLimiter.acquire(permits);
+            synchronized (this) {
+                totalSecondsSlept += secondsSlept;
+            }
+        } else {
+            throw new RuntimeException("Not initialized");
+        }
+    }
+
+    /**
+     * Acquires an estimated number of permits up front, plus any capacity previously reported beyond what was acquired.
+     * Use with reconcile(double, int) once the actual consumed capacity is known.
+     */
+    public void acquire(int estimatedPermits) {
+        RateLimiter rateLimiter;
+        int permits;
+        synchronized (this) {
+            rateLimiter = this.rateLimiter;
+            permits = permitsToConsume - 1 + estimatedPermits;
             permitsToConsume = 1;
+        }
+        if (rateLimiter != null) {
+            double secondsSlept = rateLimiter.acquire(Math.max(1, permits));
+            synchronized (this) {
+                totalSecondsSlept += secondsSlept;
+            }
         } else {
             throw new RuntimeException("Not initialized");
         }
     }
 
-    public void setConsumedCapacity(ConsumedCapacity consumedCapacity) {
+    /**
+     * Records the capacity actually consumed by an operation for which acquiredPermits were acquired up front. Any
+     * shortfall is added to the permits acquired by the next call to acquire.
+     */
+    public synchronized void reconcile(double consumedUnits, int acquiredPermits) {
+        double shortfall = consumedUnits - acquiredPermits + fractionalUnits;
+        if (shortfall > 0) {
+            int wholeUnits = (int) shortfall;
+            permitsToConsume += wholeUnits;
+            fractionalUnits = shortfall - wholeUnits;
+        } else {
+            fractionalUnits = 0;
+        }
+    }
+
+    public synchronized void setConsumedCapacity(ConsumedCapacity consumedCapacity) {
         if (consumedCapacity != null) {
-            permitsToConsume = (int) (consumedCapacity.getCapacityUnits() - 1.0);
-            if (permitsToConsume <= 0) {
-                permitsToConsume = 1;
-            }
+            setConsumedUnits(consumedCapacity.getCapacityUnits());
         }
     }
 
-    public void setConsumedCapacity(List<ConsumedCapacity> consumedCapacities) {
+    public synchronized void setConsumedCapacity(List<ConsumedCapacity> consumedCapacities) {
         if (consumedCapacities != null) {
-            double totalUnits = consumedCapacities.stream().mapToDouble(ConsumedCapacity::getCapacityUnits).sum();
-            permitsToConsume = (int) (totalUnits - 1.0);
-            if (permitsToConsume <= 0) {
-                permitsToConsume = 1;
-            }
+            setConsumedUnits(consumedCapacities.stream().mapToDouble(ConsumedCapacity::getCapacityUnits).sum());
+        }
+    }
+
+    // one permit was acquired for the operation, the rest is added to what the next acquire owes and fractions are
+    // carried over, so reports of concurrent callers sharing this limiter accumulate
+    private void setConsumedUnits(double units) {
+        double owed = units - 1.0 + fractionalUnits;
+        if (owed > 0) {
+            int wholeUnits = (int) owed;
+            permitsToConsume += wholeUnits;
+            fractionalUnits = owed - wholeUnits;
+        } else {
+            fractionalUnits = 0;
         }
     }
 
@@ -0,0 +1,164 @@
+/*
+    Copyright 2018 N3TWORK INC
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.n3twork.dynamap;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads the items of a file written by Dynamap.exportTable, one block at a time.
+ * <p>
+ * The file starts with a magic number and a version, followed by blocks of items. Each block has a header of its
+ * uncompressed length, compressed length and item count, followed by the deflated items, each of which is length
+ * prefixed and encoded with one type tag per attribute value. The file ends with an index of the offset and item count
+ * of every block, and a footer holding the offset of the index, the total item count and the magic number.
+ */
+public class ExportFileReader implements Iterator<Map<String, AttributeValue>>, Closeable {
+
+    static final int MAGIC = 0x444d5850;
+    static final int VERSION = 1;
+    static final int FOOTER_SIZE = 20;
+
+    private final FileChannel channel;
+    private final long indexOffset;
+    private final long itemCount;
+    private final int blockCount;
+    private final Inflater inflater = new Inflater(true);
+    private long position = 8;
+    private DataInputStream block;
+    private int remainingInBlock;
+
+    public ExportFileReader(Path path) {
+        try {
+            this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        try {
+            ByteBuffer header = read(0, 8);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException("Not a Dynamap export file: " + path);
+            }
+            if (channel.size() < 12 + FOOTER_SIZE) {
+                throw new IOException("Incomplete Dynamap export file: " + path);
+            }
+            ByteBuffer footer = read(channel.size() - FOOTER_SIZE, FOOTER_SIZE);
+            this.indexOffset = footer.getLong();
+            this.itemCount = footer.getLong();
+            if (footer.getInt() != MAGIC) {
+                throw new IOException("Incomplete Dynamap export file: " + path);
+            }
+            this.blockCount = read(indexOffset, 4).getInt();
+        } catch (IOException e) {
+            close();
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return the number of items in the file, from its footer
+     */
+    public long getItemCount() {
+        return itemCount;
+    }
+
+    public int getBlockCount() {
+        return blockCount;
+    }
+
+    @Override
+    public boolean hasNext() {
+        try {
+            while (remainingInBlock == 0) {
+                if (position >= indexOffset) {
+                    return false;
+                }
+                readBlock();
+            }
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public Map<String, AttributeValue> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        try {
+            block.readInt();
+            remainingInBlock--;
+            return AttributeValueCodec.readItem(block);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void readBlock() throws IOException {
+        ByteBuffer blockHeader = read(position, 12);
+        int rawLength = blockHeader.getInt();
+        int compressedLength = blockHeader.getInt();
+        int items = blockHeader.getInt();
+        ByteBuffer compressed = read(position + 12, compressedLength);
+        byte[] raw = new byte[rawLength];
+        inflater.reset();
+        inflater.setInput(compressed.array(), 0, compressedLength);
+        try {
+            int length = 0;
+            while (length < rawLength && !inflater.finished()) {
+                length += inflater.inflate(raw, length, rawLength - length);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt block at offset " + position, e);
+        }
+        position += 12 + compressedLength;
+        block = new DataInputStream(new ByteArrayInputStream(raw));
+        remainingInBlock = items;
+    }
+
+    private ByteBuffer read(long offset, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of export file");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    @Override
+    public void close() {
+        inflater.end();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
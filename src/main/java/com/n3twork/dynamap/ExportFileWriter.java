@@ -0,0 +1,158 @@
+/*
+    Copyright 2018 N3TWORK INC
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.n3twork.dynamap;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+/**
+ * Writes items to an export file, see ExportFileReader for the format. Items are buffered until a block is full, so
+ * memory use is bounded by the block size.
+ */
+class ExportFileWriter implements Closeable {
+
+    private final FileChannel channel;
+    private final int blockSize;
+    private final ByteArrayOutputStream block;
+    private final DataOutputStream blockOut;
+    private final ByteArrayOutputStream record = new ByteArrayOutputStream();
+    private final DataOutputStream recordOut = new DataOutputStream(record);
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    private final List<Long> blockOffsets = new ArrayList<>();
+    private final List<Integer> blockItemCounts = new ArrayList<>();
+    private byte[] compressed;
+    private int blockItems;
+    private long itemCount;
+    private long position;
+    private boolean closed;
+
+    ExportFileWriter(Path path, int blockSize) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        this.blockSize = blockSize;
+        this.block = new ByteArrayOutputStream(blockSize + blockSize / 4);
+        this.blockOut = new DataOutputStream(block);
+        this.compressed = new byte[blockSize];
+        ByteBuffer header = ByteBuffer.allocate(8);
+        header.putInt(ExportFileReader.MAGIC).putInt(ExportFileReader.VERSION).flip();
+        writeFully(header);
+    }
+
+    void write(Map<String, AttributeValue> item) throws IOException {
+        record.reset();
+        AttributeValueCodec.writeItem(recordOut, item);
+        blockOut.writeInt(record.size());
+        record.writeTo(blockOut);
+        blockItems++;
+        itemCount++;
+        if (block.size() >= blockSize) {
+            flushBlock();
+        }
+    }
+
+    long getItemCount() {
+        return itemCount;
+    }
+
+    /**
+     * @return the number of bytes written to the file so far
+     */
+    long getPosition() {
+        return position;
+    }
+
+    private void flushBlock() throws IOException {
+        if (blockItems == 0) {
+            return;
+        }
+        byte[] raw = block.toByteArray();
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+        int length = 0;
+        while (!deflater.finished()) {
+            if (length == compressed.length) {
+                byte[] larger = new byte[compressed.length * 2];
+                System.arraycopy(compressed, 0, larger, 0, length);
+                compressed = larger;
+            }
+            length += deflater.deflate(compressed, length, compressed.length - length);
+        }
+        blockOffsets.add(position);
+        blockItemCounts.add(blockItems);
+        ByteBuffer blockHeader = ByteBuffer.allocate(12);
+        blockHeader.putInt(raw.length).putInt(length).putInt(blockItems).flip();
+        writeFully(blockHeader);
+        writeFully(ByteBuffer.wrap(compressed, 0, length));
+        block.reset();
+        blockItems = 0;
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer);
+        }
+    }
+
+    /**
+     * Closes the file without a footer, so that readers reject it as incomplete.
+     */
+    void abort() throws IOException {
+        if (!closed) {
+            closed = true;
+            deflater.end();
+            channel.close();
+        }
+    }
+
+    /**
+     * Flushes the last block and writes the block index and the footer.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            flushBlock();
+            long indexOffset = position;
+            ByteBuffer index = ByteBuffer.allocate(4 + blockOffsets.size() * 12 + ExportFileReader.FOOTER_SIZE);
+            index.putInt(blockOffsets.size());
+            for (int i = 0; i < blockOffsets.size(); i++) {
+                index.putLong(blockOffsets.get(i)).putInt(blockItemCounts.get(i));
+            }
+            index.putLong(indexOffset).putLong(itemCount).putInt(ExportFileReader.MAGIC).flip();
+            writeFully(index);
+            channel.force(false);
+        } finally {
+            deflater.end();
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+    Copyright 2018 N3TWORK INC
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.n3twork.dynamap;
+
+/**
+ * Contains the parameters for exporting a table to local files with Dynamap.exportTable.
+ */
+public class ExportRequest<T> {
+
+    public static final int DEFAULT_TOTAL_SEGMENTS = 4;
+    public static final int DEFAULT_BLOCK_SIZE = 256 * 1024;
+
+    private final Class<T> resultClass;
+    private String suffix;
+    private int totalSegments = DEFAULT_TOTAL_SEGMENTS;
+    private int blockSize = DEFAULT_BLOCK_SIZE;
+    private Integer maxPageSize;
+    private boolean consistentRead;
+    private DynamoRateLimiter readRateLimiter;
+    private ProgressCallback progressCallback;
+
+    public ExportRequest(Class<T> resultClass) {
+        this.resultClass = resultClass;
+    }
+
+    public ExportRequest<T> withSuffix(String suffix) {
+        this.suffix = suffix;
+        return this;
+    }
+
+    /**
+     * Sets the number of segments scanned in parallel. Each segment is written to its own file.
+     * @param totalSegments Number of segments
+     * @return this object with new state
+     */
+    public ExportRequest<T> withTotalSegments(int totalSegments) {
+        if (totalSegments < 1) {
+            throw new IllegalArgumentException("totalSegments must be at least 1");
+        }
+        this.totalSegments = totalSegments;
+        return this;
+    }
+
+    /**
+     * Sets the uncompressed size in bytes at which a block of items is compressed and written.
+     * @param blockSize Block size in bytes
+     * @return this object with new state
+     */
+    public ExportRequest<T> withBlockSize(int blockSize) {
+        if (blockSize < 1024) {
+            throw new IllegalArgumentException("blockSize must be at least 1024");
+        }
+        this.blockSize = blockSize;
+        return this;
+    }
+
+    public ExportRequest<T> withMaxPageSize(Integer maxPageSize) {
+        this.maxPageSize = maxPageSize;
+        return this;
+    }
+
+    public ExportRequest<T> withConsistentRead(boolean consistentRead) {
+        this.consistentRead = consistentRead;
+        return this;
+    }
+
+    /**
+     * Sets a read rate limiter shared by all segments.
+     * @param readRateLimiter Rate limiter for the table
+     * @return this object with new state
+     */
+    public ExportRequest<T> withReadRateLimiter(DynamoRateLimiter readRateLimiter) {
+        this.readRateLimiter = readRateLimiter;
+        return this;
+    }
+
+    /**
+     * Sets a callback that receives the total number of items exported after each page.
+     * @param progressCallback Progress callback
+     * @return this object with new state
+     */
+    public ExportRequest<T> withProgressCallback(ProgressCallback progressCallback) {
+        this.progressCallback = progressCallback;
+        return this;
+    }
+
+    ////////
+
+    public Class<T> getResultClass() {
+        return resultClass;
+    }
+
+    public String getSuffix() {
+        return suffix;
+    }
+
+    public int getTotalSegments() {
+        return totalSegments;
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    public Integer getMaxPageSize() {
+        return maxPageSize;
+    }
+
+    public boolean isConsistentRead() {
+        return consistentRead;
+    }
+
+    public DynamoRateLimiter getReadRateLimiter() {
+        return readRateLimiter;
+    }
+
+    public ProgressCallback getProgressCallback() {
+        return progressCallback;
+    }
+}
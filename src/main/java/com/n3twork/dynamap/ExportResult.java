@@ -0,0 +1,62 @@
+/*
+    Copyright 2018 N3TWORK INC
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.n3twork.dynamap;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * The files written by Dynamap.exportTable, one per segment in segment order, and their totals.
+ */
+public class ExportResult {
+
+    private final List<Path> files;
+    private final long itemCount;
+    private final long bytesWritten;
+    private final double consumedCapacity;
+
+    ExportResult(List<Path> files, long itemCount, long bytesWritten, double consumedCapacity) {
+        this.files = files;
+        this.itemCount = itemCount;
+        this.bytesWritten = bytesWritten;
+        this.consumedCapacity = consumedCapacity;
+    }
+
+    public List<Path> getFiles() {
+        return files;
+    }
+
+    public long getItemCount() {
+        return itemCount;
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * @return the read capacity units consumed by the scans
+     */
+    public double getConsumedCapacity() {
+        return consumedCapacity;
+    }
+
+    @Override
+    public String toString() {
+        return "ExportResult{files=" + files + ", itemCount=" + itemCount + ", bytesWritten=" + bytesWritten + ", consumedCapacity=" + consumedCapacity + "}";
+    }
+}
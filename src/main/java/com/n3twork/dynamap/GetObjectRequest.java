@@ -16,6 +16,9 @@
 
 package com.n3twork.dynamap;
 
+import java.util.Arrays;
+import java.util.List;
+
 public class GetObjectRequest<T extends DynamapRecordBean> {
 
     private String hashKeyValue;
@@ -23,6 +26,7 @@ public class GetObjectRequest<T extends DynamapRecordBean> {
     private boolean consistentRead;
     private final Class<T> resultClass;
     private String suffix;
+    private List<DynamapField> projection;
 
     public GetObjectRequest(Class<T> resultClass) {
         this.resultClass = resultClass;
@@ -48,6 +52,14 @@ public class GetObjectRequest<T extends DynamapRecordBean> {
         return this;
     }
 
+    /**
+     * Only load the given fields. The returned beans throw an IllegalStateException when a field that was not projected is accessed.
+     */
+    public GetObjectRequest<T> withProjection(DynamapField... fields) {
+        this.projection = Arrays.asList(fields);
+        return this;
+    }
+
     public String getHashKeyValue() {
         return hashKeyValue;
     }
@@ -67,4 +79,8 @@ public class GetObjectRequest<T extends DynamapRecordBean> {
     public String getSuffix() {
         return suffix;
     }
+
+    public List<DynamapField> getProjection() {
+        return projection;
+    }
 }
@@ -0,0 +1,280 @@
+/*
+    Copyright 2018 N3TWORK INC
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.n3twork.dynamap;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Tracks the read units, write units and throttle events attributed to each (table, hash key) over a sliding window,
+ * to find the keys responsible for hot partitions. Counts are kept in a count-min sketch per time slice, so memory is
+ * bounded regardless of the number of keys, and only a fixed number of candidate keys per slice are remembered for
+ * reporting. Estimates may over count but never under count.
+ * <p>
+ * Enable it with Dynamap.withHotKeyTracker(); when no tracker is set nothing is recorded.
+ */
+public class HotKeyTracker {
+
+    public enum Metric {
+        READ_UNITS, WRITE_UNITS, THROTTLES
+    }
+
+    private static final int METRICS = Metric.values().length;
+    // capacity units are counted in thousandths so that fractional units can be kept in a long sketch
+    private static final double SCALE = 1000.0;
+    private static final char KEY_SEPARATOR = '\u0000';
+    private static final int DEFAULT_TOP_KEYS = 20;
+
+    private final int width;
+    private final int depth;
+    private final int candidatesPerSlice;
+    private final long sliceMillis;
+    private final Slice[] slices;
+
+    /**
+     * Creates a tracker covering the last minute in 10 second slices, with a 4 x 512 sketch and 100 candidate keys per
+     * metric and slice.
+     */
+    public HotKeyTracker() {
+        this(512, 4, 100, 60000, 6);
+    }
+
+    /**
+     * @param width              the number of counters per sketch row, rounded up to a power of two
+     * @param depth              the number of sketch rows
+     * @param candidatesPerSlice the number of keys remembered per metric and slice
+     * @param windowMillis       the length of the window reported by getTopKeys()
+     * @param sliceCount         the number of slices the window is divided into
+     */
+    public HotKeyTracker(int width, int depth, int candidatesPerSlice, long windowMillis, int sliceCount) {
+        if (width < 1 || depth < 1 || candidatesPerSlice < 1 || sliceCount < 1 || windowMillis < sliceCount) {
+            throw new IllegalArgumentException("Invalid hot key tracker dimensions");
+        }
+        int capacity = 1;
+        while (capacity < width) {
+            capacity <<= 1;
+        }
+        this.width = capacity;
+        this.depth = depth;
+        this.candidatesPerSlice = candidatesPerSlice;
+        this.sliceMillis = windowMillis / sliceCount;
+        this.slices = new Slice[sliceCount];
+        for (int i = 0; i < sliceCount; i++) {
+            slices[i] = new Slice();
+        }
+    }
+
+    void recordRead(String tableName, Object hashKey, double capacityUnits) {
+        record(Metric.READ_UNITS, tableName, hashKey, capacityUnits);
+    }
+
+    void recordWrite(String tableName, Object hashKey, double capacityUnits) {
+        record(Metric.WRITE_UNITS, tableName, hashKey, capacityUnits);
+    }
+
+    void recordThrottle(String tableName, Object hashKey) {
+        record(Metric.THROTTLES, tableName, hashKey, 1);
+    }
+
+    /**
+     * @return the 20 keys with the highest value of the metric over the window
+     */
+    public List<HotKey> getTopKeys(Metric metric) {
+        return getTopKeys(metric, DEFAULT_TOP_KEYS);
+    }
+
+    /**
+     * @return up to limit keys with the highest value of the metric over the window, highest first
+     */
+    public List<HotKey> getTopKeys(Metric metric, int limit) {
+        long epoch = currentEpoch();
+        List<Slice> live = new ArrayList<>(slices.length);
+        Set<String> candidates = new HashSet<>();
+        for (Slice slice : slices) {
+            if (slice.epoch > epoch - slices.length && slice.epoch <= epoch) {
+                live.add(slice);
+                synchronized (slice) {
+                    candidates.addAll(slice.candidates.get(metric.ordinal()).keySet());
+                }
+            }
+        }
+
+        List<HotKey> hotKeys = new ArrayList<>(candidates.size());
+        for (String key : candidates) {
+            int hash = hash(key);
+            long[] totals = new long[METRICS];
+            for (Slice slice : live) {
+                for (int m = 0; m < METRICS; m++) {
+                    totals[m] += estimate(slice.sketches[m], hash);
+                }
+            }
+            int separator = key.indexOf(KEY_SEPARATOR);
+            hotKeys.add(new HotKey(key.substring(0, separator), key.substring(separator + 1),
+                    totals[Metric.READ_UNITS.ordinal()] / SCALE, totals[Metric.WRITE_UNITS.ordinal()] / SCALE,
+                    Math.round(totals[Metric.THROTTLES.ordinal()] / SCALE)));
+        }
+        hotKeys.sort(Comparator.comparingDouble((HotKey hotKey) -> hotKey.getValue(metric)).reversed());
+        return hotKeys.size() > limit ? new ArrayList<>(hotKeys.subList(0, limit)) : hotKeys;
+    }
+
+    private void record(Metric metric, String tableName, Object hashKey, double amount) {
+        long scaled = Math.round(amount * SCALE);
+        if (scaled <= 0 || hashKey == null) {
+            return;
+        }
+        long epoch = currentEpoch();
+        Slice slice = slices[(int) (epoch % slices.length)];
+        if (slice.epoch != epoch) {
+            slice.reset(epoch);
+        }
+        String key = tableName + KEY_SEPARATOR + hashKey;
+        int hash = hash(key);
+        AtomicLongArray sketch = slice.sketches[metric.ordinal()];
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, sketch.addAndGet(index(row, hash), scaled));
+        }
+        if (estimate > slice.thresholds.get(metric.ordinal())) {
+            slice.offer(metric.ordinal(), key, estimate);
+        }
+    }
+
+    private long estimate(AtomicLongArray sketch, int hash) {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, sketch.get(index(row, hash)));
+        }
+        return estimate;
+    }
+
+    // double hashing derives the row hashes from a single hash code
+    private int index(int row, int hash) {
+        int secondary = (hash * 0x9E3779B9) | 1;
+        return row * width + ((hash + row * secondary) & (width - 1));
+    }
+
+    private long currentEpoch() {
+        return System.currentTimeMillis() / sliceMillis;
+    }
+
+    private static int hash(String key) {
+        int h = key.hashCode() * 0x85EBCA6B;
+        return h ^ (h >>> 16);
+    }
+
+    private final class Slice {
+        private volatile long epoch = -1;
+        private final AtomicLongArray[] sketches = new AtomicLongArray[METRICS];
+        private final AtomicLongArray thresholds = new AtomicLongArray(METRICS);
+        private final List<Map<String, Long>> candidates = new ArrayList<>(METRICS);
+
+        Slice() {
+            for (int m = 0; m < METRICS; m++) {
+                sketches[m] = new AtomicLongArray(width * depth);
+                candidates.add(new HashMap<>());
+            }
+        }
+
+        synchronized void reset(long newEpoch) {
+            if (epoch == newEpoch) {
+                return;
+            }
+            for (int m = 0; m < METRICS; m++) {
+                for (int i = 0; i < sketches[m].length(); i++) {
+                    sketches[m].set(i, 0);
+                }
+                thresholds.set(m, 0);
+                candidates.get(m).clear();
+            }
+            epoch = newEpoch;
+        }
+
+        synchronized void offer(int metric, String key, long estimate) {
+            Map<String, Long> metricCandidates = candidates.get(metric);
+            metricCandidates.put(key, estimate);
+            if (metricCandidates.size() <= candidatesPerSlice) {
+                return;
+            }
+            String coldest = null;
+            long coldestEstimate = Long.MAX_VALUE;
+            for (Map.Entry<String, Long> entry : metricCandidates.entrySet()) {
+                if (entry.getValue() < coldestEstimate) {
+                    coldest = entry.getKey();
+                    coldestEstimate = entry.getValue();
+                }
+            }
+            metricCandidates.remove(coldest);
+            // only keys estimated above the coldest evicted key can enter the candidates
+            thresholds.set(metric, coldestEstimate);
+        }
+    }
+
+    /**
+     * The estimated activity of one hash key over the window of a HotKeyTracker.
+     */
+    public static class HotKey {
+        private final String tableName;
+        private final String hashKey;
+        private final double readUnits;
+        private final double writeUnits;
+        private final long throttles;
+
+        HotKey(String tableName, String hashKey, double readUnits, double writeUnits, long throttles) {
+            this.tableName = tableName;
+            this.hashKey = hashKey;
+            this.readUnits = readUnits;
+            this.writeUnits = writeUnits;
+            this.throttles = throttles;
+        }
+
+        public String getTableName() {
+            return tableName;
+        }
+
+        public String getHashKey() {
+            return hashKey;
+        }
+
+        public double getReadUnits() {
+            return readUnits;
+        }
+
+        public double getWriteUnits() {
+            return writeUnits;
+        }
+
+        public long getThrottles() {
+            return throttles;
+        }
+
+        public double getValue(Metric metric) {
+            switch (metric) {
+                case READ_UNITS:
+                    return readUnits;
+                case WRITE_UNITS:
+                    return writeUnits;
+                default:
+                    return throttles;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "HotKey{table=" + tableName + ", hashKey=" + hashKey + ", readUnits=" + readUnits + ", writeUnits=" + writeUnits + ", throttles=" + throttles + "}";
+        }
+    }
+}
@@ -0,0 +1,47 @@
+/*
+    Copyright 2018 N3TWORK INC
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.n3twork.dynamap;
+
+/**
+ * Computes the hash key values of sharded global secondary indexes. An item is written to the index as value#k, where
+ * the shard k is derived from the item's primary key so that an item always stays in the same shard.
+ */
+public class IndexShards {
+
+    private static final String SEPARATOR = "#";
+
+    private IndexShards() {
+    }
+
+    public static int shardOf(String hashKeyValue, Object rangeKeyValue, int shards) {
+        // String.hashCode is specified by the JLS, so shards are stable across JVMs and releases
+        int hash = hashKeyValue.hashCode();
+        if (rangeKeyValue != null) {
+            hash = 31 * hash + rangeKeyValue.toString().hashCode();
+        }
+        return Math.floorMod(hash, shards);
+    }
+
+    public static String shardedValue(String value, int shard) {
+        return value + SEPARATOR + shard;
+    }
+
+    public static String shardedValue(String value, String hashKeyValue, Object rangeKeyValue, int shards) {
+        return shardedValue(value, shardOf(hashKeyValue, rangeKeyValue, shards));
+    }
+
+}
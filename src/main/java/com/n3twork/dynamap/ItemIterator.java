@@ -7,34 +7,96 @@ import com.amazonaws.services.dynamodbv2.document.KeyAttribute;
 import com.amazonaws.services.dynamodbv2.document.internal.IteratorSupport;
 import com.amazonaws.services.dynamodbv2.model.AttributeValue;
 
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
 
 public abstract class ItemIterator<T> implements Iterator<T> {
     private ItemCollection<?> itemCollection;
     protected IteratorSupport<Item, ?> iterator;
+    private PagePrefetcher pagePrefetcher;
+    private PagePrefetcher.PrefetchedPage currentPage;
+    private Iterator<Item> currentPageIterator = Collections.emptyIterator();
 
     ItemIterator(ItemCollection<?> itemCollection) {
         this.itemCollection = itemCollection;
         iterator = itemCollection.iterator();
     }
 
+    // for iterators that are not backed by a single ItemCollection and override the item access methods
+    ItemIterator() {
+    }
+
+    /**
+     * Fetch pages on a background thread, keeping up to prefetchDepth pages ahead of the items being consumed.
+     */
+    ItemIterator<T> withPrefetch(int prefetchDepth, ExecutorService executorService) {
+        if (prefetchDepth > 0) {
+            pagePrefetcher = new PagePrefetcher(itemCollection, this, prefetchDepth, executorService);
+            pagePrefetcher.start();
+        }
+        return this;
+    }
+
     public boolean hasNext() {
-        return iterator.hasNext();
+        if (pagePrefetcher == null) {
+            return iterator.hasNext();
+        }
+        while (!currentPageIterator.hasNext()) {
+            PagePrefetcher.PrefetchedPage page = pagePrefetcher.nextPage();
+            if (page == null) {
+                return false;
+            }
+            currentPage = page;
+            currentPageIterator = page.items.iterator();
+        }
+        return true;
+    }
+
+    protected Item nextItem() {
+        if (pagePrefetcher == null) {
+            return iterator.next();
+        }
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return currentPageIterator.next();
+    }
+
+    /**
+     * Stops any background page fetching. Only necessary when prefetching and the results are not fully consumed.
+     */
+    public void close() {
+        if (pagePrefetcher != null) {
+            pagePrefetcher.cancel();
+        }
     }
 
     public int getCount() {
+        if (pagePrefetcher != null) {
+            return currentPage == null ? 0 : currentPage.accumulatedItemCount;
+        }
         return itemCollection.getAccumulatedItemCount();
     }
 
     public int getScannedCount() {
+        if (pagePrefetcher != null) {
+            return currentPage == null ? 0 : currentPage.accumulatedScannedCount;
+        }
         return itemCollection.getAccumulatedScannedCount();
     }
 
     public abstract T next();
 
     public KeyAttribute[] getLastEvaluatedKeys() {
-        Map<String, AttributeValue> lastEvaluatedKeyMap = getLowLevelLastEvaluatedKey();
+        Map<String, AttributeValue> lastEvaluatedKeyMap;
+        if (pagePrefetcher != null) {
+            lastEvaluatedKeyMap = currentPage == null ? null : currentPage.lastEvaluatedKey;
+        } else {
+            lastEvaluatedKeyMap = getLowLevelLastEvaluatedKey();
+        }
         if (lastEvaluatedKeyMap == null) {
             return null;
         }
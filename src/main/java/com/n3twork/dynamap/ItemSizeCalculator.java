@@ -0,0 +1,247 @@
+/*
+    Copyright 2018 N3TWORK INC
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.n3twork.dynamap;
+
+import com.amazonaws.services.dynamodbv2.document.Item;
+import com.amazonaws.services.dynamodbv2.document.ItemUtils;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ProjectionType;
+import com.n3twork.dynamap.model.Index;
+import com.n3twork.dynamap.model.TableDefinition;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * Computes the size DynamoDB bills for an item, and the capacity units reading or writing it consumes.
+ * <p>
+ * The size of an item is the sum of the UTF-8 lengths of its attribute names and the sizes of its values. Strings are
+ * their UTF-8 length and binaries their length. A number takes one byte per two significant digits plus one byte, and
+ * one more when negative. Booleans and nulls take one byte. A list or map takes three bytes plus one byte per element,
+ * plus the sizes of its elements and, for a map, of its keys. Sets take the sum of the sizes of their elements.
+ */
+public final class ItemSizeCalculator {
+
+    public static final int MAX_ITEM_SIZE = 400 * 1024;
+    static final int INDEX_ITEM_OVERHEAD = 100;
+    private static final int WRITE_UNIT_SIZE = 1024;
+    private static final int READ_UNIT_SIZE = 4096;
+
+    private ItemSizeCalculator() {
+    }
+
+    public static long sizeOf(Item item) {
+        long size = 0;
+        for (Map.Entry<String, Object> attribute : item.attributes()) {
+            size += utf8Length(attribute.getKey()) + sizeOfValue(attribute.getValue());
+        }
+        return size;
+    }
+
+    public static long sizeOf(Map<String, AttributeValue> item) {
+        long size = 0;
+        for (Map.Entry<String, AttributeValue> attribute : item.entrySet()) {
+            size += utf8Length(attribute.getKey()) + sizeOf(attribute.getValue());
+        }
+        return size;
+    }
+
+    /**
+     * @return the size of the entry the item adds to a secondary index, including the per item overhead of the index,
+     * or 0 if the item is not in the index because it lacks one of the index keys
+     */
+    public static long indexSizeOf(Item item, TableDefinition tableDefinition, Index index) {
+        String indexHashKey = index.isSharded() ? index.getShardAttributeName() : tableDefinition.getField(index.getHashKey()).getDynamoName();
+        String indexRangeKey = index.getRangeKey() == null ? null : tableDefinition.getField(index.getRangeKey()).getDynamoName();
+        if (item.get(indexHashKey) == null || (indexRangeKey != null && item.get(indexRangeKey) == null)) {
+            return 0;
+        }
+        if (ProjectionType.ALL.toString().equals(index.getProjectionType())) {
+            return sizeOf(item) + INDEX_ITEM_OVERHEAD;
+        }
+        Set<String> projected = new HashSet<>();
+        projected.add(tableDefinition.getField(tableDefinition.getHashKey()).getDynamoName());
+        if (tableDefinition.getRangeKey() != null) {
+            projected.add(tableDefinition.getField(tableDefinition.getRangeKey()).getDynamoName());
+        }
+        projected.add(indexHashKey);
+        if (indexRangeKey != null) {
+            projected.add(indexRangeKey);
+        }
+        if (ProjectionType.INCLUDE.toString().equals(index.getProjectionType()) && index.getNonKeyFields() != null) {
+            for (String nonKeyField : index.getNonKeyFields()) {
+                projected.add(tableDefinition.getField(nonKeyField).getDynamoName());
+            }
+        }
+        long size = INDEX_ITEM_OVERHEAD;
+        for (String attributeName : projected) {
+            if (item.hasAttribute(attributeName)) {
+                size += utf8Length(attributeName) + sizeOfValue(item.get(attributeName));
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return the write capacity units consumed by putting an item, including the writes to the secondary indexes
+     * holding it
+     */
+    public static int writeUnits(Item item, TableDefinition tableDefinition) {
+        return writeUnits(sizeOf(item)) + indexWriteUnits(item, tableDefinition);
+    }
+
+    static int writeUnits(Map<String, AttributeValue> item, TableDefinition tableDefinition) {
+        return tableDefinition == null ? writeUnits(sizeOf(item)) : writeUnits(ItemUtils.toItem(item), tableDefinition);
+    }
+
+    /**
+     * @return the write capacity units consumed by the secondary indexes of the table when the item is written
+     */
+    public static int indexWriteUnits(Item item, TableDefinition tableDefinition) {
+        int units = 0;
+        for (List<Index> indexes : Arrays.asList(tableDefinition.getGlobalSecondaryIndexes(), tableDefinition.getLocalSecondaryIndexes())) {
+            if (indexes != null) {
+                for (Index index : indexes) {
+                    long indexSize = indexSizeOf(item, tableDefinition, index);
+                    if (indexSize > 0) {
+                        units += writeUnits(indexSize);
+                    }
+                }
+            }
+        }
+        return units;
+    }
+
+    /**
+     * @return the write capacity units consumed by writing an item of the given size, at least 1
+     */
+    public static int writeUnits(long size) {
+        return (int) Math.max(1, (size + WRITE_UNIT_SIZE - 1) / WRITE_UNIT_SIZE);
+    }
+
+    /**
+     * @return the read capacity units consumed by reading an item of the given size, half as many for an eventually
+     * consistent read
+     */
+    public static double readUnits(long size, boolean consistentRead) {
+        long units = Math.max(1, (size + READ_UNIT_SIZE - 1) / READ_UNIT_SIZE);
+        return consistentRead ? units : units / 2.0;
+    }
+
+    static long sizeOf(AttributeValue value) {
+        if (value.getS() != null) {
+            return utf8Length(value.getS());
+        }
+        if (value.getN() != null) {
+            return numberSize(value.getN());
+        }
+        if (value.getB() != null) {
+            return value.getB().remaining();
+        }
+        if (value.getBOOL() != null || value.getNULL() != null) {
+            return 1;
+        }
+        long size = 0;
+        if (value.getSS() != null) {
+            for (String s : value.getSS()) {
+                size += utf8Length(s);
+            }
+        } else if (value.getNS() != null) {
+            for (String n : value.getNS()) {
+                size += numberSize(n);
+            }
+        } else if (value.getBS() != null) {
+            for (ByteBuffer b : value.getBS()) {
+                size += b.remaining();
+            }
+        } else if (value.getM() != null) {
+            size = 3;
+            for (Map.Entry<String, AttributeValue> entry : value.getM().entrySet()) {
+                size += 1 + utf8Length(entry.getKey()) + sizeOf(entry.getValue());
+            }
+        } else if (value.getL() != null) {
+            size = 3;
+            for (AttributeValue element : value.getL()) {
+                size += 1 + sizeOf(element);
+            }
+        }
+        return size;
+    }
+
+    // values of a document Item, which holds sets as Set, lists as List and maps as Map
+    private static long sizeOfValue(Object value) {
+        if (value == null || value instanceof Boolean) {
+            return 1;
+        }
+        if (value instanceof String) {
+            return utf8Length((String) value);
+        }
+        if (value instanceof Number) {
+            return numberSize(value.toString());
+        }
+        if (value instanceof byte[]) {
+            return ((byte[]) value).length;
+        }
+        if (value instanceof ByteBuffer) {
+            return ((ByteBuffer) value).remaining();
+        }
+        long size = 0;
+        if (value instanceof Set) {
+            for (Object element : (Set<?>) value) {
+                size += sizeOfValue(element);
+            }
+        } else if (value instanceof List) {
+            size = 3;
+            for (Object element : (List<?>) value) {
+                size += 1 + sizeOfValue(element);
+            }
+        } else if (value instanceof Map) {
+            size = 3;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                size += 1 + utf8Length(entry.getKey().toString()) + sizeOfValue(entry.getValue());
+            }
+        } else {
+            throw new IllegalArgumentException("Unsupported attribute value type: " + value.getClass());
+        }
+        return size;
+    }
+
+    private static long numberSize(String number) {
+        BigDecimal decimal = new BigDecimal(number);
+        int digits = decimal.signum() == 0 ? 1 : decimal.stripTrailingZeros().precision();
+        return (digits + 1) / 2 + 1 + (decimal.signum() < 0 ? 1 : 0);
+    }
+
+    private static int utf8Length(String s) {
+        int length = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+}
@@ -0,0 +1,135 @@
+/*
+    Copyright 2018 N3TWORK INC
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.n3twork.dynamap;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograms of the sizes of the items written by a Dynamap instance, per table. Bucket i counts the items of at most
+ * 1KB &lt;&lt; i, so the last bucket holds the items between 256KB and the maximum item size.
+ */
+public class ItemSizeStats {
+
+    public static final int BUCKETS = 10;
+
+    private final Map<String, TableSizes> sizesByTable = new ConcurrentHashMap<>();
+
+    void record(String tableName, long size) {
+        sizesByTable.computeIfAbsent(tableName, t -> new TableSizes()).record(size);
+    }
+
+    /**
+     * @return the item sizes written to each table, keyed by table name
+     */
+    public Map<String, TableSizes> getSizesByTable() {
+        return Collections.unmodifiableMap(new TreeMap<>(sizesByTable));
+    }
+
+    public TableSizes getSizes(String tableName) {
+        return sizesByTable.get(tableName);
+    }
+
+    @Override
+    public String toString() {
+        return "ItemSizeStats{" + getSizesByTable() + "}";
+    }
+
+    public static class TableSizes {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalBytes = new LongAdder();
+        private final LongAccumulator maxBytes = new LongAccumulator(Math::max, 0);
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+        void record(long size) {
+            count.increment();
+            totalBytes.add(size);
+            maxBytes.accumulate(size);
+            buckets.incrementAndGet(bucket(size));
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getTotalBytes() {
+            return totalBytes.sum();
+        }
+
+        public long getMaxBytes() {
+            return maxBytes.get();
+        }
+
+        public double getAverageBytes() {
+            long count = getCount();
+            return count == 0 ? 0 : (double) getTotalBytes() / count;
+        }
+
+        /**
+         * @return the number of items in each bucket, see getBucketUpperBound
+         */
+        public long[] getBucketCounts() {
+            long[] counts = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = buckets.get(i);
+            }
+            return counts;
+        }
+
+        /**
+         * @return the upper bound of the bucket holding the given percentile of item sizes, so for example
+         * getPercentileBytes(99) is 4096 if at least 99% of the items are at most 4KB
+         */
+        public long getPercentileBytes(double percentile) {
+            long[] counts = getBucketCounts();
+            long total = 0;
+            for (long c : counts) {
+                total += c;
+            }
+            long threshold = (long) Math.ceil(total * percentile / 100.0);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= threshold && seen > 0) {
+                    return getBucketUpperBound(i);
+                }
+            }
+            return 0;
+        }
+
+        @Override
+        public String toString() {
+            return "TableSizes{count=" + getCount() + ", averageBytes=" + getAverageBytes() + ", maxBytes=" + getMaxBytes() + "}";
+        }
+    }
+
+    public static long getBucketUpperBound(int bucket) {
+        return bucket == BUCKETS - 1 ? ItemSizeCalculator.MAX_ITEM_SIZE : 1024L << bucket;
+    }
+
+    static int bucket(long size) {
+        if (size <= 1024) {
+            return 0;
+        }
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros((size - 1) >> 10));
+    }
+}
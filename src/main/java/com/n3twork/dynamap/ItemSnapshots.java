@@ -0,0 +1,70 @@
+/*
+    Copyright 2018 N3TWORK INC
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.n3twork.dynamap;
+
+import com.amazonaws.services.dynamodbv2.document.Item;
+import com.amazonaws.services.dynamodbv2.document.ItemUtils;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.google.common.collect.MapMaker;
+import com.n3twork.dynamap.model.Schema;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Remembers the persisted attributes of loaded beans, so that a later save only writes the attributes that changed.
+ * Beans are held by weak reference and compared by identity, so a snapshot lives as long as its bean.
+ */
+class ItemSnapshots {
+
+    static final class Snapshot {
+        private final String tableName;
+        private final Map<String, AttributeValue> attributes;
+
+        private Snapshot(String tableName, Map<String, AttributeValue> attributes) {
+            this.tableName = tableName;
+            this.attributes = attributes;
+        }
+
+        String getTableName() {
+            return tableName;
+        }
+
+        Map<String, AttributeValue> getAttributes() {
+            return attributes;
+        }
+    }
+
+    private final ConcurrentMap<DynamapRecordBean, Snapshot> snapshots = new MapMaker().weakKeys().makeMap();
+
+    /**
+     * Records the attributes of the item the bean was loaded from or saved as, without its revision.
+     */
+    void record(DynamapRecordBean bean, String tableName, Item item) {
+        Map<String, AttributeValue> attributes = ItemUtils.toAttributeValues(item);
+        attributes.remove(Schema.REVISION_FIELD);
+        snapshots.put(bean, new Snapshot(tableName, attributes));
+    }
+
+    Snapshot get(DynamapRecordBean bean) {
+        return snapshots.get(bean);
+    }
+
+    void remove(DynamapRecordBean bean) {
+        snapshots.remove(bean);
+    }
+}
@@ -0,0 +1,34 @@
+package com.n3twork.dynamap;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.n3twork.dynamap.model.TableDefinition;
+
+import java.util.Map;
+
+/**
+ * Holds the raw attribute map of a DynamoDB item and decodes one attribute at a time. Used by the generated lazy beans
+ * of tables with lazyDecoding enabled so the cost of decoding is only paid for the fields that are actually read.
+ */
+public class LazyItemDecoder {
+
+    private final TableDefinition tableDefinition;
+    private final Map<String, Object> attributes;
+    private final ObjectMapper objectMapper;
+
+    LazyItemDecoder(TableDefinition tableDefinition, Map<String, Object> attributes, ObjectMapper objectMapper) {
+        this.tableDefinition = tableDefinition;
+        this.attributes = attributes;
+        this.objectMapper = objectMapper;
+    }
+
+    public <V> V decode(String attributeName, TypeReference<V> valueType) {
+        Object value = attributes.get(attributeName);
+        if (value == null) {
+            return null;
+        }
+        value = DynamapBeanFactory.processDeserializationConversions(tableDefinition, attributeName, value, objectMapper);
+        return objectMapper.convertValue(value, valueType);
+    }
+
+}
@@ -0,0 +1,59 @@
+/*
+    Copyright 2017 N3TWORK INC
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.n3twork.dynamap;
+
+import java.util.Map;
+
+/**
+ * A String to long map storing its values unboxed. See {@link PrimitiveValueMap}.
+ */
+public class LongValueMap extends PrimitiveValueMap<Long> {
+
+    public LongValueMap() {
+        super();
+    }
+
+    public LongValueMap(Map<String, ? extends Number> map) {
+        super(map.size());
+        for (Map.Entry<String, ? extends Number> entry : map.entrySet()) {
+            putLong(entry.getKey(), entry.getValue().longValue());
+        }
+    }
+
+    public long getLong(String key, long defaultValue) {
+        return getPrimitive(key, defaultValue);
+    }
+
+    public void putLong(String key, long value) {
+        putPrimitive(key, value);
+    }
+
+    /**
+     * Adds the delta to the value of the key, treating a missing key as 0.
+     *
+     * @return the new value
+     */
+    public long addLong(String key, long delta) {
+        return addPrimitive(key, delta);
+    }
+
+    @Override
+    protected Long box(long value) {
+        return Long.valueOf(value);
+    }
+
+}
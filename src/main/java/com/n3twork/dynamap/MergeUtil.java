@@ -19,6 +19,7 @@ package com.n3twork.dynamap;
 import com.google.common.collect.Maps;
 
 import java.util.*;
+import java.util.function.Function;
 
 public class MergeUtil {
 
@@ -144,5 +145,40 @@ public class MergeUtil {
         return orig;
     }
 
+    // Immutable snapshots of a value with the pending changes applied. Updates getters cache them until the next
+    // change, so a collection returned by a getter never changes, whatever happens to the updates object or its bean.
+
+    public static <K> Set<K> snapshotKeys(Set<K> orig, Set<K> deltas, Set<K> setUpdates, Collection<K> deletedKeys, boolean clear) {
+        return Collections.unmodifiableSet(mergeUpdatesAndDeletes(orig, deltas, setUpdates, deletedKeys, clear));
+    }
+
+    public static <K, V> Map<K, V> snapshotMap(Map<K, V> orig, Map<K, V> updates, Set<K> deleted, boolean clear) {
+        if (clear) {
+            return Collections.emptyMap();
+        }
+        if (orig == null && updates == null && deleted == null) {
+            return null;
+        }
+        Map<K, V> merged = orig == null ? new HashMap<>() : new HashMap<>(orig);
+        if (updates != null) {
+            merged.putAll(updates);
+        }
+        if (deleted != null) {
+            merged.keySet().removeAll(deleted);
+        }
+        return Collections.unmodifiableMap(merged);
+    }
+
+    public static <K, V> Map<K, V> snapshotMap(Set<K> keys, Function<K, V> values) {
+        Map<K, V> snapshot = new HashMap<>();
+        for (K key : keys) {
+            snapshot.put(key, values.apply(key));
+        }
+        return Collections.unmodifiableMap(snapshot);
+    }
+
+    public static <V> List<V> snapshotList(List<V> orig, List<V> adds, boolean clear) {
+        return Collections.unmodifiableList(mergeAdds(orig, adds, clear));
+    }
 
 }
@@ -0,0 +1,143 @@
+/*
+    Copyright 2018 N3TWORK INC
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.n3twork.dynamap;
+
+import com.amazonaws.services.dynamodbv2.document.Item;
+import com.amazonaws.services.dynamodbv2.document.KeyAttribute;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+
+import java.util.*;
+
+/**
+ * Merges the items of several sorted item iterators into a single sorted sequence with a k-way merge, for example the
+ * shards of a sharded index query. A merged result cannot be resumed, so no last evaluated keys are reported.
+ * <p>
+ * The sources are closed as soon as the merge ends, either because they are exhausted, the maximum result size is
+ * reached or a source fails, so that sources which prefetch pages do not keep fetching for a merge that is over.
+ */
+abstract class MergedItemIterator<T> extends ItemIterator<T> {
+
+    private final List<ItemIterator<Item>> sources;
+    private final PriorityQueue<Head> heads;
+    private final Integer maxResultSize;
+    private boolean started;
+    private boolean closed;
+    private int returned;
+    private int lastSource = -1;
+
+    private static class Head {
+        private final Item item;
+        private final int source;
+
+        Head(Item item, int source) {
+            this.item = item;
+            this.source = source;
+        }
+    }
+
+    /**
+     * @param sources       iterators each returning items in the order of the comparator
+     * @param comparator    the order of the items
+     * @param maxResultSize the maximum number of items to return, or null for no limit
+     */
+    MergedItemIterator(List<ItemIterator<Item>> sources, Comparator<Item> comparator, Integer maxResultSize) {
+        this.sources = sources;
+        this.maxResultSize = maxResultSize;
+        // ties are broken by source so that the merge is stable
+        Comparator<Head> headComparator = (a, b) -> comparator.compare(a.item, b.item);
+        this.heads = new PriorityQueue<>(Math.max(1, sources.size()), headComparator.thenComparingInt(head -> head.source));
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (closed) {
+            return false;
+        }
+        if (!started) {
+            started = true;
+            for (int i = 0; i < sources.size(); i++) {
+                advance(i);
+            }
+        }
+        if (heads.isEmpty() || (maxResultSize != null && returned >= maxResultSize)) {
+            close();
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    protected Item nextItem() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Head head = heads.poll();
+        returned++;
+        lastSource = head.source;
+        advance(head.source);
+        return head.item;
+    }
+
+    /**
+     * @return the index of the source of the item last returned by nextItem()
+     */
+    protected int getLastSource() {
+        return lastSource;
+    }
+
+    private void advance(int source) {
+        ItemIterator<Item> iterator = sources.get(source);
+        try {
+            if (iterator.hasNext()) {
+                heads.add(new Head(iterator.next(), source));
+            }
+        } catch (RuntimeException | Error e) {
+            close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        heads.clear();
+        for (ItemIterator<Item> source : sources) {
+            source.close();
+        }
+    }
+
+    @Override
+    public int getCount() {
+        return sources.stream().mapToInt(ItemIterator::getCount).sum();
+    }
+
+    @Override
+    public int getScannedCount() {
+        return sources.stream().mapToInt(ItemIterator::getScannedCount).sum();
+    }
+
+    @Override
+    public KeyAttribute[] getLastEvaluatedKeys() {
+        return null;
+    }
+
+    @Override
+    protected Map<String, AttributeValue> getLowLevelLastEvaluatedKey() {
+        return null;
+    }
+
+}
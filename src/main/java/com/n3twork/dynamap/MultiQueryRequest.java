@@ -0,0 +1,91 @@
+/*
+    Copyright 2018 N3TWORK INC
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.n3twork.dynamap;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Runs the same query for many hash key values concurrently and merges the results by range key. The hash key value,
+ * key condition expression and exclusive start keys of the base query are not used; every other setting, including the
+ * index, range key condition, filters, projection and scan direction, applies to each per key query.
+ * @param <T> The record type that is queried
+ */
+public class MultiQueryRequest<T extends DynamapRecordBean> {
+
+    public static final int DEFAULT_PARALLELISM = 8;
+
+    private QueryRequest<T> queryRequest;
+    private List<String> hashKeyValues;
+    private int parallelism = DEFAULT_PARALLELISM;
+    private Integer limit;
+
+    private MultiQueryRequest() {
+    }
+
+    public MultiQueryRequest(QueryRequest<T> queryRequest, Collection<String> hashKeyValues) {
+        this.queryRequest = queryRequest;
+        this.hashKeyValues = new ArrayList<>(hashKeyValues);
+    }
+
+    /**
+     * Sets the maximum number of queries fetching their first page at once
+     * @param parallelism Maximum concurrent queries
+     * @return this object with new state
+     */
+    public MultiQueryRequest<T> withParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of merged results. No query reads more than this many items, and further pages are only
+     * fetched while they can still contribute to the first limit results.
+     * @param limit Maximum results across all hash key values
+     * @return this object with new state
+     */
+    public MultiQueryRequest<T> withLimit(Integer limit) {
+        if (limit != null && limit < 1) {
+            throw new IllegalArgumentException("limit must be at least 1");
+        }
+        this.limit = limit;
+        return this;
+    }
+
+    ////////
+
+
+    public QueryRequest<T> getQueryRequest() {
+        return queryRequest;
+    }
+
+    public List<String> getHashKeyValues() {
+        return hashKeyValues;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public Integer getLimit() {
+        return limit;
+    }
+}
@@ -0,0 +1,157 @@
+package com.n3twork.dynamap;
+
+import com.amazonaws.services.dynamodbv2.document.Item;
+import com.amazonaws.services.dynamodbv2.document.ItemCollection;
+import com.amazonaws.services.dynamodbv2.document.Page;
+import com.amazonaws.services.dynamodbv2.document.QueryOutcome;
+import com.amazonaws.services.dynamodbv2.document.ScanOutcome;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Fetches the pages of an ItemCollection on a background thread, keeping up to prefetchDepth pages ahead of the consumer.
+ * Low level result listeners (rate limiters and progress callbacks) are invoked on the background thread as each page is fetched.
+ * <p>
+ * The background thread only holds a weak reference to the owner of the prefetcher, and stops once it is cancelled or
+ * the owner is garbage collected, so a result that is abandoned without being closed does not hold a pool thread forever.
+ */
+class PagePrefetcher {
+
+    private static final long OFFER_TIMEOUT_MS = 100;
+    private static final Object END = new Object();
+
+    private final ItemCollection<?> itemCollection;
+    private final WeakReference<Object> owner;
+    private final BlockingQueue<Object> pages;
+    private final ExecutorService executorService;
+    private volatile boolean cancelled;
+    private Future<?> future;
+
+    static class PrefetchedPage {
+        final List<Item> items;
+        final int accumulatedItemCount;
+        final int accumulatedScannedCount;
+        final Map<String, AttributeValue> lastEvaluatedKey;
+
+        PrefetchedPage(List<Item> items, int accumulatedItemCount, int accumulatedScannedCount, Map<String, AttributeValue> lastEvaluatedKey) {
+            this.items = items;
+            this.accumulatedItemCount = accumulatedItemCount;
+            this.accumulatedScannedCount = accumulatedScannedCount;
+            this.lastEvaluatedKey = lastEvaluatedKey;
+        }
+    }
+
+    // a failure of the background thread, passed on to the consumer
+    private static class Failure {
+        final Throwable cause;
+
+        Failure(Throwable cause) {
+            this.cause = cause;
+        }
+    }
+
+    /**
+     * @param owner the object consuming the pages, which must not be referenced by the item collection
+     */
+    PagePrefetcher(ItemCollection<?> itemCollection, Object owner, int prefetchDepth, ExecutorService executorService) {
+        if (prefetchDepth < 1) {
+            throw new IllegalArgumentException("prefetchDepth must be at least 1");
+        }
+        this.itemCollection = itemCollection;
+        this.owner = new WeakReference<>(owner);
+        this.pages = new ArrayBlockingQueue<>(prefetchDepth);
+        this.executorService = executorService;
+    }
+
+    void start() {
+        future = executorService.submit(this::fetchPages);
+    }
+
+    /**
+     * @return the next page, or null when there are no more pages
+     */
+    PrefetchedPage nextPage() {
+        if (cancelled) {
+            return null;
+        }
+        Object next;
+        try {
+            next = pages.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+        if (next == END) {
+            return null;
+        }
+        if (next instanceof Failure) {
+            Throwable cause = ((Failure) next).cause;
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+        return (PrefetchedPage) next;
+    }
+
+    void cancel() {
+        cancelled = true;
+        if (future != null) {
+            future.cancel(true);
+        }
+        pages.clear();
+    }
+
+    private void fetchPages() {
+        try {
+            for (Page<Item, ?> page : itemCollection.pages()) {
+                if (isStopped()) {
+                    return;
+                }
+                List<Item> items = new ArrayList<>(page.size());
+                page.forEach(items::add);
+                put(new PrefetchedPage(items, itemCollection.getAccumulatedItemCount(), itemCollection.getAccumulatedScannedCount(),
+                        getLastEvaluatedKey(page.getLowLevelResult())));
+            }
+            put(END);
+        } catch (InterruptedException e) {
+            // cancelled
+        } catch (Throwable t) {
+            try {
+                put(new Failure(t));
+            } catch (InterruptedException ie) {
+                // cancelled
+            }
+        }
+    }
+
+    private boolean isStopped() {
+        return cancelled || owner.get() == null;
+    }
+
+    private void put(Object page) throws InterruptedException {
+        while (!isStopped()) {
+            if (pages.offer(page, OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        }
+    }
+
+    private static Map<String, AttributeValue> getLastEvaluatedKey(Object lowLevelResult) {
+        if (lowLevelResult instanceof QueryOutcome) {
+            return ((QueryOutcome) lowLevelResult).getQueryResult().getLastEvaluatedKey();
+        }
+        if (lowLevelResult instanceof ScanOutcome) {
+            return ((ScanOutcome) lowLevelResult).getScanResult().getLastEvaluatedKey();
+        }
+        return null;
+    }
+}
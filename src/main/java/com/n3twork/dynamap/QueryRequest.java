@@ -22,6 +22,7 @@ import com.amazonaws.services.dynamodbv2.document.RangeKeyCondition;
 import com.amazonaws.services.dynamodbv2.model.Select;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
@@ -35,6 +36,7 @@ public class QueryRequest<T> {
     private String keyConditionExpression;
     private String filterExpression;
     private String projectionExpression;
+    private List<DynamapField> projection;
     private Map<String, Object> values;
     private Map<String, String> names;
     private KeyAttribute[] exclusiveStartKeys;
@@ -48,6 +50,7 @@ public class QueryRequest<T> {
     private boolean writeMigrationChange = false;
     private Select select;
     private String suffix;
+    private int prefetchDepth;
 
 
     public QueryRequest(Class<T> resultClass) {
@@ -104,6 +107,14 @@ public class QueryRequest<T> {
         return this;
     }
 
+    /**
+     * Only load the given fields. The returned beans throw an IllegalStateException when a field that was not projected is accessed.
+     */
+    public QueryRequest<T> withProjection(DynamapField... fields) {
+        this.projection = Arrays.asList(fields);
+        return this;
+    }
+
     public QueryRequest<T> withNames(Map<String, String> names) {
         this.names = names;
         return this;
@@ -155,6 +166,15 @@ public class QueryRequest<T> {
         return this;
     }
 
+    /**
+     * Fetch up to prefetchDepth pages ahead on a background thread while the current page is being consumed.
+     * Close the result if it is not iterated to the end.
+     */
+    public QueryRequest<T> withPrefetchDepth(int prefetchDepth) {
+        this.prefetchDepth = prefetchDepth;
+        return this;
+    }
+
     public DynamoRateLimiter getReadRateLimiter() {
         return readRateLimiter;
     }
@@ -195,6 +215,10 @@ public class QueryRequest<T> {
         return projectionExpression;
     }
 
+    public List<DynamapField> getProjection() {
+        return projection;
+    }
+
     public Map<String, String> getNames() {
         return names;
     }
@@ -238,4 +262,8 @@ public class QueryRequest<T> {
     public String getSuffix() {
         return suffix;
     }
+
+    public int getPrefetchDepth() {
+        return prefetchDepth;
+    }
 }
@@ -6,9 +6,7 @@ import com.amazonaws.services.dynamodbv2.model.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.stream.Collectors;
+import java.util.*;
 
 /**
  * <p>
@@ -37,8 +35,9 @@ public class ReadTx {
     private final ReadOpFactory readOpFactory;
     private final List<GetObjectParams> gets = new ArrayList<>();
     private final DynamapLoadService dynamapBeanLoader;
+    private final TxExecutor txExecutor;
 
-    ReadTx(AmazonDynamoDB amazonDynamoDB, ReadOpFactory readOpFactory, DynamapLoadService dynamapBeanLoader) {
+    ReadTx(AmazonDynamoDB amazonDynamoDB, ReadOpFactory readOpFactory, DynamapLoadService dynamapBeanLoader, TxExecutor txExecutor) {
         if (null == amazonDynamoDB) {
             throw new NullPointerException();
         }
@@ -51,6 +50,10 @@ public class ReadTx {
             throw new NullPointerException();
         }
         this.dynamapBeanLoader = dynamapBeanLoader;
+        if (null == txExecutor) {
+            throw new NullPointerException();
+        }
+        this.txExecutor = txExecutor;
     }
 
     public <T extends DynamapRecordBean> void get(GetObjectParams<T> getObjectParams) {
@@ -58,13 +61,23 @@ public class ReadTx {
     }
 
     public List<DynamapRecordBean> exec() {
-        List<TransactGetItem> actions = gets.stream().map(g -> new TransactGetItem().withGet(readOpFactory.buildGet(g))).collect(Collectors.toList());
+        List<TransactGetItem> actions = new ArrayList<>(gets.size());
+        Map<String, DynamoRateLimiter> rateLimiters = new HashMap<>();
+        Map<String, Integer> itemCountByTable = new HashMap<>();
+        for (GetObjectParams g : gets) {
+            Get get = readOpFactory.buildGet(g);
+            itemCountByTable.merge(get.getTableName(), 1, Integer::sum);
+            if (g.getRateLimiters() != null && g.getRateLimiters().getReadLimiter() != null) {
+                rateLimiters.putIfAbsent(get.getTableName(), g.getRateLimiters().getReadLimiter());
+            }
+            actions.add(new TransactGetItem().withGet(get));
+        }
         TransactGetItemsRequest tx = new TransactGetItemsRequest()
                 .withTransactItems(actions)
                 .withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL);
-        // Execute the transaction and process the result.
+        // Execute the transaction within the read limiters of the tables and process the result.
         try {
-            TransactGetItemsResult txResult = amazonDynamoDB.transactGetItems(tx);
+            TransactGetItemsResult txResult = txExecutor.execute(rateLimiters, itemCountByTable, () -> amazonDynamoDB.transactGetItems(tx), TransactGetItemsResult::getConsumedCapacity);
             List<ItemResponse> itemResponses = txResult.getResponses();
             // From AWS docs: An ordered array of up to 25 ItemResponse objects, each of which corresponds to the TransactGetItem object
             // in the same position in the TransactItems array. Each ItemResponse object contains a Map of the name-value pairs that are
@@ -76,8 +89,8 @@ public class ReadTx {
             for (int i = 0; i < itemResponses.size(); i++) {
                 GetObjectParams getObjectParams = gets.get(i);
                 ItemResponse itemResponse = itemResponses.get(i);
-                if (null == itemResponse) {
-                    result.set(i, null);
+                if (null == itemResponse || null == itemResponse.getItem()) {
+                    result.add(null);
                     continue;
                 }
                 result.add(dynamapBeanLoader.loadItem(ItemUtils.toItem(itemResponse.getItem()), getObjectParams.getGetObjectRequest().getResultClass()));
@@ -19,6 +19,8 @@ package com.n3twork.dynamap;
 import com.amazonaws.services.dynamodbv2.document.KeyAttribute;
 import com.amazonaws.services.dynamodbv2.model.Select;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 
 public class ScanRequest<T> {
@@ -26,6 +28,7 @@ public class ScanRequest<T> {
     private final Class<T> resultClass;
     private DynamapRecordBean.SecondaryIndexEnum index;
     private String projectionExpression;
+    private List<DynamapField> projection;
     private String filterExpression;
     private Map<String, Object> values;
     private Map<String, String> names;
@@ -40,6 +43,7 @@ public class ScanRequest<T> {
     private boolean writeMigrationChange;
     private Select select;
     private String suffix;
+    private int prefetchDepth;
 
     public ScanRequest(Class<T> resultClass) {
         this.resultClass = resultClass;
@@ -70,6 +74,14 @@ public class ScanRequest<T> {
         return this;
     }
 
+    /**
+     * Only load the given fields. The returned beans throw an IllegalStateException when a field that was not projected is accessed.
+     */
+    public ScanRequest<T> withProjection(DynamapField... fields) {
+        this.projection = Arrays.asList(fields);
+        return this;
+    }
+
     public ScanRequest<T> withReadRateLimiter(DynamoRateLimiter readRateLimiter) {
         this.readRateLimiter = readRateLimiter;
         return this;
@@ -125,6 +137,15 @@ public class ScanRequest<T> {
         return this;
     }
 
+    /**
+     * Fetch up to prefetchDepth pages ahead on a background thread while the current page is being consumed.
+     * Close the result if it is not iterated to the end.
+     */
+    public ScanRequest<T> withPrefetchDepth(int prefetchDepth) {
+        this.prefetchDepth = prefetchDepth;
+        return this;
+    }
+
     public Select getSelect() {
         return select;
     }
@@ -133,6 +154,10 @@ public class ScanRequest<T> {
         return projectionExpression;
     }
 
+    public List<DynamapField> getProjection() {
+        return projection;
+    }
+
     public Map<String, Object> getValues() {
         return values;
     }
@@ -192,4 +217,8 @@ public class ScanRequest<T> {
     public String getSuffix() {
         return suffix;
     }
+
+    public int getPrefetchDepth() {
+        return prefetchDepth;
+    }
 }
@@ -22,7 +22,7 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 
-public class ScanResult<T> {
+public class ScanResult<T> implements AutoCloseable {
 
     private final ItemIterator<T> itemIterator;
 
@@ -53,4 +53,12 @@ public class ScanResult<T> {
     public KeyAttribute[] getLastEvaluatedKeys() {
         return itemIterator.getLastEvaluatedKeys();
     }
+
+    /**
+     * Stops any background page prefetching. Call this when a prefetching result is not iterated to the end.
+     */
+    @Override
+    public void close() {
+        itemIterator.close();
+    }
 }
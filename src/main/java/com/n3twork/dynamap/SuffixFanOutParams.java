@@ -0,0 +1,110 @@
+/*
+    Copyright 2018 N3TWORK INC
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.n3twork.dynamap;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Contains the parameters for reading the same request from the tables of several suffixes, see
+ * Dynamap.queryAcrossSuffixes, scanAcrossSuffixes and batchGetObjectAcrossSuffixes.
+ */
+public class SuffixFanOutParams {
+
+    public static final int DEFAULT_PARALLELISM = 8;
+
+    private List<String> suffixes;
+    private int parallelism = DEFAULT_PARALLELISM;
+    private Integer limit;
+    private Map<String, DynamoRateLimiter> readLimiters;
+
+    private SuffixFanOutParams() {
+    }
+
+    public SuffixFanOutParams(Collection<String> suffixes) {
+        this.suffixes = new ArrayList<>(suffixes);
+    }
+
+    /**
+     * Sets the maximum number of tables read at once
+     * @param parallelism Maximum concurrent requests
+     * @return this object with new state
+     */
+    public SuffixFanOutParams withParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of results across all suffixes. No more pages are fetched once the limit is reached.
+     * @param limit Maximum results
+     * @return this object with new state
+     */
+    public SuffixFanOutParams withLimit(Integer limit) {
+        if (limit != null && limit < 1) {
+            throw new IllegalArgumentException("limit must be at least 1");
+        }
+        this.limit = limit;
+        return this;
+    }
+
+    /**
+     * Sets a read rate limiter for the table of each suffix. Each limiter must only be used for one table, so when the
+     * request has a read limiter and there is more than one suffix, a limiter must be given for every suffix.
+     * @param readLimiters Rate limiters keyed by suffix
+     * @return this object with new state
+     */
+    public SuffixFanOutParams withReadLimiters(Map<String, DynamoRateLimiter> readLimiters) {
+        this.readLimiters = readLimiters;
+        return this;
+    }
+
+    ////////
+
+
+    public List<String> getSuffixes() {
+        return suffixes;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public Integer getLimit() {
+        return limit;
+    }
+
+    public Map<String, DynamoRateLimiter> getReadLimiters() {
+        return readLimiters;
+    }
+
+    DynamoRateLimiter getReadLimiter(String suffix, DynamoRateLimiter defaultLimiter) {
+        if (readLimiters == null || !readLimiters.containsKey(suffix)) {
+            if (defaultLimiter != null && suffixes.size() > 1) {
+                // the limiter of the request is sized for a single table and would be shared by all of them
+                throw new IllegalArgumentException("A read limiter must be given for suffix " + suffix + " when the request has a read limiter");
+            }
+            return defaultLimiter;
+        }
+        return readLimiters.get(suffix);
+    }
+}
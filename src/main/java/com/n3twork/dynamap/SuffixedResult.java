@@ -0,0 +1,45 @@
+/*
+    Copyright 2018 N3TWORK INC
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.n3twork.dynamap;
+
+/**
+ * A result read from the table of one suffix by a request spanning several suffixes.
+ * @param <T> The record type
+ */
+public class SuffixedResult<T> {
+
+    private final String suffix;
+    private final T value;
+
+    public SuffixedResult(String suffix, T value) {
+        this.suffix = suffix;
+        this.value = value;
+    }
+
+    public String getSuffix() {
+        return suffix;
+    }
+
+    public T getValue() {
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return "SuffixedResult{suffix=" + suffix + ", value=" + value + "}";
+    }
+}
@@ -3,12 +3,12 @@ package com.n3twork.dynamap;
 import com.amazonaws.services.dynamodbv2.document.DynamoDB;
 import com.amazonaws.services.dynamodbv2.document.Table;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class TableCache {
     private final DynamoDB dynamoDB;
-    private final Map<String, Table> tableCache = new HashMap<>();
+    private final Map<String, Table> tableCache = new ConcurrentHashMap<>();
 
     public TableCache(DynamoDB dynamoDB) {
         if (null == dynamoDB) {
@@ -18,11 +18,6 @@ public class TableCache {
     }
 
     public Table getTable(String tableName) {
-        Table table = tableCache.get(tableName);
-        if (table == null) {
-            table = dynamoDB.getTable(tableName);
-            tableCache.put(tableName, table);
-        }
-        return table;
+        return tableCache.computeIfAbsent(tableName, dynamoDB::getTable);
     }
 }
@@ -0,0 +1,172 @@
+/*
+    Copyright 2018 N3TWORK INC
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.n3twork.dynamap;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.PutRequest;
+import com.amazonaws.services.dynamodbv2.model.ReturnConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.WriteRequest;
+import com.n3twork.dynamap.model.TableDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.function.Function;
+
+/**
+ * Copies a table by scanning its segments in parallel and writing the items of every page to the target table before
+ * reading the next page, so that the checkpoint of a segment only moves past items that have been written. A segment
+ * that fails to write items of a page stops without moving its checkpoint past that page, so resuming from the last
+ * checkpoint copies the page again.
+ */
+class TableCopier {
+
+    private static final Logger logger = LoggerFactory.getLogger(TableCopier.class);
+
+    private final AmazonDynamoDB amazonDynamoDB;
+    private final String sourceTableName;
+    private final CopyTableRequest<?> copyTableRequest;
+    private final Function<Map<String, AttributeValue>, Map<String, AttributeValue>> itemTransform;
+    private final BatchWriter batchWriter;
+    private final AtomicLong scannedCount = new AtomicLong();
+    private final AtomicLong skippedCount = new AtomicLong();
+    private final DoubleAdder readCapacity = new DoubleAdder();
+    private final long startTime = System.currentTimeMillis();
+    private CopyCheckpoint checkpoint;
+    private volatile boolean cancelled;
+
+    /**
+     * @param itemTransform transformation of the source items, which returns null for items that are skipped
+     */
+    TableCopier(AmazonDynamoDB amazonDynamoDB, String sourceTableName, String targetTableName, TableDefinition tableDefinition,
+                CopyTableRequest<?> copyTableRequest, Function<Map<String, AttributeValue>, Map<String, AttributeValue>> itemTransform) {
+        this.amazonDynamoDB = amazonDynamoDB;
+        this.sourceTableName = sourceTableName;
+        this.copyTableRequest = copyTableRequest;
+        this.itemTransform = itemTransform;
+        this.batchWriter = new BatchWriter(amazonDynamoDB, targetTableName, tableDefinition, copyTableRequest.getWriteRateLimiter(), copyTableRequest.getMaxRetries(),
+                copyTableRequest.getFailedItemHandler());
+        if (copyTableRequest.getCheckpoint() == null) {
+            this.checkpoint = new CopyCheckpoint(copyTableRequest.getTotalSegments());
+        } else if (copyTableRequest.getCheckpoint().getTotalSegments() != copyTableRequest.getTotalSegments()) {
+            throw new IllegalArgumentException("Checkpoint has " + copyTableRequest.getCheckpoint().getTotalSegments() + " segments, but the copy has "
+                    + copyTableRequest.getTotalSegments());
+        } else {
+            this.checkpoint = copyTableRequest.getCheckpoint();
+        }
+    }
+
+    List<Callable<Void>> getSegmentCopies() {
+        List<Callable<Void>> copies = new ArrayList<>(copyTableRequest.getTotalSegments());
+        for (int segment = 0; segment < copyTableRequest.getTotalSegments(); segment++) {
+            int s = segment;
+            copies.add(() -> copySegment(s));
+        }
+        return copies;
+    }
+
+    CopyTableResult getResult() {
+        CopyTableResult result = new CopyTableResult(scannedCount.get(), batchWriter.getItemCount(), skippedCount.get(), batchWriter.getFailedItemCount(),
+                readCapacity.sum(), batchWriter.getConsumedCapacity(), System.currentTimeMillis() - startTime, getCheckpoint());
+        logger.debug("Copy of {} done: {}", sourceTableName, result);
+        return result;
+    }
+
+    private Void copySegment(int segment) {
+        DynamoRateLimiter readLimiter = copyTableRequest.getReadRateLimiter();
+        Map<String, AttributeValue> exclusiveStartKey;
+        synchronized (this) {
+            if (checkpoint.isSegmentComplete(segment)) {
+                return null;
+            }
+            exclusiveStartKey = checkpoint.getExclusiveStartKey(segment);
+        }
+        do {
+            if (cancelled) {
+                return null;
+            }
+            if (readLimiter != null) {
+                readLimiter.acquire();
+            }
+            com.amazonaws.services.dynamodbv2.model.ScanResult page = amazonDynamoDB.scan(new com.amazonaws.services.dynamodbv2.model.ScanRequest()
+                    .withTableName(sourceTableName)
+                    .withSegment(segment)
+                    .withTotalSegments(copyTableRequest.getTotalSegments())
+                    .withLimit(copyTableRequest.getMaxPageSize())
+                    .withExclusiveStartKey(exclusiveStartKey)
+                    .withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL));
+            if (page.getConsumedCapacity() != null) {
+                readCapacity.add(page.getConsumedCapacity().getCapacityUnits());
+                if (readLimiter != null) {
+                    readLimiter.setConsumedCapacity(page.getConsumedCapacity());
+                }
+            }
+            scannedCount.addAndGet(page.getItems().size());
+
+            List<WriteRequest> writeRequests = new ArrayList<>(BatchWriter.MAX_BATCH_SIZE);
+            int failedItems = 0;
+            for (Map<String, AttributeValue> item : page.getItems()) {
+                if (itemTransform != null && item.containsKey(ChunkStore.CHUNK_ATTRIBUTE)) {
+                    // chunk items are read through the manifest of their item when it is loaded, they are not objects
+                    continue;
+                }
+                Map<String, AttributeValue> targetItem = itemTransform == null ? item : itemTransform.apply(item);
+                if (targetItem == null) {
+                    skippedCount.incrementAndGet();
+                    continue;
+                }
+                writeRequests.add(new WriteRequest(new PutRequest(targetItem)));
+                if (writeRequests.size() == BatchWriter.MAX_BATCH_SIZE) {
+                    failedItems += batchWriter.write(writeRequests);
+                    writeRequests = new ArrayList<>(BatchWriter.MAX_BATCH_SIZE);
+                }
+            }
+            if (!writeRequests.isEmpty()) {
+                failedItems += batchWriter.write(writeRequests);
+            }
+            if (failedItems > 0) {
+                logger.warn("Copy of segment {} of {} stopped at its last checkpoint, {} items of a page failed", segment, sourceTableName, failedItems);
+                return null;
+            }
+
+            exclusiveStartKey = page.getLastEvaluatedKey();
+            checkpoint(segment, exclusiveStartKey);
+            ProgressCallback progressCallback = copyTableRequest.getProgressCallback();
+            if (progressCallback != null && !progressCallback.reportProgress((int) Math.min(Integer.MAX_VALUE, batchWriter.getItemCount()))) {
+                cancelled = true;
+            }
+        } while (exclusiveStartKey != null && !exclusiveStartKey.isEmpty());
+        return null;
+    }
+
+    private synchronized void checkpoint(int segment, Map<String, AttributeValue> lastEvaluatedKey) {
+        checkpoint = checkpoint.withSegment(segment, lastEvaluatedKey);
+        if (copyTableRequest.getCheckpointHandler() != null) {
+            copyTableRequest.getCheckpointHandler().accept(checkpoint);
+        }
+    }
+
+    private synchronized CopyCheckpoint getCheckpoint() {
+        return checkpoint;
+    }
+}
@@ -0,0 +1,145 @@
+/*
+    Copyright 2018 N3TWORK INC
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.n3twork.dynamap;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ReturnConsumedCapacity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Scans the segments of a table with the low level client and streams the raw items of each segment to its own
+ * export file. Only the current scan page and the current block of each segment are held in memory.
+ */
+class TableExporter {
+
+    private static final Logger logger = LoggerFactory.getLogger(TableExporter.class);
+
+    private final AmazonDynamoDB amazonDynamoDB;
+    private final String tableName;
+    private final ExportRequest<?> exportRequest;
+    private final AtomicLong totalItems = new AtomicLong();
+
+    static final class SegmentExport {
+        private final Path file;
+        private final long itemCount;
+        private final long bytesWritten;
+        private final double consumedCapacity;
+
+        SegmentExport(Path file, long itemCount, long bytesWritten, double consumedCapacity) {
+            this.file = file;
+            this.itemCount = itemCount;
+            this.bytesWritten = bytesWritten;
+            this.consumedCapacity = consumedCapacity;
+        }
+    }
+
+    TableExporter(AmazonDynamoDB amazonDynamoDB, String tableName, ExportRequest<?> exportRequest) {
+        this.amazonDynamoDB = amazonDynamoDB;
+        this.tableName = tableName;
+        this.exportRequest = exportRequest;
+    }
+
+    List<Callable<SegmentExport>> getSegmentExports(Path directory) {
+        List<Callable<SegmentExport>> exports = new ArrayList<>(exportRequest.getTotalSegments());
+        for (int segment = 0; segment < exportRequest.getTotalSegments(); segment++) {
+            int s = segment;
+            exports.add(() -> exportSegment(s, directory.resolve(String.format("%s-%03d.export", tableName, s))));
+        }
+        return exports;
+    }
+
+    static ExportResult toResult(List<SegmentExport> segmentExports) {
+        List<Path> files = new ArrayList<>(segmentExports.size());
+        long itemCount = 0;
+        long bytesWritten = 0;
+        double consumedCapacity = 0;
+        for (SegmentExport segmentExport : segmentExports) {
+            files.add(segmentExport.file);
+            itemCount += segmentExport.itemCount;
+            bytesWritten += segmentExport.bytesWritten;
+            consumedCapacity += segmentExport.consumedCapacity;
+        }
+        return new ExportResult(files, itemCount, bytesWritten, consumedCapacity);
+    }
+
+    private SegmentExport exportSegment(int segment, Path file) {
+        DynamoRateLimiter readLimiter = exportRequest.getReadRateLimiter();
+        double consumedCapacity = 0;
+        ExportFileWriter writer = null;
+        try {
+            writer = new ExportFileWriter(file, exportRequest.getBlockSize());
+            Map<String, AttributeValue> exclusiveStartKey = null;
+            do {
+                if (readLimiter != null) {
+                    readLimiter.acquire();
+                }
+                com.amazonaws.services.dynamodbv2.model.ScanResult page = amazonDynamoDB.scan(new com.amazonaws.services.dynamodbv2.model.ScanRequest()
+                        .withTableName(tableName)
+                        .withSegment(segment)
+                        .withTotalSegments(exportRequest.getTotalSegments())
+                        .withConsistentRead(exportRequest.isConsistentRead())
+                        .withLimit(exportRequest.getMaxPageSize())
+                        .withExclusiveStartKey(exclusiveStartKey)
+                        .withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL));
+                if (page.getConsumedCapacity() != null) {
+                    consumedCapacity += page.getConsumedCapacity().getCapacityUnits();
+                    if (readLimiter != null) {
+                        readLimiter.setConsumedCapacity(page.getConsumedCapacity());
+                    }
+                }
+                for (Map<String, AttributeValue> item : page.getItems()) {
+                    writer.write(item);
+                }
+                long total = totalItems.addAndGet(page.getItems().size());
+                if (exportRequest.getProgressCallback() != null) {
+                    exportRequest.getProgressCallback().reportProgress((int) Math.min(Integer.MAX_VALUE, total));
+                }
+                exclusiveStartKey = page.getLastEvaluatedKey();
+            } while (exclusiveStartKey != null && !exclusiveStartKey.isEmpty());
+            writer.close();
+            logger.debug("Exported {} items of segment {} of {} to {}", writer.getItemCount(), segment, tableName, file);
+            return new SegmentExport(file, writer.getItemCount(), writer.getPosition(), consumedCapacity);
+        } catch (IOException e) {
+            abort(writer);
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            abort(writer);
+            throw e;
+        }
+    }
+
+    private static void abort(ExportFileWriter writer) {
+        if (writer != null) {
+            try {
+                writer.abort();
+            } catch (IOException e) {
+                logger.warn("Could not close aborted export file", e);
+            }
+        }
+    }
+}
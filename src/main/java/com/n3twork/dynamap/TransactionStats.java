@@ -0,0 +1,94 @@
+/*
+    Copyright 2018 N3TWORK INC
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.n3twork.dynamap;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency, capacity and retry counts of the read or write transactions executed by a Dynamap instance.
+ */
+public class TransactionStats {
+
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder throttledRetries = new LongAdder();
+    private final LongAdder totalLatencyNanos = new LongAdder();
+    private final Map<String, DoubleAdder> consumedCapacityByTable = new ConcurrentHashMap<>();
+
+    void recordExecuted(long latencyNanos) {
+        executed.increment();
+        totalLatencyNanos.add(latencyNanos);
+    }
+
+    void recordFailed() {
+        failed.increment();
+    }
+
+    void recordThrottledRetry() {
+        throttledRetries.increment();
+    }
+
+    void recordConsumedCapacity(String tableName, double capacityUnits) {
+        consumedCapacityByTable.computeIfAbsent(tableName, t -> new DoubleAdder()).add(capacityUnits);
+    }
+
+    /**
+     * @return the number of transactions that completed successfully
+     */
+    public long getExecuted() {
+        return executed.sum();
+    }
+
+    /**
+     * @return the number of transactions that failed, after any retries
+     */
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    /**
+     * @return the number of times a transaction was retried because it was throttled
+     */
+    public long getThrottledRetries() {
+        return throttledRetries.sum();
+    }
+
+    public double getAverageLatencyMillis() {
+        long executed = getExecuted();
+        return executed == 0 ? 0 : (double) TimeUnit.NANOSECONDS.toMicros(totalLatencyNanos.sum()) / 1000 / executed;
+    }
+
+    /**
+     * @return the capacity units consumed by successful transactions, keyed by table name
+     */
+    public Map<String, Double> getConsumedCapacityByTable() {
+        Map<String, Double> consumed = new ConcurrentHashMap<>();
+        consumedCapacityByTable.forEach((table, units) -> consumed.put(table, units.sum()));
+        return Collections.unmodifiableMap(consumed);
+    }
+
+    @Override
+    public String toString() {
+        return "TransactionStats{executed=" + getExecuted() + ", failed=" + getFailed() + ", throttledRetries=" + getThrottledRetries()
+                + ", averageLatencyMillis=" + getAverageLatencyMillis() + ", consumedCapacityByTable=" + getConsumedCapacityByTable() + "}";
+    }
+}
@@ -0,0 +1,132 @@
+/*
+    Copyright 2018 N3TWORK INC
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.n3twork.dynamap;
+
+import com.amazonaws.services.dynamodbv2.model.CancellationReason;
+import com.amazonaws.services.dynamodbv2.model.ConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.ProvisionedThroughputExceededException;
+import com.amazonaws.services.dynamodbv2.model.TransactionCanceledException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Executes transactions within the rate limiters of the tables they touch. Transactional operations cost two capacity
+ * units per item, so that estimate is acquired from each table's limiter before the call and reconciled with the
+ * consumed capacity returned by DynamoDB afterwards. Transactions cancelled because of throttling are retried with
+ * jittered exponential backoff.
+ */
+class TxExecutor {
+    private static final Logger logger = LoggerFactory.getLogger(TxExecutor.class);
+
+    static final int UNITS_PER_ITEM = 2;
+    private static final int MAX_THROTTLE_RETRIES = 5;
+    private static final long BASE_BACKOFF_MILLIS = 50;
+    private static final long MAX_BACKOFF_MILLIS = 2000;
+
+    private final TableCache tableCache;
+    private final TransactionStats stats;
+
+    TxExecutor(TableCache tableCache, TransactionStats stats) {
+        this.tableCache = tableCache;
+        this.stats = stats;
+    }
+
+    /**
+     * @param rateLimiters        rate limiters keyed by table name, tables without a limiter are not limited
+     * @param itemCountByTable    number of items of the transaction in each table
+     * @param call                executes the transaction
+     * @param consumedCapacity    extracts the consumed capacity from the result
+     */
+    <R> R execute(Map<String, DynamoRateLimiter> rateLimiters, Map<String, Integer> itemCountByTable, Supplier<R> call, Function<R, List<ConsumedCapacity>> consumedCapacity) {
+        for (int attempt = 1; ; attempt++) {
+            for (Map.Entry<String, DynamoRateLimiter> entry : rateLimiters.entrySet()) {
+                entry.getValue().init(tableCache.getTable(entry.getKey()));
+                entry.getValue().acquire(estimate(itemCountByTable, entry.getKey()));
+            }
+            long start = System.nanoTime();
+            R result;
+            try {
+                result = call.get();
+            } catch (TransactionCanceledException | ProvisionedThroughputExceededException e) {
+                if (isThrottled(e) && attempt <= MAX_THROTTLE_RETRIES) {
+                    logger.debug("Transaction throttled, attempt {}", attempt);
+                    stats.recordThrottledRetry();
+                    backoff(attempt);
+                    continue;
+                }
+                stats.recordFailed();
+                throw e;
+            } catch (RuntimeException e) {
+                stats.recordFailed();
+                throw e;
+            }
+            stats.recordExecuted(System.nanoTime() - start);
+            List<ConsumedCapacity> consumed = consumedCapacity.apply(result);
+            if (consumed != null) {
+                for (ConsumedCapacity capacity : consumed) {
+                    stats.recordConsumedCapacity(capacity.getTableName(), capacity.getCapacityUnits());
+                    DynamoRateLimiter rateLimiter = rateLimiters.get(capacity.getTableName());
+                    if (rateLimiter != null) {
+                        rateLimiter.reconcile(capacity.getCapacityUnits(), estimate(itemCountByTable, capacity.getTableName()));
+                    }
+                }
+            }
+            return result;
+        }
+    }
+
+    private static int estimate(Map<String, Integer> itemCountByTable, String tableName) {
+        return UNITS_PER_ITEM * itemCountByTable.getOrDefault(tableName, 1);
+    }
+
+    private static boolean isThrottled(RuntimeException e) {
+        if (e instanceof ProvisionedThroughputExceededException) {
+            return true;
+        }
+        List<CancellationReason> reasons = ((TransactionCanceledException) e).getCancellationReasons();
+        if (reasons == null) {
+            return false;
+        }
+        boolean throttled = false;
+        for (CancellationReason reason : reasons) {
+            String code = reason.getCode();
+            if ("ThrottlingError".equals(code) || "ProvisionedThroughputExceeded".equals(code)) {
+                throttled = true;
+            } else if (code != null && !"None".equals(code)) {
+                // any other failure, e.g. a conditional check, will not succeed on retry
+                return false;
+            }
+        }
+        return throttled;
+    }
+
+    private static void backoff(int attempt) {
+        long ceiling = Math.min(MAX_BACKOFF_MILLIS, BASE_BACKOFF_MILLIS << (attempt - 1));
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+}
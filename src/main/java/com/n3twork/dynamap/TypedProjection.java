@@ -0,0 +1,84 @@
+package com.n3twork.dynamap;
+
+import com.n3twork.dynamap.model.Schema;
+import com.n3twork.dynamap.model.TableDefinition;
+import com.n3twork.dynamap.model.Type;
+
+import java.util.*;
+
+/**
+ * Builds the projection expression for a typed projection. Key, hashCode and equals fields, as well as the revision and
+ * schema version fields, are always included so the loaded bean can be identified and compared.
+ */
+class TypedProjection {
+
+    private final String expression;
+    private final Map<String, String> names;
+    private final Set<String> attributeNames;
+
+    private TypedProjection(String expression, Map<String, String> names, Set<String> attributeNames) {
+        this.expression = expression;
+        this.names = names;
+        this.attributeNames = attributeNames;
+    }
+
+    public static TypedProjection of(TableDefinition tableDefinition, Collection<DynamapField> fields) {
+        Set<String> attributeNames = new LinkedHashSet<>();
+        attributeNames.add(tableDefinition.getField(tableDefinition.getHashKey()).getDynamoName());
+        if (tableDefinition.getRangeKey() != null) {
+            attributeNames.add(tableDefinition.getField(tableDefinition.getRangeKey()).getDynamoName());
+        }
+        Type rootType = tableDefinition.getFieldType(tableDefinition.getType());
+        if (rootType.getHashCodeFields() != null) {
+            rootType.getHashCodeFields().forEach(f -> attributeNames.add(tableDefinition.getField(f).getDynamoName()));
+        }
+        if (rootType.getEqualsFields() != null) {
+            rootType.getEqualsFields().forEach(f -> attributeNames.add(tableDefinition.getField(f).getDynamoName()));
+        }
+        if (tableDefinition.isOptimisticLocking()) {
+            attributeNames.add(Schema.REVISION_FIELD);
+        }
+        if (tableDefinition.isEnableMigrations()) {
+            attributeNames.add(tableDefinition.getSchemaVersionField());
+        }
+        for (DynamapField field : fields) {
+            attributeNames.add(field.getDynamoName());
+        }
+
+        Alias alias = new Alias("#proj");
+        Map<String, String> names = new HashMap<>();
+        StringBuilder expression = new StringBuilder();
+        for (String attributeName : attributeNames) {
+            String name = alias.next();
+            names.put(name, attributeName);
+            if (expression.length() > 0) {
+                expression.append(',');
+            }
+            expression.append(name);
+        }
+        return new TypedProjection(expression.toString(), names, Collections.unmodifiableSet(attributeNames));
+    }
+
+    public String getExpression() {
+        return expression;
+    }
+
+    public Map<String, String> getNames() {
+        return names;
+    }
+
+    public Set<String> getAttributeNames() {
+        return attributeNames;
+    }
+
+    /**
+     * @return the names of the request merged with the names used by this projection
+     */
+    public Map<String, String> mergeNames(Map<String, String> requestNames) {
+        Map<String, String> merged = new HashMap<>(names);
+        if (requestNames != null) {
+            merged.putAll(requestNames);
+        }
+        return merged;
+    }
+}
@@ -0,0 +1,64 @@
+/*
+    Copyright 2018 N3TWORK INC
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.n3twork.dynamap;
+
+/**
+ * The outcome of one update of a batch update. A failed update does not abort the rest of the batch.
+ * @param <R> The update result type
+ */
+public class UpdateOutcome<R> {
+
+    public enum Status {UPDATED, CONDITIONAL_CHECK_FAILED, FAILED}
+
+    private final UpdateParams<?> updateParams;
+    private final Status status;
+    private final R result;
+    private final RuntimeException exception;
+
+    UpdateOutcome(UpdateParams<?> updateParams, Status status, R result, RuntimeException exception) {
+        this.updateParams = updateParams;
+        this.status = status;
+        this.result = result;
+        this.exception = exception;
+    }
+
+    public UpdateParams<?> getUpdateParams() {
+        return updateParams;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public boolean isUpdated() {
+        return status == Status.UPDATED;
+    }
+
+    /**
+     * @return the update result, or null if the update failed or was made with DynamapReturnValue.NONE
+     */
+    public R getResult() {
+        return result;
+    }
+
+    /**
+     * @return the exception thrown by the update, or null if it succeeded
+     */
+    public RuntimeException getException() {
+        return exception;
+    }
+}
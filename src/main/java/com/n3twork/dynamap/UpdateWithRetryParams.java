@@ -0,0 +1,113 @@
+/*
+    Copyright 2018 N3TWORK INC
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.n3twork.dynamap;
+
+import java.util.function.Function;
+
+/**
+ * Contains the parameters for an update that is retried when it conflicts with a concurrent write. On each attempt the
+ * object is re-read with a consistent read and passed to the update function, which builds the updates to apply.
+ * @param <T> The record bean type that is being updated
+ * @param <U> The updates type of the record bean
+ */
+public class UpdateWithRetryParams<T extends DynamapRecordBean, U extends RecordUpdates<?>> {
+
+    public static final int DEFAULT_MAX_ATTEMPTS = 5;
+    public static final long DEFAULT_BASE_BACKOFF_MILLIS = 20;
+    public static final long DEFAULT_MAX_BACKOFF_MILLIS = 1000;
+
+    private GetObjectParams<T> getObjectParams;
+    private Function<T, U> updateFunction;
+    private int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+    private long baseBackoffMillis = DEFAULT_BASE_BACKOFF_MILLIS;
+    private long maxBackoffMillis = DEFAULT_MAX_BACKOFF_MILLIS;
+    private DynamoRateLimiter writeLimiter;
+    private DynamapReturnValue dynamapReturnValue = DynamapReturnValue.ALL_NEW;
+
+    private UpdateWithRetryParams() {
+    }
+
+    /**
+     * @param getObjectParams Identifies the object to update. The read is always made with a consistent read, and the
+     *                        request cannot have a projection since the updates are built from the full object
+     * @param updateFunction Builds the updates from the current state of the object. It is passed null if the object does
+     *                       not exist, and may return null to make no update
+     */
+    public UpdateWithRetryParams(GetObjectParams<T> getObjectParams, Function<T, U> updateFunction) {
+        this.getObjectParams = getObjectParams;
+        this.updateFunction = updateFunction;
+    }
+
+    public UpdateWithRetryParams<T, U> withMaxAttempts(int maxAttempts) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts must be at least 1");
+        }
+        this.maxAttempts = maxAttempts;
+        return this;
+    }
+
+    /**
+     * Sets the backoff between attempts. The delay before each retry is a random value between zero and
+     * baseBackoffMillis * 2^(attempt - 1), capped at maxBackoffMillis.
+     */
+    public UpdateWithRetryParams<T, U> withBackoff(long baseBackoffMillis, long maxBackoffMillis) {
+        this.baseBackoffMillis = baseBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        return this;
+    }
+
+    public UpdateWithRetryParams<T, U> withWriteLimiter(DynamoRateLimiter writeLimiter) {
+        this.writeLimiter = writeLimiter;
+        return this;
+    }
+
+    public UpdateWithRetryParams<T, U> withReturnValue(DynamapReturnValue dynamapReturnValue) {
+        this.dynamapReturnValue = dynamapReturnValue;
+        return this;
+    }
+
+    ////////
+
+
+    public GetObjectParams<T> getGetObjectParams() {
+        return getObjectParams;
+    }
+
+    public Function<T, U> getUpdateFunction() {
+        return updateFunction;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public long getBaseBackoffMillis() {
+        return baseBackoffMillis;
+    }
+
+    public long getMaxBackoffMillis() {
+        return maxBackoffMillis;
+    }
+
+    public DynamoRateLimiter getWriteLimiter() {
+        return writeLimiter;
+    }
+
+    public DynamapReturnValue getDynamapReturnValue() {
+        return dynamapReturnValue;
+    }
+}
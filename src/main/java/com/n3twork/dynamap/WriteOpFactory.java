@@ -45,7 +45,7 @@ class WriteOpFactory {
         TableDefinition tableDefinition = schemaRegistry.getTableDefinition(dynamapRecordBean.getClass());
         return new Put()
                 .withTableName(tableDefinition.getTableName(tableNamePrefix))
-                .withItem(ItemUtils.toAttributeValues(dynamoItemFactory.asDynamoItem(dynamapRecordBean, tableDefinition)));
+                .withItem(ItemUtils.toAttributeValues(ChunkStore.checkNoChunks(dynamoItemFactory.asDynamoItem(dynamapRecordBean, tableDefinition), tableDefinition, "A transaction put")));
     }
 
     public <T extends DynamapRecordBean> Put buildPut(SaveParams<T> saveParams, DynamoItemFactory dynamoItemFactory) {
@@ -60,7 +60,7 @@ class WriteOpFactory {
         }
         Put put = new Put()
                 .withTableName(tableDefinition.getTableName(tableNamePrefix))
-                .withItem(ItemUtils.toAttributeValues(dynamoItemFactory.asDynamoItem(dynamapRecordBean, tableDefinition)));
+                .withItem(ItemUtils.toAttributeValues(ChunkStore.checkNoChunks(dynamoItemFactory.asDynamoItem(dynamapRecordBean, tableDefinition), tableDefinition, "A transaction put")));
         if (conditionalExpressions.size() > 0) {
             put.withConditionExpression(String.join(" AND ", conditionalExpressions));
         }
@@ -85,6 +85,10 @@ class WriteOpFactory {
                 .withExpressionAttributeValues(ItemUtils.fromSimpleMap(expressionBuilder.getValueMap()));
     }
 
+    String getTableName(Class<? extends DynamapRecordBean> beanClass, String suffix) {
+        return schemaRegistry.getTableDefinition(beanClass).getTableName(tableNamePrefix, suffix);
+    }
+
     public Delete buildDelete(DeleteRequest deleteRequest) {
         TableDefinition tableDefinition = schemaRegistry.getTableDefinition(deleteRequest.getResultClass());
         Map<String, AttributeValue> key = TxUtil.getKey(tableDefinition, deleteRequest.getHashKeyValue(), deleteRequest.getRangeKeyValue());
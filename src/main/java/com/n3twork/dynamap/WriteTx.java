@@ -5,10 +5,7 @@ import com.amazonaws.services.dynamodbv2.model.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.*;
 
 /**
  * A DynamoDB Write Transaction - A synchronous write operation that groups up to 25 action requests. These
@@ -43,8 +40,11 @@ public class WriteTx {
     private final Collection<TransactWriteItem> items = new ArrayList<>();
     private final WriteOpFactory writeOpFactory;
     private final DynamoItemFactory dynamoItemFactory;
+    private final TxExecutor txExecutor;
+    private final Map<String, DynamoRateLimiter> rateLimiters = new HashMap<>();
+    private final Map<String, Integer> itemCountByTable = new HashMap<>();
 
-    WriteTx(AmazonDynamoDB amazonDynamoDB, WriteOpFactory writeOpFactory, DynamoItemFactory dynamoItemFactory) {
+    WriteTx(AmazonDynamoDB amazonDynamoDB, WriteOpFactory writeOpFactory, DynamoItemFactory dynamoItemFactory, TxExecutor txExecutor) {
         if (null == amazonDynamoDB) {
             throw new NullPointerException();
         }
@@ -57,10 +57,16 @@ public class WriteTx {
             throw new NullPointerException();
         }
         this.dynamoItemFactory = dynamoItemFactory;
+        if (null == txExecutor) {
+            throw new NullPointerException();
+        }
+        this.txExecutor = txExecutor;
     }
 
     public <T extends DynamapPersisted<U>, U extends RecordUpdates<T>> void update(UpdateParams<T> u) {
-        items.add(new TransactWriteItem().withUpdate(writeOpFactory.buildUpdate(u)));
+        Update update = writeOpFactory.buildUpdate(u);
+        addItem(update.getTableName(), u.getWriteLimiter());
+        items.add(new TransactWriteItem().withUpdate(update));
     }
 
     /**
@@ -68,25 +74,60 @@ public class WriteTx {
      */
     @Deprecated
     public <T extends DynamapRecordBean> void save(T dynamapRecordBean) {
-        items.add(new TransactWriteItem().withPut(writeOpFactory.buildPut(dynamapRecordBean, dynamoItemFactory)));
+        Put put = writeOpFactory.buildPut(dynamapRecordBean, dynamoItemFactory);
+        addItem(put.getTableName(), null);
+        items.add(new TransactWriteItem().withPut(put));
     }
 
     public <T extends DynamapRecordBean> void save(SaveParams<T> saveParams) {
-        items.add(new TransactWriteItem().withPut(writeOpFactory.buildPut(saveParams, dynamoItemFactory)));
+        Put put = writeOpFactory.buildPut(saveParams, dynamoItemFactory);
+        addItem(put.getTableName(), saveParams.getWriteLimiter());
+        items.add(new TransactWriteItem().withPut(put));
     }
 
     public void delete(DeleteRequest deleteRequest) {
-        items.add(new TransactWriteItem().withDelete(writeOpFactory.buildDelete(deleteRequest)));
+        Delete delete = writeOpFactory.buildDelete(deleteRequest);
+        addItem(delete.getTableName(), null);
+        items.add(new TransactWriteItem().withDelete(delete));
     }
 
     public <T extends DynamapRecordBean> void condition(WriteConditionCheck<T> writeConditionCheck) {
-        items.add(new TransactWriteItem().withConditionCheck(writeOpFactory.buildConditionCheck(writeConditionCheck)));
+        ConditionCheck conditionCheck = writeOpFactory.buildConditionCheck(writeConditionCheck);
+        addItem(conditionCheck.getTableName(), null);
+        items.add(new TransactWriteItem().withConditionCheck(conditionCheck));
+    }
+
+    /**
+     * Sets the rate limiter of the table of a bean class touched by the transaction. Limiters set on UpdateParams and
+     * SaveParams are used for their tables unless one has been set here.
+     */
+    public WriteTx withWriteLimiter(Class<? extends DynamapRecordBean> beanClass, DynamoRateLimiter writeLimiter) {
+        return withWriteLimiter(beanClass, null, writeLimiter);
     }
 
+    /**
+     * Sets the rate limiter of the table of a bean class with the given suffix, or without a suffix when it is null.
+     */
+    public WriteTx withWriteLimiter(Class<? extends DynamapRecordBean> beanClass, String suffix, DynamoRateLimiter writeLimiter) {
+        rateLimiters.put(writeOpFactory.getTableName(beanClass, suffix), writeLimiter);
+        return this;
+    }
+
+    /**
+     * Executes the transaction. Each rate limiter of the tables touched is charged the transactional write cost before
+     * the call and the actual consumed capacity after it. Transactions cancelled because of throttling are retried.
+     */
     public TransactWriteItemsResult exec() {
-        return amazonDynamoDB.transactWriteItems(
-                new TransactWriteItemsRequest()
-                        .withTransactItems(items)
-                        .withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL));
+        TransactWriteItemsRequest request = new TransactWriteItemsRequest()
+                .withTransactItems(items)
+                .withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL);
+        return txExecutor.execute(rateLimiters, itemCountByTable, () -> amazonDynamoDB.transactWriteItems(request), TransactWriteItemsResult::getConsumedCapacity);
+    }
+
+    private void addItem(String tableName, DynamoRateLimiter writeLimiter) {
+        itemCountByTable.merge(tableName, 1, Integer::sum);
+        if (writeLimiter != null) {
+            rateLimiters.putIfAbsent(tableName, writeLimiter);
+        }
     }
 }
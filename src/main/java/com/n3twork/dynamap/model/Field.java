@@ -37,17 +37,23 @@ public class Field {
     private final Boolean deltas;
     private final String serializeAsListElementId;
     private final String compressCollection;
+    private final Boolean primitive;
+    private final Integer chunkSize;
     private final boolean isCollection;
     private final boolean isTtl;
 
     private boolean generatedType;
 
+    // leaves room for the keys of a chunk item within the maximum item size
+    public static final int MAX_CHUNK_SIZE = 350 * 1024;
+
     @JsonCreator
     public Field(@JsonProperty("name") String name, @JsonProperty("description") String description, @JsonProperty("dynamoName") String dynamoName,
                  @JsonProperty("type") String type, @JsonProperty("elementType") String elementType, @JsonProperty("default") String defaultValue,
                  @JsonProperty("useDefaultForNulls") Boolean useDefaultForNulls, @JsonProperty("replace") Boolean replace,
                  @JsonProperty("persist") Boolean persist, @JsonProperty("serialize") Boolean serialize, @JsonProperty("deltas") Boolean deltas,
-                 @JsonProperty("serializeAsListElementId") String serializeAsListElementId, @JsonProperty("compressCollection") String compressCollection) {
+                 @JsonProperty("serializeAsListElementId") String serializeAsListElementId, @JsonProperty("compressCollection") String compressCollection,
+                 @JsonProperty("primitive") Boolean primitive, @JsonProperty("chunkSize") Integer chunkSize) {
         if ("ttl".equals(type)) {
             if (null != persist && !persist) {
                 throw new IllegalArgumentException("Invalid field definition for " + name + ". TTL field must be persisted.");
@@ -81,6 +87,14 @@ public class Field {
             throw new IllegalArgumentException("Cannot use compressCollection with scalar fields");
         }
         this.compressCollection = compressCollection;
+        if (primitive != null && primitive && !(type.equals("Map") && ("Long".equals(elementType) || "Integer".equals(elementType)))) {
+            throw new IllegalArgumentException("Invalid field definition for " + name + ". primitive is only supported for Maps of Long or Integer");
+        }
+        this.primitive = primitive == null ? Boolean.FALSE : primitive;
+        if (chunkSize != null && (compressCollection == null || chunkSize < 1024 || chunkSize > MAX_CHUNK_SIZE)) {
+            throw new IllegalArgumentException("Invalid field definition for " + name + ". chunkSize requires compressCollection and must be between 1024 and " + MAX_CHUNK_SIZE);
+        }
+        this.chunkSize = chunkSize;
     }
 
 
@@ -141,6 +155,23 @@ public class Field {
         return compressCollection != null;
     }
 
+    /**
+     * @return the size in bytes above which the compressed value is stored in separate chunk items, or null if the value
+     * is always stored in the item
+     */
+    public Integer getChunkSize() {
+        return chunkSize;
+    }
+
+    @JsonIgnore
+    public boolean isChunked() {
+        return chunkSize != null;
+    }
+
+    public boolean isPrimitive() {
+        return primitive;
+    }
+
     @JsonIgnore
     public boolean isSerializeAsList() {
         return serializeAsListElementId != null;
@@ -18,6 +18,7 @@ package com.n3twork.dynamap.model;
 
 import com.amazonaws.services.dynamodbv2.model.ProjectionType;
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
@@ -31,15 +32,21 @@ public class Index {
     private final String indexName;
     private final List<String> nonKeyFields;
     private final String projectionType;
+    private final int shards;
 
     @JsonCreator
     public Index(@JsonProperty("hashKey") String hashKey, @JsonProperty("rangeKey") String rangeKey, @JsonProperty("index") String indexName,
-                 @JsonProperty("nonKeyFields") List<String> nonKeyFields, @JsonProperty("projectionType") String projectionType) {
+                 @JsonProperty("nonKeyFields") List<String> nonKeyFields, @JsonProperty("projectionType") String projectionType,
+                 @JsonProperty("shards") Integer shards) {
         this.hashKey = hashKey;
         this.rangeKey = rangeKey;
         this.indexName = indexName;
         this.nonKeyFields = nonKeyFields;
         this.projectionType = projectionType == null ? ProjectionType.ALL.toString() : projectionType;
+        this.shards = shards == null ? 1 : shards;
+        if (this.shards < 1) {
+            throw new IllegalArgumentException("Index " + indexName + " must have at least one shard");
+        }
         // validate
         ProjectionType.fromValue(this.projectionType);
     }
@@ -64,4 +71,24 @@ public class Index {
         return nonKeyFields;
     }
 
+    /**
+     * @return the number of hash key values each index hash key is spread over, 1 if the index is not sharded
+     */
+    public int getShards() {
+        return shards;
+    }
+
+    @JsonIgnore
+    public boolean isSharded() {
+        return shards > 1;
+    }
+
+    /**
+     * @return the attribute holding the sharded hash key of the index, written as value#shard
+     */
+    @JsonIgnore
+    public String getShardAttributeName() {
+        return indexName + "Shard";
+    }
+
 }
@@ -42,13 +42,17 @@ public class TableDefinition {
     private final boolean optimisticLocking;
     private final String schemaVersionField;
     private final boolean enableMigrations;
+    private final boolean lazyDecoding;
     private final List<PersistAsFieldItem> persistAsFieldItems;
     private final List<CompressCollectionItem> compressCollectionItems;
+    private final List<Field> chunkedFields;
+    private final List<Index> shardedIndexes;
 
     @JsonCreator
     public TableDefinition(@JsonProperty("table") String tableName, @JsonProperty("description") String description, @JsonProperty("package") String packageName, @JsonProperty("type") String type, @JsonProperty("hashKey") String hashKey, @JsonProperty("rangeKey") String rangeKey,
                            @JsonProperty("version") int version, @JsonProperty("types") List<Type> types, @JsonProperty("globalSecondaryIndexes") List<Index> globalSecondaryIndexes, @JsonProperty("localSecondaryIndexes") List<Index> localSecondaryIndexes, @JsonProperty("optimisticLocking") boolean optimisticLocking,
-                           @JsonProperty("schemaVersionField") String schemaVersionField, @JsonProperty("enableMigrations") Boolean enableMigrations) {
+                           @JsonProperty("schemaVersionField") String schemaVersionField, @JsonProperty("enableMigrations") Boolean enableMigrations,
+                           @JsonProperty("lazyDecoding") Boolean lazyDecoding) {
         this.tableName = tableName;
         this.description = description;
         this.packageName = packageName;
@@ -62,8 +66,13 @@ public class TableDefinition {
         this.optimisticLocking = optimisticLocking;
         this.schemaVersionField = schemaVersionField == null ? DEFAULT_SCHEMA_VERSION_FIELD : schemaVersionField;
         this.enableMigrations = enableMigrations == null ? Boolean.TRUE : enableMigrations;
+        this.lazyDecoding = lazyDecoding == null ? Boolean.FALSE : lazyDecoding;
         this.persistAsFieldItems = buildPersistAsListFields();
         this.compressCollectionItems = buildCompressFields();
+        this.chunkedFields = getTypes().stream().filter(t -> t.getName().equals(type)).findFirst().get()
+                .getFields().stream().filter(Field::isChunked).collect(Collectors.toList());
+        this.shardedIndexes = globalSecondaryIndexes == null ? Collections.emptyList()
+                : globalSecondaryIndexes.stream().filter(Index::isSharded).collect(Collectors.toList());
     }
 
     public String getTableName() {
@@ -124,6 +133,11 @@ public class TableDefinition {
         return localSecondaryIndexes;
     }
 
+    @JsonIgnore
+    public List<Index> getShardedIndexes() {
+        return shardedIndexes;
+    }
+
     public boolean isOptimisticLocking() {
         return optimisticLocking;
     }
@@ -136,6 +150,10 @@ public class TableDefinition {
         return enableMigrations;
     }
 
+    public boolean isLazyDecoding() {
+        return lazyDecoding;
+    }
+
     public Field getField(String fieldName) {
         Type tableType = getTypes().stream().filter(t -> t.getName().equals(getType())).findFirst().get();
         return tableType.getFields().stream().filter(f -> f.getName().equals(fieldName)).findFirst().get();
@@ -159,6 +177,14 @@ public class TableDefinition {
         return persistAsFieldItems;
     }
 
+    /**
+     * @return the fields of the table type whose values can be stored in chunk items, see Field.getChunkSize()
+     */
+    @JsonIgnore
+    public List<Field> getChunkedFields() {
+        return chunkedFields;
+    }
+
     @JsonIgnore
     public List<CompressCollectionItem> getCompressCollectionItems() {
         return compressCollectionItems;
@@ -247,6 +273,30 @@ public class TableDefinition {
             throw new IllegalArgumentException(msg);
         }
 
+        if (localSecondaryIndexes != null && localSecondaryIndexes.stream().anyMatch(Index::isSharded)) {
+            throw new IllegalArgumentException(String.format("Table %s has a sharded local secondary index. Only global secondary indexes can be sharded.", this.getTableName()));
+        }
+        if (globalSecondaryIndexes != null) {
+            for (Index index : globalSecondaryIndexes) {
+                Field hashKeyField = getField(index.getHashKey());
+                if (index.isSharded() && (hashKeyField.isCollection() || !hashKeyField.getElementType().equals("String"))) {
+                    String msg = String.format("Table %s, index %s is sharded but its hash key %s is not a String.", this.getTableName(), index.getIndexName(), index.getHashKey());
+                    throw new IllegalArgumentException(msg);
+                }
+            }
+        }
+
+        for (Type type : types) {
+            for (Field field : type.getFields()) {
+                if (field.isChunked() && !type.getName().equals(getType())) {
+                    throw new IllegalArgumentException(String.format("Table %s, type %s, field %s is chunked. Only fields of the table type can be chunked.", this.getTableName(), type.getName(), field.getName()));
+                }
+            }
+        }
+        if (!getChunkedFields().isEmpty() && (rangeKey == null || getField(rangeKey).isCollection() || !getField(rangeKey).getElementType().equals("String"))) {
+            throw new IllegalArgumentException(String.format("Table %s has chunked fields but its range key is not a String.", this.getTableName()));
+        }
+
         types.forEach(t -> {
             Set<String> validFields = t.getFields().stream().map(Field::getName).collect(Collectors.toSet());
 
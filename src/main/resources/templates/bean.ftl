@@ -41,7 +41,7 @@ public class ${beanName} implements ${type.name}<#if isRoot>, DynamapRecordBean<
     <#if field.isGeneratedType()>
     @JsonDeserialize(as=<@field_type field=field />Bean.class)
     </#if>
-    private <@field_type field=field /> ${field.name};
+    private <@storage_type field=field /> ${field.name};
     </#list>
     <#if isRoot>
     @JsonProperty(SCHEMA_VERSION_FIELD)
@@ -73,7 +73,7 @@ public class ${beanName} implements ${type.name}<#if isRoot>, DynamapRecordBean<
     @JsonCreator
     public ${beanName}(
         <#list type.serializedFields as field>
-        @JsonProperty(${field.name?upper_case}_FIELD) <#if field.generatedType>${field.elementType}Bean<#else><@field_type field=field /></#if> ${field.name}<#sep>,
+        @JsonProperty(${field.name?upper_case}_FIELD) <#if field.generatedType>${field.elementType}Bean<#else><@storage_type field=field /></#if> ${field.name}<#sep>,
         </#list>
 <#if isRoot && optimisticLocking>,
         @JsonProperty(REVISION_FIELD) Integer _revision</#if><#if tableDefinition.isEnableMigrations() && isRoot>,
@@ -85,7 +85,7 @@ public class ${beanName} implements ${type.name}<#if isRoot>, DynamapRecordBean<
         <#else>
            <#if field.isCollection()>
            <#if field.type == 'Map'>
-                this.${field.name} = ${field.name} == null ? Collections.emptyMap() : ${field.name};
+                this.${field.name} = ${field.name} == null ? <#if field.isPrimitive()>new <@primitive_map_type field=field />()<#else>Collections.emptyMap()</#if> : ${field.name};
                 <#elseif field.type == 'List'>
                 this.${field.name} = ${field.name} == null ? Collections.emptyList() : ${field.name};
                 <#elseif field.type == 'Set'>
@@ -107,11 +107,18 @@ public class ${beanName} implements ${type.name}<#if isRoot>, DynamapRecordBean<
     <#list type.fields as field>
         <#if field.isCollection() && field.type == 'Map'>
         <#if field.type == 'Map'>
+        <#if field.isPrimitive()>
+        this.${field.name} = new <@primitive_map_type field=field />();
+        for (String id : bean.get${field.name?cap_first}Ids()) {
+            this.${field.name}.put<@primitive_suffix field=field />(id, bean.get${field.name?cap_first}ValueAs<@primitive_suffix field=field />(id));
+        }
+        <#else>
         this.${field.name} = new HashMap();
         for (String id : bean.get${field.name?cap_first}Ids()) {
             this.${field.name}.put(id, bean.get${field.name?cap_first}<@collection_item field=field />(id));
         }
         </#if>
+        </#if>
         <#else>
         this.${field.name} = bean.get${field.name?cap_first}();
         </#if>
@@ -232,7 +239,11 @@ public class ${beanName} implements ${type.name}<#if isRoot>, DynamapRecordBean<
         return this.${field.name} == null ? <@defaultValue field=field elementOnly=false /> : ${field.name};
     }
     public ${beanName} set${field.name?cap_first}(<@field_type field=field /> value) {
+        <#if field.isPrimitive()>
+        this.${field.name} = value == null || value instanceof <@primitive_map_type field=field /> ? (<@primitive_map_type field=field />) value : new <@primitive_map_type field=field />(value);
+        <#else>
         this.${field.name} = value;
+        </#if>
         return this;
     }
     <#if field.type == 'Map'>
@@ -249,6 +260,13 @@ public class ${beanName} implements ${type.name}<#if isRoot>, DynamapRecordBean<
             return map.get(id);
             </#if>
         }
+        <#if field.isPrimitive()>
+        @JsonIgnore
+        @Override
+        public <@primitive_type field=field /> get${field.name?cap_first}ValueAs<@primitive_suffix field=field />(String id) {
+            return ${field.name} == null ? <@primitive_default field=field /> : ${field.name}.get<@primitive_suffix field=field />(id, <@primitive_default field=field />);
+        }
+        </#if>
     </#if>
     </#list>
     <#if isRoot && optimisticLocking>
@@ -30,6 +30,54 @@
     </#compress>
 </#macro>
 
+<#-- the declared type of the field in beans, which differs from field_type for primitive maps -->
+<#macro storage_type field>
+    <#compress>
+        <#if field.isPrimitive()>
+        <@primitive_map_type field=field />
+        <#else>
+        <@field_type field=field />
+        </#if>
+    </#compress>
+</#macro>
+
+<#macro primitive_map_type field>
+    <#compress>
+        <#if field.elementType == 'Long'>
+        LongValueMap
+        <#else>
+        IntValueMap
+        </#if>
+    </#compress>
+</#macro>
+
+<#macro primitive_type field>
+    <#compress>
+        <#if field.elementType == 'Long'>
+        long
+        <#else>
+        int
+        </#if>
+    </#compress>
+</#macro>
+
+<#macro primitive_suffix field>
+    <#compress>
+        <#if field.elementType == 'Long'>
+        Long
+        <#else>
+        Int
+        </#if>
+    </#compress>
+</#macro>
+
+<#macro primitive_default field>
+    <#compress>
+        <#local value = field.defaultValue!"0">
+        <@numberSuffix field value />
+    </#compress>
+</#macro>
+
 <#macro collection_item field>
     <#compress>
         <#if field.isNumber()>
@@ -0,0 +1,38 @@
+<#--
+    Copyright 2017 N3TWORK INC
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+-->
+
+
+
+package ${package};
+
+import com.n3twork.dynamap.DynamapField;
+
+public enum ${type.name}Fields implements DynamapField {
+    <#list type.persistedFields as field>
+    ${field.name?upper_case}(${type.name}.${field.name?upper_case}_FIELD)<#if field?has_next>,<#else>;</#if>
+    </#list>
+
+    private final String dynamoName;
+
+    ${type.name}Fields(String dynamoName) {
+        this.dynamoName = dynamoName;
+    }
+
+    @Override
+    public String getDynamoName() {
+        return dynamoName;
+    }
+}
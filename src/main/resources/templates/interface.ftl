@@ -49,6 +49,12 @@ public interface ${type.name} extends DynamapPersisted<${updatesName}> {
     Set<String> get${field.name?cap_first}Ids();
     ${field.elementType} get${field.name?cap_first}<@collection_item field=field />(String id);
     Map<String,${field.elementType}> get${field.name?cap_first}();
+    <#if field.isPrimitive()>
+    default <@primitive_type field=field /> get${field.name?cap_first}ValueAs<@primitive_suffix field=field />(String id) {
+        ${field.elementType} value = get${field.name?cap_first}<@collection_item field=field />(id);
+        return value == null ? <@primitive_default field=field /> : value;
+    }
+    </#if>
     <#else>
     <@field_type field=field /> get${field.name?cap_first}();
     <#if !field.isCollection()>
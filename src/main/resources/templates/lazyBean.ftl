@@ -0,0 +1,147 @@
+<#--
+    Copyright 2017 N3TWORK INC
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+-->
+
+
+<#include "common.ftl">
+
+<#macro decoded_type field>
+    <#compress>
+        <#if field.isGeneratedType() && !field.isCollection()>
+        ${field.elementType}Bean
+        <#elseif field.isPrimitive()>
+        <@primitive_map_type field=field />
+        <#else>
+        <@field_type field=field />
+        </#if>
+    </#compress>
+</#macro>
+
+package ${package};
+
+<#list imports as import>
+import ${import};
+</#list>
+
+import java.util.*;
+import com.n3twork.dynamap.*;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.core.type.TypeReference;
+
+/**
+ * A ${beanName} backed by the raw attributes of a DynamoDB item. Each field is decoded the first time it is accessed.
+ */
+public class ${type.name}LazyBean extends ${beanName} {
+
+    private static final TypeReference<Integer> INTEGER_TYPE = new TypeReference<Integer>() {};
+    <#list type.persistedFields as field>
+    private static final TypeReference<<@decoded_type field=field />> ${field.name?upper_case}_TYPE = new TypeReference<<@decoded_type field=field />>() {};
+    </#list>
+
+    private final LazyItemDecoder decoder;
+    <#list type.persistedFields as field>
+    <#if !eagerFieldNames?seq_contains(field.name)>
+    private boolean ${field.name}Decoded;
+    </#if>
+    </#list>
+
+    public ${type.name}LazyBean(LazyItemDecoder decoder) {
+        super();
+        this.decoder = decoder;
+        <#list type.persistedFields as field>
+        <#if eagerFieldNames?seq_contains(field.name)>
+        super.set${field.name?cap_first}(decoder.decode(${field.name?upper_case}_FIELD, ${field.name?upper_case}_TYPE));
+        </#if>
+        </#list>
+        <#if optimisticLocking>
+        Integer revision = decoder.decode(REVISION_FIELD, INTEGER_TYPE);
+        if (revision != null) {
+            super.setRevision(revision);
+        }
+        </#if>
+        <#if tableDefinition.isEnableMigrations()>
+        Integer schemaVersion = decoder.decode(SCHEMA_VERSION_FIELD, INTEGER_TYPE);
+        if (schemaVersion != null) {
+            super.setDynamapSchemaVersion(schemaVersion);
+        }
+        </#if>
+    }
+
+    <#list type.persistedFields as field>
+    <#if !eagerFieldNames?seq_contains(field.name)>
+    private void decode${field.name?cap_first}() {
+        if (!${field.name}Decoded) {
+            ${field.name}Decoded = true;
+            super.set${field.name?cap_first}(decoder.decode(${field.name?upper_case}_FIELD, ${field.name?upper_case}_TYPE));
+        }
+    }
+
+    @Override
+    public <@field_type field=field /> get${field.name?cap_first}() {
+        decode${field.name?cap_first}();
+        return super.get${field.name?cap_first}();
+    }
+
+    @Override
+    public ${beanName} set${field.name?cap_first}(<@field_type field=field /> value) {
+        ${field.name}Decoded = true;
+        return super.set${field.name?cap_first}(value);
+    }
+    <#if field.type == 'Map'>
+
+    @JsonIgnore
+    @Override
+    public Set<String> get${field.name?cap_first}Ids() {
+        decode${field.name?cap_first}();
+        return super.get${field.name?cap_first}Ids();
+    }
+
+    @JsonIgnore
+    @Override
+    public ${field.elementType} get${field.name?cap_first}<@collection_item field=field />(String id) {
+        decode${field.name?cap_first}();
+        return super.get${field.name?cap_first}<@collection_item field=field />(id);
+    }
+    <#if field.isPrimitive()>
+
+    @JsonIgnore
+    @Override
+    public <@primitive_type field=field /> get${field.name?cap_first}ValueAs<@primitive_suffix field=field />(String id) {
+        decode${field.name?cap_first}();
+        return super.get${field.name?cap_first}ValueAs<@primitive_suffix field=field />(id);
+    }
+    </#if>
+    </#if>
+
+    @JsonIgnore
+    @Override
+    public boolean is${field.name?cap_first}Set() {
+        decode${field.name?cap_first}();
+        return super.is${field.name?cap_first}Set();
+    }
+
+    </#if>
+    </#list>
+    @Override
+    public String toString() {
+        <#list type.persistedFields as field>
+        <#if !eagerFieldNames?seq_contains(field.name)>
+        decode${field.name?cap_first}();
+        </#if>
+        </#list>
+        return super.toString();
+    }
+
+}
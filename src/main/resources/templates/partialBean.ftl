@@ -0,0 +1,94 @@
+<#--
+    Copyright 2017 N3TWORK INC
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+-->
+
+
+<#include "common.ftl">
+
+package ${package};
+
+<#list imports as import>
+import ${import};
+</#list>
+
+import java.util.*;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * A ${beanName} loaded with a projection. Accessing a field which was not projected throws an IllegalStateException.
+ */
+public class ${type.name}PartialBean extends ${beanName} {
+
+    private final Set<String> projectedFields;
+
+    public ${type.name}PartialBean(${beanName} bean, Set<String> projectedFields) {
+        super(bean);
+        this.projectedFields = projectedFields;
+    }
+
+    @JsonIgnore
+    public boolean isProjected(${type.name}Fields field) {
+        return projectedFields.contains(field.getDynamoName());
+    }
+
+    private void checkProjected(String fieldName) {
+        if (!projectedFields.contains(fieldName)) {
+            throw new IllegalStateException("Field " + fieldName + " was not projected");
+        }
+    }
+
+    <#list type.persistedFields as field>
+    <#if !eagerFieldNames?seq_contains(field.name)>
+    @Override
+    public <@field_type field=field /> get${field.name?cap_first}() {
+        checkProjected(${field.name?upper_case}_FIELD);
+        return super.get${field.name?cap_first}();
+    }
+    <#if field.type == 'Map'>
+
+    @JsonIgnore
+    @Override
+    public Set<String> get${field.name?cap_first}Ids() {
+        checkProjected(${field.name?upper_case}_FIELD);
+        return super.get${field.name?cap_first}Ids();
+    }
+
+    @JsonIgnore
+    @Override
+    public ${field.elementType} get${field.name?cap_first}<@collection_item field=field />(String id) {
+        checkProjected(${field.name?upper_case}_FIELD);
+        return super.get${field.name?cap_first}<@collection_item field=field />(id);
+    }
+    <#if field.isPrimitive()>
+
+    @JsonIgnore
+    @Override
+    public <@primitive_type field=field /> get${field.name?cap_first}ValueAs<@primitive_suffix field=field />(String id) {
+        checkProjected(${field.name?upper_case}_FIELD);
+        return super.get${field.name?cap_first}ValueAs<@primitive_suffix field=field />(id);
+    }
+    </#if>
+    </#if>
+
+    @JsonIgnore
+    @Override
+    public boolean is${field.name?cap_first}Set() {
+        checkProjected(${field.name?upper_case}_FIELD);
+        return super.is${field.name?cap_first}Set();
+    }
+
+    </#if>
+    </#list>
+}
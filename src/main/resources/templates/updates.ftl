@@ -55,19 +55,20 @@ public class ${updatesName} implements ${type.name}, <#if isRoot>Record</#if>Upd
     protected boolean ${field.name}Modified = false;
     <#if field.isCollection()>
     protected boolean ${field.name}Clear = false;
+    // change tracking collections are allocated on first mutation and are null while the field is untouched
     <#if field.type == 'List'>
-    protected <@field_type field=field /> ${field.name}Adds = new ArrayList();
+    protected <@field_type field=field /> ${field.name}Adds;
     </#if>
     <#if field.type == 'Set'>
-    protected <@field_type field=field /> ${field.name}Deletes = new HashSet();
-    protected <@field_type field=field /> ${field.name}Sets = new HashSet();
+    protected <@field_type field=field /> ${field.name}Deletes;
+    protected <@field_type field=field /> ${field.name}Sets;
     </#if>
     <#if field.type == 'Map'>
-    protected Set<String> ${field.name}Deletes = new HashSet();
-    protected <@field_type field=field /> ${field.name}Sets = new HashMap();
+    protected Set<String> ${field.name}Deletes;
+    protected <@field_type field=field /> ${field.name}Sets;
     </#if>
     <#if field.type == 'Map' && field.isNumber()>
-    protected <@field_type field=field /> ${field.name}Deltas = new HashMap();
+    protected <@storage_type field=field /> ${field.name}Deltas;
     </#if>
     <#elseif field.isNumber()>
     protected ${field.elementType} ${field.name}Delta;
@@ -153,13 +154,13 @@ public class ${updatesName} implements ${type.name}, <#if isRoot>Record</#if>Upd
             return ${field.name}.keySet();
         }
             <#if field.isNumber()>
-                <#assign deltas>${field.name}Deltas.keySet()</#assign>
+                <#assign deltas>${field.name}Deltas == null ? null : ${field.name}Deltas.keySet()</#assign>
             <#else>
                 <#assign deltas>null</#assign>
             </#if>
         if (${field.name}Modified) {
             if (${cachedIds} == null) {
-                ${cachedIds} = MergeUtil.mergeUpdatesAndDeletes(${currentState}.get${field.name?cap_first}Ids(), ${deltas}, ${field.name}Sets.keySet(), ${field.name}Deletes, ${field.name}Clear);
+                ${cachedIds} = MergeUtil.snapshotKeys(${currentState}.get${field.name?cap_first}Ids(), ${deltas}, ${field.name}Sets == null ? null : ${field.name}Sets.keySet(), ${field.name}Deletes, ${field.name}Clear);
             }
             return ${cachedIds};
         }
@@ -197,13 +198,9 @@ public class ${updatesName} implements ${type.name}, <#if isRoot>Record</#if>Upd
             return Collections.emptyMap();
         }
             <#if field.isNumber()>
-        if ( ${field.name}Deltas.size() > 0 || ${field.name}Deletes.size() > 0 || ${field.name}Sets.size() > 0) {
+        if (${field.name}Deltas != null || ${field.name}Deletes != null || ${field.name}Sets != null) {
             if (${cachedCollection} == null) {
-                <@field_type field=field /> allItems = new HashMap<>();
-                for (String id : get${field.name?cap_first}Ids()) {
-                    allItems.put(id, get${field.name?cap_first}<@collection_item field=field />(id));
-                }
-                ${cachedCollection} = allItems;
+                ${cachedCollection} = MergeUtil.snapshotMap(get${field.name?cap_first}Ids(), this::get${field.name?cap_first}<@collection_item field=field />);
             }
             return ${cachedCollection};
         }
@@ -213,7 +210,7 @@ public class ${updatesName} implements ${type.name}, <#if isRoot>Record</#if>Upd
             <#else>
         if (${field.name}Modified) {
             if (${cachedCollection} == null) {
-                ${cachedCollection} = MergeUtil.mergeUpdatesAndDeletes(${currentState}.get${field.name?cap_first}(), ${field.name}Sets, ${field.name}Deletes, ${field.name}Clear);
+                ${cachedCollection} = MergeUtil.snapshotMap(${currentState}.get${field.name?cap_first}(), ${field.name}Sets, ${field.name}Deletes, ${field.name}Clear);
             }
             return ${cachedCollection};
         }
@@ -222,9 +219,20 @@ public class ${updatesName} implements ${type.name}, <#if isRoot>Record</#if>Upd
         }
             </#if>
     }
+            <#if field.isPrimitive()>
+    @Override
+    public <@primitive_type field=field /> get${field.name?cap_first}ValueAs<@primitive_suffix field=field />(String id) {
+        if (${field.name} == null && !${field.name}Clear && (${field.name}Sets == null || !${field.name}Sets.containsKey(id)) && (${field.name}Deletes == null || !${field.name}Deletes.contains(id))) {
+            <@primitive_type field=field /> value = ${currentState}.get${field.name?cap_first}ValueAs<@primitive_suffix field=field />(id);
+            return ${field.name}Deltas == null ? value : value + ${field.name}Deltas.get<@primitive_suffix field=field />(id, 0);
+        }
+        ${field.elementType} value = get${field.name?cap_first}<@collection_item field=field />(id);
+        return value == null ? <@primitive_default field=field /> : value;
+    }
+            </#if>
             <#if field.isNumber()>
     public <@field_type field=field /> get${field.name?cap_first}Deltas() {
-        return ${field.name}Deltas;
+        return ${field.name}Deltas == null ? Collections.emptyMap() : ${field.name}Deltas;
     }
             </#if>
         <#elseif field.type == 'List'>
@@ -235,7 +243,7 @@ public class ${updatesName} implements ${type.name}, <#if isRoot>Record</#if>Upd
         }
         if (${field.name}Modified) {
             if (${cachedCollection} == null) {
-                ${cachedCollection} = MergeUtil.mergeAdds(${currentState}.get${field.name?cap_first}(), ${field.name}Adds, ${field.name}Clear);
+                ${cachedCollection} = MergeUtil.snapshotList(${currentState}.get${field.name?cap_first}(), ${field.name}Adds, ${field.name}Clear);
             }
             return ${cachedCollection};
         }
@@ -251,7 +259,7 @@ public class ${updatesName} implements ${type.name}, <#if isRoot>Record</#if>Upd
         }
         if (${field.name}Modified) {
             if (${cachedCollection} == null) {
-                ${cachedCollection} = MergeUtil.mergeUpdatesAndDeletes(${currentState}.get${field.name?cap_first}(), null, ${field.name}Sets, ${field.name}Deletes, ${field.name}Clear);
+                ${cachedCollection} = MergeUtil.snapshotKeys(${currentState}.get${field.name?cap_first}(), null, ${field.name}Sets, ${field.name}Deletes, ${field.name}Clear);
             }
             return ${cachedCollection};
         }
@@ -337,8 +345,19 @@ public class ${updatesName} implements ${type.name}, <#if isRoot>Record</#if>Upd
         <#assign cachedIds>cached${field.name?cap_first}Ids</#assign>
         <#if field.useDeltas()>
             <#if field.isNumber()>
+            <#if field.isPrimitive()>
+    public ${updatesName} increment${field.name?cap_first}Amount(String id, <@primitive_type field=field /> amount) {
+        if (${field.name}Deltas == null) {
+            ${field.name}Deltas = new <@primitive_map_type field=field />();
+        }
+        ${field.name}Deltas.add<@primitive_suffix field=field />(id, amount);
+            <#else>
     public ${updatesName} increment${field.name?cap_first}Amount(String id, ${field.elementType} amount) {
+        if (${field.name}Deltas == null) {
+            ${field.name}Deltas = new HashMap<>();
+        }
         ${field.name}Deltas.put(id, ${field.name}Deltas.getOrDefault(id, <@numberSuffix field 0 />) + amount);
+            </#if>
         modified = true;
         ${field.name}Modified = true;
         <@persisted_modified field/>
@@ -346,8 +365,19 @@ public class ${updatesName} implements ${type.name}, <#if isRoot>Record</#if>Upd
         ${cachedCollection} = null;
         return this;
     }
+            <#if field.isPrimitive()>
+    public ${updatesName} decrement${field.name?cap_first}Amount(String id, <@primitive_type field=field /> amount) {
+        if (${field.name}Deltas == null) {
+            ${field.name}Deltas = new <@primitive_map_type field=field />();
+        }
+        ${field.name}Deltas.add<@primitive_suffix field=field />(id, -amount);
+            <#else>
     public ${updatesName} decrement${field.name?cap_first}Amount(String id, ${field.elementType} amount) {
+        if (${field.name}Deltas == null) {
+            ${field.name}Deltas = new HashMap<>();
+        }
         ${field.name}Deltas.put(id, ${field.name}Deltas.getOrDefault(id, <@numberSuffix field 0 />) - amount);
+            </#if>
         modified = true;
         ${field.name}Modified = true;
         <@persisted_modified field/>
@@ -357,6 +387,9 @@ public class ${updatesName} implements ${type.name}, <#if isRoot>Record</#if>Upd
     }
             </#if>
     public ${updatesName} set${field.name?cap_first}<@collection_item field=field />(String id, ${field.elementType} value) {
+        if (${field.name}Sets == null) {
+            ${field.name}Sets = new HashMap<>();
+        }
         ${field.name}Sets.put(id, value);
         modified = true;
         ${field.name}Modified = true;
@@ -366,8 +399,11 @@ public class ${updatesName} implements ${type.name}, <#if isRoot>Record</#if>Upd
         return this;
     }
     public ${updatesName} set${field.name?cap_first}<@collection_item field=field />(String id, ${field.elementType} value, boolean override) {
+        if (${field.name}Sets == null) {
+            ${field.name}Sets = new HashMap<>();
+        }
         ${field.name}Sets.put(id, value);
-        if (override) {
+        if (override && ${field.name}Deletes != null) {
             ${field.name}Deletes.remove(id);
         }
         modified = true;
@@ -378,6 +414,9 @@ public class ${updatesName} implements ${type.name}, <#if isRoot>Record</#if>Upd
         return this;
     }
     public ${updatesName} delete${field.name?cap_first}<@collection_item field=field />(String id) {
+        if (${field.name}Deletes == null) {
+            ${field.name}Deletes = new HashSet<>();
+        }
         ${field.name}Deletes.add(id);
         modified = true;
         ${field.name}Modified = true;
@@ -400,6 +439,9 @@ public class ${updatesName} implements ${type.name}, <#if isRoot>Record</#if>Upd
 
     <#elseif field.type == 'List'>
     public ${updatesName} add${field.name?cap_first}<@collection_item field=field />(${field.elementType} value) {
+        if (${field.name}Adds == null) {
+            ${field.name}Adds = new ArrayList<>();
+        }
         ${field.name}Adds.add(value);
         modified = true;
         ${field.name}Modified = true;
@@ -418,6 +460,9 @@ public class ${updatesName} implements ${type.name}, <#if isRoot>Record</#if>Upd
     <#elseif field.type == 'Set'>
         <#if field.useDeltas()>
     public ${updatesName} set${field.name?cap_first}<@collection_item field=field />(${field.elementType} value) {
+        if (${field.name}Sets == null) {
+            ${field.name}Sets = new HashSet<>();
+        }
         ${field.name}Sets.add(value);
         modified = true;
         ${field.name}Modified = true;
@@ -426,6 +471,9 @@ public class ${updatesName} implements ${type.name}, <#if isRoot>Record</#if>Upd
         return this;
     }
     public ${updatesName} delete${field.name?cap_first}<@collection_item field=field />(${field.elementType} value) {
+        if (${field.name}Deletes == null) {
+            ${field.name}Deletes = new HashSet<>();
+        }
         ${field.name}Deletes.add(value);
         modified = true;
         ${field.name}Modified = true;
@@ -476,28 +524,28 @@ public class ${updatesName} implements ${type.name}, <#if isRoot>Record</#if>Upd
     <#if field.isCollection()>
         <#if field.type == 'List'>
         public <@field_type field=field /> ${field.name}Adds() {
-            return ${field.name}Adds;
+            return ${field.name}Adds == null ? Collections.emptyList() : ${field.name}Adds;
         }
         </#if>
         <#if field.type == 'Set'>
         public <@field_type field=field /> ${field.name}Deletes() {
-            return ${field.name}Deletes;
+            return ${field.name}Deletes == null ? Collections.emptySet() : ${field.name}Deletes;
         }
         public <@field_type field=field /> ${field.name}Sets() {
-            return ${field.name}Sets;
+            return ${field.name}Sets == null ? Collections.emptySet() : ${field.name}Sets;
         }
         </#if>
         <#if field.type == 'Map'>
         public Set<String> ${field.name}Deletes() {
-            return ${field.name}Deletes;
+            return ${field.name}Deletes == null ? Collections.emptySet() : ${field.name}Deletes;
         }
         public <@field_type field=field /> ${field.name}Sets() {
-            return ${field.name}Sets;
+            return ${field.name}Sets == null ? Collections.emptyMap() : ${field.name}Sets;
         }
         </#if>
         <#if field.type == 'Map' && field.isNumber()>
         public <@field_type field=field /> ${field.name}Deltas() {
-            return ${field.name}Deltas;
+            return ${field.name}Deltas == null ? Collections.emptyMap() : ${field.name}Deltas;
         }
         </#if>
     </#if>
@@ -586,7 +634,7 @@ public class ${updatesName} implements ${type.name}, <#if isRoot>Record</#if>Upd
             <#if field.useDeltas() && !field.isCompressCollection()>
                 if (${field.name}Clear) {
                     expression.setMultiValue(parentDynamoFieldName, "${field.dynamoName}", Collections.emptyList(), ${field.elementType}.class);
-                } else {
+                } else if (${field.name}Adds != null) {
                     expression.addValuesToList(parentDynamoFieldName, "${field.dynamoName}", ${field.name}Adds, ${field.elementType}.class);
                 }
             <#else>
@@ -599,8 +647,12 @@ public class ${updatesName} implements ${type.name}, <#if isRoot>Record</#if>Upd
 
         <#elseif field.type == 'Set'>
             <#if field.useDeltas()  && !field.isCompressCollection()>
-                expression.addSetValuesToSet(parentDynamoFieldName, "${field.dynamoName}", ${field.name}Sets, ${field.elementType}.class);
-                expression.deleteValuesFromSet(parentDynamoFieldName, "${field.dynamoName}", ${field.name}Deletes, ${field.elementType}.class);
+                if (${field.name}Sets != null) {
+                    expression.addSetValuesToSet(parentDynamoFieldName, "${field.dynamoName}", ${field.name}Sets, ${field.elementType}.class);
+                }
+                if (${field.name}Deletes != null) {
+                    expression.deleteValuesFromSet(parentDynamoFieldName, "${field.dynamoName}", ${field.name}Deletes, ${field.elementType}.class);
+                }
             <#else>
                <#if field.isCompressCollection()>
                 expression.setValue(parentDynamoFieldName, "${field.dynamoName}", GZipUtil.serialize(get${field.name?cap_first}(), expression.getObjectMapper()));
@@ -639,9 +691,23 @@ public class ${updatesName} implements ${type.name}, <#if isRoot>Record</#if>Upd
             <#else>
             if (${field.name} != null) {
                 expression.setValue(parentDynamoFieldName, "${field.dynamoName}", ${field.name});
+                <#if isRoot>
+                <#list tableDefinition.shardedIndexes as index>
+                <#if index.hashKey == field.name>
+                expression.setValue(parentDynamoFieldName, "${index.shardAttributeName}", IndexShards.shardedValue(${field.name}, hashKeyValue, rangeKeyValue, ${index.shards}));
+                </#if>
+                </#list>
+                </#if>
             }
             else {
                 expression.removeField(parentDynamoFieldName, "${field.dynamoName}");
+                <#if isRoot>
+                <#list tableDefinition.shardedIndexes as index>
+                <#if index.hashKey == field.name>
+                expression.removeField(parentDynamoFieldName, "${index.shardAttributeName}");
+                </#if>
+                </#list>
+                </#if>
             }
             </#if>
         </#if>
@@ -0,0 +1,32 @@
+/*
+    Copyright 2018 N3TWORK INC
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.n3twork.dynamap;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.n3twork.dynamap.testing.InMemoryDynamoDB;
+
+/**
+ * Runs every DynamapTest against InMemoryDynamoDB, to keep the in-memory backend faithful to DynamoDB Local.
+ */
+public class DynamapInMemoryTest extends DynamapTest {
+
+    @Override
+    protected AmazonDynamoDB createAmazonDynamoDB() {
+        return new InMemoryDynamoDB();
+    }
+
+}
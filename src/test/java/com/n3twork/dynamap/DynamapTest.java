@@ -20,12 +20,18 @@ import com.amazonaws.auth.profile.ProfileCredentialsProvider;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDBClient;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDBClientBuilder;
+import com.amazonaws.services.dynamodbv2.document.DynamoDB;
 import com.amazonaws.services.dynamodbv2.document.Item;
+import com.amazonaws.services.dynamodbv2.document.PrimaryKey;
 import com.amazonaws.services.dynamodbv2.document.QueryFilter;
 import com.amazonaws.services.dynamodbv2.document.RangeKeyCondition;
+import com.amazonaws.services.dynamodbv2.document.Table;
+import com.amazonaws.services.dynamodbv2.document.ItemUtils;
 import com.amazonaws.services.dynamodbv2.document.utils.ValueMap;
 import com.amazonaws.services.dynamodbv2.local.embedded.DynamoDBEmbedded;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
 import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.ConsumedCapacity;
 import com.amazonaws.services.dynamodbv2.model.Select;
 import com.amazonaws.util.IOUtils;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -34,16 +40,23 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
 import com.n3twork.BatchSaveParams;
+import com.n3twork.dynamap.model.TableDefinition;
 import com.n3twork.dynamap.test.*;
 import org.apache.commons.lang3.RandomUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
 import org.testng.annotations.BeforeMethod;
-import org.testng.annotations.BeforeTest;
 import org.testng.annotations.Test;
 
 import java.io.ByteArrayInputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
@@ -56,20 +69,23 @@ public class DynamapTest {
 
     private final static ObjectMapper objectMapper = new ObjectMapper();
 
-    @BeforeTest
+    // once per class rather than per test, so that subclasses running the same tests get their own backend
+    @BeforeClass
     public void init() {
+        ddb = createAmazonDynamoDB();
+    }
 
+    protected AmazonDynamoDB createAmazonDynamoDB() {
         // This test can be run against an AWS account.
         // This is necessary for testing the UpdateResult behavior because currently local dynamodb does not correctly implement UPDATE_NEW return values.
         if (System.getProperty("aws.profile") != null) {
             AmazonDynamoDBClientBuilder builder = AmazonDynamoDBClient.builder();
             builder.setCredentials(new ProfileCredentialsProvider((System.getProperty("aws.profile"))));
             builder.setRegion("us-east-1");
-            ddb = builder.build();
-        } else {
-            System.setProperty("sqlite4java.library.path", "native-libs");
-            ddb = DynamoDBEmbedded.create().amazonDynamoDB();
+            return builder.build();
         }
+        System.setProperty("sqlite4java.library.path", "native-libs");
+        return DynamoDBEmbedded.create().amazonDynamoDB();
     }
 
     @BeforeMethod
@@ -961,6 +977,84 @@ public class DynamapTest {
 
     }
 
+    @Test
+    public void testUpdateWithRetry() {
+        final String DOC_ID = "1";
+        dynamap.save(new SaveParams<>(new DummyDocBean(DOC_ID).setName("test").setWeight(1L)));
+        GetObjectParams<DummyDocBean> getObjectParams = new GetObjectParams<>(new GetObjectRequest<>(DummyDocBean.class).withHashKeyValue(DOC_ID));
+
+        // the first attempt conflicts with a concurrent write, the second re-reads and succeeds
+        AtomicInteger calls = new AtomicInteger();
+        DummyDocUpdateResult result = dynamap.updateWithRetry(new UpdateWithRetryParams<>(getObjectParams, doc -> {
+            if (calls.incrementAndGet() == 1) {
+                dynamap.update(new UpdateParams<>(doc.createUpdates().setName("concurrent")));
+            }
+            return doc.createUpdates().setWeight(doc.getWeight() + 1);
+        }).withBackoff(1, 5));
+        Assert.assertEquals(calls.get(), 2);
+        Assert.assertEquals(result.getWeight().longValue(), 2L);
+        Assert.assertEquals(result.getName(), "concurrent");
+        Assert.assertEquals(result.getRevision().intValue(), 3);
+        Assert.assertFalse(getObjectParams.getGetObjectRequest().isConsistentRead());
+
+        ConflictStats stats = dynamap.getConflictStats().get(schemaRegistry.getTableDefinition(DummyDocBean.class).getTableName());
+        Assert.assertEquals(stats.getAttempts(), 2);
+        Assert.assertEquals(stats.getConflicts(), 1);
+        Assert.assertEquals(stats.getExhausted(), 0);
+
+        try {
+            dynamap.updateWithRetry(new UpdateWithRetryParams<>(getObjectParams, doc -> {
+                dynamap.update(new UpdateParams<>(doc.createUpdates().setName("always")));
+                return doc.createUpdates().setWeight(0L);
+            }).withMaxAttempts(3).withBackoff(1, 5));
+            Assert.fail();
+        } catch (ConditionalCheckFailedException e) {
+            // expected
+        }
+        Assert.assertEquals(stats.getAttempts(), 5);
+        Assert.assertEquals(stats.getConflicts(), 4);
+        Assert.assertEquals(stats.getExhausted(), 1);
+        Assert.assertEquals(dynamap.getObject(getObjectParams).getWeight().longValue(), 2L);
+
+        // updates are only built from full objects
+        GetObjectParams<DummyDocBean> projectedParams = new GetObjectParams<>(new GetObjectRequest<>(DummyDocBean.class).withHashKeyValue(DOC_ID)
+                .withProjection(DummyDocFields.WEIGHT));
+        try {
+            dynamap.updateWithRetry(new UpdateWithRetryParams<>(projectedParams, doc -> doc.createUpdates().setWeight(doc.getWeight() + 1)));
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            Assert.assertNotNull(e);
+        }
+    }
+
+    @Test
+    public void testHotKeyTracker() {
+        HotKeyTracker hotKeyTracker = new HotKeyTracker();
+        dynamap.withHotKeyTracker(hotKeyTracker);
+        String tableName = schemaRegistry.getTableDefinition(DummyDocBean.class).getTableName("test");
+        for (int i = 0; i < 5; i++) {
+            dynamap.save(new SaveParams<>(new DummyDocBean(String.valueOf(i)).setName("test").setWeight(1L)));
+        }
+        GetObjectParams<DummyDocBean> hotParams = new GetObjectParams<>(new GetObjectRequest<>(DummyDocBean.class).withHashKeyValue("3"));
+        for (int i = 0; i < 10; i++) {
+            DummyDocBean doc = dynamap.getObject(hotParams);
+            dynamap.update(new UpdateParams<>(doc.createUpdates().setWeight(doc.getWeight() + 1)));
+        }
+        dynamap.getObject(new GetObjectParams<>(new GetObjectRequest<>(DummyDocBean.class).withHashKeyValue("1")));
+
+        List<HotKeyTracker.HotKey> topReads = hotKeyTracker.getTopKeys(HotKeyTracker.Metric.READ_UNITS);
+        Assert.assertEquals(topReads.size(), 2);
+        Assert.assertEquals(topReads.get(0).getTableName(), tableName);
+        Assert.assertEquals(topReads.get(0).getHashKey(), "3");
+        Assert.assertTrue(topReads.get(0).getReadUnits() > topReads.get(1).getReadUnits());
+
+        List<HotKeyTracker.HotKey> topWrites = hotKeyTracker.getTopKeys(HotKeyTracker.Metric.WRITE_UNITS, 3);
+        Assert.assertEquals(topWrites.size(), 3);
+        Assert.assertEquals(topWrites.get(0).getHashKey(), "3");
+        Assert.assertTrue(topWrites.get(0).getWriteUnits() >= 11);
+        Assert.assertTrue(hotKeyTracker.getTopKeys(HotKeyTracker.Metric.THROTTLES).stream().allMatch(k -> k.getThrottles() == 0));
+    }
+
     @Test
     public void testConditionalChecks() {
 
@@ -1111,6 +1205,87 @@ public class DynamapTest {
 
     }
 
+    @Test
+    public void testPrefetch() {
+        final int TEST_DOCS_SIZE = 10;
+        String hashKey = UUID.randomUUID().toString();
+        List<DynamapRecordBean> docsToSave = new ArrayList<>();
+        for (int i = 0; i < TEST_DOCS_SIZE; i++) {
+            docsToSave.add(createTestDocumentBean(hashKey, createNestedTypeBean()));
+        }
+        dynamap.batchSave(new BatchSaveParams<>(docsToSave));
+
+        List<Integer> progress = Collections.synchronizedList(new ArrayList<>());
+        QueryRequest<TestDocumentBean> queryRequest = new QueryRequest<>(TestDocumentBean.class).withHashKeyValue(hashKey)
+                .withMaxPageSize(2)
+                .withPrefetchDepth(2)
+                .withProgressCallback(count -> progress.add(count));
+        List<TestDocumentBean> testDocuments = dynamap.query(queryRequest);
+        Assert.assertEquals(testDocuments.size(), TEST_DOCS_SIZE);
+        Assert.assertEquals(testDocuments.stream().map(TestDocumentBean::getSequence).collect(Collectors.toList()),
+                docsToSave.stream().map(d -> ((TestDocumentBean) d).getSequence()).collect(Collectors.toList()));
+        Assert.assertEquals(progress.get(progress.size() - 1).intValue(), TEST_DOCS_SIZE);
+
+        // Last evaluated keys follow the consumed items, not the prefetched pages
+        queryRequest = new QueryRequest<>(TestDocumentBean.class).withHashKeyValue(hashKey)
+                .withMaxPageSize(2)
+                .withMaxResultSize(TEST_DOCS_SIZE - 2)
+                .withPrefetchDepth(3);
+        QueryResult<TestDocumentBean> queryResult = dynamap.queryResult(queryRequest);
+        Assert.assertEquals(queryResult.getResults().size(), TEST_DOCS_SIZE - 2);
+        Assert.assertEquals(queryResult.getCount(), TEST_DOCS_SIZE - 2);
+        queryRequest.withExclusiveStartKeys(queryResult.getLastEvaluatedKeys());
+        Assert.assertEquals(dynamap.query(queryRequest).size(), 2);
+
+        // Stop early
+        ScanRequest<TestDocumentBean> scanRequest = new ScanRequest<>(TestDocumentBean.class).withMaxPageSize(1).withPrefetchDepth(1);
+        try (ScanResult<TestDocumentBean> scanResult = dynamap.scan(scanRequest)) {
+            Assert.assertNotNull(scanResult.getResultIterator().next());
+        }
+
+        // Errors thrown on the prefetching thread reach the consumer
+        QueryRequest<TestDocumentBean> failingRequest = new QueryRequest<>(TestDocumentBean.class).withHashKeyValue(hashKey)
+                .withMaxPageSize(2)
+                .withPrefetchDepth(1)
+                .withProgressCallback(count -> {
+                    throw new AssertionError("progress failed");
+                });
+        try {
+            dynamap.query(failingRequest);
+            Assert.fail();
+        } catch (AssertionError e) {
+            Assert.assertEquals(e.getMessage(), "progress failed");
+        }
+    }
+
+    @Test
+    public void testAbandonedPrefetchReleasesThread() throws Exception {
+        String hashKey = UUID.randomUUID().toString();
+        List<DynamapRecordBean> docsToSave = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            docsToSave.add(createTestDocumentBean(hashKey, createNestedTypeBean()));
+        }
+        dynamap.batchSave(new BatchSaveParams<>(docsToSave));
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Dynamap prefetchingDynamap = new Dynamap(ddb, schemaRegistry).withPrefix("test").withObjectMapper(objectMapper).withPrefetchExecutor(executor);
+            QueryRequest<TestDocumentBean> queryRequest = new QueryRequest<>(TestDocumentBean.class).withHashKeyValue(hashKey).withMaxPageSize(1).withPrefetchDepth(1);
+            // read one item and drop the result without closing it, leaving the prefetching thread waiting on a full queue
+            Assert.assertNotNull(prefetchingDynamap.queryResult(queryRequest).getResultIterator().next());
+
+            Future<?> next = executor.submit(() -> {
+            });
+            for (int i = 0; i < 50 && !next.isDone(); i++) {
+                System.gc();
+                Thread.sleep(100);
+            }
+            next.get(1, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
     @Test
     public void testParallelScan() {
         final int TEST_DOCS_SIZE = 22;
@@ -1195,6 +1370,423 @@ public class DynamapTest {
         Assert.assertEquals(scanResult.getScannedCount(), TEST_DOCS_SIZE);
     }
 
+    @Test
+    public void testExportTable() throws Exception {
+        final int TEST_DOCS_SIZE = 50;
+        List<DynamapRecordBean> docsToSave = new ArrayList<>();
+        Set<String> testDocsIds = new HashSet<>();
+        for (int i = 0; i < TEST_DOCS_SIZE; i++) {
+            TestDocumentBean testDocument = createTestDocumentBean(createNestedTypeBean());
+            testDocsIds.add(testDocument.getId());
+            docsToSave.add(testDocument);
+        }
+        dynamap.batchSave(new BatchSaveParams<>(docsToSave));
+
+        java.nio.file.Path directory = java.nio.file.Files.createTempDirectory("dynamap-export");
+        AtomicInteger progress = new AtomicInteger();
+        ExportResult exportResult = dynamap.exportTable(new ExportRequest<>(TestDocumentBean.class)
+                .withTotalSegments(3)
+                .withBlockSize(1024)
+                .withMaxPageSize(7)
+                .withProgressCallback(count -> {
+                    progress.accumulateAndGet(count, Math::max);
+                    return true;
+                }), directory);
+
+        Assert.assertEquals(exportResult.getFiles().size(), 3);
+        Assert.assertEquals(exportResult.getItemCount(), TEST_DOCS_SIZE);
+        Assert.assertEquals(progress.get(), TEST_DOCS_SIZE);
+
+        Map<String, Map<String, AttributeValue>> exportedItems = new HashMap<>();
+        for (java.nio.file.Path file : exportResult.getFiles()) {
+            try (ExportFileReader reader = new ExportFileReader(file)) {
+                int count = 0;
+                while (reader.hasNext()) {
+                    Map<String, AttributeValue> item = reader.next();
+                    Assert.assertNull(exportedItems.put(item.get("id").getS(), item));
+                    count++;
+                }
+                Assert.assertEquals(count, reader.getItemCount());
+            }
+        }
+        Assert.assertEquals(exportedItems.keySet(), testDocsIds);
+
+        // Exported items are identical to the stored items
+        String tableName = schemaRegistry.getTableDefinition(TestDocumentBean.class).getTableName("test", null);
+        for (Map<String, AttributeValue> item : ddb.scan(new com.amazonaws.services.dynamodbv2.model.ScanRequest(tableName)).getItems()) {
+            Assert.assertEquals(exportedItems.get(item.get("id").getS()), item);
+        }
+    }
+
+    @Test
+    public void testBulkLoad() throws Exception {
+        final int TEST_DOCS_SIZE = 120;
+        AtomicInteger progress = new AtomicInteger();
+        BulkLoadResult result = dynamap.bulkLoad(new BulkLoadRequest<>(TestDocumentBean.class)
+                        .withMaxInFlightBatches(3)
+                        .withProgressCallback(count -> {
+                            progress.accumulateAndGet(count, Math::max);
+                            return true;
+                        }),
+                IntStream.range(0, TEST_DOCS_SIZE).mapToObj(i -> createTestDocumentBean(createNestedTypeBean())).iterator());
+        Assert.assertEquals(result.getItemCount(), TEST_DOCS_SIZE);
+        Assert.assertEquals(result.getFailedItemCount(), 0);
+        Assert.assertFalse(result.isCancelled());
+        Assert.assertEquals(progress.get(), TEST_DOCS_SIZE);
+        Assert.assertEquals(dynamap.scan(new ScanRequest<>(TestDocumentBean.class)).getResults().size(), TEST_DOCS_SIZE);
+
+        // Raw items of an export can be loaded into another table
+        String suffix = "-copy";
+        dynamap.createTableFromExisting(TestDocumentBean.getTableName(), TestDocumentBean.getTableName() + suffix, true);
+        ExportResult exportResult = dynamap.exportTable(new ExportRequest<>(TestDocumentBean.class).withTotalSegments(2),
+                java.nio.file.Files.createTempDirectory("dynamap-export"));
+        for (java.nio.file.Path file : exportResult.getFiles()) {
+            try (ExportFileReader reader = new ExportFileReader(file)) {
+                dynamap.bulkLoadItems(new BulkLoadRequest<>(TestDocumentBean.class).withSuffix(suffix), reader);
+            }
+        }
+        Assert.assertEquals(dynamap.scan(new ScanRequest<>(TestDocumentBean.class).withSuffix(suffix)).getResults().size(), TEST_DOCS_SIZE);
+
+        // Rejected items are reported
+        List<Map<String, AttributeValue>> failedItems = Collections.synchronizedList(new ArrayList<>());
+        Map<String, AttributeValue> itemWithoutKey = Collections.singletonMap("str", new AttributeValue("no key"));
+        result = dynamap.bulkLoadItems(new BulkLoadRequest<>(TestDocumentBean.class).withSuffix(suffix).withFailedItemHandler(failedItems::add),
+                Collections.singletonList(itemWithoutKey).iterator());
+        Assert.assertEquals(result.getItemCount(), 0);
+        Assert.assertEquals(result.getFailedItemCount(), 1);
+        Assert.assertEquals(failedItems, Collections.singletonList(itemWithoutKey));
+
+        // Returning false from the progress callback stops the load
+        result = dynamap.bulkLoad(new BulkLoadRequest<>(TestDocumentBean.class).withSuffix(suffix).withMaxInFlightBatches(1).withProgressCallback(count -> false),
+                IntStream.range(0, TEST_DOCS_SIZE).mapToObj(i -> createTestDocumentBean(createNestedTypeBean())).iterator());
+        Assert.assertTrue(result.isCancelled());
+        Assert.assertEquals(result.getItemCount(), 25);
+    }
+
+    @Test
+    public void testCopyTable() {
+        final int TEST_DOCS_SIZE = 60;
+        List<DynamapRecordBean> docsToSave = new ArrayList<>();
+        for (int i = 0; i < TEST_DOCS_SIZE; i++) {
+            TestDocumentBean testDocument = createTestDocumentBean(createNestedTypeBean());
+            testDocument.setIntegerField(i);
+            docsToSave.add(testDocument);
+        }
+        dynamap.batchSave(new BatchSaveParams<>(docsToSave));
+        Arrays.asList("-copy", "-transformed", "-resumed").forEach(suffix ->
+                dynamap.createTableFromExisting(TestDocumentBean.getTableName(), TestDocumentBean.getTableName() + suffix, true));
+
+        List<CopyCheckpoint> checkpoints = new ArrayList<>();
+        CopyTableResult result = dynamap.copyTable(new CopyTableRequest<>(TestDocumentBean.class, null, "-copy")
+                .withTotalSegments(3)
+                .withMaxPageSize(7)
+                .withCheckpointHandler(checkpoints::add));
+        Assert.assertEquals(result.getScannedCount(), TEST_DOCS_SIZE);
+        Assert.assertEquals(result.getItemCount(), TEST_DOCS_SIZE);
+        Assert.assertTrue(result.getCheckpoint().isComplete());
+        Assert.assertSame(checkpoints.get(checkpoints.size() - 1), result.getCheckpoint());
+        Assert.assertEquals(dynamap.scan(new ScanRequest<>(TestDocumentBean.class).withSuffix("-copy")).getResults().size(), TEST_DOCS_SIZE);
+
+        // Transform objects, skipping odd ones
+        result = dynamap.copyTable(new CopyTableRequest<>(TestDocumentBean.class, "-copy", "-transformed")
+                .withTransform(doc -> doc.getIntegerField() % 2 == 0 ? doc.setString("copied") : null));
+        Assert.assertEquals(result.getItemCount(), TEST_DOCS_SIZE / 2);
+        Assert.assertEquals(result.getSkippedCount(), TEST_DOCS_SIZE / 2);
+        List<TestDocumentBean> transformed = dynamap.scan(new ScanRequest<>(TestDocumentBean.class).withSuffix("-transformed")).getResults();
+        Assert.assertEquals(transformed.size(), TEST_DOCS_SIZE / 2);
+        transformed.forEach(doc -> Assert.assertEquals(doc.getString(), "copied"));
+
+        // Stop after the first page and resume from the checkpoint
+        CopyTableRequest<TestDocumentBean> stoppedCopy = new CopyTableRequest<>(TestDocumentBean.class, null, "-resumed")
+                .withTotalSegments(1)
+                .withMaxPageSize(10)
+                .withProgressCallback(count -> false);
+        result = dynamap.copyTable(stoppedCopy);
+        Assert.assertEquals(result.getItemCount(), 10);
+        Assert.assertFalse(result.getCheckpoint().isComplete());
+        CopyCheckpoint checkpoint = CopyCheckpoint.fromBytes(result.getCheckpoint().toBytes());
+        result = dynamap.copyTable(new CopyTableRequest<>(TestDocumentBean.class, null, "-resumed")
+                .withTotalSegments(1)
+                .withMaxPageSize(10)
+                .withCheckpoint(checkpoint));
+        Assert.assertEquals(result.getItemCount(), TEST_DOCS_SIZE - 10);
+        Assert.assertTrue(result.getCheckpoint().isComplete());
+        Assert.assertEquals(dynamap.scan(new ScanRequest<>(TestDocumentBean.class).withSuffix("-resumed")).getResults().size(), TEST_DOCS_SIZE);
+
+        // A segment whose writes fail stops without moving its checkpoint past the failed page
+        List<Map<String, AttributeValue>> failedItems = Collections.synchronizedList(new ArrayList<>());
+        result = dynamap.copyTable(new CopyTableRequest<>(TestDocumentBean.class, null, "-missing")
+                .withTotalSegments(1)
+                .withMaxPageSize(10)
+                .withFailedItemHandler(failedItems::add));
+        Assert.assertEquals(result.getItemCount(), 0);
+        Assert.assertEquals(result.getFailedItemCount(), 10);
+        Assert.assertEquals(failedItems.size(), 10);
+        Assert.assertFalse(result.getCheckpoint().isComplete());
+        dynamap.createTableFromExisting(TestDocumentBean.getTableName(), TestDocumentBean.getTableName() + "-missing", true);
+        result = dynamap.copyTable(new CopyTableRequest<>(TestDocumentBean.class, null, "-missing")
+                .withTotalSegments(1)
+                .withMaxPageSize(10)
+                .withCheckpoint(result.getCheckpoint()));
+        Assert.assertEquals(result.getItemCount(), TEST_DOCS_SIZE);
+        Assert.assertEquals(result.getFailedItemCount(), 0);
+    }
+
+    @Test
+    public void testDeleteWhere() {
+        final int TEST_DOCS_SIZE = 60;
+        String player = UUID.randomUUID().toString();
+        List<DynamapRecordBean> docsToSave = new ArrayList<>();
+        for (int i = 0; i < TEST_DOCS_SIZE; i++) {
+            docsToSave.add(createTestDocumentBean(player, createNestedTypeBean()).setIntegerField(i));
+            docsToSave.add(createTestDocumentBean(createNestedTypeBean()).setIntegerField(i));
+        }
+        dynamap.batchSave(new BatchSaveParams<>(docsToSave));
+
+        // Delete half of the player's items with a filtered query
+        AtomicInteger progress = new AtomicInteger();
+        BulkLoadResult result = dynamap.deleteWhere(new DeleteWhereParams<>(new QueryRequest<>(TestDocumentBean.class).withHashKeyValue(player)
+                .withFilterExpression("#i < :i").withNames(ImmutableMap.of("#i", TestDocument.INTEGERFIELD_FIELD)).withValues(ImmutableMap.of(":i", TEST_DOCS_SIZE / 2))
+                .withMaxPageSize(7))
+                .withMaxInFlightBatches(3)
+                .withProgressCallback(count -> {
+                    progress.accumulateAndGet(count, Math::max);
+                    return true;
+                }));
+        Assert.assertEquals(result.getItemCount(), TEST_DOCS_SIZE / 2);
+        Assert.assertEquals(result.getFailedItemCount(), 0);
+        Assert.assertEquals(progress.get(), TEST_DOCS_SIZE / 2);
+        List<TestDocumentBean> remaining = dynamap.query(new QueryRequest<>(TestDocumentBean.class).withHashKeyValue(player));
+        Assert.assertEquals(remaining.size(), TEST_DOCS_SIZE / 2);
+        remaining.forEach(doc -> Assert.assertTrue(doc.getIntegerField() >= TEST_DOCS_SIZE / 2));
+
+        // Delete the rest of the player's items with a query filter, sent as an expression with the key projection
+        result = dynamap.deleteWhere(new DeleteWhereParams<>(new QueryRequest<>(TestDocumentBean.class).withHashKeyValue(player)
+                .addQueryFilter(new QueryFilter(TestDocument.INTEGERFIELD_FIELD).ge(TEST_DOCS_SIZE / 2))));
+        Assert.assertEquals(result.getItemCount(), TEST_DOCS_SIZE / 2);
+        Assert.assertTrue(dynamap.query(new QueryRequest<>(TestDocumentBean.class).withHashKeyValue(player)).isEmpty());
+
+        // Delete everything else with a scan
+        result = dynamap.deleteWhere(new DeleteWhereParams<>(new ScanRequest<>(TestDocumentBean.class)));
+        Assert.assertEquals(result.getItemCount(), TEST_DOCS_SIZE);
+        Assert.assertTrue(dynamap.scan(new ScanRequest<>(TestDocumentBean.class)).getResults().isEmpty());
+    }
+
+    @Test
+    public void testChangeTrackingSave() {
+        dynamap.withChangeTracking(true);
+        TestDocumentBean doc = createTestDocumentBean(createNestedTypeBean()).setString("a").setIntegerField(1);
+        dynamap.save(new SaveParams<>(doc));
+        TestDocumentBean loaded = dynamap.getObject(createGetObjectParams(doc));
+
+        // a concurrent change to another field is not overwritten, as it would be by a put of the loaded bean
+        dynamap.update(new UpdateParams<>(loaded.createUpdates().setIntegerField(2)));
+        dynamap.save(new SaveParams<>(loaded.setString("b")));
+        TestDocumentBean saved = dynamap.getObject(createGetObjectParams(doc));
+        Assert.assertEquals(saved.getString(), "b");
+        Assert.assertEquals(saved.getIntegerField().intValue(), 2);
+
+        // cleared fields are removed
+        dynamap.save(new SaveParams<>(saved.setString(null)));
+        Assert.assertNull(dynamap.getObject(createGetObjectParams(doc)).getString());
+
+        // an item deleted since it was loaded is not recreated with only the changed fields
+        dynamap.delete(new DeleteRequest<>(TestDocumentBean.class).withHashKeyValue(doc.getId()).withRangeKeyValue(doc.getSequence()));
+        try {
+            dynamap.save(new SaveParams<>(saved.setString("c")));
+            Assert.fail();
+        } catch (ConditionalCheckFailedException e) {
+            Assert.assertNotNull(e);
+        }
+
+        // optimistic locking applies to the update
+        DummyDocBean dummyDoc = new DummyDocBean("1").setName("test").setWeight(6L);
+        dynamap.save(new SaveParams<>(dummyDoc));
+        DummyDocBean loadedDummyDoc = dynamap.getObject(new GetObjectParams<>(new GetObjectRequest<>(DummyDocBean.class).withHashKeyValue("1")));
+        DummyDocBean staleDummyDoc = dynamap.getObject(new GetObjectParams<>(new GetObjectRequest<>(DummyDocBean.class).withHashKeyValue("1")));
+        dynamap.save(new SaveParams<>(loadedDummyDoc.setWeight(7L)));
+        DummyDocBean savedDummyDoc = dynamap.getObject(new GetObjectParams<>(new GetObjectRequest<>(DummyDocBean.class).withHashKeyValue("1")));
+        Assert.assertEquals(savedDummyDoc.getWeight().longValue(), 7L);
+        Assert.assertEquals(savedDummyDoc.getRevision().intValue(), 2);
+        try {
+            dynamap.save(new SaveParams<>(staleDummyDoc.setName("stale")));
+            Assert.fail();
+        } catch (ConditionalCheckFailedException e) {
+            Assert.assertNotNull(e);
+        }
+
+        // recording the snapshot does not decode the fields of a lazy bean, so its chunks are only read when needed
+        String id = UUID.randomUUID().toString();
+        List<String> notes = IntStream.range(0, 500).mapToObj(i -> UUID.randomUUID().toString()).collect(Collectors.toList());
+        dynamap.save(new SaveParams<>(new DummyDoc2Bean(id, "a").setWeight(1).setNotes(notes)));
+        GetObjectParams<DummyDoc2Bean> getObjectParams = new GetObjectParams<>(new GetObjectRequest<>(DummyDoc2Bean.class).withHashKeyValue(id).withRangeKeyValue("a"));
+        DummyDoc2Bean loadedBeforeSave = dynamap.getObject(getObjectParams);
+        dynamap.save(new SaveParams<>(dynamap.getObject(getObjectParams).setNotes(Arrays.asList("small"))));
+        Assert.assertEquals(loadedBeforeSave.getNotes(), Arrays.asList("small"));
+    }
+
+    @Test
+    public void testItemSize() {
+        Item item = new Item().withString("id", "abc").withNumber("n", 123.45).withBoolean("b", true)
+                .withList("l", "x", 1).withMap("m", Collections.singletonMap("k", "v"));
+        // 5 + 5 + 2 + (1 + 3 + 2 + 3) + (1 + 3 + 3)
+        Assert.assertEquals(ItemSizeCalculator.sizeOf(item), 28);
+        Assert.assertEquals(ItemSizeCalculator.sizeOf(ItemUtils.toAttributeValues(item)), 28);
+        Assert.assertEquals(ItemSizeCalculator.writeUnits(1024), 1);
+        Assert.assertEquals(ItemSizeCalculator.writeUnits(1025), 2);
+        Assert.assertEquals(ItemSizeCalculator.readUnits(4097, true), 2.0);
+        Assert.assertEquals(ItemSizeCalculator.readUnits(10, false), 0.5);
+
+        // the entries of the secondary indexes holding the item are part of the write estimate
+        TableDefinition indexedTable = schemaRegistry.getTableDefinition(DummyDoc2Bean.class);
+        Item indexed = new Item().withPrimaryKey(DummyDoc2Bean.ID_FIELD, "a", DummyDoc2Bean.NAME_FIELD, "b").withInt(DummyDoc2Bean.WEIGHT_FIELD, 1);
+        Assert.assertEquals(ItemSizeCalculator.indexWriteUnits(indexed, indexedTable), 1);
+        Assert.assertEquals(ItemSizeCalculator.writeUnits(indexed, indexedTable), 2);
+        Item notIndexed = new Item().withPrimaryKey(DummyDoc2Bean.ID_FIELD, "a", DummyDoc2Bean.NAME_FIELD, "b");
+        Assert.assertEquals(ItemSizeCalculator.writeUnits(notIndexed, indexedTable), 1);
+        indexed.withString("big", StringUtils.repeat('x', 1500));
+        Assert.assertEquals(ItemSizeCalculator.writeUnits(indexed, indexedTable), 4);
+
+        TestDocumentBean doc = createTestDocumentBean(createNestedTypeBean()).setString("a");
+        dynamap.save(new SaveParams<>(doc));
+        ItemSizeStats.TableSizes sizes = dynamap.getItemSizeStats().getSizes("Test");
+        Assert.assertEquals(sizes.getCount(), 1);
+        Assert.assertTrue(sizes.getMaxBytes() > 0);
+        Assert.assertEquals(sizes.getPercentileBytes(100), 1024);
+
+        // oversized items are rejected before they are sent
+        try {
+            dynamap.save(new SaveParams<>(doc.setString(StringUtils.repeat('x', ItemSizeCalculator.MAX_ITEM_SIZE))));
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            Assert.assertNotNull(e);
+        }
+        Assert.assertEquals(sizes.getCount(), 1);
+
+        // fractions of consumed units are carried over rather than truncated
+        DynamoRateLimiter rateLimiter = new DynamoRateLimiter(DynamoRateLimiter.RateLimitType.WRITE, 100);
+        rateLimiter.setConsumedCapacity(new ConsumedCapacity().withCapacityUnits(2.5));
+        Assert.assertEquals(rateLimiter.getPermitsToConsume(), 2);
+        rateLimiter.setConsumedCapacity(new ConsumedCapacity().withCapacityUnits(2.5));
+        Assert.assertEquals(rateLimiter.getPermitsToConsume(), 4);
+    }
+
+    @Test
+    public void testRateLimiterAccumulatesConcurrentReports() {
+        DynamoRateLimiter rateLimiter = new DynamoRateLimiter(DynamoRateLimiter.RateLimitType.READ, 100);
+        rateLimiter.init(new DynamoDB(ddb).getTable("testTest"));
+        // two callers sharing the limiter report before either acquires, so the next acquire pays for both
+        rateLimiter.setConsumedCapacity(new ConsumedCapacity().withCapacityUnits(3.0));
+        rateLimiter.setConsumedCapacity(new ConsumedCapacity().withCapacityUnits(4.0));
+        Assert.assertEquals(rateLimiter.getPermitsToConsume(), 6);
+        rateLimiter.reconcile(3.0, 1);
+        Assert.assertEquals(rateLimiter.getPermitsToConsume(), 8);
+        rateLimiter.acquire();
+        Assert.assertEquals(rateLimiter.getPermitsToConsume(), 1);
+    }
+
+    @Test
+    public void testChunkedField() {
+        String id = UUID.randomUUID().toString();
+        List<String> notes = IntStream.range(0, 500).mapToObj(i -> UUID.randomUUID().toString()).collect(Collectors.toList());
+        dynamap.save(new SaveParams<>(new DummyDoc2Bean(id, "a").setWeight(1).setNotes(notes)));
+        GetObjectParams<DummyDoc2Bean> getObjectParams = new GetObjectParams<>(new GetObjectRequest<>(DummyDoc2Bean.class).withHashKeyValue(id).withRangeKeyValue("a"));
+        Assert.assertEquals(dynamap.getObject(getObjectParams).getNotes(), notes);
+
+        // queries of the table skip the chunk items, which hold the value outside of the item
+        List<DummyDoc2Bean> docs = dynamap.query(new QueryRequest<>(DummyDoc2Bean.class).withHashKeyValue(id));
+        Assert.assertEquals(docs.size(), 1);
+        Assert.assertEquals(docs.get(0).getNotes(), notes);
+        docs = dynamap.query(new QueryRequest<>(DummyDoc2Bean.class).withHashKeyValue(id)
+                .withRangeKeyCondition(new RangeKeyCondition(DummyDoc2.NAME_FIELD).beginsWith("a"))
+                .withFilterExpression("#w = :w").withNames(ImmutableMap.of("#w", DummyDoc2.WEIGHT_FIELD)).withValues(ImmutableMap.of(":w", 1)));
+        Assert.assertEquals(docs.size(), 1);
+        Assert.assertEquals(dynamap.count(new QueryRequest<>(DummyDoc2Bean.class).withHashKeyValue(id)).getCount(), 1L);
+        int chunkItems = countItems(id) - 1;
+        Assert.assertTrue(chunkItems > 1);
+
+        // a lazy bean loaded before a save finds the chunks it references deleted, and decodes the value saved since
+        DummyDoc2Bean loadedBeforeSave = dynamap.getObject(getObjectParams);
+        List<String> savedNotes = IntStream.range(0, 300).mapToObj(i -> UUID.randomUUID().toString()).collect(Collectors.toList());
+        dynamap.save(new SaveParams<>(dynamap.getObject(getObjectParams).setNotes(savedNotes)));
+        Assert.assertEquals(loadedBeforeSave.getNotes(), savedNotes);
+        loadedBeforeSave = dynamap.getObject(getObjectParams);
+        dynamap.save(new SaveParams<>(dynamap.getObject(getObjectParams).setNotes(Arrays.asList("small"))));
+        Assert.assertEquals(loadedBeforeSave.getNotes(), Arrays.asList("small"));
+        dynamap.save(new SaveParams<>(dynamap.getObject(getObjectParams).setNotes(notes)));
+        Assert.assertEquals(countItems(id) - 1, chunkItems);
+
+        // the chunks of the replaced value are deleted, and small values are kept in the item
+        List<String> updatedNotes = IntStream.range(0, 400).mapToObj(i -> UUID.randomUUID().toString()).collect(Collectors.toList());
+        dynamap.save(new SaveParams<>(dynamap.getObject(getObjectParams).setNotes(updatedNotes)));
+        Assert.assertEquals(dynamap.getObject(getObjectParams).getNotes(), updatedNotes);
+        Assert.assertTrue(countItems(id) - 1 < chunkItems);
+        dynamap.save(new SaveParams<>(dynamap.getObject(getObjectParams).setNotes(Arrays.asList("small"))));
+        Assert.assertEquals(dynamap.getObject(getObjectParams).getNotes(), Arrays.asList("small"));
+        Assert.assertEquals(countItems(id), 1);
+
+        dynamap.save(new SaveParams<>(dynamap.getObject(getObjectParams).setNotes(notes)));
+        dynamap.delete(new DeleteRequest<>(DummyDoc2Bean.class).withHashKeyValue(id).withRangeKeyValue("a"));
+        Assert.assertEquals(countItems(id), 0);
+    }
+
+    @Test
+    public void testChunkedFieldBulkOperations() {
+        List<String> notes = IntStream.range(0, 500).mapToObj(i -> UUID.randomUUID().toString()).collect(Collectors.toList());
+
+        // puts that cannot split the value into chunks are rejected
+        try {
+            dynamap.batchSave(new BatchSaveParams<>(Arrays.asList(new DummyDoc2Bean(UUID.randomUUID().toString(), "a").setWeight(1).setNotes(notes))));
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+
+        // batch deletes delete the chunks of the items
+        String id = UUID.randomUUID().toString();
+        dynamap.save(new SaveParams<>(new DummyDoc2Bean(id, "a").setWeight(1).setNotes(notes)));
+        dynamap.save(new SaveParams<>(new DummyDoc2Bean(id, "b").setWeight(1).setNotes(notes)));
+        Assert.assertTrue(countItems(id) > 2);
+        dynamap.batchDelete(new BatchDeleteRequest().withDeleteRequests(Arrays.asList(
+                new DeleteRequest<>(DummyDoc2Bean.class).withHashKeyValue(id).withRangeKeyValue("a"))));
+        Assert.assertEquals(dynamap.query(new QueryRequest<>(DummyDoc2Bean.class).withHashKeyValue(id)).size(), 1);
+        dynamap.batchDelete(new BatchDeleteRequest().withDeleteRequests(Arrays.asList(
+                new DeleteRequest<>(DummyDoc2Bean.class).withHashKeyValue(id).withRangeKeyValue("b"))));
+        Assert.assertEquals(countItems(id), 0);
+
+        // and so do deletes by query
+        dynamap.save(new SaveParams<>(new DummyDoc2Bean(id, "a").setWeight(1).setNotes(notes)));
+        dynamap.save(new SaveParams<>(new DummyDoc2Bean(id, "b").setWeight(1).setNotes(notes)));
+        int items = countItems(id);
+        BulkLoadResult result = dynamap.deleteWhere(new DeleteWhereParams<>(new QueryRequest<>(DummyDoc2Bean.class).withHashKeyValue(id)));
+        Assert.assertEquals(result.getItemCount(), items);
+        Assert.assertEquals(countItems(id), 0);
+
+        // transformed copies split the values into chunks of the target table
+        dynamap.save(new SaveParams<>(new DummyDoc2Bean(id, "a").setWeight(1).setNotes(notes)));
+        dynamap.createTableFromExisting(DummyDoc2Bean.getTableName(), DummyDoc2Bean.getTableName() + "-chunkcopy", true);
+        CopyTableResult copyResult = dynamap.copyTable(new CopyTableRequest<>(DummyDoc2Bean.class, null, "-chunkcopy")
+                .withTransform(doc -> id.equals(doc.getId()) ? doc.setWeight(2) : null));
+        Assert.assertEquals(copyResult.getItemCount(), 1);
+        DummyDoc2Bean copy = dynamap.getObject(new GetObjectParams<>(new GetObjectRequest<>(DummyDoc2Bean.class)
+                .withHashKeyValue(id).withRangeKeyValue("a").withSuffix("-chunkcopy")));
+        Assert.assertEquals(copy.getWeight().intValue(), 2);
+        Assert.assertEquals(copy.getNotes(), notes);
+        try {
+            dynamap.copyTable(new CopyTableRequest<>(DummyDoc2Bean.class, null, null).withTransform(doc -> doc));
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        dynamap.delete(new DeleteRequest<>(DummyDoc2Bean.class).withHashKeyValue(id).withRangeKeyValue("a"));
+    }
+
+    private int countItems(String dummyDoc2Id) {
+        return ddb.query(new com.amazonaws.services.dynamodbv2.model.QueryRequest().withTableName("testDummyTable2")
+                .withKeyConditionExpression("fdId = :id").withExpressionAttributeValues(Collections.singletonMap(":id", new AttributeValue(dummyDoc2Id))))
+                .getCount();
+    }
+
     @Test
     public void testBeanSubclass() {
         String docId1 = UUID.randomUUID().toString();
@@ -1214,6 +1806,195 @@ public class DynamapTest {
         Assert.assertEquals(nestedObject.getId(), nestedId1);
     }
 
+    @Test
+    public void testLazyDecoding() {
+        NestedTypeBean nested = createNestedTypeBean();
+        TestDocumentBean doc = createTestDocumentBean(nested);
+        CustomType customType = new CustomType("item1", "test", CustomType.CustomTypeEnum.VALUE_A);
+        doc.setGzipListMapOfCustomType(ImmutableMap.of(customType.getName(), customType));
+        dynamap.save(new SaveParams<>(doc));
+
+        TestDocumentBean testDocumentBean = dynamap.getObject(createGetObjectParams(doc));
+        Assert.assertTrue(testDocumentBean instanceof TestDocumentLazyBean);
+        Assert.assertEquals(testDocumentBean.getHashKeyValue(), doc.getId());
+        Assert.assertEquals(testDocumentBean.getNestedObject().getId(), nested.getId());
+        Assert.assertEquals(testDocumentBean.getGzipListMapOfCustomTypeIds(), Sets.newHashSet("item1"));
+        Assert.assertEquals(testDocumentBean.getGzipListMapOfCustomTypeItem("item1").getName(), "item1");
+
+        testDocumentBean.setString("updated");
+        Assert.assertEquals(testDocumentBean.getString(), "updated");
+
+        // Beans are still decoded eagerly when a subclass is requested
+        GetObjectRequest<TestDocumentBeanSubclass> getObjectRequest = new GetObjectRequest<>(TestDocumentBeanSubclass.class).withHashKeyValue(doc.getId()).withRangeKeyValue(doc.getSequence());
+        Assert.assertEquals(dynamap.getObject(new GetObjectParams<>(getObjectRequest)).getClass(), TestDocumentBeanSubclass.class);
+    }
+
+    @Test
+    public void testTypedProjection() {
+        String hashKey = UUID.randomUUID().toString();
+        TestDocumentBean doc = createTestDocumentBean(hashKey, createNestedTypeBean());
+        doc.setIntegerField(1);
+        doc.setString("projected");
+        doc.setMapOfLong(ImmutableMap.of("a", 1L));
+        dynamap.save(new SaveParams<>(doc));
+
+        GetObjectRequest<TestDocumentBean> getObjectRequest = new GetObjectRequest<>(TestDocumentBean.class).withHashKeyValue(doc.getId()).withRangeKeyValue(doc.getSequence())
+                .withProjection(TestDocumentFields.STRING, TestDocumentFields.MAPOFLONG);
+        TestDocumentBean partial = dynamap.getObject(new GetObjectParams<>(getObjectRequest));
+        Assert.assertTrue(partial instanceof TestDocumentPartialBean);
+        Assert.assertTrue(((TestDocumentPartialBean) partial).isProjected(TestDocumentFields.STRING));
+        Assert.assertFalse(((TestDocumentPartialBean) partial).isProjected(TestDocumentFields.INTEGERFIELD));
+        Assert.assertEquals(partial.getId(), doc.getId());
+        Assert.assertEquals(partial.getSequence(), doc.getSequence());
+        Assert.assertEquals(partial.getString(), "projected");
+        Assert.assertEquals(partial.getMapOfLongValue("a").longValue(), 1L);
+        assertNotProjected(partial::getIntegerField);
+        assertNotProjected(partial::getNestedObject);
+
+        QueryRequest<TestDocumentBean> queryRequest = new QueryRequest<>(TestDocumentBean.class).withHashKeyValue(hashKey)
+                .withFilterExpression("#s = :s").withNames(ImmutableMap.of("#s", TestDocument.STRING_FIELD)).withValues(ImmutableMap.of(":s", "projected"))
+                .withProjection(TestDocumentFields.INTEGERFIELD);
+        List<TestDocumentBean> testDocuments = dynamap.query(queryRequest);
+        Assert.assertEquals(testDocuments.size(), 1);
+        Assert.assertEquals(testDocuments.get(0).getIntegerField().intValue(), 1);
+        assertNotProjected(testDocuments.get(0)::getString);
+
+        // range key conditions and query filters are sent as expressions along with the projection
+        queryRequest = new QueryRequest<>(TestDocumentBean.class).withHashKeyValue(hashKey)
+                .withRangeKeyCondition(new RangeKeyCondition(TestDocumentBean.SEQUENCE_FIELD).between(doc.getSequence(), doc.getSequence() + 1))
+                .addQueryFilter(new QueryFilter(TestDocument.STRING_FIELD).in("projected", "other"))
+                .addQueryFilter(new QueryFilter(TestDocument.INTEGERFIELD_FIELD).exists())
+                .withProjection(TestDocumentFields.INTEGERFIELD);
+        testDocuments = dynamap.query(queryRequest);
+        Assert.assertEquals(testDocuments.size(), 1);
+        Assert.assertEquals(testDocuments.get(0).getIntegerField().intValue(), 1);
+        Assert.assertEquals(dynamap.count(queryRequest).getCount(), 1L);
+
+        ScanRequest<TestDocumentBean> scanRequest = new ScanRequest<>(TestDocumentBean.class).withProjection(TestDocumentFields.STRING);
+        for (TestDocumentBean scanned : dynamap.scan(scanRequest).getResults()) {
+            assertNotProjected(scanned::getMapOfLong);
+        }
+    }
+
+    @Test
+    public void testBatchGetObjectProjectionsAndConsistency() {
+        String hashKey = UUID.randomUUID().toString();
+        List<GetObjectRequest<TestDocumentBean>> getObjectRequests = new ArrayList<>();
+        for (int i = 0; i < 150; i++) {
+            TestDocumentBean doc = new TestDocumentBean(hashKey, i).setString("s" + i).setIntegerField(i)
+                    .setNestedObject(new NestedTypeBean().setId(UUID.randomUUID().toString()));
+            dynamap.save(new SaveParams<>(doc));
+            GetObjectRequest<TestDocumentBean> getObjectRequest = new GetObjectRequest<>(TestDocumentBean.class).withHashKeyValue(hashKey).withRangeKeyValue(i);
+            if (i % 3 == 0) {
+                getObjectRequest.withConsistentRead(true);
+            } else if (i % 3 == 1) {
+                getObjectRequest.withProjection(TestDocumentFields.INTEGERFIELD);
+            }
+            getObjectRequests.add(getObjectRequest);
+        }
+
+        // requests without their own projection use the default projection of the params
+        List<TestDocumentBean> results = dynamap.batchGetObjectSingleCollection(new BatchGetObjectParams<TestDocumentBean>()
+                .withGetObjectRequests(getObjectRequests).withProjection(TestDocumentFields.STRING));
+        Assert.assertEquals(results.size(), 150);
+        for (TestDocumentBean result : results) {
+            Assert.assertTrue(result instanceof TestDocumentPartialBean);
+            if (result.getSequence() % 3 == 1) {
+                Assert.assertEquals(result.getIntegerField().intValue(), result.getSequence().intValue());
+                assertNotProjected(result::getString);
+            } else {
+                Assert.assertEquals(result.getString(), "s" + result.getSequence());
+                assertNotProjected(result::getIntegerField);
+            }
+        }
+
+        results = dynamap.batchGetObjectSingleCollection(new BatchGetObjectParams<TestDocumentBean>().withGetObjectRequests(getObjectRequests));
+        Assert.assertEquals(results.size(), 150);
+        for (TestDocumentBean result : results) {
+            if (result.getSequence() % 3 == 1) {
+                assertNotProjected(result::getNestedObject);
+            } else {
+                Assert.assertFalse(result instanceof TestDocumentPartialBean);
+                Assert.assertEquals(result.getIntegerField().intValue(), result.getSequence().intValue());
+            }
+        }
+    }
+
+    @Test
+    public void testBatchGetObjectByKey() {
+        String hashKey = UUID.randomUUID().toString();
+        for (int i = 0; i < 3; i++) {
+            dynamap.save(new SaveParams<>(new TestDocumentBean(hashKey, i).setString("s" + i)
+                    .setNestedObject(new NestedTypeBean().setId(UUID.randomUUID().toString()))));
+        }
+        List<GetObjectRequest<TestDocumentBean>> getObjectRequests = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            getObjectRequests.add(new GetObjectRequest<>(TestDocumentBean.class).withHashKeyValue(hashKey).withRangeKeyValue(i));
+        }
+        // duplicates, including one with another number type, would make DynamoDB reject the request
+        getObjectRequests.add(new GetObjectRequest<>(TestDocumentBean.class).withHashKeyValue(hashKey).withRangeKeyValue(1));
+        getObjectRequests.add(new GetObjectRequest<>(TestDocumentBean.class).withHashKeyValue(hashKey).withRangeKeyValue(2L));
+
+        ReadWriteRateLimiterPair rateLimiterPair = ReadWriteRateLimiterPair.of(new DynamoRateLimiter(DynamoRateLimiter.RateLimitType.READ, 100),
+                new DynamoRateLimiter(DynamoRateLimiter.RateLimitType.WRITE, 100));
+        BatchGetObjectParams<TestDocumentBean> batchGetObjectParams = new BatchGetObjectParams<TestDocumentBean>()
+                .withGetObjectRequests(getObjectRequests).withRateLimiters(rateLimiterPair);
+        Map<PrimaryKey, TestDocumentBean> results = dynamap.batchGetObjectByKey(batchGetObjectParams);
+        // the caller's params are left unchanged
+        Assert.assertTrue(batchGetObjectParams.getRateLimiters().isEmpty());
+        Assert.assertEquals(results.size(), 5);
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals(results.get(new PrimaryKey(TestDocumentBean.ID_FIELD, hashKey, TestDocumentBean.SEQUENCE_FIELD, i)).getString(), "s" + i);
+        }
+        Assert.assertEquals(results.get(new PrimaryKey(TestDocumentBean.ID_FIELD, hashKey, TestDocumentBean.SEQUENCE_FIELD, 2L)).getString(), "s2");
+        PrimaryKey missing = new PrimaryKey(TestDocumentBean.ID_FIELD, hashKey, TestDocumentBean.SEQUENCE_FIELD, 3);
+        Assert.assertTrue(results.containsKey(missing));
+        Assert.assertNull(results.get(missing));
+
+        // duplicates are also removed by batchGetObject
+        Assert.assertEquals(dynamap.batchGetObjectSingleCollection(new BatchGetObjectParams<TestDocumentBean>().withGetObjectRequests(getObjectRequests)).size(), 3);
+    }
+
+    @Test
+    public void testCount() {
+        String hashKey = UUID.randomUUID().toString();
+        for (int i = 0; i < 25; i++) {
+            dynamap.save(new SaveParams<>(new TestDocumentBean(hashKey, i).setIntegerField(i % 5)
+                    .setNestedObject(new NestedTypeBean().setId(UUID.randomUUID().toString()))));
+        }
+
+        CountResult countResult = dynamap.count(new QueryRequest<>(TestDocumentBean.class).withHashKeyValue(hashKey));
+        Assert.assertEquals(countResult.getCount(), 25);
+        Assert.assertEquals(countResult.getScannedCount(), 25);
+        Assert.assertTrue(countResult.getConsumedCapacity() > 0);
+
+        QueryRequest<TestDocumentBean> filtered = new QueryRequest<>(TestDocumentBean.class).withHashKeyValue(hashKey).withMaxPageSize(4)
+                .withFilterExpression("#i = :i").withNames(ImmutableMap.of("#i", TestDocument.INTEGERFIELD_FIELD)).withValues(ImmutableMap.of(":i", 0));
+        countResult = dynamap.count(filtered);
+        Assert.assertEquals(countResult.getCount(), 5);
+        Assert.assertEquals(countResult.getScannedCount(), 25);
+        Assert.assertEquals(countResult.getCount(), dynamap.query(filtered).size());
+
+        // names only used by the projection are dropped along with it
+        Assert.assertEquals(dynamap.count(filtered.withProjectionExpression("#s").withNames(ImmutableMap.of("#i", TestDocument.INTEGERFIELD_FIELD, "#s", TestDocument.STRING_FIELD))).getCount(), 5);
+        Assert.assertEquals(dynamap.count(new ScanRequest<>(TestDocumentBean.class).withProjectionExpression("#s").withNames(ImmutableMap.of("#s", TestDocument.STRING_FIELD)))
+                .getCount(), dynamap.count(new ScanRequest<>(TestDocumentBean.class)).getCount());
+
+        ScanRequest<TestDocumentBean> scanRequest = new ScanRequest<>(TestDocumentBean.class).withTotalSegments(4);
+        long scanned = dynamap.scan(new ScanRequest<>(TestDocumentBean.class)).getResults().size();
+        Assert.assertEquals(dynamap.count(scanRequest).getCount(), scanned);
+        Assert.assertEquals(dynamap.count(new ScanRequest<>(TestDocumentBean.class)).getCount(), scanned);
+    }
+
+    private void assertNotProjected(Runnable getter) {
+        try {
+            getter.run();
+            Assert.fail("Expected IllegalStateException for a field that was not projected");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
     @Test
     public void testMultipleSuffix() {
         final int MAX = 10;
@@ -1332,6 +2113,227 @@ public class DynamapTest {
         Assert.assertEquals(docs.get(0).getSetOfString().size(), 0); // ensure that non projected fields are not populated
     }
 
+    @Test
+    public void testShardedGlobalSecondaryIndex() throws Exception {
+        List<TestDocumentBean> saved = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            TestDocumentBean testDocumentBean = createTestDocumentBean(null);
+            testDocumentBean.setString("sharded");
+            testDocumentBean.setIntegerField(i);
+            dynamap.save(new SaveParams<>(testDocumentBean));
+            saved.add(testDocumentBean);
+        }
+
+        // items are spread over the shards of the index hash key
+        Set<Object> shardKeys = new HashSet<>();
+        for (TestDocumentBean doc : saved) {
+            Item item = new DynamoDB(ddb).getTable("testTest").getItem(TestDocumentBean.ID_FIELD, doc.getId(), TestDocumentBean.SEQUENCE_FIELD, doc.getSequence());
+            Assert.assertTrue(item.getString("testIndexShardedShard").startsWith("sharded#"));
+            shardKeys.add(item.get("testIndexShardedShard"));
+        }
+        Assert.assertTrue(shardKeys.size() > 1);
+
+        QueryRequest<TestDocumentBean> queryRequest = new QueryRequest<>(TestDocumentBean.class)
+                .withHashKeyValue("sharded")
+                .withIndex(TestDocumentBean.GlobalSecondaryIndex.testIndexSharded);
+        List<TestDocumentBean> docs = dynamap.query(queryRequest);
+        Assert.assertEquals(docs.size(), 20);
+        for (int i = 0; i < 20; i++) {
+            Assert.assertEquals(docs.get(i).getIntegerField().intValue(), i);
+        }
+
+        // range key conditions, descending order and result limits apply across all shards
+        queryRequest = new QueryRequest<>(TestDocumentBean.class)
+                .withHashKeyValue("sharded")
+                .withRangeKeyCondition(new RangeKeyCondition(TestDocumentBean.INTEGERFIELD_FIELD).lt(10))
+                .withScanIndexForward(false)
+                .withMaxResultSize(3)
+                .withIndex(TestDocumentBean.GlobalSecondaryIndex.testIndexSharded);
+        docs = dynamap.query(queryRequest);
+        Assert.assertEquals(docs.stream().map(TestDocumentBean::getIntegerField).collect(Collectors.toList()), Arrays.asList(9, 8, 7));
+
+        // the shards stop prefetching once the merge has reached the result limit
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Dynamap prefetchingDynamap = new Dynamap(ddb, schemaRegistry).withPrefix("test").withObjectMapper(objectMapper).withPrefetchExecutor(executor);
+            // the result is kept reachable so that only closing it can stop the shards
+            QueryResult<TestDocumentBean> queryResult = prefetchingDynamap.queryResult(queryRequest.withRangeKeyCondition(null).withScanIndexForward(true).withMaxPageSize(1));
+            docs = queryResult.getResults();
+            Assert.assertEquals(docs.stream().map(TestDocumentBean::getIntegerField).collect(Collectors.toList()), Arrays.asList(0, 1, 2));
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                tasks.add(executor.submit(() -> {
+                }));
+            }
+            for (Future<?> task : tasks) {
+                task.get(5, TimeUnit.SECONDS);
+            }
+            Assert.assertFalse(queryResult.getResultIterator().hasNext());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // updating the index hash key moves the item to the shard of the new value
+        TestDocumentBean moved = saved.get(5);
+        dynamap.update(new UpdateParams<>(moved.createUpdates().setString("moved")));
+        docs = dynamap.query(new QueryRequest<>(TestDocumentBean.class).withHashKeyValue("moved").withIndex(TestDocumentBean.GlobalSecondaryIndex.testIndexSharded));
+        Assert.assertEquals(docs.size(), 1);
+        Assert.assertEquals(docs.get(0).getId(), moved.getId());
+        Assert.assertEquals(dynamap.query(new QueryRequest<>(TestDocumentBean.class).withHashKeyValue("sharded").withIndex(TestDocumentBean.GlobalSecondaryIndex.testIndexSharded)).size(), 19);
+    }
+
+    @Test
+    public void testMultiQuery() {
+        List<String> ids = Arrays.asList("multi1", "multi2", "multi3", "other");
+        List<TestDocumentBean> saved = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            TestDocumentBean doc = createTestDocumentBean(ids.get(i % ids.size()), null).setString(i % 2 == 0 ? "even" : "odd").setIntegerField(i);
+            dynamap.save(new SaveParams<>(doc));
+            saved.add(doc);
+        }
+        List<TestDocumentBean> expected = saved.stream().filter(d -> !d.getId().equals("other")).collect(Collectors.toList());
+
+        MultiQueryRequest<TestDocumentBean> multiQueryRequest = new MultiQueryRequest<>(new QueryRequest<>(TestDocumentBean.class), ids.subList(0, 3))
+                .withParallelism(2);
+        List<TestDocumentBean> docs = dynamap.multiQuery(multiQueryRequest).getResults();
+        Assert.assertEquals(sequences(docs), sequences(expected));
+
+        // descending with a global limit
+        multiQueryRequest = new MultiQueryRequest<>(new QueryRequest<>(TestDocumentBean.class).withScanIndexForward(false).withMaxPageSize(2), ids.subList(0, 3))
+                .withLimit(4);
+        docs = dynamap.multiQuery(multiQueryRequest).getResults();
+        Collections.reverse(expected);
+        Assert.assertEquals(sequences(docs), sequences(expected.subList(0, 4)));
+
+        // merged by the range key of a sharded index
+        multiQueryRequest = new MultiQueryRequest<>(new QueryRequest<>(TestDocumentBean.class)
+                .withIndex(TestDocumentBean.GlobalSecondaryIndex.testIndexSharded)
+                .withRangeKeyCondition(new RangeKeyCondition(TestDocumentBean.INTEGERFIELD_FIELD).ge(10)), Arrays.asList("even", "odd"));
+        docs = dynamap.multiQuery(multiQueryRequest).getResults();
+        Assert.assertEquals(docs.stream().map(TestDocumentBean::getIntegerField).collect(Collectors.toList()), IntStream.range(10, 20).boxed().collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testAcrossSuffixes() {
+        List<String> suffixes = Arrays.asList("-2018", "-2019", "-2020");
+        suffixes.forEach(suffix -> dynamap.createTableFromExisting(TestDocumentBean.getTableName(), TestDocumentBean.getTableName() + suffix, true));
+        Map<Integer, String> suffixBySequence = new HashMap<>();
+        for (int i = 0; i < 9; i++) {
+            String suffix = suffixes.get(i % 3);
+            TestDocumentBean doc = createTestDocumentBean("player", null);
+            dynamap.save(new SaveParams<>(doc).withSuffix(suffix));
+            suffixBySequence.put(doc.getSequence(), suffix);
+        }
+        List<Integer> sequences = suffixBySequence.keySet().stream().sorted(Comparator.reverseOrder()).collect(Collectors.toList());
+
+        Map<String, DynamoRateLimiter> readLimiters = suffixes.stream().collect(Collectors.toMap(s -> s, s -> new DynamoRateLimiter(DynamoRateLimiter.RateLimitType.READ, 100)));
+        List<SuffixedResult<TestDocumentBean>> results = dynamap.queryAcrossSuffixes(new QueryRequest<>(TestDocumentBean.class).withHashKeyValue("player").withScanIndexForward(false),
+                new SuffixFanOutParams(suffixes).withReadLimiters(readLimiters).withLimit(5)).getResults();
+        Assert.assertEquals(results.size(), 5);
+        for (int i = 0; i < 5; i++) {
+            Assert.assertEquals(results.get(i).getValue().getSequence(), sequences.get(i));
+            Assert.assertEquals(results.get(i).getSuffix(), suffixBySequence.get(sequences.get(i)));
+        }
+
+        List<SuffixedResult<TestDocumentBean>> scanned = dynamap.scanAcrossSuffixes(new ScanRequest<>(TestDocumentBean.class), new SuffixFanOutParams(suffixes).withParallelism(2)).getResults();
+        Assert.assertEquals(scanned.size(), 9);
+        Assert.assertEquals(scanned.stream().map(SuffixedResult::getSuffix).distinct().collect(Collectors.toList()), suffixes);
+        scanned.forEach(r -> Assert.assertEquals(r.getSuffix(), suffixBySequence.get(r.getValue().getSequence())));
+
+        int lastSequence = sequences.get(0);
+        List<SuffixedResult<TestDocumentBean>> fetched = dynamap.batchGetObjectAcrossSuffixes(
+                Collections.singletonList(new GetObjectRequest<>(TestDocumentBean.class).withHashKeyValue("player").withRangeKeyValue(lastSequence)), new SuffixFanOutParams(suffixes));
+        Assert.assertEquals(fetched.size(), 1);
+        Assert.assertEquals(fetched.get(0).getSuffix(), suffixBySequence.get(lastSequence));
+
+        // with a limit the suffixes are read in order, and the tables after the limit is reached are not read
+        List<GetObjectRequest<TestDocumentBean>> allRequests = sequences.stream()
+                .map(sequence -> new GetObjectRequest<>(TestDocumentBean.class).withHashKeyValue("player").withRangeKeyValue(sequence)).collect(Collectors.toList());
+        Map<String, DynamoRateLimiter> unreadLimiters = new HashMap<>(readLimiters);
+        unreadLimiters.put(suffixes.get(2), new DynamoRateLimiter(DynamoRateLimiter.RateLimitType.READ, 100) {
+            @Override
+            public void init(Table table) {
+                throw new AssertionError("the table of the last suffix is read");
+            }
+        });
+        fetched = dynamap.batchGetObjectAcrossSuffixes(allRequests, new SuffixFanOutParams(suffixes).withParallelism(1).withReadLimiters(unreadLimiters).withLimit(4));
+        Assert.assertEquals(fetched.stream().map(SuffixedResult::getSuffix).collect(Collectors.toList()),
+                Arrays.asList(suffixes.get(0), suffixes.get(0), suffixes.get(0), suffixes.get(1)));
+
+        // the read limiter of the request is sized for one table, so it cannot be shared by several suffixes
+        try {
+            dynamap.scanAcrossSuffixes(new ScanRequest<>(TestDocumentBean.class).withReadRateLimiter(new DynamoRateLimiter(DynamoRateLimiter.RateLimitType.READ, 100)),
+                    new SuffixFanOutParams(suffixes));
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            Assert.assertNotNull(e);
+        }
+        scanned = dynamap.scanAcrossSuffixes(new ScanRequest<>(TestDocumentBean.class).withReadRateLimiter(new DynamoRateLimiter(DynamoRateLimiter.RateLimitType.READ, 100)),
+                new SuffixFanOutParams(suffixes.subList(0, 1))).getResults();
+        Assert.assertEquals(scanned.size(), 3);
+    }
+
+    @Test
+    public void testUpdateExpressionsWithSameShape() {
+        List<TestDocumentUpdates> updates = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            TestDocumentBean doc = createTestDocumentBean(createNestedTypeBean());
+            dynamap.save(new SaveParams<>(doc));
+            TestDocumentUpdates testDocumentUpdates = doc.createUpdates().setString("string" + i).incrementIntegerField(i + 1);
+            dynamap.update(new UpdateParams<>(testDocumentUpdates));
+            updates.add(testDocumentUpdates);
+            Assert.assertEquals(dynamap.getObject(createGetObjectParams(doc)).getString(), "string" + i);
+        }
+        DynamoExpressionBuilder first = updates.get(0).getExpressionBuilder();
+        DynamoExpressionBuilder second = updates.get(1).getExpressionBuilder();
+        Assert.assertEquals(first.buildUpdateExpression(), second.buildUpdateExpression());
+        Assert.assertEquals(first.buildConditionalExpression(), second.buildConditionalExpression());
+        Assert.assertEquals(first.getNameMap(), second.getNameMap());
+        Assert.assertNotEquals(first.getValueMap(), second.getValueMap());
+
+        // updates of different map items have the same expression text, and only their name maps differ
+        updates.clear();
+        List<TestDocumentBean> docs = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            TestDocumentBean doc = createTestDocumentBean(createNestedTypeBean()).setMapOfLong(ImmutableMap.of("key" + i, 1L));
+            dynamap.save(new SaveParams<>(doc));
+            TestDocumentUpdates testDocumentUpdates = doc.createUpdates().incrementMapOfLongAmount("key" + i, i + 1L);
+            dynamap.update(new UpdateParams<>(testDocumentUpdates));
+            updates.add(testDocumentUpdates);
+            docs.add(doc);
+        }
+        first = updates.get(0).getExpressionBuilder();
+        second = updates.get(1).getExpressionBuilder();
+        Assert.assertEquals(first.buildUpdateExpression(), second.buildUpdateExpression());
+        Assert.assertNotEquals(first.getNameMap(), second.getNameMap());
+        for (int i = 0; i < 2; i++) {
+            Assert.assertEquals(dynamap.getObject(createGetObjectParams(docs.get(i))).getMapOfLong(), ImmutableMap.of("key" + i, i + 2L));
+        }
+    }
+
+    @Test
+    public void testUntouchedCollectionFieldsInUpdates() {
+        TestDocumentBean doc = createTestDocumentBean(createNestedTypeBean()).setMapOfLong(ImmutableMap.of("alpha", 1L));
+        dynamap.save(new SaveParams<>(doc));
+
+        TestDocumentUpdates testDocumentUpdates = doc.createUpdates();
+        Assert.assertTrue(testDocumentUpdates.mapOfLongDeltas().isEmpty());
+        Assert.assertTrue(testDocumentUpdates.listOfStringAdds().isEmpty());
+        Assert.assertTrue(testDocumentUpdates.setOfStringSets().isEmpty());
+        Assert.assertSame(testDocumentUpdates.getMapOfLong(), doc.getMapOfLong());
+
+        testDocumentUpdates.incrementMapOfLongAmount("alpha", 3L).addListOfStringItem("extra").setSetOfStringItem("extra");
+        Assert.assertEquals(testDocumentUpdates.mapOfLongDeltas().get("alpha").longValue(), 3L);
+        Assert.assertTrue(testDocumentUpdates.setOfStringDeletes().isEmpty());
+        Assert.assertTrue(testDocumentUpdates.mapOfLongDeletes().isEmpty());
+        dynamap.update(new UpdateParams<>(testDocumentUpdates));
+
+        TestDocument saved = dynamap.getObject(createGetObjectParams(doc));
+        Assert.assertEquals(saved.getMapOfLongValue("alpha").longValue(), 4L);
+        Assert.assertTrue(saved.getListOfString().contains("extra"));
+        Assert.assertTrue(saved.getSetOfString().contains("extra"));
+    }
+
     @Test
     public void testCachedCollections() {
         //Updates types should use a cached collection when using the MergeUtil class to calculate the updated value.
@@ -1410,6 +2412,132 @@ public class DynamapTest {
         Assert.assertSame(setOfCustomTypeFromUpdates, updates.getSetOfCustomType());
     }
 
+    @Test
+    public void testBatchUpdate() {
+        List<TestDocumentBean> docs = new ArrayList<>();
+        List<UpdateParams<TestDocument>> updateParams = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            TestDocumentBean doc = createTestDocumentBean(createNestedTypeBean()).setIntegerField(i);
+            dynamap.save(new SaveParams<>(doc));
+            docs.add(doc);
+            updateParams.add(new UpdateParams<>(doc.createUpdates().incrementIntegerField(100)));
+        }
+        // an item which does not exist fails the schema version condition
+        TestDocumentBean missing = createTestDocumentBean(createNestedTypeBean());
+        updateParams.add(5, new UpdateParams<>(missing.createUpdates().setString("missing")));
+
+        List<UpdateOutcome<TestDocumentUpdateResult>> outcomes = dynamap.batchUpdate(new BatchUpdateParams<>(updateParams).withParallelism(4));
+        Assert.assertEquals(outcomes.size(), 21);
+        Assert.assertEquals(outcomes.get(5).getStatus(), UpdateOutcome.Status.CONDITIONAL_CHECK_FAILED);
+        Assert.assertNotNull(outcomes.get(5).getException());
+        for (int i = 0; i < 20; i++) {
+            UpdateOutcome<TestDocumentUpdateResult> outcome = outcomes.get(i < 5 ? i : i + 1);
+            Assert.assertTrue(outcome.isUpdated());
+            Assert.assertEquals(outcome.getResult().getId(), docs.get(i).getId());
+            Assert.assertEquals(outcome.getResult().getIntegerField().intValue(), i + 100);
+            Assert.assertEquals(dynamap.getObject(createGetObjectParams(docs.get(i))).getIntegerField().intValue(), i + 100);
+        }
+
+        List<UpdateParams<TestDocument>> noneParams = new ArrayList<>();
+        for (TestDocumentBean doc : docs) {
+            noneParams.add(new UpdateParams<>(doc.createUpdates().setString("none")));
+        }
+        outcomes = dynamap.batchUpdate(new BatchUpdateParams<>(noneParams).withReturnValue(DynamapReturnValue.NONE));
+        for (UpdateOutcome<TestDocumentUpdateResult> outcome : outcomes) {
+            Assert.assertTrue(outcome.isUpdated());
+            Assert.assertNull(outcome.getResult());
+        }
+        Assert.assertEquals(dynamap.getObject(createGetObjectParams(docs.get(0))).getString(), "none");
+    }
+
+    @Test
+    public void testPrimitiveMaps() {
+        TestDocumentBean doc = createTestDocumentBean(createNestedTypeBean())
+                .setPrimitiveMapOfLong(ImmutableMap.of("gold", 10L, "silver", 20L))
+                .setPrimitiveMapOfInteger(ImmutableMap.of("wins", 1));
+        Assert.assertTrue(doc.getPrimitiveMapOfLong() instanceof LongValueMap);
+        Assert.assertEquals(doc.getPrimitiveMapOfLongValueAsLong("gold"), 10L);
+        Assert.assertEquals(doc.getPrimitiveMapOfLongValueAsLong("bronze"), 0L);
+        dynamap.save(new SaveParams<>(doc));
+
+        TestDocument saved = dynamap.getObject(createGetObjectParams(doc));
+        Assert.assertEquals(saved.getPrimitiveMapOfLong(), ImmutableMap.of("gold", 10L, "silver", 20L));
+        Assert.assertEquals(saved.getPrimitiveMapOfIntegerValueAsInt("wins"), 1);
+
+        TestDocumentUpdates updates = saved.createUpdates();
+        updates.incrementPrimitiveMapOfLongAmount("gold", 5L).decrementPrimitiveMapOfLongAmount("bronze", 2L).incrementPrimitiveMapOfIntegerAmount("wins", 2);
+        Assert.assertEquals(updates.getPrimitiveMapOfLongValueAsLong("gold"), 15L);
+        Assert.assertEquals(updates.getPrimitiveMapOfLongValueAsLong("bronze"), -2L);
+        Assert.assertEquals(updates.getPrimitiveMapOfIntegerValueAsInt("wins"), 3);
+        dynamap.update(new UpdateParams<>(updates));
+
+        saved = dynamap.getObject(createGetObjectParams(doc));
+        Assert.assertEquals(saved.getPrimitiveMapOfLong(), ImmutableMap.of("gold", 15L, "silver", 20L, "bronze", -2L));
+        Assert.assertEquals(saved.getPrimitiveMapOfIntegerValueAsInt("wins"), 3);
+
+        LongValueMap map = new LongValueMap();
+        for (int i = 0; i < 100; i++) {
+            map.putLong("key" + i, i);
+        }
+        for (int i = 0; i < 100; i += 2) {
+            Assert.assertEquals(map.remove("key" + i).longValue(), i);
+        }
+        Assert.assertEquals(map.size(), 50);
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals(map.containsKey("key" + i), i % 2 == 1);
+        }
+        Assert.assertEquals(map.addLong("key1", 10L), 11L);
+    }
+
+    @Test
+    public void testCollectionSnapshotsInUpdates() {
+        NestedTypeBean nestedTypeBean = createNestedTypeBean();
+        nestedTypeBean.setMapOfLong(ImmutableMap.of("a", 1L, "b", 2L, "c", 3L));
+        nestedTypeBean.setListOfLong(ImmutableList.of(1L, 2L));
+        nestedTypeBean.setSetOfLong(ImmutableSet.of(1L, 2L));
+        NestedTypeUpdates updates = nestedTypeBean.createUpdates();
+
+        updates.incrementMapOfLongAmount("a", 10L).setMapOfLongValue("d", 4L).deleteMapOfLongValue("c");
+        Map<String, Long> mapOfLong = updates.getMapOfLong();
+        Assert.assertEquals(mapOfLong, ImmutableMap.of("a", 11L, "b", 2L, "d", 4L));
+        Assert.assertFalse(mapOfLong.containsKey("c"));
+        Assert.assertNull(mapOfLong.get("c"));
+        Assert.assertEquals(updates.getMapOfLongIds(), ImmutableSet.of("a", "b", "d"));
+
+        updates.addListOfLongValue(3L);
+        List<Long> listOfLong = updates.getListOfLong();
+        Assert.assertEquals(listOfLong, ImmutableList.of(1L, 2L, 3L));
+        Assert.assertEquals(listOfLong.get(2).longValue(), 3L);
+
+        updates.setSetOfLongValue(3L).deleteSetOfLongValue(1L);
+        Set<Long> setOfLong = updates.getSetOfLong();
+        Assert.assertEquals(setOfLong, ImmutableSet.of(2L, 3L));
+
+        try {
+            mapOfLong.put("e", 5L);
+            Assert.fail("Collections returned by updates should be immutable");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+
+        // a bean created from the updates must not change when the updates are modified further
+        NestedTypeBean copy = new NestedTypeBean(updates);
+        updates.addListOfLongValue(4L).setSetOfLongValue(4L).setMapOfLongValue("e", 5L);
+        Assert.assertEquals(copy.getListOfLong(), ImmutableList.of(1L, 2L, 3L));
+        Assert.assertEquals(copy.getSetOfLong(), ImmutableSet.of(2L, 3L));
+        Assert.assertEquals(copy.getMapOfLong(), ImmutableMap.of("a", 11L, "b", 2L, "d", 4L));
+        Assert.assertEquals(updates.getListOfLong().size(), 4);
+
+        // and neither do the collections returned before
+        Assert.assertEquals(listOfLong, ImmutableList.of(1L, 2L, 3L));
+        Assert.assertEquals(setOfLong, ImmutableSet.of(2L, 3L));
+        Assert.assertEquals(mapOfLong, ImmutableMap.of("a", 11L, "b", 2L, "d", 4L));
+        for (Long value : updates.getSetOfLong()) {
+            updates.setSetOfLongValue(value + 10);
+        }
+        Assert.assertEquals(updates.getSetOfLong(), ImmutableSet.of(2L, 3L, 4L, 12L, 13L, 14L));
+    }
+
     @Test
     public void testReturnUpdated() {
 
@@ -1526,6 +2654,10 @@ public class DynamapTest {
 
     int seq = 0;
 
+    private List<Integer> sequences(List<TestDocumentBean> docs) {
+        return docs.stream().map(TestDocumentBean::getSequence).collect(Collectors.toList());
+    }
+
     private TestDocumentBean createTestDocumentBean(NestedTypeBean nestedTypeBean) {
         return createTestDocumentBean(UUID.randomUUID().toString(), nestedTypeBean);
     }
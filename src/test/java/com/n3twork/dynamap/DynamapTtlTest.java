@@ -65,4 +65,12 @@ public class DynamapTtlTest {
         // In a scenario with a live DynamoDB connection, it will take some time for the change to apply. But with DynamoDBLocal it happens synchronously.
         Assert.assertEquals(describeTimeToLiveResult.getTimeToLiveDescription(), new TimeToLiveDescription().withAttributeName("ttlB").withTimeToLiveStatus(TimeToLiveStatus.ENABLED));
     }
+
+    @Test(dependsOnMethods = {"ttlShouldBeSetOnExistingTables"})
+    public void ttlShouldBeSetOnTablesCreatedFromExisting() {
+        dynamap.createTableFromExisting("TestWithTtl", "TestWithTtl-copy", System.getProperty("aws.profile") == null);
+
+        DescribeTimeToLiveResult describeTimeToLiveResult = ddb.describeTimeToLive(new DescribeTimeToLiveRequest().withTableName("testTestWithTtl-copy"));
+        Assert.assertEquals(describeTimeToLiveResult.getTimeToLiveDescription(), new TimeToLiveDescription().withAttributeName("ttlB").withTimeToLiveStatus(TimeToLiveStatus.ENABLED));
+    }
 }
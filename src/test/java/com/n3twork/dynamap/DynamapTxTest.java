@@ -27,8 +27,8 @@ import com.amazonaws.services.dynamodbv2.model.TransactionCanceledException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.n3twork.dynamap.test.PlayerBean;
 import com.n3twork.dynamap.test.PlayerUpdates;
+import org.testng.annotations.BeforeClass;
 import org.testng.annotations.BeforeMethod;
-import org.testng.annotations.BeforeTest;
 import org.testng.annotations.Test;
 
 import java.util.List;
@@ -43,20 +43,22 @@ public class DynamapTxTest {
 
     private final static ObjectMapper objectMapper = new ObjectMapper();
 
-    @BeforeTest
+    @BeforeClass
     public void init() {
+        ddb = createAmazonDynamoDB();
+    }
 
+    protected AmazonDynamoDB createAmazonDynamoDB() {
         // This test can be run against an AWS account.
         // This is necessary for testing the UpdateResult behavior because currently local dynamodb does not correctly implement UPDATE_NEW return values.
         if (System.getProperty("aws.profile") != null) {
             AmazonDynamoDBClientBuilder builder = AmazonDynamoDBClient.builder();
             builder.setCredentials(new ProfileCredentialsProvider((System.getProperty("aws.profile"))));
             builder.setRegion("us-east-1");
-            ddb = builder.build();
-        } else {
-            System.setProperty("sqlite4java.library.path", "native-libs");
-            ddb = DynamoDBEmbedded.create().amazonDynamoDB();
+            return builder.build();
         }
+        System.setProperty("sqlite4java.library.path", "native-libs");
+        return DynamoDBEmbedded.create().amazonDynamoDB();
     }
 
     @BeforeMethod
@@ -172,6 +174,46 @@ public class DynamapTxTest {
         thirdCreateTx.save(new SaveParams<>(p1));
     }
 
+    @Test
+    public void testTxCapacityAndStats() {
+        PlayerBean p1 = new PlayerBean("playerOne", "Player One", PlayerBean.SCHEMA_VERSION);
+        PlayerBean p2 = new PlayerBean("playerTwo", "Player Two", PlayerBean.SCHEMA_VERSION);
+        DynamoRateLimiter writeLimiter = new DynamoRateLimiter(DynamoRateLimiter.RateLimitType.WRITE, 100);
+
+        WriteTx createTwoPlayers = dynamap.newWriteTx();
+        createTwoPlayers.save(new SaveParams<>(p1).withWriteLimiter(writeLimiter));
+        createTwoPlayers.save(new SaveParams<>(p2));
+        createTwoPlayers.exec();
+
+        TransactionStats writeStats = dynamap.getWriteTransactionStats();
+        assertEquals(writeStats.getExecuted(), 1);
+        assertEquals(writeStats.getFailed(), 0);
+        assertTrue(writeStats.getAverageLatencyMillis() > 0);
+
+        WriteTx failingTx = dynamap.newWriteTx();
+        failingTx.save(new SaveParams<>(p1).withDisableOverwrite(true).withWriteLimiter(writeLimiter));
+        try {
+            failingTx.exec();
+            fail();
+        } catch (TransactionCanceledException e) {
+            // a conditional check failure is not retried
+        }
+        assertEquals(writeStats.getFailed(), 1);
+        assertEquals(writeStats.getThrottledRetries(), 0);
+
+        // a limiter set on the transaction is keyed by bean class, and initialized with the table of that class
+        WriteTx limitedTx = dynamap.newWriteTx().withWriteLimiter(PlayerBean.class, new DynamoRateLimiter(DynamoRateLimiter.RateLimitType.WRITE, 100));
+        limitedTx.save(new SaveParams<>(p2));
+        limitedTx.exec();
+        assertEquals(writeStats.getExecuted(), 2);
+
+        ReadTx readTx = dynamap.newReadTx();
+        readTx.get(new GetObjectParams<>(new GetObjectRequest<>(PlayerBean.class).withHashKeyValue("playerOne"))
+                .withRateLimiters(ReadWriteRateLimiterPair.of(new DynamoRateLimiter(DynamoRateLimiter.RateLimitType.READ, 100), null)));
+        assertEquals(readTx.exec().get(0), p1);
+        assertEquals(dynamap.getReadTransactionStats().getExecuted(), 1);
+    }
+
     @Test
     public void testReadTx() {
         PlayerBean p1 = new PlayerBean("playerOne", "Player One", PlayerBean.SCHEMA_VERSION);
@@ -0,0 +1,305 @@
+/*
+    Copyright 2018 N3TWORK INC
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.n3twork.dynamap.testing;
+
+import com.amazonaws.services.dynamodbv2.model.AmazonDynamoDBException;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Type, comparison, copy and size helpers for low level attribute values.
+ */
+class AttributeValues {
+
+    private AttributeValues() {
+    }
+
+    static String type(AttributeValue value) {
+        if (value.getS() != null) return "S";
+        if (value.getN() != null) return "N";
+        if (value.getB() != null) return "B";
+        if (value.getSS() != null) return "SS";
+        if (value.getNS() != null) return "NS";
+        if (value.getBS() != null) return "BS";
+        if (value.getM() != null) return "M";
+        if (value.getL() != null) return "L";
+        if (value.getBOOL() != null) return "BOOL";
+        if (value.getNULL() != null) return "NULL";
+        throw validation("Supplied AttributeValue is empty, must contain exactly one of the supported datatypes");
+    }
+
+    static AttributeValue copy(AttributeValue value) {
+        if (value == null) {
+            return null;
+        }
+        AttributeValue copy = new AttributeValue();
+        switch (type(value)) {
+            case "S":
+                return copy.withS(value.getS());
+            case "N":
+                return copy.withN(value.getN());
+            case "B":
+                return copy.withB(copyBytes(value.getB()));
+            case "SS":
+                return copy.withSS(new ArrayList<>(value.getSS()));
+            case "NS":
+                return copy.withNS(new ArrayList<>(value.getNS()));
+            case "BS":
+                List<ByteBuffer> bs = new ArrayList<>(value.getBS().size());
+                for (ByteBuffer buffer : value.getBS()) {
+                    bs.add(copyBytes(buffer));
+                }
+                return copy.withBS(bs);
+            case "M":
+                return copy.withM(copyItem(value.getM()));
+            case "L":
+                List<AttributeValue> list = new ArrayList<>(value.getL().size());
+                for (AttributeValue element : value.getL()) {
+                    list.add(copy(element));
+                }
+                return copy.withL(list);
+            case "BOOL":
+                return copy.withBOOL(value.getBOOL());
+            default:
+                return copy.withNULL(true);
+        }
+    }
+
+    static Map<String, AttributeValue> copyItem(Map<String, AttributeValue> item) {
+        if (item == null) {
+            return null;
+        }
+        Map<String, AttributeValue> copy = new LinkedHashMap<>();
+        for (Map.Entry<String, AttributeValue> entry : item.entrySet()) {
+            copy.put(entry.getKey(), copy(entry.getValue()));
+        }
+        return copy;
+    }
+
+    private static ByteBuffer copyBytes(ByteBuffer buffer) {
+        return ByteBuffer.wrap(bytes(buffer));
+    }
+
+    static byte[] bytes(ByteBuffer buffer) {
+        ByteBuffer duplicate = buffer.duplicate();
+        duplicate.rewind();
+        byte[] bytes = new byte[duplicate.remaining()];
+        duplicate.get(bytes);
+        return bytes;
+    }
+
+    static BigDecimal number(String value) {
+        try {
+            return new BigDecimal(value);
+        } catch (NumberFormatException e) {
+            throw validation("The parameter cannot be converted to a numeric value: " + value);
+        }
+    }
+
+    static String canonicalNumber(BigDecimal value) {
+        return value.stripTrailingZeros().toPlainString();
+    }
+
+    static boolean isEqual(AttributeValue a, AttributeValue b) {
+        if (a == null || b == null) {
+            return a == b;
+        }
+        String type = type(a);
+        if (!type.equals(type(b))) {
+            return false;
+        }
+        switch (type) {
+            case "S":
+                return a.getS().equals(b.getS());
+            case "N":
+                return number(a.getN()).compareTo(number(b.getN())) == 0;
+            case "B":
+                return Arrays.equals(bytes(a.getB()), bytes(b.getB()));
+            case "SS":
+            case "NS":
+            case "BS":
+                return setElements(a).equals(setElements(b));
+            case "M":
+                Map<String, AttributeValue> ma = a.getM();
+                Map<String, AttributeValue> mb = b.getM();
+                if (!ma.keySet().equals(mb.keySet())) {
+                    return false;
+                }
+                for (Map.Entry<String, AttributeValue> entry : ma.entrySet()) {
+                    if (!isEqual(entry.getValue(), mb.get(entry.getKey()))) {
+                        return false;
+                    }
+                }
+                return true;
+            case "L":
+                List<AttributeValue> la = a.getL();
+                List<AttributeValue> lb = b.getL();
+                if (la.size() != lb.size()) {
+                    return false;
+                }
+                for (int i = 0; i < la.size(); i++) {
+                    if (!isEqual(la.get(i), lb.get(i))) {
+                        return false;
+                    }
+                }
+                return true;
+            case "BOOL":
+                return a.getBOOL().equals(b.getBOOL());
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * @return the order of two scalar values, or null when they are not of the same comparable type
+     */
+    static Integer compare(AttributeValue a, AttributeValue b) {
+        if (a == null || b == null) {
+            return null;
+        }
+        String type = type(a);
+        if (!type.equals(type(b))) {
+            return null;
+        }
+        switch (type) {
+            case "S":
+            case "N":
+            case "B":
+                return Key.of(a).compareTo(Key.of(b));
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @return the elements of a set as keys, so that numbers and binaries compare by value
+     */
+    static Set<Key> setElements(AttributeValue set) {
+        Set<Key> elements = new LinkedHashSet<>();
+        if (set.getSS() != null) {
+            set.getSS().forEach(s -> elements.add(Key.of(new AttributeValue().withS(s))));
+        } else if (set.getNS() != null) {
+            set.getNS().forEach(n -> elements.add(Key.of(new AttributeValue().withN(n))));
+        } else if (set.getBS() != null) {
+            set.getBS().forEach(b -> elements.add(Key.of(new AttributeValue().withB(b))));
+        }
+        return elements;
+    }
+
+    static AttributeValue toSet(String type, Collection<Key> elements) {
+        switch (type) {
+            case "SS":
+                List<String> ss = new ArrayList<>();
+                elements.forEach(key -> ss.add(key.getValue().getS()));
+                return new AttributeValue().withSS(ss);
+            case "NS":
+                List<String> ns = new ArrayList<>();
+                elements.forEach(key -> ns.add(key.getValue().getN()));
+                return new AttributeValue().withNS(ns);
+            default:
+                List<ByteBuffer> bs = new ArrayList<>();
+                elements.forEach(key -> bs.add(key.getValue().getB()));
+                return new AttributeValue().withBS(bs);
+        }
+    }
+
+    static boolean isSet(String type) {
+        return type.equals("SS") || type.equals("NS") || type.equals("BS");
+    }
+
+    /**
+     * @return the value of the size() function, or null for types without a size
+     */
+    static Integer size(AttributeValue value) {
+        switch (type(value)) {
+            case "S":
+                return value.getS().length();
+            case "B":
+                return value.getB().remaining();
+            case "SS":
+                return value.getSS().size();
+            case "NS":
+                return value.getNS().size();
+            case "BS":
+                return value.getBS().size();
+            case "M":
+                return value.getM().size();
+            case "L":
+                return value.getL().size();
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @return the approximate stored size of an item in bytes, as used for capacity and page size accounting
+     */
+    static int itemSize(Map<String, AttributeValue> item) {
+        if (item == null) {
+            return 0;
+        }
+        int size = 0;
+        for (Map.Entry<String, AttributeValue> entry : item.entrySet()) {
+            size += utf8Length(entry.getKey()) + valueSize(entry.getValue());
+        }
+        return size;
+    }
+
+    private static int valueSize(AttributeValue value) {
+        switch (type(value)) {
+            case "S":
+                return utf8Length(value.getS());
+            case "N":
+                return numberSize(value.getN());
+            case "B":
+                return value.getB().remaining();
+            case "SS":
+                return value.getSS().stream().mapToInt(AttributeValues::utf8Length).sum();
+            case "NS":
+                return value.getNS().stream().mapToInt(AttributeValues::numberSize).sum();
+            case "BS":
+                return value.getBS().stream().mapToInt(ByteBuffer::remaining).sum();
+            case "M":
+                return 3 + value.getM().size() + itemSize(value.getM());
+            case "L":
+                return 3 + value.getL().size() + value.getL().stream().mapToInt(AttributeValues::valueSize).sum();
+            default:
+                return 1;
+        }
+    }
+
+    private static int numberSize(String number) {
+        return (number.length() + 1) / 2 + 1;
+    }
+
+    private static int utf8Length(String s) {
+        return s.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    static AmazonDynamoDBException validation(String message) {
+        AmazonDynamoDBException e = new AmazonDynamoDBException(message);
+        e.setErrorCode("ValidationException");
+        e.setStatusCode(400);
+        e.setServiceName("AmazonDynamoDBv2");
+        return e;
+    }
+
+}
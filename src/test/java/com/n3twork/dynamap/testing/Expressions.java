@@ -0,0 +1,894 @@
+/*
+    Copyright 2018 N3TWORK INC
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.n3twork.dynamap.testing;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+
+import java.util.*;
+
+import static com.n3twork.dynamap.testing.AttributeValues.validation;
+
+/**
+ * Parses and evaluates condition, key condition, filter, projection and update expressions against items held as
+ * low level attribute maps, together with the legacy Condition maps the document API sends for range key conditions
+ * and query filters.
+ */
+class Expressions {
+
+    private Expressions() {
+    }
+
+    interface Condition {
+        boolean test(Map<String, AttributeValue> item);
+    }
+
+    interface Operand {
+        /**
+         * @return the value of the operand, or null when it refers to a missing attribute
+         */
+        AttributeValue evaluate(Map<String, AttributeValue> item);
+    }
+
+    //// Operands
+
+    static final class Path implements Operand {
+        // String elements are map keys, Integer elements list indexes
+        private final List<Object> elements;
+
+        Path(List<Object> elements) {
+            this.elements = elements;
+        }
+
+        static Path of(String attributeName) {
+            return new Path(Collections.singletonList(attributeName));
+        }
+
+        String getRoot() {
+            return (String) elements.get(0);
+        }
+
+        boolean isTopLevel() {
+            return elements.size() == 1;
+        }
+
+        @Override
+        public AttributeValue evaluate(Map<String, AttributeValue> item) {
+            AttributeValue value = item.get(getRoot());
+            for (int i = 1; i < elements.size() && value != null; i++) {
+                value = child(value, elements.get(i));
+            }
+            return value;
+        }
+
+        private AttributeValue parent(Map<String, AttributeValue> item) {
+            AttributeValue parent = new Path(elements.subList(0, elements.size() - 1)).evaluate(item);
+            if (parent == null || child(parent, last()) == null && !canHoldChild(parent, last())) {
+                throw validation("The document path provided in the update expression is invalid for update");
+            }
+            return parent;
+        }
+
+        private Object last() {
+            return elements.get(elements.size() - 1);
+        }
+
+        void set(Map<String, AttributeValue> item, AttributeValue value) {
+            if (isTopLevel()) {
+                item.put(getRoot(), value);
+                return;
+            }
+            AttributeValue parent = parent(item);
+            if (last() instanceof String) {
+                parent.getM().put((String) last(), value);
+            } else {
+                int index = (Integer) last();
+                if (index >= parent.getL().size()) {
+                    parent.getL().add(value);
+                } else {
+                    parent.getL().set(index, value);
+                }
+            }
+        }
+
+        void remove(Map<String, AttributeValue> item) {
+            if (isTopLevel()) {
+                item.remove(getRoot());
+                return;
+            }
+            AttributeValue parent = new Path(elements.subList(0, elements.size() - 1)).evaluate(item);
+            if (parent == null) {
+                return;
+            }
+            if (last() instanceof String && parent.getM() != null) {
+                parent.getM().remove(last());
+            } else if (last() instanceof Integer && parent.getL() != null && (Integer) last() < parent.getL().size()) {
+                parent.getL().remove((int) (Integer) last());
+            }
+        }
+
+        private static AttributeValue child(AttributeValue value, Object element) {
+            if (element instanceof String) {
+                return value.getM() == null ? null : value.getM().get(element);
+            }
+            int index = (Integer) element;
+            return value.getL() == null || index >= value.getL().size() ? null : value.getL().get(index);
+        }
+
+        private static boolean canHoldChild(AttributeValue value, Object element) {
+            return element instanceof String ? value.getM() != null : value.getL() != null;
+        }
+
+        /**
+         * Copies the value at this path from source into target, creating the enclosing maps and lists.
+         */
+        void project(Map<String, AttributeValue> source, Map<String, AttributeValue> target) {
+            AttributeValue value = evaluate(source);
+            if (value == null) {
+                return;
+            }
+            if (isTopLevel()) {
+                target.put(getRoot(), AttributeValues.copy(value));
+                return;
+            }
+            AttributeValue sourceContainer = source.get(getRoot());
+            AttributeValue targetContainer = target.get(getRoot());
+            if (targetContainer == null) {
+                targetContainer = emptyLike(sourceContainer);
+                target.put(getRoot(), targetContainer);
+            }
+            for (int i = 1; i < elements.size(); i++) {
+                Object element = elements.get(i);
+                AttributeValue sourceChild = child(sourceContainer, element);
+                if (i == elements.size() - 1) {
+                    putChild(targetContainer, element, AttributeValues.copy(sourceChild));
+                } else {
+                    AttributeValue targetChild = element instanceof String ? targetContainer.getM().get(element) : null;
+                    if (targetChild == null) {
+                        targetChild = emptyLike(sourceChild);
+                        putChild(targetContainer, element, targetChild);
+                    }
+                    sourceContainer = sourceChild;
+                    targetContainer = targetChild;
+                }
+            }
+        }
+
+        private static AttributeValue emptyLike(AttributeValue value) {
+            return value.getM() != null ? new AttributeValue().withM(new LinkedHashMap<>()) : new AttributeValue().withL(new ArrayList<>());
+        }
+
+        // projected list elements are appended in the order they are requested
+        private static void putChild(AttributeValue container, Object element, AttributeValue value) {
+            if (element instanceof String) {
+                container.getM().put((String) element, value);
+            } else {
+                container.getL().add(value);
+            }
+        }
+    }
+
+    static final class Value implements Operand {
+        private final AttributeValue value;
+
+        Value(AttributeValue value) {
+            this.value = value;
+        }
+
+        AttributeValue getValue() {
+            return value;
+        }
+
+        @Override
+        public AttributeValue evaluate(Map<String, AttributeValue> item) {
+            return value;
+        }
+    }
+
+    private static final class Size implements Operand {
+        private final Path path;
+
+        Size(Path path) {
+            this.path = path;
+        }
+
+        @Override
+        public AttributeValue evaluate(Map<String, AttributeValue> item) {
+            AttributeValue value = path.evaluate(item);
+            Integer size = value == null ? null : AttributeValues.size(value);
+            return size == null ? null : new AttributeValue().withN(size.toString());
+        }
+    }
+
+    private static final class IfNotExists implements Operand {
+        private final Path path;
+        private final Operand fallback;
+
+        IfNotExists(Path path, Operand fallback) {
+            this.path = path;
+            this.fallback = fallback;
+        }
+
+        @Override
+        public AttributeValue evaluate(Map<String, AttributeValue> item) {
+            AttributeValue value = path.evaluate(item);
+            return value != null ? value : required(fallback, item);
+        }
+    }
+
+    private static final class ListAppend implements Operand {
+        private final Operand first;
+        private final Operand second;
+
+        ListAppend(Operand first, Operand second) {
+            this.first = first;
+            this.second = second;
+        }
+
+        @Override
+        public AttributeValue evaluate(Map<String, AttributeValue> item) {
+            AttributeValue a = required(first, item);
+            AttributeValue b = required(second, item);
+            if (a.getL() == null || b.getL() == null) {
+                throw validation("An operand in the update expression has an incorrect data type");
+            }
+            List<AttributeValue> list = new ArrayList<>(a.getL());
+            list.addAll(b.getL());
+            return new AttributeValue().withL(list);
+        }
+    }
+
+    private static final class Arithmetic implements Operand {
+        private final Operand left;
+        private final boolean plus;
+        private final Operand right;
+
+        Arithmetic(Operand left, boolean plus, Operand right) {
+            this.left = left;
+            this.plus = plus;
+            this.right = right;
+        }
+
+        @Override
+        public AttributeValue evaluate(Map<String, AttributeValue> item) {
+            AttributeValue a = required(left, item);
+            AttributeValue b = required(right, item);
+            if (a.getN() == null || b.getN() == null) {
+                throw validation("An operand in the update expression has an incorrect data type");
+            }
+            return new AttributeValue().withN(AttributeValues.canonicalNumber(plus
+                    ? AttributeValues.number(a.getN()).add(AttributeValues.number(b.getN()))
+                    : AttributeValues.number(a.getN()).subtract(AttributeValues.number(b.getN()))));
+        }
+    }
+
+    private static AttributeValue required(Operand operand, Map<String, AttributeValue> item) {
+        AttributeValue value = operand.evaluate(item);
+        if (value == null) {
+            throw validation("The provided expression refers to an attribute that does not exist in the item");
+        }
+        return value;
+    }
+
+    //// Conditions
+
+    static final class And implements Condition {
+        private final Condition left;
+        private final Condition right;
+
+        And(Condition left, Condition right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public boolean test(Map<String, AttributeValue> item) {
+            return left.test(item) && right.test(item);
+        }
+    }
+
+    static final class Comparison implements Condition {
+        private final Operand left;
+        private final String operator;
+        private final Operand right;
+
+        Comparison(Operand left, String operator, Operand right) {
+            this.left = left;
+            this.operator = operator;
+            this.right = right;
+        }
+
+        @Override
+        public boolean test(Map<String, AttributeValue> item) {
+            AttributeValue a = left.evaluate(item);
+            AttributeValue b = right.evaluate(item);
+            if (a == null || b == null) {
+                return false;
+            }
+            switch (operator) {
+                case "=":
+                    return AttributeValues.isEqual(a, b);
+                case "<>":
+                    return !AttributeValues.isEqual(a, b);
+                default:
+                    Integer c = AttributeValues.compare(a, b);
+                    if (c == null) {
+                        return false;
+                    }
+                    switch (operator) {
+                        case "<":
+                            return c < 0;
+                        case "<=":
+                            return c <= 0;
+                        case ">":
+                            return c > 0;
+                        default:
+                            return c >= 0;
+                    }
+            }
+        }
+    }
+
+    /**
+     * @return the value the condition requires the top level attribute to equal, e.g. the hash key of a key condition
+     */
+    static AttributeValue findEquality(Condition condition, String attributeName) {
+        if (condition instanceof And) {
+            AttributeValue value = findEquality(((And) condition).left, attributeName);
+            return value != null ? value : findEquality(((And) condition).right, attributeName);
+        }
+        if (condition instanceof Comparison && ((Comparison) condition).operator.equals("=")) {
+            Comparison comparison = (Comparison) condition;
+            if (isAttribute(comparison.left, attributeName) && comparison.right instanceof Value) {
+                return ((Value) comparison.right).getValue();
+            }
+            if (isAttribute(comparison.right, attributeName) && comparison.left instanceof Value) {
+                return ((Value) comparison.left).getValue();
+            }
+        }
+        return null;
+    }
+
+    private static boolean isAttribute(Operand operand, String attributeName) {
+        return operand instanceof Path && ((Path) operand).isTopLevel() && ((Path) operand).getRoot().equals(attributeName);
+    }
+
+    private static Condition function(String name, List<Operand> args) {
+        switch (name) {
+            case "attribute_exists":
+                checkArgs(name, args, 1, true);
+                return item -> args.get(0).evaluate(item) != null;
+            case "attribute_not_exists":
+                checkArgs(name, args, 1, true);
+                return item -> args.get(0).evaluate(item) == null;
+            case "attribute_type":
+                checkArgs(name, args, 2, true);
+                return item -> {
+                    AttributeValue value = args.get(0).evaluate(item);
+                    AttributeValue type = args.get(1).evaluate(item);
+                    return value != null && type != null && AttributeValues.type(value).equals(type.getS());
+                };
+            case "begins_with":
+                checkArgs(name, args, 2, false);
+                return item -> {
+                    AttributeValue value = args.get(0).evaluate(item);
+                    AttributeValue prefix = args.get(1).evaluate(item);
+                    if (value == null || prefix == null) {
+                        return false;
+                    }
+                    if (value.getS() != null && prefix.getS() != null) {
+                        return value.getS().startsWith(prefix.getS());
+                    }
+                    if (value.getB() != null && prefix.getB() != null) {
+                        byte[] bytes = AttributeValues.bytes(value.getB());
+                        byte[] start = AttributeValues.bytes(prefix.getB());
+                        return bytes.length >= start.length && Arrays.equals(Arrays.copyOf(bytes, start.length), start);
+                    }
+                    return false;
+                };
+            case "contains":
+                checkArgs(name, args, 2, false);
+                return item -> contains(args.get(0).evaluate(item), args.get(1).evaluate(item));
+            default:
+                throw validation("Invalid function name; function: " + name);
+        }
+    }
+
+    private static void checkArgs(String name, List<Operand> args, int count, boolean firstIsPath) {
+        if (args.size() != count || (firstIsPath && !(args.get(0) instanceof Path))) {
+            throw validation("Incorrect number or type of arguments for function: " + name);
+        }
+    }
+
+    private static boolean contains(AttributeValue value, AttributeValue operand) {
+        if (value == null || operand == null) {
+            return false;
+        }
+        if (value.getS() != null) {
+            return operand.getS() != null && value.getS().contains(operand.getS());
+        }
+        if (value.getL() != null) {
+            return value.getL().stream().anyMatch(element -> AttributeValues.isEqual(element, operand));
+        }
+        if (AttributeValues.isSet(AttributeValues.type(value))) {
+            String elementType = AttributeValues.type(value).substring(0, 1);
+            return AttributeValues.type(operand).equals(elementType) && AttributeValues.setElements(value).contains(Key.of(operand));
+        }
+        return false;
+    }
+
+    //// Update actions
+
+    /**
+     * A parsed update expression. Operands are evaluated against the item as it was before the update, and the
+     * actions are then applied in SET, REMOVE, ADD, DELETE order.
+     */
+    static final class Update {
+        private final List<Path> setPaths = new ArrayList<>();
+        private final List<Operand> setValues = new ArrayList<>();
+        private final List<Path> removePaths = new ArrayList<>();
+        private final List<Path> addPaths = new ArrayList<>();
+        private final List<Operand> addValues = new ArrayList<>();
+        private final List<Path> deletePaths = new ArrayList<>();
+        private final List<Operand> deleteValues = new ArrayList<>();
+
+        /**
+         * @return the paths the update sets, removes, adds to or deletes from
+         */
+        List<Path> getPaths() {
+            List<Path> paths = new ArrayList<>(setPaths);
+            paths.addAll(removePaths);
+            paths.addAll(addPaths);
+            paths.addAll(deletePaths);
+            return paths;
+        }
+
+        Set<String> getUpdatedAttributes() {
+            Set<String> names = new LinkedHashSet<>();
+            getPaths().forEach(path -> names.add(path.getRoot()));
+            return names;
+        }
+
+        void apply(Map<String, AttributeValue> item) {
+            Map<String, AttributeValue> original = AttributeValues.copyItem(item);
+            List<AttributeValue> values = new ArrayList<>(setValues.size());
+            for (Operand operand : setValues) {
+                values.add(AttributeValues.copy(required(operand, original)));
+            }
+            for (int i = 0; i < setPaths.size(); i++) {
+                setPaths.get(i).set(item, values.get(i));
+            }
+            // list elements are removed by their index in the original list
+            List<Path> removals = new ArrayList<>(removePaths);
+            removals.sort((a, b) -> a.last() instanceof Integer && b.last() instanceof Integer
+                    ? Integer.compare((Integer) b.last(), (Integer) a.last()) : 0);
+            removals.forEach(path -> path.remove(item));
+            for (int i = 0; i < addPaths.size(); i++) {
+                add(item, addPaths.get(i), required(addValues.get(i), original));
+            }
+            for (int i = 0; i < deletePaths.size(); i++) {
+                delete(item, deletePaths.get(i), required(deleteValues.get(i), original));
+            }
+        }
+
+        private static void add(Map<String, AttributeValue> item, Path path, AttributeValue value) {
+            String type = AttributeValues.type(value);
+            if (!type.equals("N") && !AttributeValues.isSet(type)) {
+                throw validation("Incorrect operand type for operator or function; operator: ADD, operand type: " + type);
+            }
+            AttributeValue existing = path.evaluate(item);
+            if (existing == null) {
+                path.set(item, AttributeValues.copy(value));
+            } else if (!AttributeValues.type(existing).equals(type)) {
+                throw validation("An operand in the update expression has an incorrect data type");
+            } else if (type.equals("N")) {
+                path.set(item, new AttributeValue().withN(AttributeValues.canonicalNumber(
+                        AttributeValues.number(existing.getN()).add(AttributeValues.number(value.getN())))));
+            } else {
+                Set<Key> elements = AttributeValues.setElements(existing);
+                elements.addAll(AttributeValues.setElements(value));
+                path.set(item, AttributeValues.toSet(type, elements));
+            }
+        }
+
+        private static void delete(Map<String, AttributeValue> item, Path path, AttributeValue value) {
+            String type = AttributeValues.type(value);
+            if (!AttributeValues.isSet(type)) {
+                throw validation("Incorrect operand type for operator or function; operator: DELETE, operand type: " + type);
+            }
+            AttributeValue existing = path.evaluate(item);
+            if (existing == null) {
+                return;
+            }
+            if (!AttributeValues.type(existing).equals(type)) {
+                throw validation("An operand in the update expression has an incorrect data type");
+            }
+            Set<Key> elements = AttributeValues.setElements(existing);
+            elements.removeAll(AttributeValues.setElements(value));
+            if (elements.isEmpty()) {
+                path.remove(item);
+            } else {
+                path.set(item, AttributeValues.toSet(type, elements));
+            }
+        }
+    }
+
+    //// Legacy conditions
+
+    static Condition fromLegacy(Map<String, com.amazonaws.services.dynamodbv2.model.Condition> conditions, String conditionalOperator) {
+        if (conditions == null || conditions.isEmpty()) {
+            return null;
+        }
+        boolean or = "OR".equalsIgnoreCase(conditionalOperator);
+        Condition combined = null;
+        for (Map.Entry<String, com.amazonaws.services.dynamodbv2.model.Condition> entry : conditions.entrySet()) {
+            Condition part = fromLegacy(Path.of(entry.getKey()), entry.getValue());
+            if (combined == null) {
+                combined = part;
+            } else if (or) {
+                Condition left = combined;
+                combined = item -> left.test(item) || part.test(item);
+            } else {
+                combined = new And(combined, part);
+            }
+        }
+        return combined;
+    }
+
+    private static Condition fromLegacy(Path path, com.amazonaws.services.dynamodbv2.model.Condition condition) {
+        List<AttributeValue> values = condition.getAttributeValueList() == null ? Collections.emptyList() : condition.getAttributeValueList();
+        List<Operand> args = new ArrayList<>();
+        args.add(path);
+        values.forEach(value -> args.add(new Value(value)));
+        switch (condition.getComparisonOperator()) {
+            case "EQ":
+                return new Comparison(path, "=", args.get(1));
+            case "NE":
+                return new Comparison(path, "<>", args.get(1));
+            case "LT":
+                return new Comparison(path, "<", args.get(1));
+            case "LE":
+                return new Comparison(path, "<=", args.get(1));
+            case "GT":
+                return new Comparison(path, ">", args.get(1));
+            case "GE":
+                return new Comparison(path, ">=", args.get(1));
+            case "BETWEEN":
+                return new And(new Comparison(path, ">=", args.get(1)), new Comparison(path, "<=", args.get(2)));
+            case "BEGINS_WITH":
+                return function("begins_with", args);
+            case "CONTAINS":
+                return function("contains", args);
+            case "NOT_CONTAINS":
+                Condition contains = function("contains", args);
+                return item -> path.evaluate(item) != null && !contains.test(item);
+            case "NOT_NULL":
+                return item -> path.evaluate(item) != null;
+            case "NULL":
+                return item -> path.evaluate(item) == null;
+            case "IN":
+                return item -> values.stream().anyMatch(value -> AttributeValues.isEqual(path.evaluate(item), value));
+            default:
+                throw validation("Unsupported comparison operator: " + condition.getComparisonOperator());
+        }
+    }
+
+    //// Parsing
+
+    static Condition parseCondition(String expression, Map<String, String> names, Map<String, AttributeValue> values) {
+        Parser parser = new Parser(expression, names, values);
+        Condition condition = parser.parseOr();
+        parser.expectEnd();
+        return condition;
+    }
+
+    static List<Path> parseProjection(String expression, Map<String, String> names) {
+        Parser parser = new Parser(expression, names, Collections.emptyMap());
+        List<Path> paths = new ArrayList<>();
+        do {
+            paths.add(parser.parsePath());
+        } while (parser.accept(","));
+        parser.expectEnd();
+        return paths;
+    }
+
+    static Update parseUpdate(String expression, Map<String, String> names, Map<String, AttributeValue> values) {
+        Parser parser = new Parser(expression, names, values);
+        Update update = new Update();
+        Set<String> sections = new HashSet<>();
+        while (!parser.atEnd()) {
+            String section = parser.next().toUpperCase();
+            if (!sections.add(section)) {
+                throw validation("The " + section + " section can only be used once in an update expression");
+            }
+            do {
+                Path path = parser.parsePath();
+                switch (section) {
+                    case "SET":
+                        parser.expect("=");
+                        update.setPaths.add(path);
+                        update.setValues.add(parser.parseSetValue());
+                        break;
+                    case "REMOVE":
+                        update.removePaths.add(path);
+                        break;
+                    case "ADD":
+                        update.addPaths.add(path);
+                        update.addValues.add(parser.parseOperand());
+                        break;
+                    case "DELETE":
+                        update.deletePaths.add(path);
+                        update.deleteValues.add(parser.parseOperand());
+                        break;
+                    default:
+                        throw validation("Invalid UpdateExpression: Syntax error; token: \"" + section + "\"");
+                }
+            } while (parser.accept(","));
+        }
+        if (sections.isEmpty()) {
+            throw validation("Invalid UpdateExpression: The expression can not be empty");
+        }
+        return update;
+    }
+
+    private static final class Parser {
+        private final String expression;
+        private final Map<String, String> names;
+        private final Map<String, AttributeValue> values;
+        private final List<String> tokens = new ArrayList<>();
+        private int position;
+
+        Parser(String expression, Map<String, String> names, Map<String, AttributeValue> values) {
+            this.expression = expression;
+            this.names = names == null ? Collections.emptyMap() : names;
+            this.values = values == null ? Collections.emptyMap() : values;
+            tokenize();
+        }
+
+        private void tokenize() {
+            int i = 0;
+            while (i < expression.length()) {
+                char c = expression.charAt(i);
+                if (Character.isWhitespace(c)) {
+                    i++;
+                } else if (Character.isLetterOrDigit(c) || c == '_' || c == '#' || c == ':') {
+                    int start = i++;
+                    while (i < expression.length() && (Character.isLetterOrDigit(expression.charAt(i)) || expression.charAt(i) == '_')) {
+                        i++;
+                    }
+                    tokens.add(expression.substring(start, i));
+                } else if ((c == '<' || c == '>') && i + 1 < expression.length()
+                        && (expression.charAt(i + 1) == '=' || (c == '<' && expression.charAt(i + 1) == '>'))) {
+                    tokens.add(expression.substring(i, i + 2));
+                    i += 2;
+                } else if ("()[],.=<>+-".indexOf(c) >= 0) {
+                    tokens.add(String.valueOf(c));
+                    i++;
+                } else {
+                    throw syntaxError(String.valueOf(c));
+                }
+            }
+        }
+
+        private RuntimeException syntaxError(String token) {
+            return validation("Invalid expression: Syntax error; token: \"" + token + "\", near: \"" + expression + "\"");
+        }
+
+        boolean atEnd() {
+            return position >= tokens.size();
+        }
+
+        String peek() {
+            return atEnd() ? null : tokens.get(position);
+        }
+
+        String next() {
+            if (atEnd()) {
+                throw syntaxError("<EOF>");
+            }
+            return tokens.get(position++);
+        }
+
+        boolean accept(String token) {
+            if (token.equalsIgnoreCase(peek())) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        void expect(String token) {
+            String next = next();
+            if (!token.equalsIgnoreCase(next)) {
+                throw syntaxError(next);
+            }
+        }
+
+        void expectEnd() {
+            if (!atEnd()) {
+                throw syntaxError(peek());
+            }
+        }
+
+        Condition parseOr() {
+            Condition condition = parseAnd();
+            while (accept("OR")) {
+                Condition left = condition;
+                Condition right = parseAnd();
+                condition = item -> left.test(item) || right.test(item);
+            }
+            return condition;
+        }
+
+        Condition parseAnd() {
+            Condition condition = parseNot();
+            while (accept("AND")) {
+                condition = new And(condition, parseNot());
+            }
+            return condition;
+        }
+
+        Condition parseNot() {
+            if (accept("NOT")) {
+                Condition condition = parseNot();
+                return item -> !condition.test(item);
+            }
+            return parsePrimary();
+        }
+
+        Condition parsePrimary() {
+            if (accept("(")) {
+                Condition condition = parseOr();
+                expect(")");
+                return condition;
+            }
+            String token = peek();
+            if (token != null && isFunctionCall() && !token.equalsIgnoreCase("size")) {
+                position += 2;
+                List<Operand> args = new ArrayList<>();
+                do {
+                    args.add(parseOperand());
+                } while (accept(","));
+                expect(")");
+                return function(token, args);
+            }
+            Operand left = parseOperand();
+            String operator = next();
+            switch (operator.toUpperCase()) {
+                case "=":
+                case "<>":
+                case "<":
+                case "<=":
+                case ">":
+                case ">=":
+                    return new Comparison(left, operator, parseOperand());
+                case "BETWEEN":
+                    Operand low = parseOperand();
+                    expect("AND");
+                    Operand high = parseOperand();
+                    return new And(new Comparison(left, ">=", low), new Comparison(left, "<=", high));
+                case "IN":
+                    expect("(");
+                    List<Operand> candidates = new ArrayList<>();
+                    do {
+                        candidates.add(parseOperand());
+                    } while (accept(","));
+                    expect(")");
+                    return item -> {
+                        AttributeValue value = left.evaluate(item);
+                        return value != null && candidates.stream().anyMatch(candidate -> AttributeValues.isEqual(value, candidate.evaluate(item)));
+                    };
+                default:
+                    throw syntaxError(operator);
+            }
+        }
+
+        private boolean isFunctionCall() {
+            return position + 1 < tokens.size() && tokens.get(position + 1).equals("(")
+                    && Character.isLetter(tokens.get(position).charAt(0));
+        }
+
+        Operand parseOperand() {
+            String token = peek();
+            if (token == null) {
+                throw syntaxError("<EOF>");
+            }
+            if (token.startsWith(":")) {
+                position++;
+                AttributeValue value = values.get(token);
+                if (value == null) {
+                    throw validation("An expression attribute value used in expression is not defined; attribute value: " + token);
+                }
+                return new Value(value);
+            }
+            if (token.equalsIgnoreCase("size") && isFunctionCall()) {
+                position += 2;
+                Path path = parsePath();
+                expect(")");
+                return new Size(path);
+            }
+            return parsePath();
+        }
+
+        Operand parseSetValue() {
+            Operand operand = parseSetOperand();
+            if (accept("+")) {
+                return new Arithmetic(operand, true, parseSetOperand());
+            }
+            if (accept("-")) {
+                return new Arithmetic(operand, false, parseSetOperand());
+            }
+            return operand;
+        }
+
+        private Operand parseSetOperand() {
+            String token = peek();
+            if (token != null && isFunctionCall()) {
+                position += 2;
+                Operand operand;
+                if (token.equals("if_not_exists")) {
+                    Path path = parsePath();
+                    expect(",");
+                    operand = new IfNotExists(path, parseSetValue());
+                } else if (token.equals("list_append")) {
+                    Operand first = parseSetValue();
+                    expect(",");
+                    operand = new ListAppend(first, parseSetValue());
+                } else {
+                    throw validation("Invalid function name; function: " + token);
+                }
+                expect(")");
+                return operand;
+            }
+            return parseOperand();
+        }
+
+        Path parsePath() {
+            List<Object> elements = new ArrayList<>();
+            elements.add(parseName());
+            while (true) {
+                if (accept(".")) {
+                    elements.add(parseName());
+                } else if (accept("[")) {
+                    String index = next();
+                    try {
+                        elements.add(Integer.parseInt(index));
+                    } catch (NumberFormatException e) {
+                        throw syntaxError(index);
+                    }
+                    expect("]");
+                } else {
+                    return new Path(elements);
+                }
+            }
+        }
+
+        private String parseName() {
+            String token = next();
+            if (token.startsWith("#")) {
+                String name = names.get(token);
+                if (name == null) {
+                    throw validation("An expression attribute name used in the document path is not defined; attribute name: " + token);
+                }
+                return name;
+            }
+            if (token.startsWith(":") || !Character.isLetter(token.charAt(0)) && token.charAt(0) != '_') {
+                throw syntaxError(token);
+            }
+            return token;
+        }
+    }
+}
@@ -0,0 +1,630 @@
+/*
+    Copyright 2018 N3TWORK INC
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.n3twork.dynamap.testing;
+
+import com.amazonaws.services.dynamodbv2.AbstractAmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.*;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static com.n3twork.dynamap.testing.AttributeValues.validation;
+
+/**
+ * An in-process, in-memory AmazonDynamoDB for tests and microbenchmarks, so that a Dynamap can be created without
+ * starting DynamoDB Local:
+ * <pre>
+ *     Dynamap dynamap = new Dynamap(new InMemoryDynamoDB(), schemaRegistry);
+ * </pre>
+ * It implements the operations Dynamap uses: table creation, description and time to live, GetItem, PutItem,
+ * UpdateItem, DeleteItem, BatchGetItem, BatchWriteItem, Query, Scan with segments, global and local secondary indexes
+ * and transactions, with condition, key condition, filter, projection and update expressions. Tables are active as
+ * soon as they are created, indexes are always consistent, nothing is ever throttled or left unprocessed and items
+ * do not expire. Consumed capacity is estimated from item sizes.
+ * <p>
+ * Every call is serialized on the instance, which makes writes and transactions trivially atomic; it is fast for
+ * tests but not a model of DynamoDB's concurrency or performance. Other operations throw UnsupportedOperationException.
+ */
+public class InMemoryDynamoDB extends AbstractAmazonDynamoDB {
+
+    private static final int MAX_PAGE_BYTES = 1024 * 1024;
+    private static final int MAX_BATCH_GET_KEYS = 100;
+    private static final int MAX_BATCH_WRITE_ITEMS = 25;
+    private static final int MAX_TRANSACTION_ITEMS = 100;
+
+    private final Map<String, InMemoryTable> tables = new TreeMap<>();
+
+    //// Tables
+
+    @Override
+    public synchronized CreateTableResult createTable(CreateTableRequest request) {
+        if (tables.containsKey(request.getTableName())) {
+            ResourceInUseException e = new ResourceInUseException("Cannot create preexisting table");
+            e.setErrorCode("ResourceInUseException");
+            e.setStatusCode(400);
+            throw e;
+        }
+        InMemoryTable table = new InMemoryTable(request);
+        tables.put(request.getTableName(), table);
+        return new CreateTableResult().withTableDescription(table.describe());
+    }
+
+    @Override
+    public synchronized DeleteTableResult deleteTable(DeleteTableRequest request) {
+        InMemoryTable table = table(request.getTableName());
+        tables.remove(request.getTableName());
+        return new DeleteTableResult().withTableDescription(table.describe().withTableStatus(TableStatus.DELETING));
+    }
+
+    @Override
+    public synchronized DescribeTableResult describeTable(DescribeTableRequest request) {
+        return new DescribeTableResult().withTable(table(request.getTableName()).describe());
+    }
+
+    @Override
+    public synchronized ListTablesResult listTables(ListTablesRequest request) {
+        List<String> names = new ArrayList<>(request.getExclusiveStartTableName() == null
+                ? tables.keySet() : ((TreeMap<String, InMemoryTable>) tables).tailMap(request.getExclusiveStartTableName(), false).keySet());
+        ListTablesResult result = new ListTablesResult();
+        if (request.getLimit() != null && names.size() > request.getLimit()) {
+            names = names.subList(0, request.getLimit());
+            result.setLastEvaluatedTableName(names.get(names.size() - 1));
+        }
+        return result.withTableNames(names);
+    }
+
+    @Override
+    public synchronized UpdateTableResult updateTable(UpdateTableRequest request) {
+        InMemoryTable table = table(request.getTableName());
+        if (request.getGlobalSecondaryIndexUpdates() != null && !request.getGlobalSecondaryIndexUpdates().isEmpty()) {
+            throw new UnsupportedOperationException("InMemoryDynamoDB does not support updating global secondary indexes");
+        }
+        if (request.getBillingMode() != null) {
+            table.setBillingMode(request.getBillingMode());
+        }
+        if (request.getProvisionedThroughput() != null) {
+            table.setProvisionedThroughput(request.getProvisionedThroughput());
+        }
+        return new UpdateTableResult().withTableDescription(table.describe());
+    }
+
+    @Override
+    public synchronized DescribeTimeToLiveResult describeTimeToLive(DescribeTimeToLiveRequest request) {
+        return new DescribeTimeToLiveResult().withTimeToLiveDescription(table(request.getTableName()).getTimeToLive());
+    }
+
+    @Override
+    public synchronized UpdateTimeToLiveResult updateTimeToLive(UpdateTimeToLiveRequest request) {
+        table(request.getTableName()).setTimeToLive(request.getTimeToLiveSpecification());
+        return new UpdateTimeToLiveResult().withTimeToLiveSpecification(request.getTimeToLiveSpecification());
+    }
+
+    //// Items
+
+    @Override
+    public synchronized GetItemResult getItem(GetItemRequest request) {
+        InMemoryTable table = table(request.getTableName());
+        Map<String, AttributeValue> item = table.get(request.getKey());
+        List<Expressions.Path> projection = projection(request.getProjectionExpression(), request.getAttributesToGet(), request.getExpressionAttributeNames());
+        return new GetItemResult()
+                .withItem(item == null ? null : project(item, projection))
+                .withConsumedCapacity(capacity(request.getReturnConsumedCapacity(), table, readUnits(AttributeValues.itemSize(item), isTrue(request.getConsistentRead()))));
+    }
+
+    @Override
+    public synchronized PutItemResult putItem(PutItemRequest request) {
+        InMemoryTable table = table(request.getTableName());
+        checkNoLegacyConditions(request.getExpected());
+        Map<String, AttributeValue> item = AttributeValues.copyItem(request.getItem());
+        table.validateItem(item);
+        Map<String, AttributeValue> old = table.get(table.keyOf(item));
+        checkCondition(condition(request.getConditionExpression(), request.getExpressionAttributeNames(), request.getExpressionAttributeValues()), old);
+        table.put(item);
+        return new PutItemResult()
+                .withAttributes(ReturnValue.ALL_OLD.toString().equals(request.getReturnValues()) ? AttributeValues.copyItem(old) : null)
+                .withConsumedCapacity(capacity(request.getReturnConsumedCapacity(), table, writeUnits(old, item)));
+    }
+
+    @Override
+    public synchronized UpdateItemResult updateItem(UpdateItemRequest request) {
+        InMemoryTable table = table(request.getTableName());
+        checkNoLegacyConditions(request.getExpected());
+        if (request.getAttributeUpdates() != null && !request.getAttributeUpdates().isEmpty()) {
+            throw validation("InMemoryDynamoDB does not support AttributeUpdates, use an UpdateExpression");
+        }
+        Map<String, AttributeValue> old = table.get(request.getKey());
+        // without an update expression the item is only created, with its key attributes, if it does not exist
+        Expressions.Update update = request.getUpdateExpression() == null ? new Expressions.Update() : Expressions.parseUpdate(request.getUpdateExpression(), request.getExpressionAttributeNames(), request.getExpressionAttributeValues());
+        checkCondition(condition(request.getConditionExpression(), request.getExpressionAttributeNames(), request.getExpressionAttributeValues()), old);
+        Map<String, AttributeValue> item = applyUpdate(table, request.getKey(), old, update);
+        table.put(item);
+
+        UpdateItemResult result = new UpdateItemResult()
+                .withConsumedCapacity(capacity(request.getReturnConsumedCapacity(), table, writeUnits(old, item)));
+        Map<String, AttributeValue> attributes = null;
+        switch (request.getReturnValues() == null ? ReturnValue.NONE : ReturnValue.fromValue(request.getReturnValues())) {
+            case ALL_OLD:
+                attributes = AttributeValues.copyItem(old);
+                break;
+            case ALL_NEW:
+                attributes = AttributeValues.copyItem(item);
+                break;
+            case UPDATED_OLD:
+                attributes = old == null ? null : project(old, update.getPaths());
+                break;
+            case UPDATED_NEW:
+                attributes = project(item, update.getPaths());
+                break;
+            default:
+                break;
+        }
+        return result.withAttributes(attributes == null || attributes.isEmpty() ? null : attributes);
+    }
+
+    private static Map<String, AttributeValue> applyUpdate(InMemoryTable table, Map<String, AttributeValue> key, Map<String, AttributeValue> old, Expressions.Update update) {
+        for (String attributeName : update.getUpdatedAttributes()) {
+            if (table.isKeyAttribute(attributeName)) {
+                throw validation("One or more parameter values were invalid: Cannot update attribute " + attributeName + ". This attribute is part of the key");
+            }
+        }
+        table.primaryKey(key);
+        Map<String, AttributeValue> item = old == null ? AttributeValues.copyItem(key) : AttributeValues.copyItem(old);
+        update.apply(item);
+        return item;
+    }
+
+    @Override
+    public synchronized DeleteItemResult deleteItem(DeleteItemRequest request) {
+        InMemoryTable table = table(request.getTableName());
+        checkNoLegacyConditions(request.getExpected());
+        Map<String, AttributeValue> old = table.get(request.getKey());
+        checkCondition(condition(request.getConditionExpression(), request.getExpressionAttributeNames(), request.getExpressionAttributeValues()), old);
+        table.delete(request.getKey());
+        return new DeleteItemResult()
+                .withAttributes(ReturnValue.ALL_OLD.toString().equals(request.getReturnValues()) ? AttributeValues.copyItem(old) : null)
+                .withConsumedCapacity(capacity(request.getReturnConsumedCapacity(), table, writeUnits(old, null)));
+    }
+
+    //// Batches
+
+    @Override
+    public synchronized BatchGetItemResult batchGetItem(BatchGetItemRequest request) {
+        int keyCount = request.getRequestItems().values().stream().mapToInt(keysAndAttributes -> keysAndAttributes.getKeys().size()).sum();
+        if (keyCount > MAX_BATCH_GET_KEYS) {
+            throw validation("Too many items requested for the BatchGetItem call");
+        }
+        Map<String, List<Map<String, AttributeValue>>> responses = new HashMap<>();
+        List<ConsumedCapacity> consumedCapacity = new ArrayList<>();
+        for (Map.Entry<String, KeysAndAttributes> entry : request.getRequestItems().entrySet()) {
+            InMemoryTable table = table(entry.getKey());
+            KeysAndAttributes keysAndAttributes = entry.getValue();
+            List<Expressions.Path> projection = projection(keysAndAttributes.getProjectionExpression(),
+                    keysAndAttributes.getAttributesToGet(), keysAndAttributes.getExpressionAttributeNames());
+            List<Map<String, AttributeValue>> items = new ArrayList<>();
+            double units = 0;
+            for (Map<String, AttributeValue> key : keysAndAttributes.getKeys()) {
+                Map<String, AttributeValue> item = table.get(key);
+                units += readUnits(AttributeValues.itemSize(item), isTrue(keysAndAttributes.getConsistentRead()));
+                if (item != null) {
+                    items.add(project(item, projection));
+                }
+            }
+            responses.put(entry.getKey(), items);
+            ConsumedCapacity capacity = capacity(request.getReturnConsumedCapacity(), table, units);
+            if (capacity != null) {
+                consumedCapacity.add(capacity);
+            }
+        }
+        return new BatchGetItemResult()
+                .withResponses(responses)
+                .withUnprocessedKeys(new HashMap<>())
+                .withConsumedCapacity(consumedCapacity.isEmpty() ? null : consumedCapacity);
+    }
+
+    @Override
+    public synchronized BatchWriteItemResult batchWriteItem(BatchWriteItemRequest request) {
+        int itemCount = request.getRequestItems().values().stream().mapToInt(List::size).sum();
+        if (itemCount > MAX_BATCH_WRITE_ITEMS) {
+            throw validation("Too many items requested for the BatchWriteItem call");
+        }
+        // an invalid request rejects the whole batch, so validate before writing anything
+        for (Map.Entry<String, List<WriteRequest>> entry : request.getRequestItems().entrySet()) {
+            InMemoryTable table = table(entry.getKey());
+            for (WriteRequest writeRequest : entry.getValue()) {
+                if (writeRequest.getPutRequest() != null) {
+                    table.validateItem(writeRequest.getPutRequest().getItem());
+                } else {
+                    table.primaryKey(writeRequest.getDeleteRequest().getKey());
+                }
+            }
+        }
+        List<ConsumedCapacity> consumedCapacity = new ArrayList<>();
+        for (Map.Entry<String, List<WriteRequest>> entry : request.getRequestItems().entrySet()) {
+            InMemoryTable table = table(entry.getKey());
+            double units = 0;
+            for (WriteRequest writeRequest : entry.getValue()) {
+                if (writeRequest.getPutRequest() != null) {
+                    Map<String, AttributeValue> item = AttributeValues.copyItem(writeRequest.getPutRequest().getItem());
+                    units += writeUnits(table.put(item), item);
+                } else {
+                    units += writeUnits(table.delete(writeRequest.getDeleteRequest().getKey()), null);
+                }
+            }
+            ConsumedCapacity capacity = capacity(request.getReturnConsumedCapacity(), table, units);
+            if (capacity != null) {
+                consumedCapacity.add(capacity);
+            }
+        }
+        return new BatchWriteItemResult()
+                .withUnprocessedItems(new HashMap<>())
+                .withConsumedCapacity(consumedCapacity.isEmpty() ? null : consumedCapacity);
+    }
+
+    //// Queries and scans
+
+    @Override
+    public synchronized QueryResult query(QueryRequest request) {
+        InMemoryTable table = table(request.getTableName());
+        InMemoryTable.Index index = table.getIndex(request.getIndexName());
+        checkConsistentRead(index, request.getConsistentRead());
+        checkNotMixed(request.getKeyConditionExpression() != null || request.getFilterExpression() != null || request.getProjectionExpression() != null,
+                request.getKeyConditions() != null || request.getQueryFilter() != null || request.getAttributesToGet() != null || request.getConditionalOperator() != null);
+        Expressions.Condition keyCondition = request.getKeyConditionExpression() != null
+                ? Expressions.parseCondition(request.getKeyConditionExpression(), request.getExpressionAttributeNames(), request.getExpressionAttributeValues())
+                : Expressions.fromLegacy(request.getKeyConditions(), null);
+        String hashKeyName = index == null ? table.getHashKeyName() : index.getHashKeyName();
+        AttributeValue hashKeyValue = keyCondition == null ? null : Expressions.findEquality(keyCondition, hashKeyName);
+        if (hashKeyValue == null) {
+            throw validation("Query condition missed key schema element: " + hashKeyName);
+        }
+        List<Map<String, AttributeValue>> items = table.query(index, hashKeyValue).stream().filter(keyCondition::test).collect(Collectors.toList());
+        if (request.getScanIndexForward() != null && !request.getScanIndexForward()) {
+            Collections.reverse(items);
+        }
+        Expressions.Condition filter = request.getFilterExpression() != null
+                ? Expressions.parseCondition(request.getFilterExpression(), request.getExpressionAttributeNames(), request.getExpressionAttributeValues())
+                : Expressions.fromLegacy(request.getQueryFilter(), request.getConditionalOperator());
+        Page page = page(table, index, items, request.getScanIndexForward() == null || request.getScanIndexForward(),
+                request.getExclusiveStartKey(), request.getLimit(), filter, request.getSelect(),
+                projection(request.getProjectionExpression(), request.getAttributesToGet(), request.getExpressionAttributeNames()));
+        return new QueryResult()
+                .withItems(page.items)
+                .withCount(page.count)
+                .withScannedCount(page.scannedCount)
+                .withLastEvaluatedKey(page.lastEvaluatedKey)
+                .withConsumedCapacity(capacity(request.getReturnConsumedCapacity(), table, readUnits(page.bytes, isTrue(request.getConsistentRead()))));
+    }
+
+    @Override
+    public synchronized ScanResult scan(ScanRequest request) {
+        InMemoryTable table = table(request.getTableName());
+        InMemoryTable.Index index = table.getIndex(request.getIndexName());
+        checkConsistentRead(index, request.getConsistentRead());
+        checkNotMixed(request.getFilterExpression() != null || request.getProjectionExpression() != null,
+                request.getScanFilter() != null || request.getAttributesToGet() != null || request.getConditionalOperator() != null);
+        if ((request.getSegment() == null) != (request.getTotalSegments() == null)
+                || (request.getTotalSegments() != null && (request.getSegment() < 0 || request.getSegment() >= request.getTotalSegments()))) {
+            throw validation("The Segment parameter must be less than TotalSegments and both must be specified together");
+        }
+        List<Map<String, AttributeValue>> items = table.scan(index, request.getSegment(), request.getTotalSegments());
+        Expressions.Condition filter = request.getFilterExpression() != null
+                ? Expressions.parseCondition(request.getFilterExpression(), request.getExpressionAttributeNames(), request.getExpressionAttributeValues())
+                : Expressions.fromLegacy(request.getScanFilter(), request.getConditionalOperator());
+        Page page = page(table, index, items, true, request.getExclusiveStartKey(), request.getLimit(), filter, request.getSelect(),
+                projection(request.getProjectionExpression(), request.getAttributesToGet(), request.getExpressionAttributeNames()));
+        return new ScanResult()
+                .withItems(page.items)
+                .withCount(page.count)
+                .withScannedCount(page.scannedCount)
+                .withLastEvaluatedKey(page.lastEvaluatedKey)
+                .withConsumedCapacity(capacity(request.getReturnConsumedCapacity(), table, readUnits(page.bytes, isTrue(request.getConsistentRead()))));
+    }
+
+    private static void checkNotMixed(boolean expressions, boolean legacyParameters) {
+        if (expressions && legacyParameters) {
+            throw validation("Can not use both expression and non-expression parameters in the same request");
+        }
+    }
+
+    private static void checkConsistentRead(InMemoryTable.Index index, Boolean consistentRead) {
+        if (index != null && index.isGlobal() && isTrue(consistentRead)) {
+            throw validation("Consistent reads are not supported on global secondary indexes");
+        }
+    }
+
+    private static final class Page {
+        private List<Map<String, AttributeValue>> items;
+        private int count;
+        private int scannedCount;
+        private int bytes;
+        private Map<String, AttributeValue> lastEvaluatedKey;
+    }
+
+    /**
+     * Reads one page of items, which are in the order of the read, starting after the exclusive start key and ending
+     * at the limit or after 1 MB. The limit counts the items read before they are filtered.
+     */
+    private static Page page(InMemoryTable table, InMemoryTable.Index index, List<Map<String, AttributeValue>> items, boolean forward,
+                             Map<String, AttributeValue> exclusiveStartKey, Integer limit, Expressions.Condition filter,
+                             String select, List<Expressions.Path> projection) {
+        if (limit != null && limit < 1) {
+            throw validation("Limit must be greater than or equal to 1");
+        }
+        if (Select.SPECIFIC_ATTRIBUTES.toString().equals(select) && projection == null) {
+            throw validation("Select SPECIFIC_ATTRIBUTES requires a ProjectionExpression or AttributesToGet");
+        }
+        int start = exclusiveStartKey == null ? 0 : startAfter(table, index, items, forward, exclusiveStartKey);
+        boolean count = Select.COUNT.toString().equals(select);
+        boolean projectIndex = index != null && (index.isGlobal() || (projection == null && !Select.ALL_ATTRIBUTES.toString().equals(select)));
+
+        Page page = new Page();
+        page.items = count ? null : new ArrayList<>();
+        int i = start;
+        while (i < items.size() && (limit == null || page.scannedCount < limit) && page.bytes < MAX_PAGE_BYTES) {
+            Map<String, AttributeValue> item = items.get(i++);
+            page.scannedCount++;
+            page.bytes += AttributeValues.itemSize(item);
+            // global secondary indexes only hold their projected attributes, so filters cannot see the others
+            Map<String, AttributeValue> visible = index != null && index.isGlobal() ? table.projectIndex(index, item) : item;
+            if (filter != null && !filter.test(visible)) {
+                continue;
+            }
+            page.count++;
+            if (!count) {
+                page.items.add(projection != null ? project(visible, projection)
+                        : AttributeValues.copyItem(projectIndex ? table.projectIndex(index, item) : item));
+            }
+        }
+        if (i < items.size()) {
+            page.lastEvaluatedKey = table.evaluatedKey(index, items.get(i - 1));
+        }
+        return page;
+    }
+
+    /**
+     * @return the index of the first item after the exclusive start key in the direction of the read
+     */
+    private static int startAfter(InMemoryTable table, InMemoryTable.Index index, List<Map<String, AttributeValue>> items, boolean forward,
+                                  Map<String, AttributeValue> exclusiveStartKey) {
+        List<Key> start = table.position(index, exclusiveStartKey);
+        int direction = forward ? 1 : -1;
+        int low = 0;
+        int high = items.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (direction * InMemoryTable.comparePositions(table.position(index, items.get(middle)), start) > 0) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+
+    //// Transactions
+
+    @Override
+    public synchronized TransactWriteItemsResult transactWriteItems(TransactWriteItemsRequest request) {
+        List<TransactWriteItem> writes = request.getTransactItems();
+        if (writes == null || writes.isEmpty() || writes.size() > MAX_TRANSACTION_ITEMS) {
+            throw validation("Member must have length less than or equal to " + MAX_TRANSACTION_ITEMS + " and greater than or equal to 1");
+        }
+        // check every condition and compute every new item before anything is written
+        List<InMemoryTable> targets = new ArrayList<>(writes.size());
+        List<Map<String, AttributeValue>> keys = new ArrayList<>(writes.size());
+        List<Map<String, AttributeValue>> newItems = new ArrayList<>(writes.size());
+        List<CancellationReason> reasons = new ArrayList<>(writes.size());
+        Set<String> itemIds = new HashSet<>();
+        boolean cancelled = false;
+        for (TransactWriteItem write : writes) {
+            String tableName;
+            Map<String, AttributeValue> key;
+            String conditionExpression;
+            Map<String, String> names;
+            Map<String, AttributeValue> values;
+            String returnValuesOnFailure;
+            if (write.getPut() != null) {
+                Put put = write.getPut();
+                tableName = put.getTableName();
+                table(tableName).validateItem(put.getItem());
+                key = table(tableName).keyOf(put.getItem());
+                conditionExpression = put.getConditionExpression();
+                names = put.getExpressionAttributeNames();
+                values = put.getExpressionAttributeValues();
+                returnValuesOnFailure = put.getReturnValuesOnConditionCheckFailure();
+            } else if (write.getUpdate() != null) {
+                Update update = write.getUpdate();
+                tableName = update.getTableName();
+                key = update.getKey();
+                conditionExpression = update.getConditionExpression();
+                names = update.getExpressionAttributeNames();
+                values = update.getExpressionAttributeValues();
+                returnValuesOnFailure = update.getReturnValuesOnConditionCheckFailure();
+            } else if (write.getDelete() != null) {
+                Delete delete = write.getDelete();
+                tableName = delete.getTableName();
+                key = delete.getKey();
+                conditionExpression = delete.getConditionExpression();
+                names = delete.getExpressionAttributeNames();
+                values = delete.getExpressionAttributeValues();
+                returnValuesOnFailure = delete.getReturnValuesOnConditionCheckFailure();
+            } else {
+                ConditionCheck check = write.getConditionCheck();
+                tableName = check.getTableName();
+                key = check.getKey();
+                conditionExpression = check.getConditionExpression();
+                names = check.getExpressionAttributeNames();
+                values = check.getExpressionAttributeValues();
+                returnValuesOnFailure = check.getReturnValuesOnConditionCheckFailure();
+            }
+            InMemoryTable table = table(tableName);
+            if (!itemIds.add(tableName + '\u0000' + Arrays.toString(table.primaryKey(key)))) {
+                throw validation("Transaction request cannot include multiple operations on one item");
+            }
+            Map<String, AttributeValue> old = table.get(key);
+            Expressions.Condition condition = condition(conditionExpression, names, values);
+            targets.add(table);
+            keys.add(key);
+            if (condition != null && !condition.test(old == null ? Collections.emptyMap() : old)) {
+                cancelled = true;
+                reasons.add(new CancellationReason().withCode("ConditionalCheckFailed").withMessage("The conditional request failed")
+                        .withItem("ALL_OLD".equals(returnValuesOnFailure) ? AttributeValues.copyItem(old) : null));
+                newItems.add(null);
+                continue;
+            }
+            reasons.add(new CancellationReason().withCode("None"));
+            if (write.getPut() != null) {
+                newItems.add(AttributeValues.copyItem(write.getPut().getItem()));
+            } else if (write.getUpdate() != null) {
+                Update update = write.getUpdate();
+                newItems.add(applyUpdate(table, key, old, Expressions.parseUpdate(update.getUpdateExpression(), names, values)));
+            } else {
+                newItems.add(null);
+            }
+        }
+        if (cancelled) {
+            TransactionCanceledException e = new TransactionCanceledException("Transaction cancelled, please refer cancellation reasons for specific reasons "
+                    + reasons.stream().map(CancellationReason::getCode).collect(Collectors.toList()));
+            e.setCancellationReasons(reasons);
+            e.setErrorCode("TransactionCanceledException");
+            e.setStatusCode(400);
+            throw e;
+        }
+
+        Map<String, Double> unitsByTable = new LinkedHashMap<>();
+        for (int i = 0; i < writes.size(); i++) {
+            TransactWriteItem write = writes.get(i);
+            InMemoryTable table = targets.get(i);
+            Map<String, AttributeValue> old = table.get(keys.get(i));
+            if (write.getPut() != null || write.getUpdate() != null) {
+                table.put(newItems.get(i));
+            } else if (write.getDelete() != null) {
+                table.delete(keys.get(i));
+            }
+            double units = write.getConditionCheck() != null ? readUnits(AttributeValues.itemSize(old), true) : writeUnits(old, newItems.get(i));
+            unitsByTable.merge(table.getName(), 2 * units, Double::sum);
+        }
+        return new TransactWriteItemsResult().withConsumedCapacity(capacities(request.getReturnConsumedCapacity(), unitsByTable));
+    }
+
+    @Override
+    public synchronized TransactGetItemsResult transactGetItems(TransactGetItemsRequest request) {
+        List<TransactGetItem> gets = request.getTransactItems();
+        if (gets == null || gets.isEmpty() || gets.size() > MAX_TRANSACTION_ITEMS) {
+            throw validation("Member must have length less than or equal to " + MAX_TRANSACTION_ITEMS + " and greater than or equal to 1");
+        }
+        List<ItemResponse> responses = new ArrayList<>(gets.size());
+        Map<String, Double> unitsByTable = new LinkedHashMap<>();
+        for (TransactGetItem transactGetItem : gets) {
+            Get get = transactGetItem.getGet();
+            InMemoryTable table = table(get.getTableName());
+            Map<String, AttributeValue> item = table.get(get.getKey());
+            List<Expressions.Path> projection = projection(get.getProjectionExpression(), null, get.getExpressionAttributeNames());
+            responses.add(new ItemResponse().withItem(item == null ? null : project(item, projection)));
+            unitsByTable.merge(table.getName(), 2 * readUnits(AttributeValues.itemSize(item), true), Double::sum);
+        }
+        return new TransactGetItemsResult()
+                .withResponses(responses)
+                .withConsumedCapacity(capacities(request.getReturnConsumedCapacity(), unitsByTable));
+    }
+
+    //// Helpers
+
+    private InMemoryTable table(String tableName) {
+        InMemoryTable table = tables.get(tableName);
+        if (table == null) {
+            ResourceNotFoundException e = new ResourceNotFoundException("Cannot do operations on a non-existent table");
+            e.setErrorCode("ResourceNotFoundException");
+            e.setStatusCode(400);
+            throw e;
+        }
+        return table;
+    }
+
+    private static boolean isTrue(Boolean value) {
+        return value != null && value;
+    }
+
+    private static void checkNoLegacyConditions(Map<String, ExpectedAttributeValue> expected) {
+        if (expected != null && !expected.isEmpty()) {
+            throw validation("InMemoryDynamoDB does not support Expected, use a ConditionExpression");
+        }
+    }
+
+    private static Expressions.Condition condition(String expression, Map<String, String> names, Map<String, AttributeValue> values) {
+        return expression == null ? null : Expressions.parseCondition(expression, names, values);
+    }
+
+    private static void checkCondition(Expressions.Condition condition, Map<String, AttributeValue> item) {
+        if (condition != null && !condition.test(item == null ? Collections.emptyMap() : item)) {
+            ConditionalCheckFailedException e = new ConditionalCheckFailedException("The conditional request failed");
+            e.setErrorCode("ConditionalCheckFailedException");
+            e.setStatusCode(400);
+            throw e;
+        }
+    }
+
+    private static List<Expressions.Path> projection(String projectionExpression, List<String> attributesToGet, Map<String, String> names) {
+        if (projectionExpression != null) {
+            return Expressions.parseProjection(projectionExpression, names);
+        }
+        if (attributesToGet != null && !attributesToGet.isEmpty()) {
+            return attributesToGet.stream().map(Expressions.Path::of).collect(Collectors.toList());
+        }
+        return null;
+    }
+
+    private static Map<String, AttributeValue> project(Map<String, AttributeValue> item, List<Expressions.Path> projection) {
+        if (projection == null) {
+            return AttributeValues.copyItem(item);
+        }
+        Map<String, AttributeValue> projected = new LinkedHashMap<>();
+        for (Expressions.Path path : projection) {
+            path.project(item, projected);
+        }
+        return projected;
+    }
+
+    // a read costs one unit per 4 KB, half as much when eventually consistent
+    private static double readUnits(int bytes, boolean consistentRead) {
+        double units = Math.max(1, Math.ceil(bytes / 4096.0));
+        return consistentRead ? units : units / 2;
+    }
+
+    // a write costs one unit per 1 KB of the larger of the old and new item
+    private static double writeUnits(Map<String, AttributeValue> oldItem, Map<String, AttributeValue> newItem) {
+        int bytes = Math.max(AttributeValues.itemSize(oldItem), AttributeValues.itemSize(newItem));
+        return Math.max(1, Math.ceil(bytes / 1024.0));
+    }
+
+    private static ConsumedCapacity capacity(String returnConsumedCapacity, InMemoryTable table, double units) {
+        if (returnConsumedCapacity == null || ReturnConsumedCapacity.NONE.toString().equals(returnConsumedCapacity)) {
+            return null;
+        }
+        return new ConsumedCapacity().withTableName(table.getName()).withCapacityUnits(units);
+    }
+
+    private static List<ConsumedCapacity> capacities(String returnConsumedCapacity, Map<String, Double> unitsByTable) {
+        if (returnConsumedCapacity == null || ReturnConsumedCapacity.NONE.toString().equals(returnConsumedCapacity)) {
+            return null;
+        }
+        return unitsByTable.entrySet().stream()
+                .map(entry -> new ConsumedCapacity().withTableName(entry.getKey()).withCapacityUnits(entry.getValue()))
+                .collect(Collectors.toList());
+    }
+
+}
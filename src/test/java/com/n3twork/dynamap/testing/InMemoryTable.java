@@ -0,0 +1,455 @@
+/*
+    Copyright 2018 N3TWORK INC
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.n3twork.dynamap.testing;
+
+import com.amazonaws.services.dynamodbv2.model.*;
+
+import java.util.*;
+
+import static com.n3twork.dynamap.testing.AttributeValues.validation;
+
+/**
+ * The schema and items of one in-memory table. Items are kept per hash key, sorted by range key; indexes are not
+ * materialized but derived from the items when they are read.
+ */
+class InMemoryTable {
+
+    private final String name;
+    private final Date creationDateTime = new Date();
+    private final List<KeySchemaElement> keySchema;
+    private final List<AttributeDefinition> attributeDefinitions;
+    private final Map<String, String> attributeTypes = new HashMap<>();
+    private final String hashKeyName;
+    private final String rangeKeyName;
+    private final Map<String, Index> indexes = new LinkedHashMap<>();
+    private final TreeMap<Key, TreeMap<Key, Map<String, AttributeValue>>> partitions = new TreeMap<>();
+    private ProvisionedThroughput provisionedThroughput;
+    private String billingMode;
+    private TimeToLiveDescription timeToLive = new TimeToLiveDescription().withTimeToLiveStatus(TimeToLiveStatus.DISABLED);
+    private int itemCount;
+    private long sizeBytes;
+
+    static final class Index {
+        private final String name;
+        private final boolean global;
+        private final List<KeySchemaElement> keySchema;
+        private final String hashKeyName;
+        private final String rangeKeyName;
+        private final Projection projection;
+        private final ProvisionedThroughput provisionedThroughput;
+
+        Index(String name, boolean global, List<KeySchemaElement> keySchema, Projection projection, ProvisionedThroughput provisionedThroughput) {
+            this.name = name;
+            this.global = global;
+            this.keySchema = keySchema;
+            this.hashKeyName = keyName(keySchema, KeyType.HASH);
+            this.rangeKeyName = keyName(keySchema, KeyType.RANGE);
+            this.projection = projection == null ? new Projection().withProjectionType(ProjectionType.ALL) : projection;
+            this.provisionedThroughput = provisionedThroughput;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        boolean isGlobal() {
+            return global;
+        }
+
+        String getHashKeyName() {
+            return hashKeyName;
+        }
+
+        String getRangeKeyName() {
+            return rangeKeyName;
+        }
+
+        boolean isProjected(String attributeName) {
+            switch (ProjectionType.fromValue(projection.getProjectionType())) {
+                case ALL:
+                    return true;
+                case INCLUDE:
+                    return projection.getNonKeyAttributes() != null && projection.getNonKeyAttributes().contains(attributeName);
+                default:
+                    return false;
+            }
+        }
+    }
+
+    InMemoryTable(CreateTableRequest request) {
+        this.name = request.getTableName();
+        this.keySchema = request.getKeySchema();
+        this.attributeDefinitions = request.getAttributeDefinitions();
+        for (AttributeDefinition definition : request.getAttributeDefinitions()) {
+            attributeTypes.put(definition.getAttributeName(), definition.getAttributeType());
+        }
+        this.hashKeyName = keyName(request.getKeySchema(), KeyType.HASH);
+        this.rangeKeyName = keyName(request.getKeySchema(), KeyType.RANGE);
+        if (hashKeyName == null) {
+            throw validation("The table must have a HASH key");
+        }
+        this.provisionedThroughput = request.getProvisionedThroughput();
+        this.billingMode = request.getProvisionedThroughput() == null ? "PAY_PER_REQUEST" : "PROVISIONED";
+        if (request.getGlobalSecondaryIndexes() != null) {
+            for (GlobalSecondaryIndex gsi : request.getGlobalSecondaryIndexes()) {
+                addIndex(new Index(gsi.getIndexName(), true, gsi.getKeySchema(), gsi.getProjection(), gsi.getProvisionedThroughput()));
+            }
+        }
+        if (request.getLocalSecondaryIndexes() != null) {
+            for (LocalSecondaryIndex lsi : request.getLocalSecondaryIndexes()) {
+                if (!hashKeyName.equals(keyName(lsi.getKeySchema(), KeyType.HASH))) {
+                    throw validation("Table KeySchema does not have a range key, or the local secondary index " + lsi.getIndexName() + " does not share the table hash key");
+                }
+                addIndex(new Index(lsi.getIndexName(), false, lsi.getKeySchema(), lsi.getProjection(), null));
+            }
+        }
+        for (String attributeName : keyAttributeNames()) {
+            if (!attributeTypes.containsKey(attributeName)) {
+                throw validation("One or more parameter values were invalid: Some index key attributes are not defined in AttributeDefinitions. Keys: [" + attributeName + "]");
+            }
+        }
+    }
+
+    private void addIndex(Index index) {
+        if (indexes.put(index.getName(), index) != null) {
+            throw validation("One or more parameter values were invalid: Duplicate index name: " + index.getName());
+        }
+    }
+
+    private static String keyName(List<KeySchemaElement> keySchema, KeyType keyType) {
+        for (KeySchemaElement element : keySchema) {
+            if (keyType.toString().equals(element.getKeyType())) {
+                return element.getAttributeName();
+            }
+        }
+        return null;
+    }
+
+    private Set<String> keyAttributeNames() {
+        Set<String> names = new LinkedHashSet<>(Arrays.asList(hashKeyName));
+        if (rangeKeyName != null) {
+            names.add(rangeKeyName);
+        }
+        for (Index index : indexes.values()) {
+            names.add(index.getHashKeyName());
+            if (index.getRangeKeyName() != null) {
+                names.add(index.getRangeKeyName());
+            }
+        }
+        return names;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    String getHashKeyName() {
+        return hashKeyName;
+    }
+
+    String getRangeKeyName() {
+        return rangeKeyName;
+    }
+
+    boolean isKeyAttribute(String attributeName) {
+        return attributeName.equals(hashKeyName) || attributeName.equals(rangeKeyName);
+    }
+
+    Index getIndex(String indexName) {
+        if (indexName == null) {
+            return null;
+        }
+        Index index = indexes.get(indexName);
+        if (index == null) {
+            throw validation("The table does not have the specified index: " + indexName);
+        }
+        return index;
+    }
+
+    void setProvisionedThroughput(ProvisionedThroughput provisionedThroughput) {
+        this.provisionedThroughput = provisionedThroughput;
+    }
+
+    void setBillingMode(String billingMode) {
+        this.billingMode = billingMode;
+    }
+
+    TimeToLiveDescription getTimeToLive() {
+        return timeToLive;
+    }
+
+    void setTimeToLive(TimeToLiveSpecification specification) {
+        timeToLive = specification.isEnabled()
+                ? new TimeToLiveDescription().withTimeToLiveStatus(TimeToLiveStatus.ENABLED).withAttributeName(specification.getAttributeName())
+                : new TimeToLiveDescription().withTimeToLiveStatus(TimeToLiveStatus.DISABLED);
+    }
+
+    TableDescription describe() {
+        TableDescription description = new TableDescription()
+                .withTableName(name)
+                .withTableArn("arn:aws:dynamodb:local:000000000000:table/" + name)
+                .withTableStatus(TableStatus.ACTIVE)
+                .withCreationDateTime(creationDateTime)
+                .withKeySchema(keySchema)
+                .withAttributeDefinitions(attributeDefinitions)
+                .withItemCount((long) itemCount)
+                .withTableSizeBytes(sizeBytes)
+                .withProvisionedThroughput(throughputDescription(provisionedThroughput))
+                .withBillingModeSummary(new BillingModeSummary().withBillingMode(billingMode));
+        List<GlobalSecondaryIndexDescription> gsis = new ArrayList<>();
+        List<LocalSecondaryIndexDescription> lsis = new ArrayList<>();
+        for (Index index : indexes.values()) {
+            if (index.isGlobal()) {
+                gsis.add(new GlobalSecondaryIndexDescription()
+                        .withIndexName(index.getName())
+                        .withIndexStatus(IndexStatus.ACTIVE)
+                        .withKeySchema(index.keySchema)
+                        .withProjection(index.projection)
+                        .withItemCount((long) itemCount)
+                        .withProvisionedThroughput(throughputDescription(index.provisionedThroughput)));
+            } else {
+                lsis.add(new LocalSecondaryIndexDescription()
+                        .withIndexName(index.getName())
+                        .withKeySchema(index.keySchema)
+                        .withProjection(index.projection)
+                        .withItemCount((long) itemCount));
+            }
+        }
+        if (!gsis.isEmpty()) {
+            description.setGlobalSecondaryIndexes(gsis);
+        }
+        if (!lsis.isEmpty()) {
+            description.setLocalSecondaryIndexes(lsis);
+        }
+        return description;
+    }
+
+    private static ProvisionedThroughputDescription throughputDescription(ProvisionedThroughput throughput) {
+        return new ProvisionedThroughputDescription()
+                .withNumberOfDecreasesToday(0L)
+                .withReadCapacityUnits(throughput == null ? 0L : throughput.getReadCapacityUnits())
+                .withWriteCapacityUnits(throughput == null ? 0L : throughput.getWriteCapacityUnits());
+    }
+
+    //// Items
+
+    /**
+     * Validates a primary key, which must contain exactly the key attributes of the table with their defined types.
+     */
+    Key[] primaryKey(Map<String, AttributeValue> key) {
+        if (key == null || key.size() != (rangeKeyName == null ? 1 : 2) || !key.containsKey(hashKeyName)
+                || (rangeKeyName != null && !key.containsKey(rangeKeyName))) {
+            throw validation("The provided key element does not match the schema");
+        }
+        return new Key[]{keyValue(hashKeyName, key.get(hashKeyName)), rangeKeyName == null ? Key.NONE : keyValue(rangeKeyName, key.get(rangeKeyName))};
+    }
+
+    private Key keyValue(String attributeName, AttributeValue value) {
+        if (!AttributeValues.type(value).equals(attributeTypes.get(attributeName))) {
+            throw validation("One or more parameter values were invalid: Type mismatch for key " + attributeName);
+        }
+        return Key.of(value);
+    }
+
+    Map<String, AttributeValue> keyOf(Map<String, AttributeValue> item) {
+        Map<String, AttributeValue> key = new LinkedHashMap<>();
+        key.put(hashKeyName, item.get(hashKeyName));
+        if (rangeKeyName != null) {
+            key.put(rangeKeyName, item.get(rangeKeyName));
+        }
+        return key;
+    }
+
+    Map<String, AttributeValue> get(Map<String, AttributeValue> key) {
+        Key[] primaryKey = primaryKey(key);
+        TreeMap<Key, Map<String, AttributeValue>> partition = partitions.get(primaryKey[0]);
+        return partition == null ? null : partition.get(primaryKey[1]);
+    }
+
+    /**
+     * Validates the item and stores it, replacing any item with the same primary key.
+     *
+     * @return the replaced item, or null
+     */
+    Map<String, AttributeValue> put(Map<String, AttributeValue> item) {
+        validateItem(item);
+        Key[] primaryKey = primaryKey(keyOf(item));
+        Map<String, AttributeValue> old = partitions.computeIfAbsent(primaryKey[0], k -> new TreeMap<>()).put(primaryKey[1], item);
+        if (old == null) {
+            itemCount++;
+        }
+        sizeBytes += AttributeValues.itemSize(item) - AttributeValues.itemSize(old);
+        return old;
+    }
+
+    /**
+     * Checks that an item has the key attributes of the table and that its table and index keys have their defined types.
+     */
+    void validateItem(Map<String, AttributeValue> item) {
+        if (!item.containsKey(hashKeyName) || (rangeKeyName != null && !item.containsKey(rangeKeyName))) {
+            throw validation("One or more parameter values were invalid: Missing the key " + (item.containsKey(hashKeyName) ? rangeKeyName : hashKeyName) + " in the item");
+        }
+        for (String attributeName : keyAttributeNames()) {
+            AttributeValue value = item.get(attributeName);
+            if (value != null && !AttributeValues.type(value).equals(attributeTypes.get(attributeName))) {
+                throw validation("One or more parameter values were invalid: Type mismatch for Index Key " + attributeName + " Expected: "
+                        + attributeTypes.get(attributeName) + " Actual: " + AttributeValues.type(value));
+            }
+        }
+    }
+
+    /**
+     * @return the deleted item, or null
+     */
+    Map<String, AttributeValue> delete(Map<String, AttributeValue> key) {
+        Key[] primaryKey = primaryKey(key);
+        TreeMap<Key, Map<String, AttributeValue>> partition = partitions.get(primaryKey[0]);
+        if (partition == null) {
+            return null;
+        }
+        Map<String, AttributeValue> old = partition.remove(primaryKey[1]);
+        if (partition.isEmpty()) {
+            partitions.remove(primaryKey[0]);
+        }
+        if (old != null) {
+            itemCount--;
+            sizeBytes -= AttributeValues.itemSize(old);
+        }
+        return old;
+    }
+
+    //// Reads through the table or an index
+
+    /**
+     * @return the items of a hash key in the order of the table or index, ascending
+     */
+    List<Map<String, AttributeValue>> query(Index index, AttributeValue hashKeyValue) {
+        if (index == null) {
+            TreeMap<Key, Map<String, AttributeValue>> partition = partitions.get(keyValue(hashKeyName, hashKeyValue));
+            return partition == null ? new ArrayList<>() : new ArrayList<>(partition.values());
+        }
+        Key hashKey = Key.of(hashKeyValue);
+        List<Map<String, AttributeValue>> items = new ArrayList<>();
+        Collection<TreeMap<Key, Map<String, AttributeValue>>> candidates = index.isGlobal()
+                ? partitions.values() : Collections.singletonList(partitions.getOrDefault(hashKey, new TreeMap<>()));
+        for (TreeMap<Key, Map<String, AttributeValue>> partition : candidates) {
+            for (Map<String, AttributeValue> item : partition.values()) {
+                if (inIndex(index, item) && Key.of(item.get(index.getHashKeyName())).equals(hashKey)) {
+                    items.add(item);
+                }
+            }
+        }
+        items.sort(positionComparator(index));
+        return items;
+    }
+
+    /**
+     * @return the items of the table or index, or of one segment of it, in the order they are scanned
+     */
+    List<Map<String, AttributeValue>> scan(Index index, Integer segment, Integer totalSegments) {
+        List<Map<String, AttributeValue>> items = new ArrayList<>();
+        String segmentKeyName = index == null ? hashKeyName : index.getHashKeyName();
+        for (TreeMap<Key, Map<String, AttributeValue>> partition : partitions.values()) {
+            for (Map<String, AttributeValue> item : partition.values()) {
+                if (index != null && !inIndex(index, item)) {
+                    continue;
+                }
+                if (totalSegments != null && Math.floorMod(Key.of(item.get(segmentKeyName)).hashCode(), totalSegments) != segment) {
+                    continue;
+                }
+                items.add(item);
+            }
+        }
+        if (index != null) {
+            items.sort(positionComparator(index));
+        }
+        return items;
+    }
+
+    private static boolean inIndex(Index index, Map<String, AttributeValue> item) {
+        return item.containsKey(index.getHashKeyName()) && (index.getRangeKeyName() != null ? item.containsKey(index.getRangeKeyName()) : true);
+    }
+
+    /**
+     * @return the position of an item, or of an exclusive start key, in the order of the table or index
+     */
+    List<Key> position(Index index, Map<String, AttributeValue> item) {
+        List<Key> position = new ArrayList<>(4);
+        if (index != null) {
+            position.add(keyOrNone(item, index.getHashKeyName()));
+            position.add(keyOrNone(item, index.getRangeKeyName()));
+        }
+        position.add(keyOrNone(item, hashKeyName));
+        position.add(keyOrNone(item, rangeKeyName));
+        return position;
+    }
+
+    private static Key keyOrNone(Map<String, AttributeValue> item, String attributeName) {
+        if (attributeName == null) {
+            return Key.NONE;
+        }
+        AttributeValue value = item.get(attributeName);
+        if (value == null) {
+            throw validation("The provided starting key is invalid: missing key attribute " + attributeName);
+        }
+        return Key.of(value);
+    }
+
+    Comparator<Map<String, AttributeValue>> positionComparator(Index index) {
+        return (a, b) -> comparePositions(position(index, a), position(index, b));
+    }
+
+    static int comparePositions(List<Key> a, List<Key> b) {
+        for (int i = 0; i < a.size(); i++) {
+            int c = a.get(i).compareTo(b.get(i));
+            if (c != 0) {
+                return c;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return the key attributes of the table and index, as returned in LastEvaluatedKey
+     */
+    Map<String, AttributeValue> evaluatedKey(Index index, Map<String, AttributeValue> item) {
+        Map<String, AttributeValue> key = keyOf(item);
+        if (index != null) {
+            key.put(index.getHashKeyName(), item.get(index.getHashKeyName()));
+            if (index.getRangeKeyName() != null) {
+                key.put(index.getRangeKeyName(), item.get(index.getRangeKeyName()));
+            }
+        }
+        return AttributeValues.copyItem(key);
+    }
+
+    /**
+     * @return the attributes of an item that are projected into the index
+     */
+    Map<String, AttributeValue> projectIndex(Index index, Map<String, AttributeValue> item) {
+        Map<String, AttributeValue> projected = new LinkedHashMap<>();
+        for (Map.Entry<String, AttributeValue> entry : item.entrySet()) {
+            String attributeName = entry.getKey();
+            if (isKeyAttribute(attributeName) || attributeName.equals(index.getHashKeyName())
+                    || attributeName.equals(index.getRangeKeyName()) || index.isProjected(attributeName)) {
+                projected.put(attributeName, entry.getValue());
+            }
+        }
+        return projected;
+    }
+
+}
@@ -0,0 +1,109 @@
+/*
+    Copyright 2018 N3TWORK INC
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.n3twork.dynamap.testing;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+/**
+ * A scalar String, Number or Binary value with the equality and order DynamoDB uses for keys: numbers compare by
+ * value, binaries as unsigned bytes. Key.NONE sorts before every other key and stands for a missing range key.
+ */
+final class Key implements Comparable<Key> {
+
+    static final Key NONE = new Key(null, null, null, null);
+
+    private final AttributeValue value;
+    private final String s;
+    private final BigDecimal n;
+    private final byte[] b;
+
+    private Key(AttributeValue value, String s, BigDecimal n, byte[] b) {
+        this.value = value;
+        this.s = s;
+        this.n = n;
+        this.b = b;
+    }
+
+    static Key of(AttributeValue value) {
+        if (value.getS() != null) {
+            return new Key(value, value.getS(), null, null);
+        }
+        if (value.getN() != null) {
+            return new Key(value, null, AttributeValues.number(value.getN()).stripTrailingZeros(), null);
+        }
+        if (value.getB() != null) {
+            return new Key(value, null, null, AttributeValues.bytes(value.getB()));
+        }
+        throw AttributeValues.validation("Key attributes must be scalars of type S, N or B");
+    }
+
+    AttributeValue getValue() {
+        return value;
+    }
+
+    private int rank() {
+        return s != null ? 1 : n != null ? 2 : b != null ? 3 : 0;
+    }
+
+    @Override
+    public int compareTo(Key other) {
+        int rank = Integer.compare(rank(), other.rank());
+        if (rank != 0) {
+            return rank;
+        }
+        if (s != null) {
+            return s.compareTo(other.s);
+        }
+        if (n != null) {
+            return n.compareTo(other.n);
+        }
+        if (b != null) {
+            for (int i = 0; i < Math.min(b.length, other.b.length); i++) {
+                int c = Integer.compare(b[i] & 0xff, other.b[i] & 0xff);
+                if (c != 0) {
+                    return c;
+                }
+            }
+            return Integer.compare(b.length, other.b.length);
+        }
+        return 0;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Key && compareTo((Key) o) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        if (s != null) {
+            return s.hashCode();
+        }
+        if (n != null) {
+            return n.hashCode();
+        }
+        return b != null ? Arrays.hashCode(b) : 0;
+    }
+
+    @Override
+    public String toString() {
+        return s != null ? s : n != null ? n.toPlainString() : b != null ? Arrays.toString(b) : "NONE";
+    }
+}